@@ -0,0 +1,47 @@
+package com.nova.nfs.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Point d'entrée de {@code benchmarks.jar} : les options JMH habituelles
+ * (filtre, {@code -p links=100000}, {@code -f}, ...) sont acceptées, et le
+ * résultat est toujours écrit en JSON dans
+ * {@code <-Dnfs.bench.dir, jmh-results>/<-Dnfs.bench.label, date>.json},
+ * pour comparer deux commits avec {@link CompareResults} :
+ * <pre>
+ * java -Dnfs.bench.label=before -jar benchmarks.jar CatalogBenchmark -p links=100000
+ * (changement, rebuild)
+ * java -Dnfs.bench.label=after  -jar benchmarks.jar CatalogBenchmark -p links=100000
+ * java -cp benchmarks.jar com.nova.nfs.bench.CompareResults jmh-results/before.json jmh-results/after.json
+ * </pre>
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Path.of(System.getProperty("nfs.bench.dir", "jmh-results"));
+        String label = System.getProperty("nfs.bench.label",
+                LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+        Files.createDirectories(dir);
+        Path result = dir.resolve(label + ".json");
+
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .resultFormat(ResultFormatType.JSON)
+                .result(result.toString())
+                .build();
+        new Runner(options).run();
+        System.out.println("Results written to " + result.toAbsolutePath());
+    }
+}
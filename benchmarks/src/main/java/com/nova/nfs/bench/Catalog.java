@@ -0,0 +1,173 @@
+package com.nova.nfs.bench;
+
+import com.nova.nfs.core.FileEntry;
+import com.nova.nfs.core.Link;
+import com.nova.nfs.core.LinkType;
+import com.nova.nfs.repo.FileRepository;
+import com.nova.nfs.repo.LinkRepository;
+import com.nova.nfs.repo.StoreBackend;
+import com.nova.nfs.repo.StoreOptions;
+import com.nova.nfs.service.NovaFsService;
+import com.nova.nfs.util.Bootstrap;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Catalogue synthétique écrit dans un répertoire temporaire, puis rouvert
+ * par les benchmarks. Même graine, même catalogue : les mesures de deux
+ * commits portent sur les mêmes données.
+ */
+final class Catalog {
+
+    /** Forme de l'arborescence. */
+    enum Shape {
+        /** peu de dossiers sous la racine, {@value #WIDE_FANOUT} fichiers chacun */
+        WIDE,
+        /** chaînes de {@value #DEEP_DEPTH} dossiers, quelques fichiers par niveau */
+        DEEP
+    }
+
+    static final int WIDE_FANOUT = 1000;
+    static final int DEEP_DEPTH = 32;
+    static final int DEEP_FILES_PER_FOLDER = 10;
+    private static final int BATCH = 10_000;
+    private static final long SEED = 42;
+
+    final Path baseDir;
+    final StoreOptions options;
+    final UUID[] folderIds;
+    final UUID[] fileLinkIds;
+
+    private Catalog(Path baseDir, StoreOptions options, UUID[] folderIds, UUID[] fileLinkIds) {
+        this.baseDir = baseDir;
+        this.options = options;
+        this.folderIds = folderIds;
+        this.fileLinkIds = fileLinkIds;
+    }
+
+    Path dataDir() {
+        return baseDir.resolve("data");
+    }
+
+    Path filesDir() {
+        return baseDir.resolve("files");
+    }
+
+    /**
+     * Construit un catalogue d'environ {@code links} links (0 : catalogue
+     * vide) puis le ferme.
+     */
+    static Catalog build(int links, Shape shape, StoreBackend backend) throws IOException {
+        Path baseDir = Files.createTempDirectory("nfs-bench");
+        StoreOptions options = StoreOptions.defaults().withBackend(backend);
+        FileRepository fileRepo = Bootstrap.openFileRepository(baseDir.resolve("data"), options);
+        LinkRepository linkRepo = Bootstrap.openLinkRepository(baseDir.resolve("data"), options);
+        Random random = new Random(SEED);
+        try {
+            Link root = Bootstrap.ensureRoot(linkRepo);
+            Bootstrap.ensureTrash(linkRepo, root.getId());
+
+            List<UUID> folders = new ArrayList<>();
+            List<UUID> files = new ArrayList<>();
+            List<Link> pendingLinks = new ArrayList<>();
+            List<FileEntry> pendingFiles = new ArrayList<>();
+            int perFolder = shape == Shape.WIDE ? WIDE_FANOUT : DEEP_FILES_PER_FOLDER;
+            int folderCount = links <= 0 ? 0 : Math.max(1, links / (perFolder + 1));
+            UUID parent = root.getId();
+            for (int f = 0; f < folderCount; f++) {
+                if (shape == Shape.WIDE || f % DEEP_DEPTH == 0) {
+                    parent = root.getId();
+                }
+                Link folder = new Link(LinkType.FOLDER, "folder-" + f);
+                folder.setParentId(parent);
+                pendingLinks.add(folder);
+                folders.add(folder.getId());
+                if (shape == Shape.DEEP) {
+                    parent = folder.getId();
+                }
+                for (int i = 0; i < perFolder; i++) {
+                    String name = "file-" + f + "-" + i + "-" + Integer.toHexString(random.nextInt()) + ".txt";
+                    FileEntry entry = new FileEntry(name, "txt", baseDir.resolve("files").resolve(name).toString());
+                    Link link = new Link(LinkType.FILE, name);
+                    link.setParentId(folder.getId());
+                    link.setTargetFileId(entry.getId());
+                    pendingFiles.add(entry);
+                    pendingLinks.add(link);
+                    files.add(link.getId());
+                }
+                if (pendingLinks.size() >= BATCH) {
+                    fileRepo.saveAll(pendingFiles);
+                    linkRepo.saveAll(pendingLinks);
+                    pendingFiles.clear();
+                    pendingLinks.clear();
+                }
+            }
+            fileRepo.saveAll(pendingFiles);
+            linkRepo.saveAll(pendingLinks);
+            return new Catalog(baseDir, options, folders.toArray(new UUID[0]), files.toArray(new UUID[0]));
+        } finally {
+            fileRepo.close();
+            linkRepo.close();
+        }
+    }
+
+    /** Repositories et service ouverts sur le catalogue. */
+    static final class Opened implements AutoCloseable {
+        final FileRepository fileRepo;
+        final LinkRepository linkRepo;
+        final NovaFsService nfs;
+
+        private Opened(FileRepository fileRepo, LinkRepository linkRepo, NovaFsService nfs) {
+            this.fileRepo = fileRepo;
+            this.linkRepo = linkRepo;
+            this.nfs = nfs;
+        }
+
+        @Override
+        public void close() {
+            nfs.close();
+        }
+    }
+
+    /** Ouvre le catalogue comme l'appli au démarrage (sans vérification de cohérence). */
+    Opened open() {
+        FileRepository fileRepo = Bootstrap.openFileRepository(dataDir(), options);
+        LinkRepository linkRepo = Bootstrap.openLinkRepository(dataDir(), options);
+        Link root = Bootstrap.ensureRoot(linkRepo);
+        Link trash = Bootstrap.ensureTrash(linkRepo, root.getId());
+        NovaFsService nfs = new NovaFsService(fileRepo, linkRepo, filesDir(), root.getId(), trash.getId());
+        return new Opened(fileRepo, linkRepo, nfs);
+    }
+
+    void delete() throws IOException {
+        deleteTree(baseDir);
+    }
+
+    static void deleteTree(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path d, IOException e) throws IOException {
+                Files.delete(d);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,92 @@
+package com.nova.nfs.bench;
+
+import com.nova.nfs.core.Link;
+import com.nova.nfs.core.LinkType;
+import com.nova.nfs.repo.StoreBackend;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latence des opérations courantes sur un catalogue déjà ouvert : lecture
+ * d'un dossier, chemin logique, enregistrement et suppression d'un link.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx4g"})
+public class CatalogBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int links;
+
+    @Param({"WIDE", "DEEP"})
+    public Catalog.Shape shape;
+
+    @Param({"JOURNAL", "MAPPED"})
+    public StoreBackend backend;
+
+    private Catalog catalog;
+    private Catalog.Opened opened;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        catalog = Catalog.build(links, shape, backend);
+        opened = catalog.open();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        opened.close();
+        catalog.delete();
+    }
+
+    @Benchmark
+    public List<Link> findChildren() {
+        return opened.linkRepo.findChildren(pick(catalog.folderIds));
+    }
+
+    @Benchmark
+    public String resolveLogicalPath() {
+        return opened.nfs.resolveLogicalPath(pick(catalog.fileLinkIds));
+    }
+
+    /** Réécriture d'un link existant (renommage). */
+    @Benchmark
+    public Link save() {
+        Link link = opened.linkRepo.findById(pick(catalog.fileLinkIds)).orElseThrow();
+        link.setDisplayName("renamed-" + ThreadLocalRandom.current().nextInt() + ".txt");
+        return opened.linkRepo.save(link);
+    }
+
+    /** Création puis suppression d'un link : le catalogue garde sa taille. */
+    @Benchmark
+    public void saveThenDelete() {
+        Link link = new Link(LinkType.FOLDER, "tmp-" + ThreadLocalRandom.current().nextInt());
+        link.setParentId(pick(catalog.folderIds));
+        opened.linkRepo.save(link);
+        opened.linkRepo.delete(link.getId());
+    }
+
+    private static UUID pick(UUID[] ids) {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+}
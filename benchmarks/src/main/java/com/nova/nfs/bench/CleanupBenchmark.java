@@ -0,0 +1,75 @@
+package com.nova.nfs.bench;
+
+import com.nova.nfs.core.Link;
+import com.nova.nfs.core.LinkType;
+import com.nova.nfs.repo.StoreBackend;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code cleanupDanglingFileLinks} sur tout le catalogue, avec 1 % de links
+ * FILE pendants recréés avant chaque mesure.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx4g"})
+public class CleanupBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int links;
+
+    @Param({"JOURNAL", "MAPPED"})
+    public StoreBackend backend;
+
+    private Catalog catalog;
+    private Catalog.Opened opened;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        catalog = Catalog.build(links, Catalog.Shape.WIDE, backend);
+        opened = catalog.open();
+    }
+
+    @Setup(Level.Invocation)
+    public void addDanglingLinks() {
+        List<Link> dangling = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, links / 100); i++) {
+            Link link = new Link(LinkType.FILE, "dangling-" + i + ".txt");
+            link.setParentId(catalog.folderIds[i % catalog.folderIds.length]);
+            link.setTargetFileId(UUID.randomUUID());
+            dangling.add(link);
+        }
+        opened.linkRepo.saveAll(dangling);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        opened.close();
+        catalog.delete();
+    }
+
+    @Benchmark
+    public void cleanupDanglingFileLinks() {
+        opened.nfs.cleanupDanglingFileLinks();
+    }
+}
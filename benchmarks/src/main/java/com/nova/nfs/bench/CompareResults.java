@@ -0,0 +1,82 @@
+package com.nova.nfs.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compare deux résultats JSON de JMH (avant / après) : pour chaque
+ * benchmark et jeu de paramètres présent des deux côtés, scores, écart en %
+ * et verdict. Un écart inférieur à la somme des marges d'erreur est marqué
+ * "~" (bruit).
+ */
+public final class CompareResults {
+
+    private CompareResults() {
+    }
+
+    private record Score(double value, double error, String unit, String mode) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: CompareResults <before.json> <after.json>");
+            System.exit(2);
+        }
+        Map<String, Score> before = read(Path.of(args[0]));
+        Map<String, Score> after = read(Path.of(args[1]));
+
+        System.out.printf("%-80s %14s %14s %9s%n", "Benchmark", "before", "after", "change");
+        for (Map.Entry<String, Score> entry : before.entrySet()) {
+            Score old = entry.getValue();
+            Score now = after.get(entry.getKey());
+            if (now == null || !old.unit().equals(now.unit())) {
+                continue;
+            }
+            double change = (now.value() - old.value()) / old.value() * 100;
+            String verdict;
+            if (Math.abs(now.value() - old.value()) <= old.error() + now.error()) {
+                verdict = "~";
+            } else {
+                // temps : plus bas = mieux ; débit : plus haut = mieux
+                boolean lowerIsBetter = !"thrpt".equals(now.mode());
+                verdict = (now.value() < old.value()) == lowerIsBetter ? "better" : "WORSE";
+            }
+            System.out.printf("%-80s %14s %14s %+8.1f%% %s%n", entry.getKey(),
+                    format(old), format(now), change, verdict);
+        }
+    }
+
+    /** Scores indexés par "benchmark {paramètres triés}". */
+    private static Map<String, Score> read(Path file) throws IOException {
+        JsonNode root = new ObjectMapper().readTree(file.toFile());
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode run : root) {
+            StringBuilder key = new StringBuilder(run.path("benchmark").asText()
+                    .replace("com.nova.nfs.bench.", ""));
+            Map<String, String> params = new TreeMap<>();
+            for (Iterator<Map.Entry<String, JsonNode>> it = run.path("params").fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> param = it.next();
+                params.put(param.getKey(), param.getValue().asText());
+            }
+            if (!params.isEmpty()) {
+                key.append(' ').append(params);
+            }
+            JsonNode metric = run.path("primaryMetric");
+            double error = metric.path("scoreError").asDouble(0);
+            scores.put(key.toString(), new Score(metric.path("score").asDouble(),
+                    Double.isNaN(error) ? 0 : error, metric.path("scoreUnit").asText(), run.path("mode").asText()));
+        }
+        return scores;
+    }
+
+    private static String format(Score score) {
+        return String.format("%.3f %s", score.value(), score.unit());
+    }
+}
@@ -0,0 +1,233 @@
+package com.nova.nfs.bench;
+
+import com.nova.nfs.core.Link;
+import com.nova.nfs.core.LinkType;
+import com.nova.nfs.repo.StoreBackend;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Test de charge des repositories (pas un benchmark JMH) : des threads
+ * déplacent des fichiers, d'autres importent, d'autres listent, pendant
+ * quelques secondes, sur chaque backend. Vérifie ensuite :
+ * <ul>
+ *     <li>pendant le run, qu'un enfant listé a bien le parent demandé ;</li>
+ *     <li>à la fin, que chaque link est listé une fois et une seule sous son
+ *     parent, et que les chemins logiques en cache sont justes ;</li>
+ *     <li>après fermeture et réouverture, que le disque rend le même état
+ *     que la mémoire.</li>
+ * </ul>
+ * Code de sortie 1 au premier backend en erreur.
+ * <pre>
+ * java -cp benchmarks.jar com.nova.nfs.bench.ConcurrencyStress [secondes] [threads par rôle]
+ * </pre>
+ */
+public final class ConcurrencyStress {
+
+    private static final int CATALOG_LINKS = 5_000;
+    private static final int IMPORT_SOURCES = 64;
+
+    private ConcurrencyStress() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        boolean ok = true;
+        for (StoreBackend backend : StoreBackend.values()) {
+            ok &= run(backend, seconds, threads);
+        }
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static boolean run(StoreBackend backend, int seconds, int threads) throws Exception {
+        Catalog catalog = Catalog.build(CATALOG_LINKS, Catalog.Shape.DEEP, backend);
+        Path sources = Files.createTempDirectory("nfs-stress-src");
+        try {
+            List<Path> sourceFiles = new ArrayList<>();
+            for (int i = 0; i < IMPORT_SOURCES; i++) {
+                sourceFiles.add(Files.writeString(sources.resolve("src-" + i + ".txt"), "source " + i));
+            }
+
+            List<String> errors = new ArrayList<>();
+            Map<UUID, String> expected;
+            AtomicLong moves = new AtomicLong();
+            AtomicLong imports = new AtomicLong();
+            AtomicLong listings = new AtomicLong();
+            try (Catalog.Opened opened = catalog.open()) {
+                AtomicBoolean stop = new AtomicBoolean();
+                ExecutorService pool = Executors.newFixedThreadPool(threads * 3);
+                List<Future<List<String>>> results = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    long seed = t;
+                    results.add(pool.submit(() -> move(opened, catalog, seed, stop, moves)));
+                    results.add(pool.submit(() -> importFiles(opened, catalog, sourceFiles, seed, stop, imports)));
+                    results.add(pool.submit(() -> list(opened, catalog, seed, stop, listings)));
+                }
+                TimeUnit.SECONDS.sleep(seconds);
+                stop.set(true);
+                for (Future<List<String>> result : results) {
+                    errors.addAll(result.get());
+                }
+                pool.shutdown();
+
+                errors.addAll(checkParentIndex(opened));
+                errors.addAll(checkPaths(opened));
+                expected = describe(opened.linkRepo.findAll());
+            }
+
+            try (Catalog.Opened reopened = catalog.open()) {
+                Map<UUID, String> actual = describe(reopened.linkRepo.findAll());
+                if (!actual.equals(expected)) {
+                    errors.add("reopened store differs: " + expected.size() + " links in memory, "
+                            + actual.size() + " on disk");
+                }
+                errors.addAll(checkParentIndex(reopened));
+            }
+
+            System.out.printf("%-8s %,10d moves %,8d imports %,10d listings  %s%n", backend,
+                    moves.get(), imports.get(), listings.get(), errors.isEmpty() ? "OK" : "FAILED");
+            errors.stream().limit(20).forEach(e -> System.out.println("  " + e));
+            return errors.isEmpty();
+        } finally {
+            Catalog.deleteTree(sources);
+            catalog.delete();
+        }
+    }
+
+    // ---------- rôles ----------
+
+    private static List<String> move(Catalog.Opened opened, Catalog catalog, long seed,
+                                     AtomicBoolean stop, AtomicLong count) {
+        Random random = new Random(seed);
+        while (!stop.get()) {
+            UUID file = catalog.fileLinkIds[random.nextInt(catalog.fileLinkIds.length)];
+            UUID folder = catalog.folderIds[random.nextInt(catalog.folderIds.length)];
+            opened.nfs.moveFile(file, folder);
+            count.incrementAndGet();
+        }
+        return List.of();
+    }
+
+    private static List<String> importFiles(Catalog.Opened opened, Catalog catalog, List<Path> sources,
+                                            long seed, AtomicBoolean stop, AtomicLong count) {
+        Random random = new Random(seed);
+        List<String> errors = new ArrayList<>();
+        while (!stop.get()) {
+            UUID folder = catalog.folderIds[random.nextInt(catalog.folderIds.length)];
+            try {
+                opened.nfs.importExistingFile(folder, sources.get(random.nextInt(sources.size())));
+                count.incrementAndGet();
+            } catch (IOException e) {
+                errors.add("import failed: " + e.getMessage());
+            }
+        }
+        return errors;
+    }
+
+    private static List<String> list(Catalog.Opened opened, Catalog catalog, long seed,
+                                     AtomicBoolean stop, AtomicLong count) {
+        Random random = new Random(seed);
+        List<String> errors = new ArrayList<>();
+        while (!stop.get()) {
+            UUID folder = catalog.folderIds[random.nextInt(catalog.folderIds.length)];
+            Set<UUID> seen = new HashSet<>();
+            for (Link child : opened.nfs.getChildren(folder)) {
+                if (!folder.equals(child.getParentId())) {
+                    errors.add("listed under " + folder + " with parent " + child.getParentId() + ": " + child.getId());
+                }
+                if (!seen.add(child.getId())) {
+                    errors.add("listed twice under " + folder + ": " + child.getId());
+                }
+                if (child.getType() == LinkType.FILE) {
+                    opened.nfs.resolveLogicalPath(child.getId());
+                }
+            }
+            count.incrementAndGet();
+        }
+        return errors;
+    }
+
+    // ---------- vérifications ----------
+
+    /** Chaque link est listé exactement une fois, sous son parent. */
+    private static List<String> checkParentIndex(Catalog.Opened opened) {
+        List<String> errors = new ArrayList<>();
+        List<Link> all = opened.linkRepo.findAll();
+        Set<UUID> parents = new HashSet<>();
+        for (Link link : all) {
+            parents.add(link.getParentId());
+        }
+        int listed = 0;
+        for (UUID parent : parents) {
+            Set<UUID> seen = new HashSet<>();
+            for (Link child : opened.linkRepo.findChildren(parent)) {
+                listed++;
+                if (!Objects.equals(parent, child.getParentId())) {
+                    errors.add("child " + child.getId() + " of " + parent + " has parent " + child.getParentId());
+                }
+                if (!seen.add(child.getId())) {
+                    errors.add("child " + child.getId() + " listed twice under " + parent);
+                }
+            }
+        }
+        if (listed != all.size()) {
+            errors.add(all.size() + " links but " + listed + " listed under their parents");
+        }
+        for (Link link : all) {
+            if (link.getType() == LinkType.FILE && !opened.fileRepo.exists(link.getTargetFileId())) {
+                errors.add("file link " + link.getId() + " targets a missing FileEntry");
+            }
+        }
+        return errors;
+    }
+
+    /** Chemins en cache = chemins recalculés depuis le repository. */
+    private static List<String> checkPaths(Catalog.Opened opened) {
+        List<String> errors = new ArrayList<>();
+        Map<UUID, Link> byId = new HashMap<>();
+        for (Link link : opened.linkRepo.findAll()) {
+            byId.put(link.getId(), link);
+        }
+        for (Link link : byId.values()) {
+            if (link.getType() != LinkType.FILE) {
+                continue;
+            }
+            StringBuilder path = new StringBuilder();
+            for (Link l = link; l != null && l.getType() != LinkType.ROOT; l = byId.get(l.getParentId())) {
+                path.insert(0, "/" + l.getDisplayName());
+            }
+            String cached = opened.nfs.resolveLogicalPath(link.getId());
+            if (!path.toString().equals(cached)) {
+                errors.add("path of " + link.getId() + " is " + cached + ", expected " + path);
+            }
+        }
+        return errors;
+    }
+
+    private static Map<UUID, String> describe(List<Link> links) {
+        Map<UUID, String> described = new HashMap<>();
+        for (Link link : links) {
+            described.put(link.getId(), link.getType() + "|" + link.getParentId() + "|"
+                    + link.getTargetFileId() + "|" + link.getDisplayName());
+        }
+        return described;
+    }
+}
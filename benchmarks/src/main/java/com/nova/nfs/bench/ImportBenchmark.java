@@ -0,0 +1,86 @@
+package com.nova.nfs.bench;
+
+import com.nova.nfs.core.Link;
+import com.nova.nfs.repo.StoreBackend;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Import récursif d'un dossier de {@value #FILES} fichiers dans un catalogue
+ * vide. Le score est le temps moyen par fichier ; chaque mesure repart d'un
+ * catalogue neuf pour que la déduplication des blobs ne fausse rien.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx2g"})
+public class ImportBenchmark {
+
+    static final int FILES = 2000;
+    private static final int SUBFOLDERS = 20;
+
+    @Param({"4096", "262144"})
+    public int fileSize;
+
+    @Param({"JOURNAL", "MAPPED"})
+    public StoreBackend backend;
+
+    private Path source;
+    private Catalog catalog;
+    private Catalog.Opened opened;
+
+    @Setup(Level.Trial)
+    public void createSource() throws IOException {
+        source = Files.createTempDirectory("nfs-bench-src");
+        Random random = new Random(7);
+        byte[] content = new byte[fileSize];
+        for (int i = 0; i < FILES; i++) {
+            Path dir = Files.createDirectories(source.resolve("dir-" + (i % SUBFOLDERS)));
+            random.nextBytes(content);
+            Files.write(dir.resolve("file-" + i + ".bin"), content);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void openEmptyCatalog() throws IOException {
+        catalog = Catalog.build(0, Catalog.Shape.WIDE, backend);
+        opened = catalog.open();
+    }
+
+    @TearDown(Level.Invocation)
+    public void dropCatalog() throws IOException {
+        opened.close();
+        catalog.delete();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteSource() throws IOException {
+        Catalog.deleteTree(source);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILES)
+    public Link importDirectory() throws IOException {
+        return opened.nfs.importDirectoryRecursive(opened.nfs.getRootLinkId(), source);
+    }
+}
@@ -0,0 +1,65 @@
+package com.nova.nfs.bench;
+
+import com.nova.nfs.repo.StoreBackend;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ouverture d'un catalogue existant (chargement des repositories et
+ * création du service), comme au lancement de l'appli.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx4g"})
+public class StartupBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int links;
+
+    @Param({"JOURNAL", "MAPPED"})
+    public StoreBackend backend;
+
+    private Catalog catalog;
+    private Catalog.Opened opened;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        catalog = Catalog.build(links, Catalog.Shape.WIDE, backend);
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeCatalog() {
+        if (opened != null) {
+            opened.close();
+            opened = null;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        catalog.delete();
+    }
+
+    @Benchmark
+    public Catalog.Opened open() {
+        opened = catalog.open();
+        return opened;
+    }
+}
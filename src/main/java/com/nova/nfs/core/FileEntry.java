@@ -23,6 +23,13 @@ public class FileEntry {
         this.physicalPath = physicalPath;
     }
 
+    public FileEntry(UUID id, String displayName, String extension, String physicalPath) {
+        this.id = id;
+        this.displayName = displayName;
+        this.extension = extension;
+        this.physicalPath = physicalPath;
+    }
+
     public UUID getId() {
         return id;
     }
@@ -46,4 +53,9 @@ public class FileEntry {
     public void setPhysicalPath(String physicalPath) {
         this.physicalPath = physicalPath;
     }
+
+    /** Copie indépendante (les repositories ne partagent pas leurs instances). */
+    public FileEntry copy() {
+        return new FileEntry(id, displayName, extension, physicalPath);
+    }
 }
@@ -14,6 +14,7 @@ public class Link {
     private String displayName;
     private UUID parentId;     // null pour ROOT
     private UUID targetFileId; // seulement pour type FILE
+    private long trashedAt;    // mise à la corbeille (epoch ms), 0 hors corbeille
 
     public Link() {
         // pour Jackson
@@ -25,6 +26,12 @@ public class Link {
         this.displayName = displayName;
     }
 
+    public Link(UUID id, LinkType type, String displayName) {
+        this.id = id;
+        this.type = type;
+        this.displayName = displayName;
+    }
+
     public UUID getId() {
         return id;
     }
@@ -61,6 +68,27 @@ public class Link {
         this.targetFileId = targetFileId;
     }
 
+    /**
+     * Date de mise à la corbeille (epoch ms), posée sur l'enfant direct de
+     * TRASH seulement ; 0 ailleurs.
+     */
+    public long getTrashedAt() {
+        return trashedAt;
+    }
+
+    public void setTrashedAt(long trashedAt) {
+        this.trashedAt = trashedAt;
+    }
+
+    /** Copie indépendante (les repositories ne partagent pas leurs instances). */
+    public Link copy() {
+        Link copy = new Link(id, type, displayName);
+        copy.parentId = parentId;
+        copy.targetFileId = targetFileId;
+        copy.trashedAt = trashedAt;
+        return copy;
+    }
+
     @Override
     public String toString() {
         return displayName != null ? displayName : (type != null ? type.name() : "Link");
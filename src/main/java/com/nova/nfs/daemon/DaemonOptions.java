@@ -0,0 +1,62 @@
+package com.nova.nfs.daemon;
+
+import com.nova.nfs.util.SystemProperties;
+
+import java.nio.file.Path;
+
+/**
+ * Réglages du {@link NfsDaemon}. Immuable : les {@code withXxx} renvoient
+ * une copie.
+ */
+public final class DaemonOptions {
+
+    /** Sous {@code baseDir} ; le répertoire est créé en 0700 par le daemon. */
+    private static final String DEFAULT_SOCKET_NAME = "run/nfs.sock";
+
+    private final Path socket;
+    private final int maxConnections;
+
+    private DaemonOptions(Path socket, int maxConnections) {
+        this.socket = socket;
+        this.maxConnections = maxConnections;
+    }
+
+    public static DaemonOptions defaults() {
+        return new DaemonOptions(null, 64);
+    }
+
+    /**
+     * Defaults surchargés par {@code -Dnfs.socket=...} et
+     * {@code -Dnfs.maxConnections=...}.
+     */
+    public static DaemonOptions fromSystemProperties() {
+        DaemonOptions options = defaults();
+        options = SystemProperties.withPath(options, "nfs.socket", DaemonOptions::withSocket);
+        options = SystemProperties.withInt(options, "nfs.maxConnections", DaemonOptions::withMaxConnections);
+        return options;
+    }
+
+    /**
+     * Socket choisie, ou {@code <baseDir>/run/nfs.sock} par défaut. Son
+     * répertoire ne doit être accessible qu'au propriétaire.
+     */
+    public Path resolveSocket(Path baseDir) {
+        return socket != null ? socket : baseDir.resolve(DEFAULT_SOCKET_NAME);
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public DaemonOptions withSocket(Path socket) {
+        return new DaemonOptions(socket, maxConnections);
+    }
+
+    /**
+     * Connexions servies en même temps (un thread chacune) ; les suivantes
+     * attendent qu'une se ferme.
+     */
+    public DaemonOptions withMaxConnections(int maxConnections) {
+        return new DaemonOptions(socket, Math.max(1, maxConnections));
+    }
+}
@@ -0,0 +1,257 @@
+package com.nova.nfs.daemon;
+
+import com.nova.nfs.core.Link;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Client Java du {@link NfsDaemon}. Une connexion, une requête à la fois
+ * (les appels concurrents sont sérialisés). Une erreur renvoyée par le
+ * daemon remonte en {@link IOException}.
+ */
+public final class NfsClient implements AutoCloseable {
+
+    /** Un résultat de recherche ; {@code snippet} est vide hors plein texte. */
+    public static final class Hit {
+        private final Link link;
+        private final String path;
+        private final String snippet;
+
+        Hit(Link link, String path, String snippet) {
+            this.link = link;
+            this.path = path;
+            this.snippet = snippet;
+        }
+
+        public Link getLink() {
+            return link;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getSnippet() {
+            return snippet;
+        }
+    }
+
+    /** Une page de résultats de {@link #search}. */
+    public static final class Page {
+        private final List<Hit> hits;
+        private final boolean hasMore;
+
+        Page(List<Hit> hits, boolean hasMore) {
+            this.hits = hits;
+            this.hasMore = hasMore;
+        }
+
+        public List<Hit> getHits() {
+            return hits;
+        }
+
+        public boolean hasMore() {
+            return hasMore;
+        }
+    }
+
+    private interface Args {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private final SocketChannel channel;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final UUID rootLinkId;
+    private final UUID trashLinkId;
+
+    public NfsClient(Path socket) throws IOException {
+        channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+            in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            DataInputStream hello = call(Protocol.HELLO, o -> { });
+            int version = hello.readUnsignedByte();
+            if (version != Protocol.VERSION) {
+                throw new IOException("unsupported daemon protocol version: " + version);
+            }
+            rootLinkId = Protocol.readUuid(hello);
+            trashLinkId = Protocol.readUuid(hello);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public UUID getRootLinkId() {
+        return rootLinkId;
+    }
+
+    public UUID getTrashLinkId() {
+        return trashLinkId;
+    }
+
+    public List<Link> list(UUID folderId) throws IOException {
+        DataInputStream r = call(Protocol.LIST, o -> Protocol.writeUuid(o, folderId));
+        int count = r.readInt();
+        List<Link> children = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            children.add(Protocol.readLink(r));
+        }
+        return children;
+    }
+
+    /** Link désigné par un chemin logique ({@code /a/b/c}). */
+    public Optional<Link> lookup(String logicalPath) throws IOException {
+        DataInputStream r = call(Protocol.LOOKUP, o -> Protocol.writeString(o, logicalPath));
+        return r == null ? Optional.empty() : Optional.of(Protocol.readLink(r));
+    }
+
+    /**
+     * Importe un fichier, ou un dossier et son contenu, lu par le daemon à
+     * {@code source}.
+     */
+    public Link importPath(UUID folderId, Path source) throws IOException {
+        DataInputStream r = call(Protocol.IMPORT, o -> {
+            Protocol.writeUuid(o, folderId);
+            Protocol.writeString(o, source.toAbsolutePath().toString());
+        });
+        return Protocol.readLink(r);
+    }
+
+    /**
+     * Copie le fichier d'un link FILE vers {@code dest}, écrit par le daemon.
+     *
+     * @return le nombre d'octets copiés
+     */
+    public long export(UUID fileLinkId, Path dest) throws IOException {
+        DataInputStream r = call(Protocol.EXPORT, o -> {
+            Protocol.writeUuid(o, fileLinkId);
+            Protocol.writeString(o, dest.toAbsolutePath().toString());
+        });
+        if (r == null) {
+            throw new IOException("link not found: " + fileLinkId);
+        }
+        return r.readLong();
+    }
+
+    /**
+     * Lit une plage du contenu d'un link FILE : au plus
+     * {@code dst.remaining()} octets (8 Mio par appel) à partir de
+     * {@code position}.
+     *
+     * @return le nombre d'octets lus, -1 si {@code position} est au-delà de la fin
+     */
+    public int read(UUID fileLinkId, long position, ByteBuffer dst) throws IOException {
+        int length = Math.min(dst.remaining(), Protocol.MAX_READ_BYTES);
+        DataInputStream r = call(Protocol.READ, o -> {
+            Protocol.writeUuid(o, fileLinkId);
+            o.writeLong(position);
+            o.writeInt(length);
+        });
+        if (r == null) {
+            throw new IOException("link not found: " + fileLinkId);
+        }
+        int n = r.readInt();
+        if (n > 0) {
+            byte[] data = new byte[n];
+            r.readFully(data);
+            dst.put(data);
+        }
+        return n;
+    }
+
+    public void move(UUID linkId, UUID newParentFolderId) throws IOException {
+        call(Protocol.MOVE, o -> {
+            Protocol.writeUuid(o, linkId);
+            Protocol.writeUuid(o, newParentFolderId);
+        });
+    }
+
+    public void moveToTrash(UUID linkId) throws IOException {
+        call(Protocol.TRASH, o -> Protocol.writeUuid(o, linkId));
+    }
+
+    /** @return le nombre de links supprimés (le link et son contenu) */
+    public int deletePermanently(UUID linkId) throws IOException {
+        return call(Protocol.DELETE, o -> Protocol.writeUuid(o, linkId)).readInt();
+    }
+
+    /** Recherche par nom, syntaxe de la barre de recherche ({@code ext:pdf rap*}). */
+    public Page search(String query, int offset, int limit) throws IOException {
+        DataInputStream r = call(Protocol.SEARCH, o -> {
+            Protocol.writeString(o, query);
+            o.writeInt(offset);
+            o.writeInt(limit);
+        });
+        boolean hasMore = r.readBoolean();
+        int count = r.readInt();
+        List<Hit> hits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            hits.add(new Hit(Protocol.readLink(r), Protocol.readString(r), ""));
+        }
+        return new Page(hits, hasMore);
+    }
+
+    /** Recherche dans le contenu des fichiers, du plus pertinent au moins pertinent. */
+    public List<Hit> searchContent(String text, int limit) throws IOException {
+        DataInputStream r = call(Protocol.SEARCH_CONTENT, o -> {
+            Protocol.writeString(o, text);
+            o.writeInt(limit);
+        });
+        int count = r.readInt();
+        List<Hit> hits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            hits.add(new Hit(Protocol.readLink(r), Protocol.readString(r), Protocol.readString(r)));
+        }
+        return hits;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Envoie une requête et attend sa réponse.
+     *
+     * @return le résultat, ou null si le daemon répond {@link Protocol#NOT_FOUND}
+     */
+    private synchronized DataInputStream call(int op, Args args) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream request = new DataOutputStream(buffer);
+        request.writeByte(op);
+        args.write(request);
+        Protocol.writeFrame(out, buffer.toByteArray());
+
+        byte[] frame = Protocol.readFrame(in, Protocol.MAX_RESPONSE_BYTES);
+        if (frame == null) {
+            throw new EOFException("daemon closed the connection");
+        }
+        DataInputStream reply = new DataInputStream(new ByteArrayInputStream(frame));
+        return switch (reply.readUnsignedByte()) {
+            case Protocol.OK -> reply;
+            case Protocol.NOT_FOUND -> null;
+            case Protocol.ERROR -> throw new IOException(Protocol.readString(reply));
+            default -> throw new IOException("invalid daemon response");
+        };
+    }
+}
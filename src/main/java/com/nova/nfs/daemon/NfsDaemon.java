@@ -0,0 +1,428 @@
+package com.nova.nfs.daemon;
+
+import com.nova.nfs.core.Link;
+import com.nova.nfs.core.LinkType;
+import com.nova.nfs.metrics.Counter;
+import com.nova.nfs.metrics.Metrics;
+import com.nova.nfs.metrics.Timer;
+import com.nova.nfs.repo.StoreOptions;
+import com.nova.nfs.service.ContentHit;
+import com.nova.nfs.service.GarbageCollector;
+import com.nova.nfs.service.GcOptions;
+import com.nova.nfs.service.NovaFsService;
+import com.nova.nfs.service.SearchHit;
+import com.nova.nfs.service.SearchPage;
+import com.nova.nfs.service.SearchQuery;
+import com.nova.nfs.service.TaskMonitor;
+import com.nova.nfs.util.Bootstrap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mode serveur sans UI : un seul process ouvre le catalogue (index chauds)
+ * et le sert sur une socket Unix, selon le {@link Protocol} binaire. Un
+ * thread par connexion, au plus {@link DaemonOptions#getMaxConnections()}.
+ * <p>
+ * La socket est créée dans un répertoire réservé au propriétaire (0700) quand
+ * le système le permet : quiconque peut s'y connecter a tous les droits sur
+ * le catalogue.
+ * <pre>
+ * java -Dnfs.baseDir=/srv/nfs -cp ... com.nova.nfs.daemon.NfsDaemon
+ * </pre>
+ */
+public final class NfsDaemon implements AutoCloseable {
+
+    private static final Timer REQUEST = Metrics.timer("daemon.request");
+    private static final Counter CONNECTIONS = Metrics.counter("daemon.connections");
+
+    private static final int MAX_SEARCH_LIMIT = 10_000;
+    private static final int MAX_ERROR_LENGTH = 1000;
+    private static final long SHUTDOWN_WAIT_SECONDS = 30;
+
+    private final NovaFsService nfs;
+    private final Path socket;
+    private final Semaphore slots;
+    private final Set<SocketChannel> clients = ConcurrentHashMap.newKeySet();
+    private ServerSocketChannel server;
+    private ExecutorService connections;
+    private Thread acceptor;
+    private volatile boolean closed;
+
+    public NfsDaemon(NovaFsService nfs, Path socket, DaemonOptions options) {
+        this.nfs = nfs;
+        this.socket = socket.toAbsolutePath();
+        this.slots = new Semaphore(options.getMaxConnections());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path baseDir = Bootstrap.baseDir();
+        DaemonOptions options = DaemonOptions.fromSystemProperties();
+        Path socket = options.resolveSocket(baseDir);
+        // avant d'ouvrir quoi que ce soit : fermer le service marquerait
+        // propre un catalogue tenu par l'autre daemon
+        if (Files.exists(socket) && isListening(socket)) {
+            System.err.println("Failed to start daemon: another daemon is listening on " + socket);
+            System.exit(1);
+        }
+        NovaFsService nfs;
+        try {
+            nfs = Bootstrap.openService(baseDir, StoreOptions.fromSystemProperties());
+        } catch (IllegalStateException e) {
+            System.err.println("Failed to start daemon: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        Metrics.startLogging();
+        GarbageCollector gc = new GarbageCollector(nfs, GcOptions.fromSystemProperties());
+        gc.start();
+
+        NfsDaemon daemon = new NfsDaemon(nfs, socket, options);
+        Runnable shutdown = () -> {
+            daemon.close();
+            gc.close();
+            nfs.close();
+            Metrics.stopLogging();
+        };
+        try {
+            daemon.start();
+        } catch (IOException e) {
+            System.err.println("Failed to start daemon: " + e.getMessage());
+            shutdown.run();
+            System.exit(1);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(shutdown, "nfs-daemon-shutdown"));
+        System.out.println("NFS daemon serving " + baseDir + " on " + daemon.getSocket());
+        daemon.awaitTermination();
+    }
+
+    public Path getSocket() {
+        return socket;
+    }
+
+    /**
+     * Ouvre la socket et commence à accepter les connexions. Une socket
+     * laissée par un daemon arrêté brutalement est remplacée ; une socket où
+     * un daemon écoute encore fait échouer le démarrage, tout comme un
+     * répertoire de socket ouvert au groupe ou aux autres.
+     */
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        if (Files.exists(socket)) {
+            if (isListening(socket)) {
+                throw new IOException("another daemon is listening on " + socket);
+            }
+            Files.delete(socket);
+        }
+        if (socket.getParent() != null) {
+            createPrivateDirectory(socket.getParent());
+        }
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socket));
+
+        connections = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "nfs-daemon-client");
+            t.setDaemon(true);
+            return t;
+        });
+        acceptor = new Thread(this::acceptLoop, "nfs-daemon-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /** Attend l'arrêt du daemon (par {@link #close()}). */
+    public void awaitTermination() throws InterruptedException {
+        Thread t;
+        synchronized (this) {
+            t = acceptor;
+        }
+        if (t != null) {
+            t.join();
+        }
+    }
+
+    /**
+     * Coupe les connexions en cours et supprime la socket. Le service reste
+     * ouvert : c'est à l'appelant de le fermer.
+     */
+    @Override
+    public void close() {
+        ExecutorService running;
+        synchronized (this) {
+            if (closed || server == null) {
+                closed = true;
+                return;
+            }
+            closed = true;
+            running = connections;
+            try {
+                server.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close daemon socket: " + e.getMessage());
+            }
+        }
+        for (SocketChannel client : clients) {
+            closeQuietly(client);
+        }
+        running.shutdown();
+        try {
+            if (!running.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("Daemon requests still running at shutdown");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            Files.deleteIfExists(socket);
+        } catch (IOException e) {
+            System.err.println("Failed to delete daemon socket: " + e.getMessage());
+        }
+    }
+
+    // ---------- connexions ----------
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                slots.acquire();
+            } catch (InterruptedException e) {
+                return;
+            }
+            SocketChannel client;
+            try {
+                client = server.accept();
+            } catch (ClosedChannelException e) {
+                slots.release();
+                return; // close()
+            } catch (IOException e) {
+                slots.release();
+                System.err.println("Failed to accept daemon connection: " + e.getMessage());
+                continue;
+            }
+            clients.add(client);
+            CONNECTIONS.increment();
+            try {
+                connections.execute(() -> serve(client));
+            } catch (RejectedExecutionException e) {
+                clients.remove(client);
+                closeQuietly(client);
+                slots.release();
+                return; // close() en cours
+            }
+        }
+    }
+
+    private void serve(SocketChannel client) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(client)));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(client)))) {
+            byte[] request;
+            while ((request = Protocol.readFrame(in, Protocol.MAX_REQUEST_BYTES)) != null) {
+                Protocol.writeFrame(out, handle(request));
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                System.err.println("Daemon connection closed: " + e.getMessage());
+            }
+        } finally {
+            clients.remove(client);
+            closeQuietly(client);
+            slots.release();
+        }
+    }
+
+    /** Une erreur est renvoyée au client, la connexion reste ouverte. */
+    private byte[] handle(byte[] request) throws IOException {
+        long start = Metrics.start();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream reply = new DataOutputStream(buffer);
+        try {
+            DataInputStream args = new DataInputStream(new ByteArrayInputStream(request));
+            reply.writeByte(Protocol.OK);
+            if (!dispatch(args.readUnsignedByte(), args, reply)) {
+                buffer.reset();
+                reply.writeByte(Protocol.NOT_FOUND);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (!(e instanceof IOException || e instanceof IllegalArgumentException)) {
+                System.err.println("Daemon request failed: " + e);
+            }
+            String message = e instanceof EOFException ? "truncated request" : String.valueOf(e.getMessage());
+            buffer.reset();
+            reply.writeByte(Protocol.ERROR);
+            Protocol.writeString(reply, message.length() > MAX_ERROR_LENGTH
+                    ? message.substring(0, MAX_ERROR_LENGTH) : message);
+        }
+        REQUEST.stop(start);
+        return buffer.toByteArray();
+    }
+
+    /** @return false si l'objet demandé n'existe pas */
+    private boolean dispatch(int op, DataInputStream args, DataOutputStream reply) throws IOException {
+        switch (op) {
+            case Protocol.HELLO -> {
+                reply.writeByte(Protocol.VERSION);
+                Protocol.writeUuid(reply, nfs.getRootLinkId());
+                Protocol.writeUuid(reply, nfs.getTrashLinkId());
+            }
+            case Protocol.LIST -> {
+                List<Link> children = nfs.getChildren(Protocol.readUuid(args));
+                reply.writeInt(children.size());
+                for (Link child : children) {
+                    Protocol.writeLink(reply, child);
+                }
+            }
+            case Protocol.LOOKUP -> {
+                Optional<Link> link = nfs.findLinkByPath(Protocol.readString(args));
+                if (link.isEmpty()) {
+                    return false;
+                }
+                Protocol.writeLink(reply, link.get());
+            }
+            case Protocol.IMPORT -> {
+                UUID folderId = requireFolder(Protocol.readUuid(args));
+                Path source = Path.of(Protocol.readString(args));
+                Link imported = Files.isDirectory(source)
+                        ? nfs.importDirectoryRecursive(folderId, source)
+                        : nfs.importExistingFile(folderId, source);
+                Protocol.writeLink(reply, imported);
+            }
+            case Protocol.EXPORT -> {
+                Optional<Link> link = nfs.findLink(Protocol.readUuid(args));
+                Path dest = Path.of(Protocol.readString(args));
+                if (link.isEmpty()) {
+                    return false;
+                }
+                reply.writeLong(nfs.exportFile(link.get().getId(), dest, TaskMonitor.NONE));
+            }
+            case Protocol.READ -> {
+                UUID fileLinkId = Protocol.readUuid(args);
+                long position = args.readLong();
+                int length = Math.max(0, Math.min(Protocol.MAX_READ_BYTES, args.readInt()));
+                if (position < 0) {
+                    throw new IllegalArgumentException("negative position: " + position);
+                }
+                if (nfs.findLink(fileLinkId).isEmpty()) {
+                    return false;
+                }
+                ByteBuffer data = ByteBuffer.allocate(length);
+                int n = nfs.read(fileLinkId, position, data);
+                reply.writeInt(n);
+                reply.write(data.array(), 0, Math.max(0, n));
+            }
+            case Protocol.MOVE -> {
+                UUID linkId = Protocol.readUuid(args);
+                UUID folderId = requireFolder(Protocol.readUuid(args));
+                nfs.moveLink(linkId, folderId);
+            }
+            case Protocol.TRASH -> nfs.moveToTrash(Protocol.readUuid(args));
+            case Protocol.DELETE -> reply.writeInt(nfs.deletePermanently(Protocol.readUuid(args), TaskMonitor.NONE));
+            case Protocol.SEARCH -> {
+                SearchQuery query = SearchQuery.parse(Protocol.readString(args));
+                int offset = Math.max(0, args.readInt());
+                int limit = Math.max(1, Math.min(MAX_SEARCH_LIMIT, args.readInt()));
+                SearchPage page = nfs.search(query, offset, limit);
+                reply.writeBoolean(page.hasMore());
+                reply.writeInt(page.getHits().size());
+                for (SearchHit hit : page.getHits()) {
+                    Protocol.writeLink(reply, hit.getLink());
+                    Protocol.writeString(reply, hit.getPath());
+                }
+            }
+            case Protocol.SEARCH_CONTENT -> {
+                String text = Protocol.readString(args);
+                int limit = Math.max(1, Math.min(MAX_SEARCH_LIMIT, args.readInt()));
+                List<ContentHit> hits = nfs.searchContent(text, limit);
+                reply.writeInt(hits.size());
+                for (ContentHit hit : hits) {
+                    Protocol.writeLink(reply, hit.getLink());
+                    Protocol.writeString(reply, hit.getPath());
+                    Protocol.writeString(reply, hit.getSnippet());
+                }
+            }
+            default -> throw new IllegalArgumentException("unknown operation: " + op);
+        }
+        return true;
+    }
+
+    /** Le client ne doit pas pouvoir accrocher un link sous un id quelconque. */
+    private UUID requireFolder(UUID folderId) {
+        LinkType type = nfs.findLink(folderId)
+                .orElseThrow(() -> new IllegalArgumentException("folder not found: " + folderId))
+                .getType();
+        if (type == LinkType.FILE) {
+            throw new IllegalArgumentException("not a folder: " + folderId);
+        }
+        return folderId;
+    }
+
+    private static boolean isListening(Path socket) {
+        try {
+            SocketChannel.open(UnixDomainSocketAddress.of(socket)).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Crée {@code dir} en 0700, ou vérifie qu'il n'est ouvert ni au groupe
+     * ni aux autres : la socket est protégée dès le bind, sans fenêtre avant
+     * un chmod.
+     */
+    private static void createPrivateDirectory(Path dir) throws IOException {
+        Set<PosixFilePermission> ownerOnly = PosixFilePermissions.fromString("rwx------");
+        try {
+            if (!Files.isDirectory(dir)) {
+                if (dir.getParent() != null) {
+                    Files.createDirectories(dir.getParent());
+                }
+                Files.createDirectory(dir, PosixFilePermissions.asFileAttribute(ownerOnly));
+            }
+            Set<PosixFilePermission> actual = Files.getPosixFilePermissions(dir);
+            if (!ownerOnly.containsAll(actual)) {
+                throw new IOException("socket directory " + dir + " is accessible to other users ("
+                        + PosixFilePermissions.toString(actual) + "), expected rwx------");
+            }
+        } catch (UnsupportedOperationException e) {
+            // Windows : droits hérités du répertoire
+            Files.createDirectories(dir);
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // déjà fermée
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.nova.nfs.daemon;
+
+import com.nova.nfs.core.Link;
+import com.nova.nfs.core.LinkType;
+import com.nova.nfs.repo.LinkTypeCodes;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Protocole binaire du {@link NfsDaemon}, big-endian.
+ * <p>
+ * Le client envoie une requête, attend la réponse, puis peut envoyer la
+ * suivante sur la même connexion. Trame : {@code int} longueur (hors ces 4
+ * octets), puis le contenu.
+ * <ul>
+ *     <li>requête : {@code u8} opération, arguments ;</li>
+ *     <li>réponse : {@code u8} statut ({@link #OK}, {@link #NOT_FOUND},
+ *     {@link #ERROR} suivi du message), résultat si OK.</li>
+ * </ul>
+ * Types : {@code uuid} = 2 {@code long} ; {@code str} = {@code u16}
+ * longueur + UTF-8 ; {@code link} = {@code uuid} id, {@code u8} type (code
+ * de {@link LinkTypeCodes}), {@code u8} présence (bit 0 parent, bit 1 cible),
+ * {@code uuid} parent et {@code uuid} cible s'ils sont présents,
+ * {@code str} nom.
+ * <p>
+ * Les chemins d'import/export sont ceux de la machine du daemon ; un client
+ * distant lit le contenu par plages ({@link #READ}).
+ */
+final class Protocol {
+
+    static final int VERSION = 2;
+
+    /** → {@code u8} version, {@code uuid} ROOT, {@code uuid} corbeille */
+    static final int HELLO = 0;
+    /** {@code uuid} dossier → {@code int} n, n × {@code link} */
+    static final int LIST = 1;
+    /** {@code str} chemin logique → {@code link} */
+    static final int LOOKUP = 2;
+    /** {@code uuid} dossier, {@code str} fichier ou dossier source → {@code link} importé */
+    static final int IMPORT = 3;
+    /** {@code uuid} link FILE, {@code str} fichier destination → {@code long} octets */
+    static final int EXPORT = 4;
+    /** {@code uuid} link, {@code uuid} nouveau dossier → rien */
+    static final int MOVE = 5;
+    /** {@code uuid} link → rien */
+    static final int TRASH = 6;
+    /** {@code uuid} link → {@code int} links supprimés */
+    static final int DELETE = 7;
+    /**
+     * {@code str} requête (syntaxe de la barre de recherche), {@code int}
+     * offset, {@code int} limite → {@code u8} suite, {@code int} n,
+     * n × ({@code link}, {@code str} chemin)
+     */
+    static final int SEARCH = 8;
+    /**
+     * {@code str} texte, {@code int} limite → {@code int} n,
+     * n × ({@code link}, {@code str} chemin, {@code str} extrait)
+     */
+    static final int SEARCH_CONTENT = 9;
+    /**
+     * {@code uuid} link FILE, {@code long} position, {@code int} longueur
+     * (au plus {@link #MAX_READ_BYTES}) → {@code int} n (-1 : au-delà de la
+     * fin), n octets
+     */
+    static final int READ = 10;
+
+    static final int OK = 0;
+    static final int NOT_FOUND = 1;
+    static final int ERROR = 2;
+
+    /** Taille max d'une requête : pas de raison qu'elle dépasse quelques Ko. */
+    static final int MAX_REQUEST_BYTES = 1 << 20;
+    static final int MAX_RESPONSE_BYTES = 1 << 30;
+    static final int MAX_READ_BYTES = 8 << 20;
+
+    private static final int HAS_PARENT = 1;
+    private static final int HAS_TARGET = 2;
+
+    private Protocol() {
+    }
+
+    /**
+     * Lit une trame.
+     *
+     * @return null si le pair a fermé la connexion entre deux trames
+     */
+    static byte[] readFrame(DataInputStream in, int maxBytes) throws IOException {
+        // premier octet lu à part : EOF ici est une fermeture normale
+        int first = in.read();
+        if (first < 0) {
+            return null;
+        }
+        int length = (first << 24) | (in.readUnsignedByte() << 16) | (in.readUnsignedShort());
+        if (length < 1 || length > maxBytes) {
+            throw new IOException("invalid frame length: " + length);
+        }
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        return frame;
+    }
+
+    static void writeFrame(DataOutputStream out, byte[] frame) throws IOException {
+        out.writeInt(frame.length);
+        out.write(frame);
+        out.flush();
+    }
+
+    static void writeUuid(DataOutput out, UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    static UUID readUuid(DataInput in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        byte[] utf8 = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+        if (utf8.length > 0xFFFF) {
+            throw new IOException("string too long: " + utf8.length + " bytes");
+        }
+        out.writeShort(utf8.length);
+        out.write(utf8);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        byte[] utf8 = new byte[in.readUnsignedShort()];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    static void writeLink(DataOutput out, Link link) throws IOException {
+        writeUuid(out, link.getId());
+        out.writeByte(LinkTypeCodes.code(link.getType()));
+        int flags = (link.getParentId() != null ? HAS_PARENT : 0)
+                | (link.getTargetFileId() != null ? HAS_TARGET : 0);
+        out.writeByte(flags);
+        if (link.getParentId() != null) {
+            writeUuid(out, link.getParentId());
+        }
+        if (link.getTargetFileId() != null) {
+            writeUuid(out, link.getTargetFileId());
+        }
+        writeString(out, link.getDisplayName());
+    }
+
+    static Link readLink(DataInput in) throws IOException {
+        UUID id = readUuid(in);
+        LinkType type = LinkTypeCodes.fromCode(in.readUnsignedByte());
+        if (type == null) {
+            throw new IOException("missing link type");
+        }
+        int flags = in.readUnsignedByte();
+        UUID parent = (flags & HAS_PARENT) != 0 ? readUuid(in) : null;
+        UUID target = (flags & HAS_TARGET) != 0 ? readUuid(in) : null;
+        Link link = new Link(id, type, readString(in));
+        link.setParentId(parent);
+        link.setTargetFileId(target);
+        return link;
+    }
+}
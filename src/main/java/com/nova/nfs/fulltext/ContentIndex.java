@@ -0,0 +1,723 @@
+package com.nova.nfs.fulltext;
+
+import com.nova.nfs.metrics.Counter;
+import com.nova.nfs.metrics.Metrics;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Index plein texte incrémental sur le contenu des fichiers gérés.
+ * <p>
+ * Les appelants ne font que déposer des demandes ({@link #enqueue},
+ * {@link #remove}) dans une file : un thread de faible priorité lit les
+ * fichiers à débit limité, garde les documents en mémoire puis les écrit par
+ * lots dans des {@link Segment} immuables. Au-delà de
+ * {@link ContentIndexOptions#getMaxSegments()} segments, les plus petits sont
+ * fusionnés (en retirant les documents supprimés). Le manifeste (segments
+ * actifs + documents supprimés) est réécrit via un fichier temporaire puis
+ * un déplacement atomique ; un segment absent du manifeste est effacé à
+ * l'ouverture.
+ * <p>
+ * Un échec du thread d'indexation (lecture, écriture d'un segment, fusion)
+ * est compté dans {@code fulltext.failures} et marque l'index « à
+ * réconcilier », y compris sur disque : la réconciliation est relancée sur le
+ * thread d'indexation (au plus une fois par minute) et au prochain démarrage,
+ * et retrouve les documents perdus.
+ * <p>
+ * Seul le début des fichiers est lu ({@link ContentIndexOptions#getMaxFileBytes()}) ;
+ * un fichier avec un octet nul dans ses 8 premiers Ko est considéré binaire
+ * et indexé sans mots. Les résultats sont classés par BM25.
+ */
+public final class ContentIndex implements Closeable {
+
+    private static final Counter FAILURES = Metrics.counter("fulltext.failures");
+
+    private static final String MANIFEST = "manifest";
+    private static final String RECONCILE_MARKER = "needs-reconcile";
+    private static final String SEGMENT_PREFIX = "seg-";
+    private static final String SEGMENT_SUFFIX = ".nfti";
+    private static final int MANIFEST_MAGIC = 0x4E46544D; // "NFTM"
+    private static final int MANIFEST_VERSION = 1;
+
+    private static final long IDLE_FLUSH_MS = 2000;
+    private static final long RECONCILE_RETRY_MS = 60_000;
+    private static final int BINARY_PROBE = 8 * 1024;
+    private static final int SNIPPET_BYTES = 256 * 1024;
+    private static final int SNIPPET_RADIUS = 60;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    /** Un document trouvé. */
+    public static final class Hit {
+        private final UUID fileId;
+        private final double score;
+        private final String snippet;
+
+        private Hit(UUID fileId, double score, String snippet) {
+            this.fileId = fileId;
+            this.score = score;
+            this.snippet = snippet;
+        }
+
+        public UUID getFileId() {
+            return fileId;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        /** Extrait autour du premier mot trouvé ("" si le fichier est illisible). */
+        public String getSnippet() {
+            return snippet;
+        }
+    }
+
+    // demandes traitées par le thread d'indexation
+    private record Add(UUID fileId) {
+    }
+
+    private record Remove(UUID fileId) {
+    }
+
+    private record Reconcile(Supplier<Collection<UUID>> liveIds) {
+    }
+
+    private final Path dir;
+    private final ContentIndexOptions options;
+    private final Function<UUID, Optional<Path>> resolver;
+    private final LinkedBlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    /** supprimés mais pas encore traités : déjà filtrés des résultats */
+    private final Set<UUID> pendingDeletes = ConcurrentHashMap.newKeySet();
+    private final Thread worker;
+    private volatile boolean closed;
+    private long nextSlotNanos;
+    /** Un échec a pu perdre des documents ; lu aussi hors du thread d'indexation. */
+    private volatile boolean needsReconcile;
+    // thread d'indexation uniquement
+    private Supplier<Collection<UUID>> liveIds;
+    private long lastReconcileNanos;
+
+    // état protégé par this
+    private final List<Segment> segments = new ArrayList<>();
+    private final Set<UUID> deleted = new HashSet<>();
+    private final Set<UUID> indexed = new HashSet<>();
+    private long nextGeneration;
+    private boolean manifestDirty;
+
+    // documents pas encore écrits
+    private final List<UUID> bufDocs = new ArrayList<>();
+    private final IntList bufLengths = new IntList();
+    private final Map<String, IntList> bufPostings = new HashMap<>();
+    private long bufTotalLength;
+
+    private ContentIndex(Path dir, ContentIndexOptions options, Function<UUID, Optional<Path>> resolver) {
+        this.dir = dir;
+        this.options = options;
+        this.resolver = resolver;
+        this.worker = new Thread(this::runWorker, "nfs-fulltext");
+        worker.setDaemon(true);
+        worker.setPriority(Thread.MIN_PRIORITY);
+    }
+
+    /**
+     * Ouvre (ou crée) l'index de {@code dir}.
+     *
+     * @param resolver chemin du blob d'un FileEntry, vide s'il n'existe plus
+     */
+    public static ContentIndex open(Path dir, ContentIndexOptions options,
+                                    Function<UUID, Optional<Path>> resolver) throws IOException {
+        Files.createDirectories(dir);
+        ContentIndex index = new ContentIndex(dir, options, resolver);
+        index.load();
+        index.worker.start();
+        return index;
+    }
+
+    /** Demande l'indexation du contenu de {@code fileId} (sans attendre). */
+    public void enqueue(UUID fileId) {
+        if (!closed) {
+            queue.add(new Add(fileId));
+        }
+    }
+
+    /** Retire {@code fileId} de l'index ; il disparaît aussitôt des résultats. */
+    public void remove(UUID fileId) {
+        pendingDeletes.add(fileId);
+        queue.add(new Remove(fileId));
+    }
+
+    /**
+     * Aligne l'index sur {@code liveIds} (lu sur le thread d'indexation) :
+     * indexe ce qui manque et retire ce qui n'existe plus.
+     */
+    public void reconcile(Supplier<Collection<UUID>> liveIds) {
+        if (!closed) {
+            queue.add(new Reconcile(liveIds));
+        }
+    }
+
+    /** Documents indexés (y compris en mémoire). */
+    public synchronized int getIndexedCount() {
+        return indexed.size() - deleted.size();
+    }
+
+    /** Vrai si un échec d'indexation attend encore sa réconciliation. */
+    public boolean needsReconcile() {
+        return needsReconcile;
+    }
+
+    /** Demandes en attente d'indexation. */
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * Les {@code limit} documents les plus pertinents pour {@code text}
+     * (mots séparés par des blancs, tous facultatifs).
+     */
+    public List<Hit> search(String text, int limit) throws IOException {
+        Set<String> terms = new LinkedHashSet<>(Tokenizer.tokens(text));
+        if (terms.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        Map<UUID, Double> scores = new HashMap<>();
+        synchronized (this) {
+            long docCount = bufDocs.size();
+            long totalLength = bufTotalLength;
+            for (Segment segment : segments) {
+                docCount += segment.docCount();
+                totalLength += segment.totalLength;
+            }
+            if (docCount == 0) {
+                return Collections.emptyList();
+            }
+            double avgLength = Math.max(1.0, (double) totalLength / docCount);
+            for (String term : terms) {
+                long df = 0;
+                IntList buffered = bufPostings.get(term);
+                if (buffered != null) {
+                    df += buffered.size() / 2;
+                }
+                for (Segment segment : segments) {
+                    df += segment.df(term);
+                }
+                if (df == 0) {
+                    continue;
+                }
+                double idf = Math.log(1 + (docCount - df + 0.5) / (df + 0.5));
+                for (Segment segment : segments) {
+                    int[] pairs = segment.postings(term);
+                    if (pairs != null) {
+                        for (int k = 0; k < pairs.length; k += 2) {
+                            score(scores, segment.docs[pairs[k]], pairs[k + 1],
+                                    segment.lengths[pairs[k]], idf, avgLength);
+                        }
+                    }
+                }
+                if (buffered != null) {
+                    for (int k = 0; k < buffered.size(); k += 2) {
+                        int doc = buffered.get(k);
+                        score(scores, bufDocs.get(doc), buffered.get(k + 1), bufLengths.get(doc), idf, avgLength);
+                    }
+                }
+            }
+        }
+
+        List<Map.Entry<UUID, Double>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Map.Entry.<UUID, Double>comparingByValue(Comparator.reverseOrder()));
+        List<Hit> hits = new ArrayList<>();
+        for (Map.Entry<UUID, Double> entry : ranked.subList(0, Math.min(limit, ranked.size()))) {
+            // lecture du fichier hors verrou : l'indexation continue
+            hits.add(new Hit(entry.getKey(), entry.getValue(), snippet(entry.getKey(), terms)));
+        }
+        return hits;
+    }
+
+    private void score(Map<UUID, Double> scores, UUID fileId, int tf, int length, double idf, double avgLength) {
+        if (deleted.contains(fileId) || pendingDeletes.contains(fileId)) {
+            return;
+        }
+        double norm = tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / avgLength));
+        scores.merge(fileId, idf * norm, Double::sum);
+    }
+
+    /**
+     * Arrête l'indexation, écrit les documents en mémoire et le manifeste.
+     * Les demandes d'indexation restantes sont abandonnées (la réconciliation
+     * du prochain démarrage les retrouve) ; les suppressions sont appliquées.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            for (Object job; (job = queue.poll()) != null; ) {
+                if (job instanceof Remove remove) {
+                    applyRemove(remove.fileId());
+                }
+            }
+            flush();
+            if (manifestDirty) {
+                writeManifest();
+            }
+            for (Segment segment : segments) {
+                segment.close();
+            }
+            segments.clear();
+        }
+    }
+
+    // ---------- thread d'indexation ----------
+
+    private void runWorker() {
+        while (!closed) {
+            Object job;
+            try {
+                job = queue.poll(IDLE_FLUSH_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                if (job == null) {
+                    idle();
+                } else if (job instanceof Add add) {
+                    index(add.fileId());
+                } else if (job instanceof Remove remove) {
+                    synchronized (this) {
+                        applyRemove(remove.fileId());
+                    }
+                } else if (job instanceof Reconcile reconcile) {
+                    liveIds = reconcile.liveIds();
+                    reconcile(liveIds.get());
+                }
+            } catch (IOException | RuntimeException e) {
+                fail(e);
+            }
+        }
+    }
+
+    private void idle() throws IOException {
+        synchronized (this) {
+            flush();
+            if (manifestDirty) {
+                writeManifest();
+            }
+        }
+        mergeIfNeeded();
+        if (needsReconcile && liveIds != null
+                && System.nanoTime() - lastReconcileNanos >= TimeUnit.MILLISECONDS.toNanos(RECONCILE_RETRY_MS)) {
+            reconcile(liveIds.get());
+        }
+    }
+
+    /** Signale l'échec et marque l'index à réconcilier (thread d'indexation). */
+    private void fail(Exception e) {
+        FAILURES.increment();
+        System.err.println("Failed to update full-text index: " + e.getMessage());
+        if (!needsReconcile) {
+            needsReconcile = true;
+            try {
+                Files.write(dir.resolve(RECONCILE_MARKER), new byte[0]);
+            } catch (IOException markerError) {
+                System.err.println("Failed to mark full-text index for reconcile: " + markerError.getMessage());
+            }
+        }
+    }
+
+    private void index(UUID fileId) throws IOException {
+        synchronized (this) {
+            if (indexed.contains(fileId) || pendingDeletes.contains(fileId)) {
+                return;
+            }
+        }
+        Optional<Path> path = resolver.apply(fileId);
+        if (path.isEmpty()) {
+            return;
+        }
+        byte[] bytes;
+        try (InputStream in = Files.newInputStream(path.get())) {
+            long size = Files.size(path.get());
+            if (!throttle(Math.min(size, options.getMaxFileBytes()))) {
+                return;
+            }
+            bytes = in.readNBytes(options.getMaxFileBytes());
+        } catch (NoSuchFileException e) {
+            return; // supprimé entre-temps
+        }
+
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = 0;
+        if (!isBinary(bytes)) {
+            for (String token : Tokenizer.tokens(decode(bytes))) {
+                frequencies.merge(token, 1, Integer::sum);
+                length++;
+            }
+        }
+
+        synchronized (this) {
+            if (!indexed.add(fileId)) {
+                return;
+            }
+            int doc = bufDocs.size();
+            bufDocs.add(fileId);
+            bufLengths.add(length);
+            bufTotalLength += length;
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                IntList pairs = bufPostings.computeIfAbsent(entry.getKey(), k -> new IntList(2));
+                pairs.add(doc);
+                pairs.add(entry.getValue());
+            }
+            if (bufDocs.size() < options.getFlushDocs()) {
+                return;
+            }
+            flush();
+        }
+        mergeIfNeeded();
+    }
+
+    private void applyRemove(UUID fileId) {
+        if (indexed.contains(fileId) && deleted.add(fileId)) {
+            manifestDirty = true;
+        }
+        pendingDeletes.remove(fileId);
+    }
+
+    /**
+     * Les écarts trouvés sont remis dans la file ; un échec pendant leur
+     * traitement marquera de nouveau l'index.
+     */
+    private void reconcile(Collection<UUID> liveIds) throws IOException {
+        lastReconcileNanos = System.nanoTime();
+        if (needsReconcile) {
+            needsReconcile = false;
+            Files.deleteIfExists(dir.resolve(RECONCILE_MARKER));
+        }
+        Set<UUID> live = liveIds instanceof Set<UUID> set ? set : new HashSet<>(liveIds);
+        List<UUID> missing = new ArrayList<>();
+        synchronized (this) {
+            for (UUID id : indexed) {
+                if (!live.contains(id) && !deleted.contains(id)) {
+                    pendingDeletes.add(id);
+                    queue.add(new Remove(id));
+                }
+            }
+            for (UUID id : live) {
+                if (!indexed.contains(id)) {
+                    missing.add(id);
+                }
+            }
+        }
+        for (UUID id : missing) {
+            enqueue(id);
+        }
+    }
+
+    /**
+     * Limite le débit de lecture (seau à jetons, 1 s de rafale).
+     *
+     * @return false si l'index a été fermé pendant l'attente
+     */
+    private boolean throttle(long bytes) {
+        long rate = options.getMaxBytesPerSecond();
+        if (rate <= 0) {
+            return true;
+        }
+        long now = System.nanoTime();
+        nextSlotNanos = Math.max(nextSlotNanos, now - TimeUnit.SECONDS.toNanos(1))
+                + bytes * TimeUnit.SECONDS.toNanos(1) / rate;
+        // attente par petits pas pour que close() ne reste pas bloqué
+        while (!closed) {
+            long wait = nextSlotNanos - System.nanoTime();
+            if (wait <= 0) {
+                return true;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(Math.min(wait, TimeUnit.MILLISECONDS.toNanos(100)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    // ---------- segments ----------
+
+    /** Écrit les documents en mémoire dans un nouveau segment (sous verrou). */
+    private void flush() throws IOException {
+        if (bufDocs.isEmpty()) {
+            return;
+        }
+        // les documents supprimés avant écriture ne vont pas sur disque
+        int[] remap = new int[bufDocs.size()];
+        UUID[] docs = new UUID[bufDocs.size()];
+        int[] lengths = new int[bufDocs.size()];
+        int kept = 0;
+        for (int d = 0; d < bufDocs.size(); d++) {
+            UUID id = bufDocs.get(d);
+            if (deleted.contains(id)) {
+                remap[d] = -1;
+            } else {
+                docs[kept] = id;
+                lengths[kept] = bufLengths.get(d);
+                remap[d] = kept++;
+            }
+        }
+        if (kept > 0) {
+            Path file = dir.resolve(SEGMENT_PREFIX + nextGeneration++ + SEGMENT_SUFFIX);
+            try (Segment.Writer writer = new Segment.Writer(file, docs, lengths, kept)) {
+                List<String> terms = new ArrayList<>(bufPostings.keySet());
+                Collections.sort(terms);
+                for (String term : terms) {
+                    IntList buffered = bufPostings.get(term);
+                    IntList pairs = new IntList(buffered.size());
+                    for (int k = 0; k < buffered.size(); k += 2) {
+                        int doc = remap[buffered.get(k)];
+                        if (doc >= 0) {
+                            pairs.add(doc);
+                            pairs.add(buffered.get(k + 1));
+                        }
+                    }
+                    if (pairs.size() > 0) {
+                        writer.addTerm(term, pairs.toArray(), pairs.size() / 2);
+                    }
+                }
+                writer.finish();
+            }
+            segments.add(Segment.open(file));
+        }
+        // segment écrit : les documents écartés peuvent être oubliés
+        for (int d = 0; d < bufDocs.size(); d++) {
+            if (remap[d] < 0) {
+                deleted.remove(bufDocs.get(d));
+                indexed.remove(bufDocs.get(d));
+            }
+        }
+        bufDocs.clear();
+        bufLengths.clear();
+        bufPostings.clear();
+        bufTotalLength = 0;
+        manifestDirty = true;
+        writeManifest();
+    }
+
+    /**
+     * Fusionne les plus petits segments quand il y en a trop (thread
+     * d'indexation, hors verrou). Le segment fusionné est construit sans
+     * bloquer {@link #search}, à partir d'une copie de la liste des segments
+     * et des supprimés : seul le thread d'indexation ajoute ou retire des
+     * segments, les parties ne changent donc pas pendant la fusion. Sous
+     * verrou on ne fait que remplacer les parties et écrire le manifeste ; un
+     * document supprimé depuis la copie reste dans {@code deleted}. Les
+     * segments fusionnés ne sont effacés qu'une fois le nouveau manifeste
+     * écrit : en cas d'échec l'index reste tel qu'avant la fusion.
+     */
+    private void mergeIfNeeded() throws IOException {
+        List<Segment> parts;
+        Set<UUID> mergedOut;
+        Path file;
+        synchronized (this) {
+            if (segments.size() <= options.getMaxSegments()) {
+                return;
+            }
+            parts = new ArrayList<>(segments);
+            parts.sort(Comparator.comparingInt(Segment::docCount));
+            parts = new ArrayList<>(parts.subList(0, Math.max(2, (segments.size() + 1) / 2)));
+            mergedOut = new HashSet<>(deleted);
+            file = dir.resolve(SEGMENT_PREFIX + nextGeneration++ + SEGMENT_SUFFIX);
+        }
+        Segment merged;
+        try {
+            Segment.merge(file, parts, mergedOut);
+            merged = Segment.open(file);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        synchronized (this) {
+            List<Segment> previous = new ArrayList<>(segments);
+            segments.removeAll(parts);
+            segments.add(merged);
+            try {
+                writeManifest();
+            } catch (IOException | RuntimeException e) {
+                segments.clear();
+                segments.addAll(previous);
+                merged.close();
+                Files.deleteIfExists(file);
+                throw e;
+            }
+            // seuls les supprimés de la copie ont quitté l'index
+            for (Segment part : parts) {
+                for (UUID id : part.docs) {
+                    if (mergedOut.contains(id) && deleted.remove(id)) {
+                        indexed.remove(id);
+                    }
+                }
+            }
+            manifestDirty = true; // supprimés retirés ci-dessus
+        }
+        for (Segment part : parts) {
+            part.close();
+            try {
+                Files.deleteIfExists(part.file);
+            } catch (IOException e) {
+                System.err.println("Failed to delete merged segment: " + e.getMessage());
+            }
+        }
+    }
+
+    // ---------- manifeste ----------
+
+    private void load() throws IOException {
+        Set<String> live = new HashSet<>();
+        Path manifest = dir.resolve(MANIFEST);
+        if (Files.exists(manifest)) {
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(manifest))) {
+                if (in.readInt() != MANIFEST_MAGIC || in.readInt() != MANIFEST_VERSION) {
+                    throw new IOException("Unknown full-text manifest format: " + manifest);
+                }
+                nextGeneration = in.readLong();
+                int segmentCount = in.readInt();
+                for (int i = 0; i < segmentCount; i++) {
+                    String name = in.readUTF();
+                    live.add(name);
+                    Segment segment = Segment.open(dir.resolve(name));
+                    segments.add(segment);
+                    Collections.addAll(indexed, segment.docs);
+                }
+                int deletedCount = in.readInt();
+                for (int i = 0; i < deletedCount; i++) {
+                    deleted.add(new UUID(in.readLong(), in.readLong()));
+                }
+            }
+        }
+        // échec d'une session précédente : la réconciliation du démarrage l'efface
+        needsReconcile = Files.exists(dir.resolve(RECONCILE_MARKER));
+        // segments d'une écriture ou d'une fusion interrompue
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if ((name.startsWith(SEGMENT_PREFIX) && !live.contains(name)) || name.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private void writeManifest() throws IOException {
+        Path tmp = dir.resolve(MANIFEST + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MANIFEST_MAGIC);
+            out.writeInt(MANIFEST_VERSION);
+            out.writeLong(nextGeneration);
+            out.writeInt(segments.size());
+            for (Segment segment : segments) {
+                out.writeUTF(segment.file.getFileName().toString());
+            }
+            out.writeInt(deleted.size());
+            for (UUID id : deleted) {
+                out.writeLong(id.getMostSignificantBits());
+                out.writeLong(id.getLeastSignificantBits());
+            }
+        }
+        Files.move(tmp, dir.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        manifestDirty = false;
+    }
+
+    // ---------- contenu ----------
+
+    private static boolean isBinary(byte[] bytes) {
+        for (int i = 0; i < Math.min(bytes.length, BINARY_PROBE); i++) {
+            if (bytes[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String decode(byte[] bytes) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        try {
+            CharBuffer chars = decoder.decode(ByteBuffer.wrap(bytes));
+            return chars.toString();
+        } catch (CharacterCodingException e) {
+            return ""; // impossible avec REPLACE
+        }
+    }
+
+    /** Extrait autour de la première occurrence d'un des mots cherchés. */
+    private String snippet(UUID fileId, Set<String> terms) {
+        Optional<Path> path = resolver.apply(fileId);
+        if (path.isEmpty()) {
+            return "";
+        }
+        String text;
+        try (InputStream in = Files.newInputStream(path.get())) {
+            text = decode(in.readNBytes(Math.min(SNIPPET_BYTES, options.getMaxFileBytes())));
+        } catch (IOException e) {
+            return "";
+        }
+        int hit = 0;
+        for (int i = 0, start = -1; i <= text.length(); i++) {
+            boolean word = i < text.length() && Tokenizer.isWordChar(text.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                if (terms.contains(text.substring(start, i).toLowerCase(Locale.ROOT))) {
+                    hit = start;
+                    break;
+                }
+                start = -1;
+            }
+        }
+        int from = Math.max(0, hit - SNIPPET_RADIUS);
+        int to = Math.min(text.length(), hit + SNIPPET_RADIUS);
+        String window = text.substring(from, to).replaceAll("\\s+", " ").trim();
+        return (from > 0 ? "..." : "") + window + (to < text.length() ? "..." : "");
+    }
+}
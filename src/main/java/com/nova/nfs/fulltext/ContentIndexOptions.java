@@ -0,0 +1,79 @@
+package com.nova.nfs.fulltext;
+
+import com.nova.nfs.util.SystemProperties;
+
+/**
+ * Réglages de l'index plein texte. Immuable : les {@code withXxx} renvoient
+ * une copie.
+ */
+public final class ContentIndexOptions {
+
+    private final long maxBytesPerSecond;
+    private final int maxFileBytes;
+    private final int flushDocs;
+    private final int maxSegments;
+
+    private ContentIndexOptions(long maxBytesPerSecond, int maxFileBytes, int flushDocs, int maxSegments) {
+        this.maxBytesPerSecond = maxBytesPerSecond;
+        this.maxFileBytes = maxFileBytes;
+        this.flushDocs = flushDocs;
+        this.maxSegments = maxSegments;
+    }
+
+    public static ContentIndexOptions defaults() {
+        return new ContentIndexOptions(8L * 1024 * 1024, 1024 * 1024, 1000, 8);
+    }
+
+    /**
+     * Defaults surchargés par {@code -Dnfs.fullTextBytesPerSecond=...},
+     * {@code -Dnfs.fullTextMaxFileBytes=...}, {@code -Dnfs.fullTextFlushDocs=...}
+     * et {@code -Dnfs.fullTextMaxSegments=...}.
+     */
+    public static ContentIndexOptions fromSystemProperties() {
+        ContentIndexOptions options = defaults();
+        options = SystemProperties.withLong(options, "nfs.fullTextBytesPerSecond", ContentIndexOptions::withMaxBytesPerSecond);
+        options = SystemProperties.withInt(options, "nfs.fullTextMaxFileBytes", ContentIndexOptions::withMaxFileBytes);
+        options = SystemProperties.withInt(options, "nfs.fullTextFlushDocs", ContentIndexOptions::withFlushDocs);
+        options = SystemProperties.withInt(options, "nfs.fullTextMaxSegments", ContentIndexOptions::withMaxSegments);
+        return options;
+    }
+
+    public long getMaxBytesPerSecond() {
+        return maxBytesPerSecond;
+    }
+
+    public int getMaxFileBytes() {
+        return maxFileBytes;
+    }
+
+    public int getFlushDocs() {
+        return flushDocs;
+    }
+
+    public int getMaxSegments() {
+        return maxSegments;
+    }
+
+    /**
+     * Débit de lecture max de l'indexation (0 = pas de limite) : l'index se
+     * construit en fond sans disputer le disque aux imports.
+     */
+    public ContentIndexOptions withMaxBytesPerSecond(long maxBytesPerSecond) {
+        return new ContentIndexOptions(Math.max(0, maxBytesPerSecond), maxFileBytes, flushDocs, maxSegments);
+    }
+
+    /** Seul le début d'un fichier plus gros est indexé. */
+    public ContentIndexOptions withMaxFileBytes(int maxFileBytes) {
+        return new ContentIndexOptions(maxBytesPerSecond, Math.max(1024, maxFileBytes), flushDocs, maxSegments);
+    }
+
+    /** Documents gardés en mémoire avant d'écrire un segment. */
+    public ContentIndexOptions withFlushDocs(int flushDocs) {
+        return new ContentIndexOptions(maxBytesPerSecond, maxFileBytes, Math.max(1, flushDocs), maxSegments);
+    }
+
+    /** Au-delà, les plus petits segments sont fusionnés. */
+    public ContentIndexOptions withMaxSegments(int maxSegments) {
+        return new ContentIndexOptions(maxBytesPerSecond, maxFileBytes, flushDocs, Math.max(2, maxSegments));
+    }
+}
@@ -0,0 +1,41 @@
+package com.nova.nfs.fulltext;
+
+import java.util.Arrays;
+
+/** Liste d'int extensible, sans boxing. */
+final class IntList {
+
+    private int[] data;
+    private int size;
+
+    IntList() {
+        this(4);
+    }
+
+    IntList(int capacity) {
+        this.data = new int[Math.max(1, capacity)];
+    }
+
+    void add(int value) {
+        if (size == data.length) {
+            data = Arrays.copyOf(data, size * 2);
+        }
+        data[size++] = value;
+    }
+
+    int get(int i) {
+        return data[i];
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+}
@@ -0,0 +1,343 @@
+package com.nova.nfs.fulltext;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Segment d'index immuable sur disque :
+ * <pre>
+ * en-tête    : magic, version, nombre de documents
+ * documents  : id du FileEntry (16 octets), longueur en mots
+ * postings   : par terme, (écart de n° de document, fréquence) en varints
+ * dictionnaire : nombre de termes puis, triés, terme (UTF-8), df, offset des postings
+ * fin        : offset du dictionnaire
+ * </pre>
+ * Les documents et le dictionnaire sont chargés à l'ouverture, les postings
+ * lus à la demande.
+ */
+final class Segment implements Closeable {
+
+    private static final int MAGIC = 0x4E465453; // "NFTS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int DOC_SIZE = 20;
+
+    final Path file;
+    final UUID[] docs;
+    final int[] lengths;
+    final long totalLength;
+    private final String[] terms;
+    private final int[] df;
+    private final long[] offsets;
+    private final long dictOffset;
+    private final FileChannel channel;
+
+    private Segment(Path file, UUID[] docs, int[] lengths, String[] terms, int[] df, long[] offsets,
+                    long dictOffset, FileChannel channel) {
+        this.file = file;
+        this.docs = docs;
+        this.lengths = lengths;
+        this.terms = terms;
+        this.df = df;
+        this.offsets = offsets;
+        this.dictOffset = dictOffset;
+        this.channel = channel;
+        long total = 0;
+        for (int length : lengths) {
+            total += length;
+        }
+        this.totalLength = total;
+    }
+
+    static Segment open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = read(channel, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a full-text segment: " + file);
+            }
+            int docCount = header.getInt();
+            ByteBuffer docBuf = read(channel, HEADER_SIZE, docCount * DOC_SIZE);
+            UUID[] docs = new UUID[docCount];
+            int[] lengths = new int[docCount];
+            for (int i = 0; i < docCount; i++) {
+                docs[i] = new UUID(docBuf.getLong(), docBuf.getLong());
+                lengths[i] = docBuf.getInt();
+            }
+
+            long size = channel.size();
+            long dictOffset = read(channel, size - 8, 8).getLong();
+            ByteBuffer dict = read(channel, dictOffset, (int) (size - 8 - dictOffset));
+            int termCount = dict.getInt();
+            String[] terms = new String[termCount];
+            int[] df = new int[termCount];
+            long[] offsets = new long[termCount];
+            for (int i = 0; i < termCount; i++) {
+                byte[] bytes = new byte[readVarInt(dict)];
+                dict.get(bytes);
+                terms[i] = new String(bytes, StandardCharsets.UTF_8);
+                df[i] = dict.getInt();
+                offsets[i] = dict.getLong();
+            }
+            return new Segment(file, docs, lengths, terms, df, offsets, dictOffset, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e instanceof IOException io ? io : new IOException("Corrupt full-text segment: " + file, e);
+        }
+    }
+
+    int docCount() {
+        return docs.length;
+    }
+
+    /** Document frequency de {@code term}, 0 s'il est absent. */
+    int df(String term) {
+        int i = Arrays.binarySearch(terms, term);
+        return i < 0 ? 0 : df[i];
+    }
+
+    /**
+     * Postings de {@code term} : paires (n° de document, fréquence) à plat,
+     * null s'il est absent.
+     */
+    int[] postings(String term) throws IOException {
+        int i = Arrays.binarySearch(terms, term);
+        return i < 0 ? null : postingsAt(i);
+    }
+
+    private int[] postingsAt(int i) throws IOException {
+        long end = i + 1 < offsets.length ? offsets[i + 1] : dictOffset;
+        ByteBuffer buf = read(channel, offsets[i], (int) (end - offsets[i]));
+        int[] pairs = new int[df[i] * 2];
+        int doc = 0;
+        for (int k = 0; k < pairs.length; k += 2) {
+            doc += readVarInt(buf);
+            pairs[k] = doc;
+            pairs[k + 1] = readVarInt(buf);
+        }
+        return pairs;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // ---------- écriture ----------
+
+    /**
+     * Écrit un segment : documents d'abord, puis {@link #addTerm} dans
+     * l'ordre des termes, puis {@link #finish}.
+     */
+    static final class Writer implements Closeable {
+        private final CountingStream counter;
+        private final DataOutputStream out;
+        private final Path file;
+        private final IntList termLengths = new IntList();
+        private final ByteArrayOutputStream termBytes = new ByteArrayOutputStream();
+        private final IntList dfs = new IntList();
+        private long[] termOffsets = new long[64];
+        private int termCount;
+        private String lastTerm;
+
+        Writer(Path file, UUID[] docs, int[] lengths, int docCount) throws IOException {
+            this.file = file;
+            this.counter = new CountingStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+            this.out = new DataOutputStream(counter);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(docCount);
+            for (int i = 0; i < docCount; i++) {
+                out.writeLong(docs[i].getMostSignificantBits());
+                out.writeLong(docs[i].getLeastSignificantBits());
+                out.writeInt(lengths[i]);
+            }
+        }
+
+        /** @param pairs (n° de document croissant, fréquence) à plat */
+        void addTerm(String term, int[] pairs, int pairCount) throws IOException {
+            if (lastTerm != null && term.compareTo(lastTerm) <= 0) {
+                throw new IllegalArgumentException("terms out of order: " + term);
+            }
+            lastTerm = term;
+            if (termCount == termOffsets.length) {
+                termOffsets = Arrays.copyOf(termOffsets, termCount * 2);
+            }
+            termOffsets[termCount++] = counter.count;
+            byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+            termLengths.add(bytes.length);
+            termBytes.write(bytes);
+            dfs.add(pairCount);
+            int previous = 0;
+            for (int k = 0; k < pairCount * 2; k += 2) {
+                writeVarInt(out, pairs[k] - previous);
+                writeVarInt(out, pairs[k + 1]);
+                previous = pairs[k];
+            }
+        }
+
+        void finish() throws IOException {
+            long dictOffset = counter.count;
+            out.writeInt(termCount);
+            byte[] all = termBytes.toByteArray();
+            int pos = 0;
+            for (int i = 0; i < termCount; i++) {
+                int length = termLengths.get(i);
+                writeVarInt(out, length);
+                out.write(all, pos, length);
+                pos += length;
+                out.writeInt(dfs.get(i));
+                out.writeLong(termOffsets[i]);
+            }
+            out.writeLong(dictOffset);
+            out.flush();
+            out.close();
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                ch.force(true);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Fusionne {@code parts} dans {@code file} en retirant les documents de
+     * {@code deleted}. L'ordre des documents est conservé.
+     */
+    static void merge(Path file, List<Segment> parts, Set<UUID> deleted) throws IOException {
+        int total = 0;
+        for (Segment part : parts) {
+            total += part.docCount();
+        }
+        UUID[] docs = new UUID[total];
+        int[] lengths = new int[total];
+        int[][] remap = new int[parts.size()][];
+        int next = 0;
+        for (int p = 0; p < parts.size(); p++) {
+            Segment part = parts.get(p);
+            remap[p] = new int[part.docCount()];
+            for (int d = 0; d < part.docCount(); d++) {
+                if (deleted.contains(part.docs[d])) {
+                    remap[p][d] = -1;
+                } else {
+                    docs[next] = part.docs[d];
+                    lengths[next] = part.lengths[d];
+                    remap[p][d] = next++;
+                }
+            }
+        }
+
+        // fusion des dictionnaires triés : un curseur par segment
+        record Cursor(int part, int term) {
+        }
+        PriorityQueue<Cursor> heads = new PriorityQueue<>((a, b) ->
+                parts.get(a.part).terms[a.term].compareTo(parts.get(b.part).terms[b.term]));
+        for (int p = 0; p < parts.size(); p++) {
+            if (parts.get(p).terms.length > 0) {
+                heads.add(new Cursor(p, 0));
+            }
+        }
+        try (Writer writer = new Writer(file, docs, lengths, next)) {
+            while (!heads.isEmpty()) {
+                String term = parts.get(heads.peek().part).terms[heads.peek().term];
+                // segments dans l'ordre : les n° de documents restent croissants
+                List<Cursor> same = new ArrayList<>();
+                while (!heads.isEmpty() && parts.get(heads.peek().part).terms[heads.peek().term].equals(term)) {
+                    same.add(heads.poll());
+                }
+                same.sort((a, b) -> Integer.compare(a.part, b.part));
+                IntList merged = new IntList(64);
+                for (Cursor cursor : same) {
+                    int[] pairs = parts.get(cursor.part).postingsAt(cursor.term);
+                    for (int k = 0; k < pairs.length; k += 2) {
+                        int doc = remap[cursor.part][pairs[k]];
+                        if (doc >= 0) {
+                            merged.add(doc);
+                            merged.add(pairs[k + 1]);
+                        }
+                    }
+                    if (cursor.term + 1 < parts.get(cursor.part).terms.length) {
+                        heads.add(new Cursor(cursor.part, cursor.term + 1));
+                    }
+                }
+                if (merged.size() > 0) {
+                    writer.addTerm(term, merged.toArray(), merged.size() / 2);
+                }
+            }
+            writer.finish();
+        }
+    }
+
+    // ---------- utilitaires ----------
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) {
+                throw new IOException("Truncated full-text segment");
+            }
+        }
+        return buf.flip();
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(ByteBuffer buf) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buf.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /** Compte les octets écrits (DataOutputStream.size() sature à 2 Go). */
+    private static final class CountingStream extends FilterOutputStream {
+        long count;
+
+        CountingStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.nova.nfs.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Compteur cumulé (fichiers importés, octets exportés...). */
+public final class Counter implements CounterMXBean {
+
+    private final String name;
+    private final LongAdder value = new LongAdder();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void increment() {
+        add(1);
+    }
+
+    /** Ajoute {@code n} (ignoré si les métriques sont désactivées). */
+    public void add(long n) {
+        if (Metrics.ENABLED) {
+            value.add(n);
+        }
+    }
+
+    @Override
+    public long getCount() {
+        return value.sum();
+    }
+
+    @Override
+    public void reset() {
+        value.reset();
+    }
+}
@@ -0,0 +1,9 @@
+package com.nova.nfs.metrics;
+
+/** Vue JMX d'un {@link Counter}. */
+public interface CounterMXBean {
+
+    long getCount();
+
+    void reset();
+}
@@ -0,0 +1,21 @@
+package com.nova.nfs.metrics;
+
+/** Vue JMX d'un {@link Histogram} ou d'un {@link Timer}, dans {@link #getUnit()}. */
+public interface DistributionMXBean {
+
+    String getUnit();
+
+    long getCount();
+
+    double getMean();
+
+    double getMax();
+
+    double getP50();
+
+    double getP90();
+
+    double getP99();
+
+    void reset();
+}
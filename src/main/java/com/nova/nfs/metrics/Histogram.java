@@ -0,0 +1,136 @@
+package com.nova.nfs.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution de valeurs positives (octets, durées) : compteur, somme, max
+ * et seaux log-linéaires (4 par puissance de 2, donc ~25 % de précision sur
+ * les percentiles). Enregistrer n'alloue rien.
+ */
+public class Histogram implements DistributionMXBean {
+
+    private static final int BUCKETS = 64 * 4;
+
+    private final String name;
+    private final String unit;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    Histogram(String name, String unit) {
+        this.name = name;
+        this.unit = unit;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** Enregistre {@code value} (ignoré si les métriques sont désactivées). */
+    public void record(long value) {
+        if (!Metrics.ENABLED) {
+            return;
+        }
+        long v = Math.max(0, value);
+        buckets.incrementAndGet(bucketOf(v));
+        count.increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    // ---------- lecture (JMX, log) ----------
+
+    @Override
+    public String getUnit() {
+        return unit;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : scale(sum.sum()) / n;
+    }
+
+    @Override
+    public double getMax() {
+        return scale(max.get());
+    }
+
+    @Override
+    public double getP50() {
+        return percentile(0.50);
+    }
+
+    @Override
+    public double getP90() {
+        return percentile(0.90);
+    }
+
+    @Override
+    public double getP99() {
+        return percentile(0.99);
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    /** Convertit une valeur brute dans l'unité affichée. */
+    double scale(long raw) {
+        return raw;
+    }
+
+    private double percentile(double q) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(q * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(scale(midpointOf(i)), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    static int bucketOf(long v) {
+        if (v < 8) {
+            return (int) v;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (exp - 2)) & 3;
+        return exp * 4 + sub;
+    }
+
+    static long midpointOf(int bucket) {
+        if (bucket < 8) {
+            return bucket;
+        }
+        int exp = bucket / 4;
+        long width = 1L << (exp - 2);
+        long lower = (4L + bucket % 4) << (exp - 2);
+        return lower + width / 2;
+    }
+}
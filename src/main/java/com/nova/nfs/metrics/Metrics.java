@@ -0,0 +1,133 @@
+package com.nova.nfs.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Registre des métriques de l'appli (repositories, service, imports/exports,
+ * UI), activé par {@code -Dnfs.metrics=true}.
+ * <p>
+ * Les métriques sont des constantes des classes instrumentées :
+ * <pre>
+ * private static final Timer SAVE = Metrics.timer("links.save");
+ * </pre>
+ * Désactivées, {@link #start()} renvoie 0 et les enregistrements ne font
+ * qu'un test sur une constante : rien n'est alloué ni mesuré. Activées,
+ * chaque métrique est publiée en MBean ({@code com.nova.nfs:type=Timer,name=...})
+ * et, avec {@code -Dnfs.metricsLogSeconds=N}, le tout est écrit sur la
+ * sortie standard toutes les N secondes.
+ */
+public final class Metrics {
+
+    static final boolean ENABLED = Boolean.getBoolean("nfs.metrics");
+
+    private static final String DOMAIN = "com.nova.nfs";
+    private static final Map<String, Object> REGISTRY = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService logger;
+
+    private Metrics() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /** Début d'une mesure pour {@link Timer#stop(long)} (0 si désactivé). */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    public static Timer timer(String name) {
+        return register(name, "Timer", Timer::new, Timer.class);
+    }
+
+    public static Counter counter(String name) {
+        return register(name, "Counter", Counter::new, Counter.class);
+    }
+
+    /** @param unit unité des valeurs enregistrées ("bytes", ...) */
+    public static Histogram histogram(String name, String unit) {
+        return register(name, "Histogram", n -> new Histogram(n, unit), Histogram.class);
+    }
+
+    private static <T> T register(String name, String type, Function<String, T> factory, Class<T> kind) {
+        Object metric = REGISTRY.computeIfAbsent(name, n -> {
+            T created = factory.apply(n);
+            if (ENABLED) {
+                expose(type, n, created);
+            }
+            return created;
+        });
+        if (!kind.isInstance(metric)) {
+            throw new IllegalArgumentException("Metric " + name + " already registered as "
+                    + metric.getClass().getSimpleName());
+        }
+        return kind.cast(metric);
+    }
+
+    private static void expose(String type, String name, Object metric) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(metric, objectName);
+            }
+        } catch (JMException e) {
+            System.err.println("Failed to register metric " + name + ": " + e.getMessage());
+        }
+    }
+
+    // ---------- log périodique ----------
+
+    /**
+     * Lance l'écriture périodique des métriques si {@code -Dnfs.metrics} et
+     * {@code -Dnfs.metricsLogSeconds} sont positionnés (sans effet sinon).
+     */
+    public static synchronized void startLogging() {
+        long seconds = Long.getLong("nfs.metricsLogSeconds", 0);
+        if (!ENABLED || seconds <= 0 || logger != null) {
+            return;
+        }
+        logger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "nfs-metrics-log");
+            t.setDaemon(true);
+            return t;
+        });
+        logger.scheduleAtFixedRate(() -> System.out.print(dump()), seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    public static synchronized void stopLogging() {
+        if (logger != null) {
+            logger.shutdownNow();
+            logger = null;
+        }
+    }
+
+    /** Une ligne par métrique déjà utilisée, triées par nom. */
+    public static String dump() {
+        List<String> names = new ArrayList<>(REGISTRY.keySet());
+        names.sort(null);
+        StringBuilder sb = new StringBuilder();
+        for (String name : names) {
+            Object metric = REGISTRY.get(name);
+            if (metric instanceof Counter counter && counter.getCount() > 0) {
+                sb.append(String.format("%-32s count=%d%n", name, counter.getCount()));
+            } else if (metric instanceof Histogram h && h.getCount() > 0) {
+                sb.append(String.format("%-32s count=%d mean=%.1f p50=%.1f p90=%.1f p99=%.1f max=%.1f %s%n",
+                        name, h.getCount(), h.getMean(), h.getP50(), h.getP90(), h.getP99(), h.getMax(),
+                        h.getUnit()));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,28 @@
+package com.nova.nfs.metrics;
+
+/**
+ * Durées d'une opération, affichées en microsecondes :
+ * <pre>
+ * long start = Metrics.start();
+ * ...
+ * TIMER.stop(start);
+ * </pre>
+ */
+public final class Timer extends Histogram {
+
+    Timer(String name) {
+        super(name, "us");
+    }
+
+    /** Enregistre le temps écoulé depuis {@link Metrics#start()}. */
+    public void stop(long start) {
+        if (Metrics.ENABLED) {
+            record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    double scale(long nanos) {
+        return nanos / 1000.0;
+    }
+}
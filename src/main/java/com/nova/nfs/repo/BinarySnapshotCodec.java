@@ -0,0 +1,293 @@
+package com.nova.nfs.repo;
+
+import com.nova.nfs.core.FileEntry;
+import com.nova.nfs.core.Link;
+import com.nova.nfs.core.LinkType;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Snapshot binaire versionné.
+ * <pre>
+ * header  : "NFSB" u8:version u8:kind
+ * entrées : TAG_STRING varint:len utf8      -> ajoutée à la table de chaînes
+ *           TAG_RECORD payload              -> un FileEntry ou un Link
+ *           TAG_END    varlong:nbRecords    -> fin de fichier
+ * </pre>
+ * La table de chaînes est construite au fil de l'eau (une chaîne est définie
+ * juste avant le premier record qui l'utilise), ce qui permet d'écrire et de
+ * relire record par record. Une référence de chaîne est un varint : 0 pour
+ * null, sinon index + 1. Les UUID sont écrits comme deux longs.
+ * <p>
+ * FileEntry : id, ref displayName, ref extension, ref dossier du physicalPath,
+ * nom de fichier en ligne (unique par fichier, inutile de l'interner).<br>
+ * Link : id, u8 type, ref displayName, parentId?, targetFileId?
+ * ({@code ?} = u8 de présence puis deux longs), varlong trashedAt (depuis la
+ * version 2).
+ */
+abstract class BinarySnapshotCodec<T> implements SnapshotCodec<T> {
+
+    static final int VERSION = 2;
+
+    private static final byte[] MAGIC = {'N', 'F', 'S', 'B'};
+    private static final int KIND_FILES = 1;
+    private static final int KIND_LINKS = 2;
+
+    private static final int TAG_END = 0;
+    private static final int TAG_STRING = 1;
+    private static final int TAG_RECORD = 2;
+
+    private final int kind;
+
+    private BinarySnapshotCodec(int kind) {
+        this.kind = kind;
+    }
+
+    static SnapshotCodec<FileEntry> files() {
+        return new BinarySnapshotCodec<>(KIND_FILES) {
+            @Override
+            void writeRecord(Output out, FileEntry e) throws IOException {
+                String path = e.getPhysicalPath();
+                String dir = null;
+                String name = path;
+                if (path != null) {
+                    int sep = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+                    if (sep >= 0) {
+                        dir = path.substring(0, sep + 1);
+                        name = path.substring(sep + 1);
+                    }
+                }
+                out.defineStrings(e.getDisplayName(), e.getExtension(), dir);
+                out.begin();
+                out.writeUuid(e.getId());
+                out.writeRef(e.getDisplayName());
+                out.writeRef(e.getExtension());
+                out.writeRef(dir);
+                out.writeInline(name);
+            }
+
+            @Override
+            FileEntry readRecord(Input in) throws IOException {
+                UUID id = in.readUuid();
+                String displayName = in.readRef();
+                String extension = in.readRef();
+                String dir = in.readRef();
+                String name = in.readInline();
+                String path = dir != null && name != null ? dir + name : name;
+                return new FileEntry(id, displayName, extension, path);
+            }
+        };
+    }
+
+    static SnapshotCodec<Link> links() {
+        return new BinarySnapshotCodec<>(KIND_LINKS) {
+            @Override
+            void writeRecord(Output out, Link l) throws IOException {
+                out.defineStrings(l.getDisplayName());
+                out.begin();
+                out.writeUuid(l.getId());
+                out.data.writeByte(LinkTypeCodes.code(l.getType()));
+                out.writeRef(l.getDisplayName());
+                out.writeNullableUuid(l.getParentId());
+                out.writeNullableUuid(l.getTargetFileId());
+                writeVarLong(out.data, l.getTrashedAt());
+            }
+
+            @Override
+            Link readRecord(Input in) throws IOException {
+                UUID id = in.readUuid();
+                LinkType type = LinkTypeCodes.fromCode(in.data.readUnsignedByte());
+                Link l = new Link(id, type, in.readRef());
+                l.setParentId(in.readNullableUuid());
+                l.setTargetFileId(in.readNullableUuid());
+                if (in.version >= 2) {
+                    l.setTrashedAt(readVarLong(in.data));
+                }
+                return l;
+            }
+        };
+    }
+
+    abstract void writeRecord(Output out, T value) throws IOException;
+
+    abstract T readRecord(Input in) throws IOException;
+
+    @Override
+    public void read(InputStream stream, Consumer<T> sink) throws IOException {
+        Input in = new Input(new DataInputStream(stream));
+        byte[] magic = new byte[MAGIC.length];
+        in.data.readFully(magic);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i]) {
+                throw new IOException("not a NFS binary snapshot");
+            }
+        }
+        int version = in.data.readUnsignedByte();
+        if (version > VERSION) {
+            throw new IOException("unsupported snapshot version: " + version);
+        }
+        in.version = version;
+        int fileKind = in.data.readUnsignedByte();
+        if (fileKind != kind) {
+            throw new IOException("unexpected snapshot kind: " + fileKind);
+        }
+
+        long records = 0;
+        while (true) {
+            int tag = in.data.readUnsignedByte();
+            if (tag == TAG_STRING) {
+                in.strings.add(in.readInline());
+            } else if (tag == TAG_RECORD) {
+                sink.accept(readRecord(in));
+                records++;
+            } else if (tag == TAG_END) {
+                long expected = readVarLong(in.data);
+                if (expected != records) {
+                    throw new IOException("truncated snapshot: " + records + "/" + expected + " records");
+                }
+                return;
+            } else {
+                throw new IOException("corrupted snapshot, unknown tag " + tag);
+            }
+        }
+    }
+
+    @Override
+    public RecordWriter<T> writer(OutputStream stream) throws IOException {
+        Output out = new Output(new DataOutputStream(stream));
+        out.data.write(MAGIC);
+        out.data.writeByte(VERSION);
+        out.data.writeByte(kind);
+        return new RecordWriter<>() {
+            private long records;
+
+            @Override
+            public void write(T value) throws IOException {
+                writeRecord(out, value);
+                records++;
+            }
+
+            @Override
+            public void finish() throws IOException {
+                out.data.writeByte(TAG_END);
+                writeVarLong(out.data, records);
+                out.data.flush();
+            }
+        };
+    }
+
+    static final class Output {
+        final DataOutputStream data;
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        Output(DataOutputStream data) {
+            this.data = data;
+        }
+
+        void defineStrings(String... values) throws IOException {
+            for (String s : values) {
+                if (s != null && !strings.containsKey(s)) {
+                    strings.put(s, strings.size());
+                    data.writeByte(TAG_STRING);
+                    writeInline(s);
+                }
+            }
+        }
+
+        void begin() throws IOException {
+            data.writeByte(TAG_RECORD);
+        }
+
+        void writeRef(String s) throws IOException {
+            writeVarLong(data, s == null ? 0 : strings.get(s) + 1L);
+        }
+
+        void writeInline(String s) throws IOException {
+            if (s == null) {
+                writeVarLong(data, 0);
+                return;
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(data, bytes.length + 1L);
+            data.write(bytes);
+        }
+
+        void writeUuid(UUID id) throws IOException {
+            data.writeLong(id.getMostSignificantBits());
+            data.writeLong(id.getLeastSignificantBits());
+        }
+
+        void writeNullableUuid(UUID id) throws IOException {
+            data.writeByte(id == null ? 0 : 1);
+            if (id != null) {
+                writeUuid(id);
+            }
+        }
+    }
+
+    static final class Input {
+        final DataInputStream data;
+        int version;
+        private final List<String> strings = new ArrayList<>();
+
+        Input(DataInputStream data) {
+            this.data = data;
+        }
+
+        String readRef() throws IOException {
+            long ref = readVarLong(data);
+            if (ref == 0) return null;
+            if (ref > strings.size()) {
+                throw new IOException("corrupted snapshot, unknown string ref " + ref);
+            }
+            return strings.get((int) (ref - 1));
+        }
+
+        String readInline() throws IOException {
+            long len = readVarLong(data);
+            if (len == 0) return null;
+            byte[] bytes = new byte[(int) (len - 1)];
+            data.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        UUID readUuid() throws IOException {
+            return new UUID(data.readLong(), data.readLong());
+        }
+
+        UUID readNullableUuid() throws IOException {
+            return data.readUnsignedByte() == 0 ? null : readUuid();
+        }
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+            if (shift > 63) {
+                throw new IOException("corrupted snapshot, varint too long");
+            }
+        }
+    }
+}
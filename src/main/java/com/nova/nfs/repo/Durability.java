@@ -0,0 +1,13 @@
+package com.nova.nfs.repo;
+
+/**
+ * Compromis latence / durabilité des écritures du journal.
+ */
+public enum Durability {
+    /** Écriture + fsync sur le thread appelant, à chaque opération (ou commit de batch). */
+    SYNC,
+    /** Écritures regroupées par un thread de fond, un fsync par groupe. */
+    GROUP_COMMIT,
+    /** Écritures regroupées par un thread de fond, sans fsync : l'OS flushe quand il veut. */
+    BEST_EFFORT
+}
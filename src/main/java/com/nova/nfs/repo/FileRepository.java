@@ -2,10 +2,21 @@ package com.nova.nfs.repo;
 
 import com.nova.nfs.core.FileEntry;
 
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
+/**
+ * Les implémentations fournies sont sûres entre threads : les écritures sont
+ * sérialisées, les lectures ne bloquent pas et rendent des copies (modifier
+ * un FileEntry lu n'a d'effet qu'après {@code save}).
+ */
 public interface FileRepository {
 
     FileEntry save(FileEntry file);
@@ -14,5 +25,100 @@ public interface FileRepository {
 
     List<FileEntry> findAll();
 
+    /**
+     * Nombre de FileEntry dont le chemin physique désigne {@code physicalPath}
+     * (chemins comparés après {@link #normalizePath}) : le compteur de
+     * références d'un blob, sans charger les FileEntry.
+     */
+    int countByPhysicalPath(String physicalPath);
+
+    default boolean exists(UUID id) {
+        return findById(id).isPresent();
+    }
+
+    /**
+     * Ids de tous les FileEntry, sans forcément les charger.
+     */
+    default List<UUID> findAllIds() {
+        List<UUID> ids = new ArrayList<>();
+        for (FileEntry file : findAll()) {
+            ids.add(file.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Parcours des ids de tous les FileEntry sans en copier la liste :
+     * faiblement cohérent, une écriture concurrente peut être vue ou non.
+     * L'itérateur ne supporte pas {@code remove}.
+     */
+    default Iterator<UUID> iterateIds() {
+        return Collections.unmodifiableList(findAllIds()).iterator();
+    }
+
     void delete(UUID id);
+
+    /**
+     * Démarre un batch : les écritures suivantes ne sont flushées qu'au
+     * {@link #commitBatch()} correspondant. Les batchs peuvent s'imbriquer.
+     */
+    default void beginBatch() {
+    }
+
+    default void commitBatch() {
+    }
+
+    default List<FileEntry> saveAll(Collection<FileEntry> files) {
+        List<FileEntry> saved = new ArrayList<>(files.size());
+        beginBatch();
+        try {
+            for (FileEntry file : files) {
+                saved.add(save(file));
+            }
+        } finally {
+            commitBatch();
+        }
+        return saved;
+    }
+
+    default void deleteAll(Collection<UUID> ids) {
+        beginBatch();
+        try {
+            for (UUID id : ids) {
+                delete(id);
+            }
+        } finally {
+            commitBatch();
+        }
+    }
+
+    /**
+     * {@code hook} est appelé juste avant chaque fsync des écritures du
+     * repository, par le thread qui le fait : ce qui doit être sur disque
+     * avant elles y est forcé (voir {@code IntegrityCheckpoint}).
+     */
+    default void setBeforeForce(Runnable hook) {
+    }
+
+    /**
+     * Attend que les écritures faites jusqu'ici soient sur disque (selon la
+     * {@link Durability} choisie).
+     */
+    default void sync() {
+    }
+
+    /**
+     * Attend la fin des écritures en cours et libère les ressources.
+     */
+    default void close() {
+    }
+
+    /** Forme absolue et normalisée d'un chemin physique, clé des compteurs par chemin. */
+    static String normalizePath(String physicalPath) {
+        try {
+            return Path.of(physicalPath).toAbsolutePath().normalize().toString();
+        } catch (InvalidPathException e) {
+            return physicalPath;
+        }
+    }
 }
@@ -0,0 +1,358 @@
+package com.nova.nfs.repo;
+
+import com.nova.nfs.metrics.Histogram;
+import com.nova.nfs.metrics.Metrics;
+import com.nova.nfs.metrics.Timer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Écriture physique du journal selon la {@link Durability} choisie.
+ * <p>
+ * En {@code SYNC} tout se passe sur le thread appelant. Dans les autres modes
+ * les records sont mis en attente et un thread de fond les écrit par groupes :
+ * il attend au plus {@code groupCommitDelayMillis} après le premier record
+ * d'un groupe (ou que le groupe dépasse {@code groupCommitMaxBytes}), puis
+ * écrit tout d'un coup, avec un seul fsync en {@code GROUP_COMMIT}.
+ * <p>
+ * Après un échec d'écriture le journal peut être coupé au milieu d'un
+ * record : plus rien n'y est écrit et {@link #commit()}/{@link #sync()}
+ * échouent jusqu'à la prochaine {@link #rotate(Path)} (compaction).
+ */
+final class JournalWriter {
+
+    private static final Timer WRITE = Metrics.timer("journal.write");
+    private static final Histogram WRITE_BYTES = Metrics.histogram("journal.writeBytes", "bytes");
+
+    private final Path path;
+    private final StoreOptions options;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pendingChanged = lock.newCondition();
+    private final Condition drained = lock.newCondition();
+
+    /** Protège le channel : écriture d'un groupe vs truncate/close. */
+    private final Object ioLock = new Object();
+
+    private List<byte[]> pending = new ArrayList<>();
+    private long pendingBytes;
+    private long appendedSeq;
+    private long writtenSeq;
+    /** Incrémenté à chaque rotation : un groupe pris avant est périmé. */
+    private long generation;
+    private boolean flushRequested;
+    private boolean closed;
+    /** Premier échec d'écriture depuis le dernier truncate. */
+    private IOException failure;
+
+    private FileChannel channel;
+    private final Thread worker;
+    private volatile Runnable beforeForce = () -> { };
+
+    JournalWriter(Path path, StoreOptions options) {
+        this.path = path;
+        this.options = options;
+        if (options.getDurability() == Durability.SYNC) {
+            worker = null;
+        } else {
+            worker = new Thread(this::runWorker, "nfs-journal-" + path.getFileName());
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /** Appelé avant chaque fsync du journal, sous {@code ioLock}. */
+    void setBeforeForce(Runnable hook) {
+        beforeForce = hook;
+    }
+
+    void append(byte[] record) {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("journal closed: " + path);
+            }
+            pending.add(record);
+            pendingBytes += record.length;
+            appendedSeq++;
+            if (pendingBytes >= options.getGroupCommitMaxBytes()) {
+                flushRequested = true;
+            }
+            pendingChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Fin d'une opération (ou d'un batch). En {@code SYNC} les records sont
+     * écrits et fsyncés avant de rendre la main ; sinon c'est le writer de fond
+     * qui s'en charge dans le délai de group commit.
+     */
+    void commit() throws IOException {
+        if (worker == null) {
+            writePending(true);
+            return;
+        }
+        lock.lock();
+        try {
+            checkFailure();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Attend que tout ce qui a été ajouté jusqu'ici soit écrit.
+     */
+    void sync() throws IOException {
+        if (worker == null) {
+            writePending(true);
+            return;
+        }
+        lock.lock();
+        try {
+            long target = appendedSeq;
+            flushRequested = true;
+            pendingChanged.signalAll();
+            while (writtenSeq < target && failure == null && !closed) {
+                drained.awaitUninterruptibly();
+            }
+            if (writtenSeq < target) {
+                checkFailure();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Renomme le journal en {@code rotated} et repart sur un fichier vide.
+     * L'appelant bloque les appends (verrou du repository) : ce qui a été
+     * ajouté avant est d'abord écrit dans l'ancien fichier. Un échec
+     * d'écriture est oublié ; les records perdus sont dans le snapshot que
+     * l'appelant écrit ensuite.
+     */
+    void rotate(Path rotated) throws IOException {
+        try {
+            sync();
+        } catch (IOException e) {
+            // déjà signalé par recordFailure
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("journal closed: " + path);
+            }
+            generation++;
+            pending = new ArrayList<>();
+            pendingBytes = 0;
+            writtenSeq = appendedSeq;
+            failure = null;
+            drained.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        synchronized (ioLock) {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+            if (Files.exists(path)) {
+                Files.move(path, rotated, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+    }
+
+    void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            lock.lock();
+            try {
+                closed = true;
+                pendingChanged.signalAll();
+                drained.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (worker != null) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            synchronized (ioLock) {
+                if (channel != null) {
+                    channel.close();
+                    channel = null;
+                }
+            }
+        }
+    }
+
+    private void runWorker() {
+        while (true) {
+            List<byte[]> group;
+            long groupSeq;
+            long groupGeneration;
+            lock.lock();
+            try {
+                while (pending.isEmpty() && !closed) {
+                    pendingChanged.awaitUninterruptibly();
+                }
+                if (pending.isEmpty()) {
+                    return; // fermé et tout est écrit
+                }
+                // debounce : on laisse le groupe grossir un peu
+                long deadline = System.nanoTime()
+                        + TimeUnit.MILLISECONDS.toNanos(options.getGroupCommitDelayMillis());
+                long remaining;
+                while (!flushRequested && !closed
+                        && (remaining = deadline - System.nanoTime()) > 0) {
+                    try {
+                        pendingChanged.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+                group = pending;
+                groupSeq = appendedSeq;
+                groupGeneration = generation;
+                pending = new ArrayList<>();
+                pendingBytes = 0;
+                flushRequested = false;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                write(group, groupGeneration, options.getDurability() == Durability.GROUP_COMMIT);
+            } catch (IOException e) {
+                error = e;
+            } catch (RuntimeException e) {
+                error = new IOException(e.toString(), e);
+            }
+
+            lock.lock();
+            try {
+                if (groupGeneration == generation) {
+                    if (error == null) {
+                        writtenSeq = Math.max(writtenSeq, groupSeq);
+                    } else {
+                        // groupe perdu : writtenSeq n'avance pas, les sync() en attente échouent
+                        recordFailure(error);
+                    }
+                }
+                drained.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void writePending(boolean force) throws IOException {
+        // ioLock tenu de la prise du groupe jusqu'à l'écriture : deux appelants
+        // concurrents ne peuvent pas inverser l'ordre des records
+        synchronized (ioLock) {
+            List<byte[]> group;
+            long groupGeneration;
+            lock.lock();
+            try {
+                checkFailure();
+                if (pending.isEmpty()) {
+                    return;
+                }
+                group = pending;
+                groupGeneration = generation;
+                pending = new ArrayList<>();
+                pendingBytes = 0;
+                writtenSeq = appendedSeq;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                write(group, groupGeneration, force);
+            } catch (IOException | RuntimeException e) {
+                lock.lock();
+                try {
+                    if (groupGeneration == generation) {
+                        recordFailure(e instanceof IOException io ? io : new IOException(e.toString(), e));
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void write(List<byte[]> group, long groupGeneration, boolean force) throws IOException {
+        if (group.isEmpty()) {
+            return; // groupe déjà écrit par un sync() pendant le debounce
+        }
+        ByteBuffer[] buffers = new ByteBuffer[group.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.wrap(group.get(i));
+        }
+        synchronized (ioLock) {
+            lock.lock();
+            try {
+                if (groupGeneration != generation) {
+                    return; // journal vidé entre-temps, le snapshot contient déjà ces records
+                }
+                checkFailure();
+            } finally {
+                lock.unlock();
+            }
+            long start = Metrics.start();
+            FileChannel ch = openChannel();
+            long bytes = 0;
+            while (buffers[buffers.length - 1].hasRemaining()) {
+                bytes += ch.write(buffers);
+            }
+            if (force) {
+                beforeForce.run();
+                ch.force(false);
+            }
+            WRITE.stop(start);
+            WRITE_BYTES.record(bytes);
+        }
+    }
+
+    /** Appelé sous {@code lock}. */
+    private void recordFailure(IOException error) {
+        if (failure == null) {
+            failure = error;
+            System.err.println("Failed to write journal " + path + ": " + error.getMessage());
+        }
+    }
+
+    /** Appelé sous {@code lock}. */
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("journal not written since a failed write: " + path, failure);
+        }
+    }
+
+    private FileChannel openChannel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+}
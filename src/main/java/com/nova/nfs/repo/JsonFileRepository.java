@@ -1,40 +1,72 @@
 package com.nova.nfs.repo;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nova.nfs.core.FileEntry;
+import com.nova.nfs.metrics.Histogram;
+import com.nova.nfs.metrics.Metrics;
+import com.nova.nfs.metrics.Timer;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * FileEntry en mémoire, persistés en snapshot + journal. Même modèle que
+ * {@link JsonLinkRepository} : un seul écrivain, lectures sans verrou sur des
+ * copies.
+ */
 public class JsonFileRepository implements FileRepository {
 
+    private static final Timer SAVE = Metrics.timer("files.save");
+    private static final Timer DELETE = Metrics.timer("files.delete");
+    private static final Timer SNAPSHOT = Metrics.timer("files.snapshot");
+    private static final Histogram SNAPSHOT_BYTES = Metrics.histogram("files.snapshotBytes", "bytes");
+
     private final Path filePath;
     private final ObjectMapper mapper;
-    private final Map<UUID, FileEntry> storage = new HashMap<>();
+    private final StoreOptions options;
+    private final Path snapshotPath;
+    private final SnapshotCodec<FileEntry> codec;
+    private final JsonJournal journal;
+    private final Map<UUID, FileEntry> storage = new ConcurrentHashMap<>();
+    /** Nombre de FileEntry par chemin physique normalisé. */
+    private final Map<String, Integer> pathCounts = new ConcurrentHashMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final SnapshotCompactor compactor;
 
     public JsonFileRepository(Path filePath) {
+        this(filePath, StoreOptions.defaults());
+    }
+
+    public JsonFileRepository(Path filePath, StoreOptions options) {
         this.filePath = filePath;
         this.mapper = new ObjectMapper();
+        this.options = options;
+        this.snapshotPath = options.getSnapshotFormat().resolve(filePath);
+        this.codec = options.getSnapshotFormat().fileCodec(mapper);
+        this.journal = new JsonJournal(filePath.resolveSibling(filePath.getFileName() + ".journal"),
+                mapper, options);
+        this.compactor = new SnapshotCompactor("files", writeLock, journal, this::writeSnapshot);
         loadFromDisk();
     }
 
     private void loadFromDisk() {
         try {
-            if (Files.exists(filePath)) {
-                byte[] bytes = Files.readAllBytes(filePath);
-                List<FileEntry> list = mapper.readValue(bytes, new TypeReference<List<FileEntry>>() {
-                });
-                storage.clear();
-                for (FileEntry e : list) {
-                    storage.put(e.getId(), e);
-                }
+            SnapshotFormat format = options.getSnapshotFormat();
+            SnapshotConverter.migrate(filePath, format, format.other().fileCodec(mapper), codec);
+
+            storage.clear();
+            pathCounts.clear();
+            if (Files.exists(snapshotPath)) {
+                codec.readFile(snapshotPath, this::applyPut);
             } else {
-                Files.createDirectories(filePath.getParent());
+                Files.createDirectories(snapshotPath.getParent());
                 saveToDisk();
             }
+            journal.replay(FileEntry.class, this::applyPut, this::applyDelete);
         } catch (IOException e) {
             System.err.println("Failed to load FileRepository: " + e.getMessage());
         }
@@ -42,34 +74,178 @@ public class JsonFileRepository implements FileRepository {
 
     private void saveToDisk() {
         try {
-            List<FileEntry> list = new ArrayList<>(storage.values());
-            byte[] bytes = mapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(list);
-            Files.write(filePath, bytes);
+            writeSnapshot();
         } catch (IOException e) {
             System.err.println("Failed to save FileRepository: " + e.getMessage());
         }
     }
 
+    private void writeSnapshot() throws IOException {
+        long start = Metrics.start();
+        codec.writeFile(snapshotPath, storage.values(), options.getDurability() != Durability.BEST_EFFORT);
+        SNAPSHOT.stop(start);
+        if (Metrics.isEnabled()) {
+            SNAPSHOT_BYTES.record(Files.size(snapshotPath));
+        }
+    }
+
+    /** Snapshot écrit en tâche de fond : la mutation en cours n'attend pas le disque. */
+    private void maybeCompact() {
+        compactor.maybeCompact(storage.size());
+    }
+
+    private void applyPut(FileEntry file) {
+        FileEntry previous = storage.put(file.getId(), file);
+        if (previous != null) {
+            countPath(previous.getPhysicalPath(), -1);
+        }
+        countPath(file.getPhysicalPath(), 1);
+    }
+
+    private void applyDelete(UUID id) {
+        FileEntry removed = storage.remove(id);
+        if (removed != null) {
+            countPath(removed.getPhysicalPath(), -1);
+        }
+    }
+
+    private void countPath(String physicalPath, int delta) {
+        if (physicalPath != null) {
+            pathCounts.merge(FileRepository.normalizePath(physicalPath), delta,
+                    (a, b) -> a + b == 0 ? null : a + b);
+        }
+    }
+
     @Override
     public FileEntry save(FileEntry file) {
-        storage.put(file.getId(), file);
-        saveToDisk();
+        long start = Metrics.start();
+        FileEntry stored = file.copy();
+        writeLock.lock();
+        try {
+            applyPut(stored);
+            journal.appendPut(stored);
+            maybeCompact();
+        } catch (IOException e) {
+            System.err.println("Failed to save FileRepository: " + e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+        SAVE.stop(start);
         return file;
     }
 
     @Override
     public Optional<FileEntry> findById(UUID id) {
-        return Optional.ofNullable(storage.get(id));
+        FileEntry stored = storage.get(id);
+        return stored != null ? Optional.of(stored.copy()) : Optional.empty();
     }
 
     @Override
     public List<FileEntry> findAll() {
-        return new ArrayList<>(storage.values());
+        List<FileEntry> all = new ArrayList<>(storage.size());
+        for (FileEntry stored : storage.values()) {
+            all.add(stored.copy());
+        }
+        return all;
+    }
+
+    @Override
+    public int countByPhysicalPath(String physicalPath) {
+        return pathCounts.getOrDefault(FileRepository.normalizePath(physicalPath), 0);
+    }
+
+    @Override
+    public boolean exists(UUID id) {
+        return storage.containsKey(id);
+    }
+
+    @Override
+    public List<UUID> findAllIds() {
+        return new ArrayList<>(storage.keySet());
+    }
+
+    @Override
+    public Iterator<UUID> iterateIds() {
+        // itérateur de ConcurrentHashMap : faiblement cohérent, remove interdit
+        // (il contournerait le journal)
+        Iterator<UUID> ids = storage.keySet().iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return ids.hasNext();
+            }
+
+            @Override
+            public UUID next() {
+                return ids.next();
+            }
+        };
     }
 
     @Override
     public void delete(UUID id) {
-        storage.remove(id);
-        saveToDisk();
+        long start = Metrics.start();
+        writeLock.lock();
+        try {
+            applyDelete(id);
+            journal.appendDelete(id);
+            maybeCompact();
+        } catch (IOException e) {
+            System.err.println("Failed to save FileRepository: " + e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+        DELETE.stop(start);
+    }
+
+    @Override
+    public void beginBatch() {
+        writeLock.lock();
+        try {
+            journal.beginBatch();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void commitBatch() {
+        writeLock.lock();
+        try {
+            journal.commitBatch();
+            maybeCompact();
+        } catch (IOException e) {
+            System.err.println("Failed to save FileRepository: " + e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void setBeforeForce(Runnable hook) {
+        journal.setBeforeForce(hook);
+    }
+
+    @Override
+    public void sync() {
+        // hors verrou : les écritures continuent pendant l'attente du disque
+        try {
+            journal.sync();
+        } catch (IOException e) {
+            System.err.println("Failed to sync FileRepository: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        compactor.close();
+        writeLock.lock();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close FileRepository: " + e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
     }
 }
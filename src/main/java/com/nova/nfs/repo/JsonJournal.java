@@ -0,0 +1,202 @@
+package com.nova.nfs.repo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Journal append-only d'un repository JSON.
+ * <p>
+ * Une ligne par mutation : {@code {"op":"PUT","data":{...}}} ou
+ * {@code {"op":"DEL","id":"..."}}. Les opérations sont idempotentes, on peut
+ * donc rejouer le journal sur un snapshot plus récent sans risque (crash entre
+ * l'écriture du snapshot et la suppression du journal).
+ * <p>
+ * Compaction : {@link #rotate()} met le journal de côté ({@code .rotated}) et
+ * les écritures repartent dans un fichier vide ; une fois le snapshot écrit,
+ * {@link #dropRotated()} supprime l'ancien. Au chargement on rejoue les deux,
+ * dans l'ordre.
+ */
+final class JsonJournal {
+
+    private static final String OP_PUT = "PUT";
+    private static final String OP_DELETE = "DEL";
+
+    private final Path path;
+    private final Path rotatedPath;
+    private final ObjectMapper mapper;
+    private final JournalWriter writer;
+    private int entries;
+    private int batchDepth;
+
+    JsonJournal(Path path, ObjectMapper mapper, StoreOptions options) {
+        this.path = path;
+        this.rotatedPath = path.resolveSibling(path.getFileName() + ".rotated");
+        this.mapper = mapper;
+        this.writer = new JournalWriter(path, options);
+    }
+
+    void setBeforeForce(Runnable hook) {
+        writer.setBeforeForce(hook);
+    }
+
+    /**
+     * Rejoue le journal mis de côté par une compaction interrompue, puis le
+     * journal courant. Une dernière ligne incomplète (crash pendant un append)
+     * est ignorée puis tronquée pour ne pas corrompre les suivantes.
+     */
+    <T> void replay(Class<T> type, Consumer<T> onPut, Consumer<UUID> onDelete) throws IOException {
+        entries = 0;
+        replay(rotatedPath, type, onPut, onDelete);
+        replay(path, type, onPut, onDelete);
+    }
+
+    private <T> void replay(Path path, Class<T> type, Consumer<T> onPut, Consumer<UUID> onDelete)
+            throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        long validLength = 0;
+        long offset = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1) {
+                offset++;
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                if (line.size() > 0) {
+                    try {
+                        apply(mapper.readTree(line.toByteArray()), type, onPut, onDelete);
+                    } catch (IOException e) {
+                        System.err.println("Corrupted journal entry in " + path + " - " + e.getMessage());
+                        break;
+                    }
+                    entries++;
+                }
+                line.reset();
+                validLength = offset;
+            }
+        }
+
+        if (validLength < Files.size(path)) {
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                ch.truncate(validLength);
+            }
+        }
+    }
+
+    void appendPut(Object value) throws IOException {
+        ObjectNode node = mapper.createObjectNode();
+        node.put("op", OP_PUT);
+        node.set("data", mapper.valueToTree(value));
+        append(node);
+    }
+
+    void appendDelete(UUID id) throws IOException {
+        ObjectNode node = mapper.createObjectNode();
+        node.put("op", OP_DELETE);
+        node.put("id", id.toString());
+        append(node);
+    }
+
+    /**
+     * Dans un batch les entrées restent en attente et ne sont confiées au
+     * writer qu'au {@link #commitBatch()} le plus externe.
+     */
+    void beginBatch() {
+        batchDepth++;
+    }
+
+    void commitBatch() throws IOException {
+        if (batchDepth == 0) {
+            throw new IllegalStateException("commitBatch without beginBatch");
+        }
+        batchDepth--;
+        if (batchDepth == 0) {
+            writer.commit();
+        }
+    }
+
+    boolean inBatch() {
+        return batchDepth > 0;
+    }
+
+    /**
+     * Nombre d'entrées depuis le dernier snapshot.
+     */
+    int size() {
+        return entries;
+    }
+
+    /**
+     * Début de compaction, appelants bloqués : le journal courant est mis de
+     * côté et le snapshot écrit ensuite devra le couvrir. Si un journal mis
+     * de côté attend encore son snapshot (échec précédent), rien ne bouge et
+     * renvoie false : le prochain snapshot couvrira aussi le journal courant,
+     * qui sera mis de côté à la compaction suivante.
+     */
+    boolean rotate() throws IOException {
+        if (Files.exists(rotatedPath)) {
+            return false;
+        }
+        writer.rotate(rotatedPath);
+        entries = 0;
+        return true;
+    }
+
+    /**
+     * Fin de compaction : le snapshot contient tout le journal mis de côté.
+     */
+    void dropRotated() throws IOException {
+        Files.deleteIfExists(rotatedPath);
+    }
+
+    /**
+     * Attend que toutes les entrées soient sur disque (selon la durabilité).
+     */
+    void sync() throws IOException {
+        writer.sync();
+    }
+
+    void close() throws IOException {
+        writer.close();
+    }
+
+    private void append(JsonNode node) throws IOException {
+        // sérialisé ici, sur le thread appelant : les objets sont mutables et
+        // peuvent changer avant que le writer de fond ne passe
+        byte[] json = mapper.writeValueAsBytes(node);
+        byte[] record = Arrays.copyOf(json, json.length + 1);
+        record[json.length] = '\n';
+        writer.append(record);
+        if (batchDepth == 0) {
+            writer.commit();
+        }
+        entries++;
+    }
+
+    private <T> void apply(JsonNode node, Class<T> type, Consumer<T> onPut, Consumer<UUID> onDelete)
+            throws IOException {
+        String op = node.path("op").asText();
+        if (OP_PUT.equals(op)) {
+            onPut.accept(mapper.treeToValue(node.get("data"), type));
+        } else if (OP_DELETE.equals(op)) {
+            onDelete.accept(UUID.fromString(node.get("id").asText()));
+        } else {
+            throw new IOException("unknown journal op: " + op);
+        }
+    }
+}
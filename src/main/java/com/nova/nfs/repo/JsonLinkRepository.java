@@ -1,39 +1,80 @@
 package com.nova.nfs.repo;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nova.nfs.core.Link;
+import com.nova.nfs.core.LinkType;
+import com.nova.nfs.metrics.Histogram;
+import com.nova.nfs.metrics.Metrics;
+import com.nova.nfs.metrics.Timer;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
 
+/**
+ * Links en mémoire, persistés en snapshot + journal.
+ * <p>
+ * Un seul écrivain à la fois ({@link #writeLock}, qui couvre aussi journal
+ * et snapshot), lectures sans verrou. Le repository garde ses propres copies
+ * des links et n'en rend que des copies : un lecteur ne voit jamais un
+ * record à moitié modifié. Les listes ({@code findChildren}, {@code findAll}...)
+ * sont faiblement cohérentes : chaque link y est dans un état enregistré, pris
+ * pendant l'appel, et {@code findChildren(p)} ne rend que des links dont le
+ * parent est {@code p}.
+ */
 public class JsonLinkRepository implements LinkRepository {
 
+    private static final Timer SAVE = Metrics.timer("links.save");
+    private static final Timer DELETE = Metrics.timer("links.delete");
+    private static final Timer FIND_CHILDREN = Metrics.timer("links.findChildren");
+    private static final Timer SNAPSHOT = Metrics.timer("links.snapshot");
+    private static final Histogram SNAPSHOT_BYTES = Metrics.histogram("links.snapshotBytes", "bytes");
+
     private final Path filePath;
     private final ObjectMapper mapper;
-    private final Map<UUID, Link> storage = new HashMap<>();
+    private final StoreOptions options;
+    private final Path snapshotPath;
+    private final SnapshotCodec<Link> codec;
+    private final JsonJournal journal;
+    private final Map<UUID, Link> storage = new ConcurrentHashMap<>();
+    private final LinkIndex index = new LinkIndex();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final SnapshotCompactor compactor;
 
     public JsonLinkRepository(Path filePath) {
+        this(filePath, StoreOptions.defaults());
+    }
+
+    public JsonLinkRepository(Path filePath, StoreOptions options) {
         this.filePath = filePath;
         this.mapper = new ObjectMapper();
+        this.options = options;
+        this.snapshotPath = options.getSnapshotFormat().resolve(filePath);
+        this.codec = options.getSnapshotFormat().linkCodec(mapper);
+        this.journal = new JsonJournal(filePath.resolveSibling(filePath.getFileName() + ".journal"),
+                mapper, options);
+        this.compactor = new SnapshotCompactor("links", writeLock, journal, this::writeSnapshot);
         loadFromDisk();
     }
 
     private void loadFromDisk() {
         try {
-            if (Files.exists(filePath)) {
-                byte[] bytes = Files.readAllBytes(filePath);
-                List<Link> list = mapper.readValue(bytes, new TypeReference<List<Link>>() {});
-                storage.clear();
-                for (Link l : list) {
-                    storage.put(l.getId(), l);
-                }
+            SnapshotFormat format = options.getSnapshotFormat();
+            SnapshotConverter.migrate(filePath, format, format.other().linkCodec(mapper), codec);
+
+            storage.clear();
+            index.clear();
+            if (Files.exists(snapshotPath)) {
+                codec.readFile(snapshotPath, this::applyPut);
             } else {
-                Files.createDirectories(filePath.getParent());
+                Files.createDirectories(snapshotPath.getParent());
                 saveToDisk();
             }
+            journal.replay(Link.class, this::applyPut, this::applyDelete);
         } catch (IOException e) {
             System.err.println("Failed to load LinkRepository: " + e.getMessage());
         }
@@ -41,45 +82,201 @@ public class JsonLinkRepository implements LinkRepository {
 
     private void saveToDisk() {
         try {
-            List<Link> list = new ArrayList<>(storage.values());
-            byte[] bytes = mapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(list);
-            Files.write(filePath, bytes);
+            writeSnapshot();
         } catch (IOException e) {
             System.err.println("Failed to save LinkRepository: " + e.getMessage());
         }
     }
 
+    private void writeSnapshot() throws IOException {
+        long start = Metrics.start();
+        codec.writeFile(snapshotPath, storage.values(), options.getDurability() != Durability.BEST_EFFORT);
+        SNAPSHOT.stop(start);
+        if (Metrics.isEnabled()) {
+            SNAPSHOT_BYTES.record(Files.size(snapshotPath));
+        }
+    }
+
+    /** Snapshot écrit en tâche de fond : la mutation en cours n'attend pas le disque. */
+    private void maybeCompact() {
+        compactor.maybeCompact(storage.size());
+    }
+
+    private void applyPut(Link link) {
+        // indexé avant d'être visible : un lecteur qui suit l'index trouve
+        // au pire l'ancienne version, qu'il écarte
+        index.put(link);
+        storage.put(link.getId(), link);
+    }
+
+    private void applyDelete(UUID id) {
+        storage.remove(id);
+        index.remove(id);
+    }
+
     @Override
     public Link save(Link link) {
-        storage.put(link.getId(), link);
-        saveToDisk();
+        long start = Metrics.start();
+        Link stored = link.copy();
+        writeLock.lock();
+        try {
+            applyPut(stored);
+            journal.appendPut(stored);
+            maybeCompact();
+        } catch (IOException e) {
+            System.err.println("Failed to save LinkRepository: " + e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+        SAVE.stop(start);
         return link;
     }
 
     @Override
     public Optional<Link> findById(UUID id) {
-        return Optional.ofNullable(storage.get(id));
+        Link stored = storage.get(id);
+        return stored != null ? Optional.of(stored.copy()) : Optional.empty();
     }
 
     @Override
     public List<Link> findChildren(UUID parentId) {
-        List<Link> result = new ArrayList<>();
-        for (Link l : storage.values()) {
-            if (Objects.equals(l.getParentId(), parentId)) {
-                result.add(l);
+        long start = Metrics.start();
+        List<Link> children = resolve(index.children(parentId), l -> Objects.equals(l.getParentId(), parentId));
+        FIND_CHILDREN.stop(start);
+        return children;
+    }
+
+    @Override
+    public List<Link> findChildren(UUID parentId, Set<LinkType> types) {
+        long start = Metrics.start();
+        List<UUID> ids = new ArrayList<>();
+        for (UUID id : index.children(parentId)) {
+            if (types.contains(index.typeOf(id))) {
+                ids.add(id);
             }
         }
-        return result;
+        List<Link> children = resolve(ids,
+                l -> Objects.equals(l.getParentId(), parentId) && types.contains(l.getType()));
+        FIND_CHILDREN.stop(start);
+        return children;
+    }
+
+    @Override
+    public boolean hasChildren(UUID parentId, Set<LinkType> types) {
+        for (UUID id : index.children(parentId)) {
+            if (types.contains(index.typeOf(id))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public List<Link> findByType(LinkType type) {
+        return resolve(index.ofType(type), l -> l.getType() == type);
+    }
+
+    @Override
+    public List<Link> findByTargetFileId(UUID fileId) {
+        return resolve(index.targeting(fileId), l -> fileId.equals(l.getTargetFileId()));
+    }
+
+    @Override
+    public int countByTargetFileId(UUID fileId) {
+        return index.targeting(fileId).size();
     }
 
     @Override
     public List<Link> findAll() {
-        return new ArrayList<>(storage.values());
+        List<Link> all = new ArrayList<>(storage.size());
+        for (Link stored : storage.values()) {
+            all.add(stored.copy());
+        }
+        return all;
     }
 
     @Override
     public void delete(UUID id) {
-        storage.remove(id);
-        saveToDisk();
+        long start = Metrics.start();
+        writeLock.lock();
+        try {
+            applyDelete(id);
+            journal.appendDelete(id);
+            maybeCompact();
+        } catch (IOException e) {
+            System.err.println("Failed to save LinkRepository: " + e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+        DELETE.stop(start);
+    }
+
+    /**
+     * Copies des links de {@code ids} qui existent encore et vérifient
+     * {@code current} (l'index peut avoir une écriture de retard).
+     */
+    private List<Link> resolve(Collection<UUID> ids, Predicate<Link> current) {
+        List<Link> result = new ArrayList<>();
+        // un link sorti puis revenu dans le bucket pendant le parcours peut y
+        // être vu à son ancien et à son nouveau rang
+        Set<UUID> seen = new HashSet<>();
+        for (UUID id : ids) {
+            Link l = storage.get(id);
+            if (l != null && current.test(l) && seen.add(id)) {
+                result.add(l.copy());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void beginBatch() {
+        writeLock.lock();
+        try {
+            journal.beginBatch();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void commitBatch() {
+        writeLock.lock();
+        try {
+            journal.commitBatch();
+            maybeCompact();
+        } catch (IOException e) {
+            System.err.println("Failed to save LinkRepository: " + e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void setBeforeForce(Runnable hook) {
+        journal.setBeforeForce(hook);
+    }
+
+    @Override
+    public void sync() {
+        // hors verrou : les écritures continuent pendant l'attente du disque
+        try {
+            journal.sync();
+        } catch (IOException e) {
+            System.err.println("Failed to sync LinkRepository: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        compactor.close();
+        writeLock.lock();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close LinkRepository: " + e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
     }
 }
@@ -0,0 +1,59 @@
+package com.nova.nfs.repo;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.function.Consumer;
+
+/**
+ * Snapshot JSON historique : un tableau indenté. Lu et écrit en streaming.
+ */
+final class JsonSnapshotCodec<T> implements SnapshotCodec<T> {
+
+    private final ObjectMapper mapper;
+    private final Class<T> type;
+
+    JsonSnapshotCodec(ObjectMapper mapper, Class<T> type) {
+        this.mapper = mapper;
+        this.type = type;
+    }
+
+    @Override
+    public void read(InputStream in, Consumer<T> sink) throws IOException {
+        try (MappingIterator<T> it = mapper.readerFor(type).readValues(in)) {
+            while (it.hasNext()) {
+                sink.accept(it.next());
+            }
+        }
+    }
+
+    @Override
+    public RecordWriter<T> writer(OutputStream out) throws IOException {
+        JsonGenerator gen = mapper.getFactory().createGenerator(out);
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        gen.useDefaultPrettyPrinter();
+        gen.writeStartArray();
+        // sinon Jackson flushe après chaque élément
+        ObjectWriter valueWriter = mapper.writerFor(type)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        return new RecordWriter<>() {
+            @Override
+            public void write(T value) throws IOException {
+                valueWriter.writeValue(gen, value);
+            }
+
+            @Override
+            public void finish() throws IOException {
+                gen.writeEndArray();
+                gen.close();
+                out.flush();
+            }
+        };
+    }
+}
@@ -0,0 +1,154 @@
+package com.nova.nfs.repo;
+
+import com.nova.nfs.core.Link;
+import com.nova.nfs.core.LinkType;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Index secondaires des links : parent -> enfants, type -> links et
+ * FileEntry cible -> links qui le référencent.
+ * <p>
+ * Un seul écrivain à la fois (le verrou d'écriture du repository), lecteurs
+ * sans verrou : les listes rendues sont des vues faiblement cohérentes, dans
+ * l'ordre d'arrivée dans le bucket. Un id peut y être en retard d'une
+ * écriture, ou y figurer deux fois (sorti puis revenu pendant le parcours) ;
+ * le repository revérifie le record qu'il résout et dédoublonne.
+ * <p>
+ * Les {@link Link} sont mutables : quand on rappelle {@code save} après un
+ * {@code setParentId}, l'objet porte déjà le nouveau parent. On mémorise donc
+ * le parent/type/cible tels qu'ils ont été indexés pour pouvoir retirer l'id de
+ * l'ancien bucket.
+ */
+final class LinkIndex {
+
+    /** Valeurs indexées d'un link, avec son rang dans chacun des trois buckets. */
+    private static final class Indexed {
+        final UUID parentId;
+        final long parentSeq;
+        final LinkType type;
+        final long typeSeq;
+        final UUID targetFileId;
+        final long targetSeq;
+
+        Indexed(UUID parentId, long parentSeq, LinkType type, long typeSeq, UUID targetFileId, long targetSeq) {
+            this.parentId = parentId;
+            this.parentSeq = parentSeq;
+            this.type = type;
+            this.typeSeq = typeSeq;
+            this.targetFileId = targetFileId;
+            this.targetSeq = targetSeq;
+        }
+    }
+
+    /** Clé des links sans parent (ROOT) : les maps concurrentes refusent null. */
+    private static final UUID NULL_PARENT = new UUID(0L, 0L);
+
+    private final ConcurrentMap<UUID, ConcurrentSkipListMap<Long, UUID>> childrenByParent = new ConcurrentHashMap<>();
+    private final ConcurrentMap<LinkType, ConcurrentSkipListMap<Long, UUID>> idsByType = new ConcurrentHashMap<>();
+    private final ConcurrentMap<UUID, ConcurrentSkipListMap<Long, UUID>> linksByTarget = new ConcurrentHashMap<>();
+    private final ConcurrentMap<UUID, Indexed> indexed = new ConcurrentHashMap<>();
+    private long nextSeq;
+
+    void put(Link link) {
+        UUID id = link.getId();
+        Indexed previous = indexed.get(id);
+        boolean sameParent = previous != null && Objects.equals(previous.parentId, link.getParentId());
+        boolean sameType = previous != null && previous.type == link.getType();
+        boolean sameTarget = previous != null && Objects.equals(previous.targetFileId, link.getTargetFileId());
+        if (sameParent && sameType && sameTarget) {
+            return; // renommage ou autre modif sans impact sur l'index
+        }
+
+        // ajouté au nouveau bucket avant d'être retiré de l'ancien : un
+        // lecteur peut le voir dans les deux, jamais dans aucun
+        long parentSeq = sameParent ? previous.parentSeq : add(childrenByParent, parentKey(link.getParentId()), id);
+        long typeSeq = sameType ? previous.typeSeq : add(idsByType, link.getType(), id);
+        long targetSeq = sameTarget ? previous.targetSeq : add(linksByTarget, link.getTargetFileId(), id);
+        indexed.put(id, new Indexed(link.getParentId(), parentSeq, link.getType(), typeSeq,
+                link.getTargetFileId(), targetSeq));
+        if (previous != null) {
+            if (!sameParent) {
+                removeFrom(childrenByParent, parentKey(previous.parentId), previous.parentSeq);
+            }
+            if (!sameType) {
+                removeFrom(idsByType, previous.type, previous.typeSeq);
+            }
+            if (!sameTarget) {
+                removeFrom(linksByTarget, previous.targetFileId, previous.targetSeq);
+            }
+        }
+    }
+
+    void remove(UUID id) {
+        Indexed previous = indexed.remove(id);
+        if (previous != null) {
+            unindex(previous);
+        }
+    }
+
+    Collection<UUID> children(UUID parentId) {
+        return values(childrenByParent.get(parentKey(parentId)));
+    }
+
+    /** Type indexé de {@code id}, null s'il est inconnu. */
+    LinkType typeOf(UUID id) {
+        Indexed current = indexed.get(id);
+        return current != null ? current.type : null;
+    }
+
+    Collection<UUID> ofType(LinkType type) {
+        return values(idsByType.get(type));
+    }
+
+    Collection<UUID> targeting(UUID fileId) {
+        return values(linksByTarget.get(fileId));
+    }
+
+    void clear() {
+        childrenByParent.clear();
+        idsByType.clear();
+        linksByTarget.clear();
+        indexed.clear();
+    }
+
+    private static Collection<UUID> values(ConcurrentSkipListMap<Long, UUID> bucket) {
+        return bucket != null ? bucket.values() : Collections.emptySet();
+    }
+
+    private static UUID parentKey(UUID parentId) {
+        return parentId != null ? parentId : NULL_PARENT;
+    }
+
+    private void unindex(Indexed previous) {
+        removeFrom(childrenByParent, parentKey(previous.parentId), previous.parentSeq);
+        removeFrom(idsByType, previous.type, previous.typeSeq);
+        removeFrom(linksByTarget, previous.targetFileId, previous.targetSeq);
+    }
+
+    /** @return le rang de {@code id} dans le bucket (-1 sans clé) */
+    private <K> long add(ConcurrentMap<K, ConcurrentSkipListMap<Long, UUID>> buckets, K key, UUID id) {
+        if (key == null) {
+            return -1;
+        }
+        long seq = nextSeq++;
+        buckets.computeIfAbsent(key, k -> new ConcurrentSkipListMap<>()).put(seq, id);
+        return seq;
+    }
+
+    private static <K> void removeFrom(ConcurrentMap<K, ConcurrentSkipListMap<Long, UUID>> buckets, K key, long seq) {
+        if (key == null) {
+            return;
+        }
+        ConcurrentSkipListMap<Long, UUID> bucket = buckets.get(key);
+        if (bucket != null) {
+            bucket.remove(seq);
+            if (bucket.isEmpty()) {
+                buckets.remove(key);
+            }
+        }
+    }
+}
@@ -1,11 +1,21 @@
 package com.nova.nfs.repo;
 
 import com.nova.nfs.core.Link;
+import com.nova.nfs.core.LinkType;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
+/**
+ * Les implémentations fournies sont sûres entre threads : l'UI lit l'arbre
+ * depuis un thread de fond pendant que le thread JavaFX écrit. Les écritures
+ * sont sérialisées, les lectures rendent des copies ; une liste (enfants,
+ * type...) est cohérente link par link mais pas forcément instantanée.
+ */
 public interface LinkRepository {
 
     Link save(Link link);
@@ -14,7 +24,101 @@ public interface LinkRepository {
 
     List<Link> findChildren(UUID parentId);
 
+    List<Link> findByType(LinkType type);
+
+    /**
+     * Enfants de {@code parentId} d'un des types donnés, sans charger les
+     * autres quand l'implémentation le permet.
+     */
+    default List<Link> findChildren(UUID parentId, Set<LinkType> types) {
+        List<Link> result = new ArrayList<>();
+        for (Link child : findChildren(parentId)) {
+            if (types.contains(child.getType())) {
+                result.add(child);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Vrai si {@code parentId} a au moins un enfant d'un des types donnés,
+     * sans charger les enfants quand l'implémentation le permet.
+     */
+    default boolean hasChildren(UUID parentId, Set<LinkType> types) {
+        for (Link child : findChildren(parentId)) {
+            if (types.contains(child.getType())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Links qui pointent sur le FileEntry {@code fileId} (index inverse).
+     */
+    List<Link> findByTargetFileId(UUID fileId);
+
+    /**
+     * Nombre de links qui pointent sur {@code fileId}, sans les charger.
+     */
+    int countByTargetFileId(UUID fileId);
+
     List<Link> findAll();
 
     void delete(UUID id);
+
+    /**
+     * Démarre un batch : les écritures suivantes ne sont flushées qu'au
+     * {@link #commitBatch()} correspondant. Les batchs peuvent s'imbriquer.
+     */
+    default void beginBatch() {
+    }
+
+    default void commitBatch() {
+    }
+
+    default List<Link> saveAll(Collection<Link> links) {
+        List<Link> saved = new ArrayList<>(links.size());
+        beginBatch();
+        try {
+            for (Link link : links) {
+                saved.add(save(link));
+            }
+        } finally {
+            commitBatch();
+        }
+        return saved;
+    }
+
+    default void deleteAll(Collection<UUID> ids) {
+        beginBatch();
+        try {
+            for (UUID id : ids) {
+                delete(id);
+            }
+        } finally {
+            commitBatch();
+        }
+    }
+
+    /**
+     * {@code hook} est appelé juste avant chaque fsync des écritures du
+     * repository, par le thread qui le fait : ce qui doit être sur disque
+     * avant elles y est forcé (voir {@code IntegrityCheckpoint}).
+     */
+    default void setBeforeForce(Runnable hook) {
+    }
+
+    /**
+     * Attend que les écritures faites jusqu'ici soient sur disque (selon la
+     * {@link Durability} choisie).
+     */
+    default void sync() {
+    }
+
+    /**
+     * Attend la fin des écritures en cours et libère les ressources.
+     */
+    default void close() {
+    }
 }
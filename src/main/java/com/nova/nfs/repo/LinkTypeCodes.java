@@ -0,0 +1,50 @@
+package com.nova.nfs.repo;
+
+import com.nova.nfs.core.LinkType;
+
+import java.io.IOException;
+
+/**
+ * Codes stables des {@link LinkType} dans tous les formats binaires
+ * (snapshots, catalogue mappé, protocole du daemon). Indépendants de l'ordre
+ * des constantes de l'enum : en ajouter une ne change pas les codes
+ * existants. 0 = pas de type.
+ */
+public final class LinkTypeCodes {
+
+    private LinkTypeCodes() {
+    }
+
+    public static int code(LinkType type) {
+        if (type == null) return 0;
+        switch (type) {
+            case ROOT:
+                return 1;
+            case FOLDER:
+                return 2;
+            case FILE:
+                return 3;
+            case TRASH:
+                return 4;
+            default:
+                throw new IllegalArgumentException("unknown link type " + type);
+        }
+    }
+
+    public static LinkType fromCode(int code) throws IOException {
+        switch (code) {
+            case 0:
+                return null;
+            case 1:
+                return LinkType.ROOT;
+            case 2:
+                return LinkType.FOLDER;
+            case 3:
+                return LinkType.FILE;
+            case 4:
+                return LinkType.TRASH;
+            default:
+                throw new IOException("unknown link type code " + code);
+        }
+    }
+}
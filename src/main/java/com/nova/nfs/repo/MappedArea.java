@@ -0,0 +1,138 @@
+package com.nova.nfs.repo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fichier mappé en mémoire découpé en segments de taille fixe, pour dépasser
+ * la limite de 2 Go d'un {@link MappedByteBuffer} et grossir sans remapper ce
+ * qui existe déjà.
+ * <p>
+ * Le fichier commence par un en-tête de {@code headerSize} octets, suivi
+ * d'unités de {@code unitSize} octets (records, entrées d'index, octets de
+ * chaînes). Une unité ne chevauche jamais deux segments.
+ */
+final class MappedArea {
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final int headerSize;
+    private final int unitSize;
+    private final int unitsPerSegment;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    MappedArea(Path file, int headerSize, int unitSize, int unitsPerSegment) throws IOException {
+        this.channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.headerSize = headerSize;
+        this.unitSize = unitSize;
+        this.unitsPerSegment = unitsPerSegment;
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, headerSize);
+
+        long existing = Math.max(0, channel.size() - headerSize);
+        long segmentBytes = segmentBytes();
+        long count = (existing + segmentBytes - 1) / segmentBytes;
+        for (long i = 0; i < count; i++) {
+            mapSegment((int) i);
+        }
+    }
+
+    ByteBuffer header() {
+        return header;
+    }
+
+    int unitSize() {
+        return unitSize;
+    }
+
+    long capacity() {
+        return (long) segments.size() * unitsPerSegment;
+    }
+
+    /**
+     * Garantit que les unités {@code [0, units)} sont mappées.
+     */
+    void ensureCapacity(long units) throws IOException {
+        while (capacity() < units) {
+            mapSegment(segments.size());
+        }
+    }
+
+    /**
+     * Buffer du segment contenant l'unité. Utiliser {@link #offset(long)} pour
+     * la position de l'unité dans ce buffer.
+     */
+    ByteBuffer segment(long unit) {
+        return segments.get((int) (unit / unitsPerSegment));
+    }
+
+    int offset(long unit) {
+        return (int) (unit % unitsPerSegment) * unitSize;
+    }
+
+    long getLong(long unit, int field) {
+        return segment(unit).getLong(offset(unit) + field);
+    }
+
+    void putLong(long unit, int field, long value) {
+        segment(unit).putLong(offset(unit) + field, value);
+    }
+
+    int getInt(long unit, int field) {
+        return segment(unit).getInt(offset(unit) + field);
+    }
+
+    void putInt(long unit, int field, int value) {
+        segment(unit).putInt(offset(unit) + field, value);
+    }
+
+    byte getByte(long unit, int field) {
+        return segment(unit).get(offset(unit) + field);
+    }
+
+    void putByte(long unit, int field, byte value) {
+        segment(unit).put(offset(unit) + field, value);
+    }
+
+    /**
+     * Remet à zéro une unité entière.
+     */
+    void clear(long unit) {
+        ByteBuffer seg = segment(unit);
+        int base = offset(unit);
+        for (int i = 0; i < unitSize; i++) {
+            seg.put(base + i, (byte) 0);
+        }
+    }
+
+    void force() {
+        header.force();
+        for (MappedByteBuffer seg : segments) {
+            seg.force();
+        }
+    }
+
+    /**
+     * Ferme le channel. Les buffers restent mappés jusqu'à leur GC (pas d'unmap
+     * explicite avant Java 21).
+     */
+    void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private long segmentBytes() {
+        return (long) unitSize * unitsPerSegment;
+    }
+
+    private void mapSegment(int index) throws IOException {
+        long position = headerSize + index * segmentBytes();
+        segments.add(channel.map(FileChannel.MapMode.READ_WRITE, position, segmentBytes()));
+    }
+}
@@ -0,0 +1,309 @@
+package com.nova.nfs.repo;
+
+import com.nova.nfs.metrics.Metrics;
+import com.nova.nfs.metrics.Timer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Socle des repositories mappés : un fichier de records à taille fixe
+ * ({@code <base>.records}), un tas de chaînes ({@code <base>.strings}) et un
+ * index UUID -> slot hors tas ({@code <base>.idx.<n>}).
+ * <p>
+ * Rien n'est parsé à l'ouverture : les records ne sont décodés en objets que
+ * quand on y accède. Les records font foi ; l'index et les listes chaînées
+ * sont des données dérivées. Un drapeau « clean » dans l'en-tête est baissé à
+ * l'ouverture et relevé au {@link #closeStore()} : s'il est baissé au
+ * démarrage, le process précédent est mort en route et on reconstruit les
+ * données dérivées en parcourant les records.
+ * <p>
+ * Concurrence : les sous-classes prennent {@link #lock} en lecture pour
+ * décoder des records (les lectures ne modifient rien, y compris les
+ * positions des buffers) et en écriture pour tout le reste. Le verrou n'est
+ * tenu que le temps d'un appel, jamais d'un batch : les listeners qui
+ * relisent l'arbre tournent pendant les batchs.
+ */
+abstract class MappedCatalog {
+
+    static final int NONE = -1;
+
+    static final byte STATE_FREE = 0;
+    static final byte STATE_LIVE = 1;
+
+    /** Champs communs à tous les records. */
+    static final int R_STATE = 0;
+    static final int R_NEXT_FREE = 4;
+
+    private static final int MAGIC = 0x4E46534D; // "NFSM"
+    private static final int HEADER_SIZE = 128;
+    private static final int RECORDS_PER_SEGMENT = 1 << 16;
+
+    private static final Timer FORCE = Metrics.timer("mapped.force");
+
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_RECORD_SIZE = 8;
+    private static final int H_CLEAN = 12;
+    private static final int H_HIGH_WATER = 16;
+    private static final int H_FREE_HEAD = 24;
+    private static final int H_LIVE_COUNT = 32;
+    /** Début de la zone d'en-tête libre pour les sous-classes. */
+    static final int H_EXTENSION = 64;
+
+    private final String name;
+    private final StoreOptions options;
+    final MappedArea records;
+    final MappedStringHeap strings;
+    final MappedUuidIndex index;
+    final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private int batchDepth;
+    private boolean upgraded;
+    private volatile Runnable beforeForce = () -> { };
+
+    MappedCatalog(String name, Path base, int version, int recordSize, StoreOptions options) {
+        this.name = name;
+        this.options = options;
+        try {
+            Path dir = base.toAbsolutePath().getParent();
+            if (dir != null) {
+                Files.createDirectories(dir);
+            }
+            this.records = new MappedArea(base.resolveSibling(base.getFileName() + ".records"),
+                    HEADER_SIZE, recordSize, RECORDS_PER_SEGMENT);
+            this.strings = new MappedStringHeap(base.resolveSibling(base.getFileName() + ".strings"));
+            this.index = new MappedUuidIndex(base);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open " + name + " at " + base, e);
+        }
+
+        ByteBuffer h = records.header();
+        if (h.getInt(H_MAGIC) == 0) {
+            h.putInt(H_MAGIC, MAGIC);
+            h.putInt(H_VERSION, version);
+            h.putInt(H_RECORD_SIZE, recordSize);
+            h.putLong(H_HIGH_WATER, 0);
+            h.putInt(H_FREE_HEAD, NONE);
+            h.putLong(H_LIVE_COUNT, 0);
+            initHeader(h);
+            h.putInt(H_CLEAN, 1);
+        } else if (h.getInt(H_MAGIC) != MAGIC) {
+            throw new IllegalStateException(name + ": not a mapped catalog: " + base);
+        } else if (h.getInt(H_VERSION) > version || h.getInt(H_RECORD_SIZE) != recordSize) {
+            throw new IllegalStateException(name + ": unsupported catalog version/layout: " + base);
+        } else if (h.getInt(H_VERSION) < version) {
+            // les nouvelles versions n'utilisent que des octets réservés (à
+            // zéro) : il suffit de recalculer les données dérivées
+            h.putInt(H_VERSION, version);
+            upgraded = true;
+        }
+    }
+
+    /**
+     * À appeler à la fin du constructeur de la sous-classe : baisse le drapeau
+     * clean et reconstruit l'index si le process précédent n'a pas fermé le
+     * catalogue proprement ou si le catalogue vient d'une version antérieure.
+     */
+    void open() {
+        ByteBuffer h = records.header();
+        boolean clean = h.getInt(H_CLEAN) == 1;
+        h.putInt(H_CLEAN, 0);
+        records.force();
+        if (!clean || upgraded) {
+            System.err.println(name + (upgraded ? " was upgraded" : " was not closed cleanly")
+                    + ", rebuilding index");
+            try {
+                rebuild();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to rebuild " + name, e);
+            }
+        }
+    }
+
+    /**
+     * Initialise la zone d'en-tête propre à la sous-classe d'un catalogue neuf.
+     */
+    void initHeader(ByteBuffer header) {
+    }
+
+    /**
+     * Recalcule l'index et les structures dérivées à partir des records.
+     */
+    abstract void rebuildDerived() throws IOException;
+
+    /** Voir {@code FileRepository.setBeforeForce}. */
+    public void setBeforeForce(Runnable hook) {
+        beforeForce = hook;
+    }
+
+    public boolean isEmpty() {
+        return liveCount() == 0;
+    }
+
+    long liveCount() {
+        return records.header().getLong(H_LIVE_COUNT);
+    }
+
+    long highWater() {
+        return records.header().getLong(H_HIGH_WATER);
+    }
+
+    boolean isLive(int slot) {
+        return records.getByte(slot, R_STATE) == STATE_LIVE;
+    }
+
+    int allocateSlot() throws IOException {
+        ByteBuffer h = records.header();
+        int slot = h.getInt(H_FREE_HEAD);
+        if (slot != NONE) {
+            h.putInt(H_FREE_HEAD, records.getInt(slot, R_NEXT_FREE));
+        } else {
+            long next = h.getLong(H_HIGH_WATER);
+            if (next >= Integer.MAX_VALUE) {
+                throw new IOException(name + " is full");
+            }
+            records.ensureCapacity(next + 1);
+            h.putLong(H_HIGH_WATER, next + 1);
+            slot = (int) next;
+        }
+        records.clear(slot);
+        return slot;
+    }
+
+    /**
+     * À appeler une fois le record entièrement écrit : l'état passe en dernier
+     * pour qu'un record à moitié écrit ne soit jamais vu vivant.
+     */
+    void markLive(int slot) {
+        records.putByte(slot, R_STATE, STATE_LIVE);
+        ByteBuffer h = records.header();
+        h.putLong(H_LIVE_COUNT, h.getLong(H_LIVE_COUNT) + 1);
+    }
+
+    void freeSlot(int slot) {
+        ByteBuffer h = records.header();
+        records.putByte(slot, R_STATE, STATE_FREE);
+        records.putInt(slot, R_NEXT_FREE, h.getInt(H_FREE_HEAD));
+        h.putInt(H_FREE_HEAD, slot);
+        h.putLong(H_LIVE_COUNT, h.getLong(H_LIVE_COUNT) - 1);
+    }
+
+    void writeUuid(int slot, int field, UUID id) {
+        records.putLong(slot, field, id.getMostSignificantBits());
+        records.putLong(slot, field + 8, id.getLeastSignificantBits());
+    }
+
+    UUID readUuid(int slot, int field) {
+        return new UUID(records.getLong(slot, field), records.getLong(slot, field + 8));
+    }
+
+    /**
+     * UUID nullable : un octet de présence à {@code flagField}.
+     */
+    void writeNullableUuid(int slot, int flagField, int field, UUID id) {
+        records.putByte(slot, flagField, (byte) (id == null ? 0 : 1));
+        if (id != null) {
+            writeUuid(slot, field, id);
+        } else {
+            records.putLong(slot, field, 0);
+            records.putLong(slot, field + 8, 0);
+        }
+    }
+
+    UUID readNullableUuid(int slot, int flagField, int field) {
+        return records.getByte(slot, flagField) == 0 ? null : readUuid(slot, field);
+    }
+
+    /**
+     * Chaîne référencée par (offset long, longueur int) à {@code field}. On ne
+     * réécrit dans le tas que si la valeur a changé.
+     */
+    void writeString(int slot, int field, String value, boolean existing) throws IOException {
+        if (existing && Objects.equals(readString(slot, field), value)) {
+            return;
+        }
+        if (value == null) {
+            records.putLong(slot, field, 0);
+            records.putInt(slot, field + 8, MappedStringHeap.NULL_LENGTH);
+            return;
+        }
+        byte[] utf8 = MappedStringHeap.encode(value);
+        long offset = strings.append(utf8);
+        records.putLong(slot, field, offset);
+        records.putInt(slot, field + 8, utf8.length);
+    }
+
+    String readString(int slot, int field) {
+        return strings.read(records.getLong(slot, field), records.getInt(slot, field + 8));
+    }
+
+    void beginBatch() {
+        batchDepth++;
+    }
+
+    void commitBatch() {
+        if (batchDepth == 0) {
+            throw new IllegalStateException("commitBatch without beginBatch");
+        }
+        batchDepth--;
+        afterWrite();
+    }
+
+    /**
+     * Fin d'une opération : en {@code SYNC} on force les pages modifiées sur
+     * disque (une fois par batch). Dans les autres modes l'OS écrit les pages
+     * quand il veut ; le drapeau clean couvre le cas du crash.
+     */
+    void afterWrite() {
+        if (batchDepth == 0 && options.getDurability() == Durability.SYNC) {
+            force();
+        }
+    }
+
+    void closeStore() {
+        try {
+            force();
+            records.header().putInt(H_CLEAN, 1);
+            records.force();
+            index.close();
+            strings.close();
+            records.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close " + name + ": " + e.getMessage());
+        }
+    }
+
+    void force() {
+        long start = Metrics.start();
+        beforeForce.run();
+        strings.force();
+        index.force();
+        records.force();
+        FORCE.stop(start);
+    }
+
+    private void rebuild() throws IOException {
+        ByteBuffer h = records.header();
+        long live = 0;
+        int freeHead = NONE;
+        for (long slot = highWater() - 1; slot >= 0; slot--) {
+            if (isLive((int) slot)) {
+                live++;
+            } else {
+                records.putInt(slot, R_NEXT_FREE, freeHead);
+                freeHead = (int) slot;
+            }
+        }
+        h.putInt(H_FREE_HEAD, freeHead);
+        h.putLong(H_LIVE_COUNT, live);
+        index.reset(live);
+        rebuildDerived();
+        force();
+    }
+}
@@ -0,0 +1,291 @@
+package com.nova.nfs.repo;
+
+import com.nova.nfs.core.FileEntry;
+import com.nova.nfs.metrics.Metrics;
+import com.nova.nfs.metrics.Timer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * {@link FileRepository} sur fichiers mappés (voir {@link MappedCatalog}) :
+ * le tas Java ne contient que les FileEntry en cours d'utilisation.
+ * <p>
+ * Record (64 octets) : état, id, displayName, extension, physicalPath.
+ * <p>
+ * Le nombre de FileEntry par chemin physique (compteur de références des
+ * blobs) est rangé dans l'{@code aux} d'une entrée d'index dont la clé est un
+ * UUID nommé (version 3) tiré du chemin : il ne peut pas rencontrer l'id,
+ * aléatoire (version 4), d'un FileEntry. Depuis la version 2.
+ */
+public class MappedFileRepository extends MappedCatalog implements FileRepository {
+
+    private static final int VERSION = 2;
+    private static final int RECORD_SIZE = 64;
+
+    private static final Timer SAVE = Metrics.timer("files.save");
+    private static final Timer DELETE = Metrics.timer("files.delete");
+
+    private static final int R_ID = 8;
+    private static final int R_NAME = 24;
+    private static final int R_EXTENSION = 36;
+    private static final int R_PATH = 48;
+
+    /** Slots lus par verrou dans {@link #iterateIds()}. */
+    private static final int ID_PAGE = 4096;
+
+    /**
+     * @param base préfixe des fichiers du catalogue, par ex. {@code data/files}
+     */
+    public MappedFileRepository(Path base, StoreOptions options) {
+        super("MappedFileRepository", base, VERSION, RECORD_SIZE, options);
+        open();
+    }
+
+    @Override
+    public FileEntry save(FileEntry file) {
+        long start = Metrics.start();
+        lock.writeLock().lock();
+        try {
+            int slot = index.slot(file.getId());
+            boolean existing = slot != NONE;
+            if (!existing) {
+                slot = allocateSlot();
+                writeUuid(slot, R_ID, file.getId());
+            }
+            String previousPath = existing ? readString(slot, R_PATH) : null;
+            if (!existing || !Objects.equals(previousPath, file.getPhysicalPath())) {
+                countPath(previousPath, -1);
+                countPath(file.getPhysicalPath(), 1);
+            }
+            writeString(slot, R_NAME, file.getDisplayName(), existing);
+            writeString(slot, R_EXTENSION, file.getExtension(), existing);
+            writeString(slot, R_PATH, file.getPhysicalPath(), existing);
+            if (!existing) {
+                markLive(slot);
+                index.setSlot(file.getId(), slot);
+            }
+            afterWrite();
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save FileEntry " + file.getId(), e);
+        } finally {
+            lock.writeLock().unlock();
+            SAVE.stop(start);
+        }
+    }
+
+    @Override
+    public Optional<FileEntry> findById(UUID id) {
+        lock.readLock().lock();
+        try {
+            int slot = index.slot(id);
+            return slot == NONE ? Optional.empty() : Optional.of(read(slot));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<FileEntry> findAll() {
+        lock.readLock().lock();
+        try {
+            List<FileEntry> result = new ArrayList<>((int) liveCount());
+            long end = highWater();
+            for (int slot = 0; slot < end; slot++) {
+                if (isLive(slot)) {
+                    result.add(read(slot));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int countByPhysicalPath(String physicalPath) {
+        UUID key = pathKey(physicalPath);
+        lock.readLock().lock();
+        try {
+            int count = index.aux(key);
+            return count == NONE ? 0 : count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean exists(UUID id) {
+        lock.readLock().lock();
+        try {
+            return index.slot(id) != NONE;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<UUID> findAllIds() {
+        lock.readLock().lock();
+        try {
+            List<UUID> result = new ArrayList<>((int) liveCount());
+            long end = highWater();
+            for (int slot = 0; slot < end; slot++) {
+                if (isLive(slot)) {
+                    result.add(readUuid(slot, R_ID));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Lit les slots par pages de {@value #ID_PAGE} : le verrou n'est tenu que
+     * le temps d'une page. Un slot libéré puis réutilisé entre deux pages
+     * peut faire manquer ou revoir un id.
+     */
+    @Override
+    public Iterator<UUID> iterateIds() {
+        return new Iterator<>() {
+            private final List<UUID> page = new ArrayList<>();
+            private int next;
+            private long slot;
+
+            @Override
+            public boolean hasNext() {
+                while (next == page.size()) {
+                    page.clear();
+                    next = 0;
+                    lock.readLock().lock();
+                    try {
+                        long end = highWater();
+                        if (slot >= end) {
+                            return false;
+                        }
+                        for (long last = Math.min(end, slot + ID_PAGE); slot < last; slot++) {
+                            if (isLive((int) slot)) {
+                                page.add(readUuid((int) slot, R_ID));
+                            }
+                        }
+                    } finally {
+                        lock.readLock().unlock();
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public UUID next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.get(next++);
+            }
+        };
+    }
+
+    @Override
+    public void delete(UUID id) {
+        long start = Metrics.start();
+        lock.writeLock().lock();
+        try {
+            int slot = index.slot(id);
+            if (slot == NONE) {
+                return;
+            }
+            countPath(readString(slot, R_PATH), -1);
+            index.setSlot(id, NONE);
+            freeSlot(slot);
+            afterWrite();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete FileEntry " + id, e);
+        } finally {
+            lock.writeLock().unlock();
+            DELETE.stop(start);
+        }
+    }
+
+    @Override
+    public void beginBatch() {
+        lock.writeLock().lock();
+        try {
+            super.beginBatch();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void commitBatch() {
+        lock.writeLock().lock();
+        try {
+            super.commitBatch();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void sync() {
+        lock.readLock().lock();
+        try {
+            force();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            closeStore();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    void rebuildDerived() throws IOException {
+        long end = highWater();
+        for (int slot = 0; slot < end; slot++) {
+            if (isLive(slot)) {
+                index.setSlot(readUuid(slot, R_ID), slot);
+                countPath(readString(slot, R_PATH), 1);
+            }
+        }
+    }
+
+    private void countPath(String physicalPath, int delta) throws IOException {
+        if (physicalPath == null) {
+            return;
+        }
+        UUID key = pathKey(physicalPath);
+        int count = index.aux(key);
+        count = (count == NONE ? 0 : count) + delta;
+        index.setAux(key, count <= 0 ? NONE : count);
+    }
+
+    private static UUID pathKey(String physicalPath) {
+        return UUID.nameUUIDFromBytes(FileRepository.normalizePath(physicalPath).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private FileEntry read(int slot) {
+        return new FileEntry(readUuid(slot, R_ID),
+                readString(slot, R_NAME),
+                readString(slot, R_EXTENSION),
+                readString(slot, R_PATH));
+    }
+}
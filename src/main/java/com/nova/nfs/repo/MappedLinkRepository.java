@@ -0,0 +1,470 @@
+package com.nova.nfs.repo;
+
+import com.nova.nfs.core.Link;
+import com.nova.nfs.core.LinkType;
+import com.nova.nfs.metrics.Metrics;
+import com.nova.nfs.metrics.Timer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * {@link LinkRepository} sur fichiers mappés (voir {@link MappedCatalog}).
+ * <p>
+ * Les enfants d'un parent forment une liste circulaire doublement chaînée
+ * dans les records eux-mêmes ; la tête est rangée dans l'{@code aux} de
+ * l'entrée d'index du parent (qui existe même si le parent lui-même n'est
+ * pas, ou plus, dans le catalogue). Les links d'un même type sont chaînés de
+ * la même façon, têtes dans l'en-tête, ainsi que les links qui pointent sur
+ * un même FileEntry (tête dans l'{@code aux} de l'entrée d'index du
+ * FileEntry). {@code findChildren} coûte donc O(enfants) sans aucun index sur
+ * le tas.
+ * <p>
+ * Record (128 octets) : état, type, présence parent/cible, id, parentId,
+ * targetFileId, displayName, chaînage frères, chaînage type, chaînage cible
+ * (depuis la version 2), date de mise à la corbeille (version 3), puis une
+ * zone réservée pour de futurs champs.
+ */
+public class MappedLinkRepository extends MappedCatalog implements LinkRepository {
+
+    private static final int VERSION = 3;
+    private static final int RECORD_SIZE = 128;
+
+    private static final Timer SAVE = Metrics.timer("links.save");
+    private static final Timer DELETE = Metrics.timer("links.delete");
+    private static final Timer FIND_CHILDREN = Metrics.timer("links.findChildren");
+
+    private static final int R_TYPE = 1;
+    private static final int R_HAS_PARENT = 2;
+    private static final int R_HAS_TARGET = 3;
+    private static final int R_ID = 8;
+    private static final int R_PARENT = 24;
+    private static final int R_TARGET = 40;
+    private static final int R_NAME = 56;
+    private static final int R_PREV_SIBLING = 68;
+    private static final int R_NEXT_SIBLING = 72;
+    private static final int R_PREV_OF_TYPE = 76;
+    private static final int R_NEXT_OF_TYPE = 80;
+    private static final int R_PREV_OF_TARGET = 84;
+    private static final int R_NEXT_OF_TARGET = 88;
+    private static final int R_TRASHED_AT = 92;
+
+    /** Têtes des listes par type, indexées par code de type (0 = null). */
+    private static final int H_TYPE_HEADS = H_EXTENSION;
+    private static final int TYPE_CODES = 5;
+
+    /** Clé d'index des enfants de « null » (les ROOT). */
+    private static final UUID NULL_PARENT = new UUID(0L, 0L);
+
+    /**
+     * @param base préfixe des fichiers du catalogue, par ex. {@code data/links}
+     */
+    public MappedLinkRepository(Path base, StoreOptions options) {
+        super("MappedLinkRepository", base, VERSION, RECORD_SIZE, options);
+        open();
+    }
+
+    @Override
+    void initHeader(ByteBuffer header) {
+        for (int code = 0; code < TYPE_CODES; code++) {
+            header.putInt(H_TYPE_HEADS + code * 4, NONE);
+        }
+    }
+
+    @Override
+    public Link save(Link link) {
+        long start = Metrics.start();
+        lock.writeLock().lock();
+        try {
+            int slot = index.slot(link.getId());
+            int typeCode = LinkTypeCodes.code(link.getType());
+            if (slot == NONE) {
+                slot = allocateSlot();
+                writeUuid(slot, R_ID, link.getId());
+                records.putByte(slot, R_TYPE, (byte) typeCode);
+                writeNullableUuid(slot, R_HAS_PARENT, R_PARENT, link.getParentId());
+                writeNullableUuid(slot, R_HAS_TARGET, R_TARGET, link.getTargetFileId());
+                writeString(slot, R_NAME, link.getDisplayName(), false);
+                records.putLong(slot, R_TRASHED_AT, link.getTrashedAt());
+                markLive(slot);
+                index.setSlot(link.getId(), slot);
+                attachToParent(slot, link.getParentId());
+                attachToType(slot, typeCode);
+                attachToTarget(slot, link.getTargetFileId());
+            } else {
+                UUID oldParent = readNullableUuid(slot, R_HAS_PARENT, R_PARENT);
+                if (!Objects.equals(oldParent, link.getParentId())) {
+                    detachFromParent(slot, oldParent);
+                    writeNullableUuid(slot, R_HAS_PARENT, R_PARENT, link.getParentId());
+                    attachToParent(slot, link.getParentId());
+                }
+                int oldType = records.getByte(slot, R_TYPE);
+                if (oldType != typeCode) {
+                    detachFromType(slot, oldType);
+                    records.putByte(slot, R_TYPE, (byte) typeCode);
+                    attachToType(slot, typeCode);
+                }
+                UUID oldTarget = readNullableUuid(slot, R_HAS_TARGET, R_TARGET);
+                if (!Objects.equals(oldTarget, link.getTargetFileId())) {
+                    detachFromTarget(slot, oldTarget);
+                    writeNullableUuid(slot, R_HAS_TARGET, R_TARGET, link.getTargetFileId());
+                    attachToTarget(slot, link.getTargetFileId());
+                }
+                writeString(slot, R_NAME, link.getDisplayName(), true);
+                records.putLong(slot, R_TRASHED_AT, link.getTrashedAt());
+            }
+            afterWrite();
+            return link;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save link " + link.getId(), e);
+        } finally {
+            lock.writeLock().unlock();
+            SAVE.stop(start);
+        }
+    }
+
+    @Override
+    public Optional<Link> findById(UUID id) {
+        lock.readLock().lock();
+        try {
+            int slot = index.slot(id);
+            return slot == NONE ? Optional.empty() : Optional.of(read(slot));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Link> findChildren(UUID parentId) {
+        long start = Metrics.start();
+        lock.readLock().lock();
+        try {
+            return readList(index.aux(parentKey(parentId)), R_NEXT_SIBLING);
+        } finally {
+            lock.readLock().unlock();
+            FIND_CHILDREN.stop(start);
+        }
+    }
+
+    @Override
+    public List<Link> findChildren(UUID parentId, Set<LinkType> types) {
+        long start = Metrics.start();
+        lock.readLock().lock();
+        try {
+            List<Link> result = new ArrayList<>();
+            int head = index.aux(parentKey(parentId));
+            if (head == NONE) {
+                return result;
+            }
+            // seuls les enfants du bon type sont décodés
+            int slot = head;
+            do {
+                if (types.contains(LinkTypeCodes.fromCode(records.getByte(slot, R_TYPE)))) {
+                    result.add(read(slot));
+                }
+                slot = records.getInt(slot, R_NEXT_SIBLING);
+            } while (slot != head);
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+            FIND_CHILDREN.stop(start);
+        }
+    }
+
+    @Override
+    public boolean hasChildren(UUID parentId, Set<LinkType> types) {
+        lock.readLock().lock();
+        try {
+            int head = index.aux(parentKey(parentId));
+            if (head == NONE) {
+                return false;
+            }
+            // on ne lit que l'octet de type de chaque enfant
+            int slot = head;
+            do {
+                if (types.contains(LinkTypeCodes.fromCode(records.getByte(slot, R_TYPE)))) {
+                    return true;
+                }
+                slot = records.getInt(slot, R_NEXT_SIBLING);
+            } while (slot != head);
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Link> findByType(LinkType type) {
+        lock.readLock().lock();
+        try {
+            return readList(typeHead(LinkTypeCodes.code(type)), R_NEXT_OF_TYPE);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Link> findByTargetFileId(UUID fileId) {
+        lock.readLock().lock();
+        try {
+            return readList(index.aux(fileId), R_NEXT_OF_TARGET);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int countByTargetFileId(UUID fileId) {
+        lock.readLock().lock();
+        try {
+            int head = index.aux(fileId);
+            if (head == NONE) {
+                return 0;
+            }
+            int count = 0;
+            int slot = head;
+            do {
+                count++;
+                slot = records.getInt(slot, R_NEXT_OF_TARGET);
+            } while (slot != head);
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Link> findAll() {
+        lock.readLock().lock();
+        try {
+            List<Link> result = new ArrayList<>((int) liveCount());
+            long end = highWater();
+            for (int slot = 0; slot < end; slot++) {
+                if (isLive(slot)) {
+                    result.add(read(slot));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(UUID id) {
+        long start = Metrics.start();
+        lock.writeLock().lock();
+        try {
+            int slot = index.slot(id);
+            if (slot == NONE) {
+                return;
+            }
+            detachFromParent(slot, readNullableUuid(slot, R_HAS_PARENT, R_PARENT));
+            detachFromType(slot, records.getByte(slot, R_TYPE));
+            detachFromTarget(slot, readNullableUuid(slot, R_HAS_TARGET, R_TARGET));
+            index.setSlot(id, NONE);
+            freeSlot(slot);
+            afterWrite();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete link " + id, e);
+        } finally {
+            lock.writeLock().unlock();
+            DELETE.stop(start);
+        }
+    }
+
+    @Override
+    public void beginBatch() {
+        lock.writeLock().lock();
+        try {
+            super.beginBatch();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void commitBatch() {
+        lock.writeLock().lock();
+        try {
+            super.commitBatch();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void sync() {
+        lock.readLock().lock();
+        try {
+            force();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            closeStore();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    void rebuildDerived() throws IOException {
+        for (int code = 0; code < TYPE_CODES; code++) {
+            setTypeHead(code, NONE);
+        }
+        long end = highWater();
+        for (int slot = 0; slot < end; slot++) {
+            if (isLive(slot)) {
+                index.setSlot(readUuid(slot, R_ID), slot);
+                attachToParent(slot, readNullableUuid(slot, R_HAS_PARENT, R_PARENT));
+                attachToType(slot, records.getByte(slot, R_TYPE));
+                attachToTarget(slot, readNullableUuid(slot, R_HAS_TARGET, R_TARGET));
+            }
+        }
+    }
+
+    private Link read(int slot) {
+        LinkType type;
+        try {
+            type = LinkTypeCodes.fromCode(records.getByte(slot, R_TYPE));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Link link = new Link(readUuid(slot, R_ID), type, readString(slot, R_NAME));
+        link.setParentId(readNullableUuid(slot, R_HAS_PARENT, R_PARENT));
+        link.setTargetFileId(readNullableUuid(slot, R_HAS_TARGET, R_TARGET));
+        link.setTrashedAt(records.getLong(slot, R_TRASHED_AT));
+        return link;
+    }
+
+    private List<Link> readList(int head, int nextField) {
+        List<Link> result = new ArrayList<>();
+        if (head == NONE) {
+            return result;
+        }
+        int slot = head;
+        do {
+            result.add(read(slot));
+            slot = records.getInt(slot, nextField);
+        } while (slot != head);
+        return result;
+    }
+
+    // ---------- listes circulaires doublement chaînées ----------
+
+    private static UUID parentKey(UUID parentId) {
+        return parentId != null ? parentId : NULL_PARENT;
+    }
+
+    private void attachToParent(int slot, UUID parentId) throws IOException {
+        UUID key = parentKey(parentId);
+        int head = index.aux(key);
+        if (append(slot, head, R_PREV_SIBLING, R_NEXT_SIBLING)) {
+            index.setAux(key, slot);
+        }
+    }
+
+    private void detachFromParent(int slot, UUID parentId) throws IOException {
+        UUID key = parentKey(parentId);
+        int head = index.aux(key);
+        int newHead = unlink(slot, head, R_PREV_SIBLING, R_NEXT_SIBLING);
+        if (newHead != head) {
+            index.setAux(key, newHead);
+        }
+    }
+
+    /** Un link sans cible n'est dans aucune liste. */
+    private void attachToTarget(int slot, UUID fileId) throws IOException {
+        if (fileId == null) {
+            return;
+        }
+        int head = index.aux(fileId);
+        if (append(slot, head, R_PREV_OF_TARGET, R_NEXT_OF_TARGET)) {
+            index.setAux(fileId, slot);
+        }
+    }
+
+    private void detachFromTarget(int slot, UUID fileId) throws IOException {
+        if (fileId == null) {
+            return;
+        }
+        int head = index.aux(fileId);
+        int newHead = unlink(slot, head, R_PREV_OF_TARGET, R_NEXT_OF_TARGET);
+        if (newHead != head) {
+            index.setAux(fileId, newHead);
+        }
+    }
+
+    private void attachToType(int slot, int typeCode) {
+        if (append(slot, typeHead(typeCode), R_PREV_OF_TYPE, R_NEXT_OF_TYPE)) {
+            setTypeHead(typeCode, slot);
+        }
+    }
+
+    private void detachFromType(int slot, int typeCode) {
+        int head = typeHead(typeCode);
+        int newHead = unlink(slot, head, R_PREV_OF_TYPE, R_NEXT_OF_TYPE);
+        if (newHead != head) {
+            setTypeHead(typeCode, newHead);
+        }
+    }
+
+    private int typeHead(int typeCode) {
+        return records.header().getInt(H_TYPE_HEADS + typeCode * 4);
+    }
+
+    private void setTypeHead(int typeCode, int slot) {
+        records.header().putInt(H_TYPE_HEADS + typeCode * 4, slot);
+    }
+
+    /**
+     * Ajoute en queue (l'ordre d'insertion est conservé).
+     *
+     * @return true si la liste était vide et que {@code slot} devient la tête
+     */
+    private boolean append(int slot, int head, int prevField, int nextField) {
+        if (head == NONE) {
+            records.putInt(slot, prevField, slot);
+            records.putInt(slot, nextField, slot);
+            return true;
+        }
+        int tail = records.getInt(head, prevField);
+        records.putInt(tail, nextField, slot);
+        records.putInt(slot, prevField, tail);
+        records.putInt(slot, nextField, head);
+        records.putInt(head, prevField, slot);
+        return false;
+    }
+
+    /**
+     * @return la nouvelle tête de liste
+     */
+    private int unlink(int slot, int head, int prevField, int nextField) {
+        int next = records.getInt(slot, nextField);
+        if (next == slot) {
+            return NONE;
+        }
+        int prev = records.getInt(slot, prevField);
+        records.putInt(prev, nextField, next);
+        records.putInt(next, prevField, prev);
+        return head == slot ? next : head;
+    }
+}
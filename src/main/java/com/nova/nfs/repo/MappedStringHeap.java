@@ -0,0 +1,77 @@
+package com.nova.nfs.repo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Tas de chaînes append-only pour les records mappés : un record ne stocke
+ * que (offset, longueur) et la chaîne n'est décodée qu'à la lecture.
+ * <p>
+ * Une chaîne remplacée (renommage) n'est pas récupérée : le tas ne fait que
+ * grossir, de la taille des noms renommés.
+ */
+final class MappedStringHeap {
+
+    /** Marqueur de longueur pour une chaîne null. */
+    static final int NULL_LENGTH = -1;
+
+    private static final int HEADER_SIZE = 64;
+    private static final int SEGMENT_BYTES = 64 * 1024 * 1024;
+    private static final int H_WRITE_OFFSET = 0;
+
+    private final MappedArea area;
+
+    MappedStringHeap(Path file) throws IOException {
+        this.area = new MappedArea(file, HEADER_SIZE, 1, SEGMENT_BYTES);
+    }
+
+    /**
+     * Écrit une chaîne encodée par {@link #encode(String)} et renvoie son offset.
+     */
+    long append(byte[] utf8) throws IOException {
+        if (utf8.length > SEGMENT_BYTES) {
+            throw new IOException("string too long for mapped heap: " + utf8.length + " bytes");
+        }
+        long offset = area.header().getLong(H_WRITE_OFFSET);
+        // une chaîne ne chevauche jamais deux segments
+        long segmentEnd = (offset / SEGMENT_BYTES + 1) * SEGMENT_BYTES;
+        if (offset + utf8.length > segmentEnd) {
+            offset = segmentEnd;
+        }
+        area.ensureCapacity(offset + utf8.length);
+        if (utf8.length > 0) {
+            ByteBuffer seg = area.segment(offset).duplicate();
+            seg.position(area.offset(offset));
+            seg.put(utf8);
+        }
+        area.header().putLong(H_WRITE_OFFSET, offset + utf8.length);
+        return offset;
+    }
+
+    String read(long offset, int length) {
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        if (length > 0) {
+            ByteBuffer seg = area.segment(offset).duplicate();
+            seg.position(area.offset(offset));
+            seg.get(bytes);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static byte[] encode(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    void force() {
+        area.force();
+    }
+
+    void close() throws IOException {
+        area.close();
+    }
+}
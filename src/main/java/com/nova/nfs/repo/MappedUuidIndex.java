@@ -0,0 +1,290 @@
+package com.nova.nfs.repo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Table de hachage hors tas, mappée sur disque : UUID -> (slot, aux).
+ * <p>
+ * {@code slot} est la position du record de l'élément, {@code aux} une valeur
+ * libre pour le repository (tête de la liste des enfants pour les links).
+ * Une entrée peut n'avoir qu'un {@code aux} : un parent absent qui a encore
+ * des enfants. Adressage ouvert, sondage linéaire et suppression par décalage
+ * arrière (pas de tombstones).
+ * <p>
+ * Pour grossir on écrit une nouvelle génération {@code <base>.idx.<n+1>}
+ * plutôt que de remplacer le fichier : sous Windows un fichier encore mappé
+ * ne peut être ni supprimé ni renommé. Les anciennes générations sont
+ * supprimées à l'ouverture suivante si ce n'était pas possible avant.
+ */
+final class MappedUuidIndex {
+
+    static final int NONE = -1;
+
+    private static final int HEADER_SIZE = 64;
+    private static final int ENTRY_SIZE = 24;
+    private static final int ENTRIES_PER_SEGMENT = 1 << 20;
+    private static final int MIN_CAPACITY = 1 << 12;
+    private static final double MAX_LOAD = 0.7;
+
+    private static final int H_CAPACITY = 0;
+    private static final int H_SIZE = 8;
+
+    private static final int E_MSB = 0;
+    private static final int E_LSB = 8;
+    // stockés +1 : un fichier neuf rempli de zéros = table vide
+    private static final int E_SLOT = 16;
+    private static final int E_AUX = 20;
+
+    private final Path base;
+    private MappedArea area;
+    private int generation;
+    private long capacity;
+    private long mask;
+
+    MappedUuidIndex(Path base) throws IOException {
+        this.base = base;
+        int latest = -1;
+        for (int gen : generations()) {
+            latest = Math.max(latest, gen);
+        }
+        if (latest < 0) {
+            open(0, MIN_CAPACITY);
+        } else {
+            open(latest, 0);
+        }
+        deleteOldGenerations();
+    }
+
+    int slot(UUID key) {
+        long pos = find(key);
+        return pos < 0 ? NONE : area.getInt(pos, E_SLOT) - 1;
+    }
+
+    int aux(UUID key) {
+        long pos = find(key);
+        return pos < 0 ? NONE : area.getInt(pos, E_AUX) - 1;
+    }
+
+    void setSlot(UUID key, int slot) throws IOException {
+        set(key, E_SLOT, slot);
+    }
+
+    void setAux(UUID key, int aux) throws IOException {
+        set(key, E_AUX, aux);
+    }
+
+    long size() {
+        return area.header().getLong(H_SIZE);
+    }
+
+    /**
+     * Repart d'une table vide (reconstruction après un arrêt brutal).
+     */
+    void reset(long expectedEntries) throws IOException {
+        MappedArea old = area;
+        int oldGeneration = generation;
+        open(generation + 1, capacityFor(expectedEntries));
+        retire(old, oldGeneration);
+    }
+
+    void force() {
+        area.force();
+    }
+
+    void close() throws IOException {
+        area.close();
+    }
+
+    private void set(UUID key, int field, int value) throws IOException {
+        long pos = find(key);
+        if (pos < 0) {
+            if (value == NONE) {
+                return;
+            }
+            if (size() + 1 > capacity * MAX_LOAD) {
+                grow();
+            }
+            pos = insert(key);
+        }
+        area.putInt(pos, field, value + 1);
+        if (area.getInt(pos, E_SLOT) == 0 && area.getInt(pos, E_AUX) == 0) {
+            remove(pos);
+        }
+    }
+
+    private long find(UUID key) {
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        long pos = home(msb, lsb);
+        while (!isEmpty(pos)) {
+            if (area.getLong(pos, E_MSB) == msb && area.getLong(pos, E_LSB) == lsb) {
+                return pos;
+            }
+            pos = (pos + 1) & mask;
+        }
+        return -1;
+    }
+
+    private long insert(UUID key) {
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        long pos = home(msb, lsb);
+        while (!isEmpty(pos)) {
+            pos = (pos + 1) & mask;
+        }
+        area.putLong(pos, E_MSB, msb);
+        area.putLong(pos, E_LSB, lsb);
+        area.header().putLong(H_SIZE, size() + 1);
+        return pos;
+    }
+
+    /**
+     * Suppression par décalage arrière : on remonte les entrées suivantes du
+     * cluster qui pourraient sinon devenir introuvables.
+     */
+    private void remove(long pos) {
+        long hole = pos;
+        long j = pos;
+        while (true) {
+            j = (j + 1) & mask;
+            if (isEmpty(j)) {
+                break;
+            }
+            long home = home(area.getLong(j, E_MSB), area.getLong(j, E_LSB));
+            boolean movable = hole <= j
+                    ? (home <= hole || home > j)
+                    : (home <= hole && home > j);
+            if (movable) {
+                copy(j, hole);
+                hole = j;
+            }
+        }
+        area.clear(hole);
+        area.header().putLong(H_SIZE, size() - 1);
+    }
+
+    private void copy(long from, long to) {
+        area.putLong(to, E_MSB, area.getLong(from, E_MSB));
+        area.putLong(to, E_LSB, area.getLong(from, E_LSB));
+        area.putInt(to, E_SLOT, area.getInt(from, E_SLOT));
+        area.putInt(to, E_AUX, area.getInt(from, E_AUX));
+    }
+
+    private boolean isEmpty(long pos) {
+        return area.getInt(pos, E_SLOT) == 0 && area.getInt(pos, E_AUX) == 0;
+    }
+
+    private long home(long msb, long lsb) {
+        long h = msb ^ lsb;
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        return h & mask;
+    }
+
+    private void grow() throws IOException {
+        MappedArea old = area;
+        long oldCapacity = capacity;
+        int oldGeneration = generation;
+        open(generation + 1, capacity * 2);
+        for (long pos = 0; pos < oldCapacity; pos++) {
+            if (old.getInt(pos, E_SLOT) == 0 && old.getInt(pos, E_AUX) == 0) {
+                continue;
+            }
+            long dest = insert(new UUID(old.getLong(pos, E_MSB), old.getLong(pos, E_LSB)));
+            area.putInt(dest, E_SLOT, old.getInt(pos, E_SLOT));
+            area.putInt(dest, E_AUX, old.getInt(pos, E_AUX));
+        }
+        retire(old, oldGeneration);
+    }
+
+    /**
+     * @param newCapacity 0 pour relire la capacité d'un fichier existant
+     */
+    private void open(int gen, long newCapacity) throws IOException {
+        long cap = newCapacity > 0 ? newCapacity : readCapacity(file(gen));
+        boolean fresh = newCapacity > 0 || cap < MIN_CAPACITY || Long.bitCount(cap) != 1;
+        if (fresh) {
+            cap = Math.max(cap, MIN_CAPACITY);
+            cap = Long.highestOneBit(cap - 1) << 1;
+        }
+        MappedArea opened = new MappedArea(file(gen), HEADER_SIZE, ENTRY_SIZE,
+                (int) Math.min(ENTRIES_PER_SEGMENT, cap));
+        if (fresh) {
+            opened.header().putLong(H_CAPACITY, cap);
+            opened.header().putLong(H_SIZE, 0);
+        }
+        opened.ensureCapacity(cap);
+        this.area = opened;
+        this.generation = gen;
+        this.capacity = cap;
+        this.mask = cap - 1;
+    }
+
+    private static long readCapacity(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(8);
+            while (buf.hasRemaining() && ch.read(buf, buf.position()) > 0) {
+                // lecture de l'en-tête
+            }
+            return buf.hasRemaining() ? 0 : buf.getLong(0);
+        }
+    }
+
+    private void retire(MappedArea old, int oldGeneration) throws IOException {
+        area.force();
+        old.close();
+        try {
+            Files.deleteIfExists(file(oldGeneration));
+        } catch (IOException e) {
+            // encore mappé (Windows) : supprimé à la prochaine ouverture
+        }
+    }
+
+    private void deleteOldGenerations() throws IOException {
+        for (int gen : generations()) {
+            if (gen != generation) {
+                try {
+                    Files.deleteIfExists(file(gen));
+                } catch (IOException e) {
+                    System.err.println("Failed to delete old index " + file(gen) + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private int[] generations() throws IOException {
+        Path dir = base.toAbsolutePath().getParent();
+        String prefix = base.getFileName() + ".idx.";
+        if (!Files.isDirectory(dir)) {
+            return new int[0];
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix))
+                    .map(name -> name.substring(prefix.length()))
+                    .filter(suffix -> suffix.chars().allMatch(Character::isDigit) && !suffix.isEmpty())
+                    .mapToInt(Integer::parseInt)
+                    .toArray();
+        }
+    }
+
+    private Path file(int gen) {
+        return base.resolveSibling(base.getFileName() + ".idx." + gen);
+    }
+
+    private static long capacityFor(long entries) {
+        long cap = MIN_CAPACITY;
+        while (entries > cap * MAX_LOAD) {
+            cap <<= 1;
+        }
+        return cap;
+    }
+}
@@ -0,0 +1,73 @@
+package com.nova.nfs.repo;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Lecture / écriture d'un snapshot, élément par élément : on ne matérialise
+ * jamais le fichier entier ni une liste intermédiaire en mémoire.
+ */
+interface SnapshotCodec<T> {
+
+    void read(InputStream in, Consumer<T> sink) throws IOException;
+
+    RecordWriter<T> writer(OutputStream out) throws IOException;
+
+    interface RecordWriter<T> {
+
+        void write(T value) throws IOException;
+
+        /**
+         * Termine le fichier (fin de tableau, trailer...) et flushe.
+         */
+        void finish() throws IOException;
+    }
+
+    /**
+     * Source de records pour {@link #writeFile(Path, Source, boolean)}.
+     */
+    interface Source<T> {
+        void emit(RecordWriter<T> writer) throws IOException;
+    }
+
+    default void readFile(Path file, Consumer<T> sink) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 64 * 1024)) {
+            read(in, sink);
+        }
+    }
+
+    /**
+     * Écrit le snapshot à côté de la cible puis le renomme, pour ne jamais
+     * laisser un fichier à moitié écrit. Avec {@code force} le contenu est
+     * fsyncé avant le rename.
+     */
+    default void writeFile(Path target, Iterable<T> values, boolean force) throws IOException {
+        writeFile(target, writer -> {
+            for (T value : values) {
+                writer.write(value);
+            }
+        }, force);
+    }
+
+    default void writeFile(Path target, Source<T> source, boolean force) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // pas de close sur le stream : il fermerait le channel avant le force
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(ch), 64 * 1024);
+            RecordWriter<T> writer = writer(out);
+            source.emit(writer);
+            writer.finish();
+            if (force) {
+                ch.force(true);
+            }
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,107 @@
+package com.nova.nfs.repo;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Compaction snapshot + journal d'un repository JSON, sur un thread de fond.
+ * Le thread qui mute ne fait que la déclencher ; sous le verrou du
+ * repository on ne fait que mettre le journal de côté
+ * ({@link JsonJournal#rotate()}), et le snapshot est écrit ensuite pendant
+ * que les écritures continuent dans le nouveau journal.
+ * <p>
+ * Le snapshot est pris sans verrou : chaque record y est dans un état
+ * enregistré au moment de la rotation ou après, et le nouveau journal, rejoué
+ * par-dessus, ramène tout à l'état final (opérations idempotentes).
+ */
+final class SnapshotCompactor {
+
+    /**
+     * Nombre minimal d'entrées de journal avant compaction. Au-delà on compacte
+     * dès que le journal dépasse la taille du catalogue : le coût d'un snapshot
+     * est amorti sur au moins autant d'opérations qu'il contient d'éléments.
+     */
+    private static final int COMPACTION_MIN_ENTRIES = 1024;
+    private static final long CLOSE_WAIT_SECONDS = 60;
+
+    interface SnapshotWriter {
+        void write() throws IOException;
+    }
+
+    private final String name;
+    private final ReentrantLock repositoryLock;
+    private final JsonJournal journal;
+    private final SnapshotWriter snapshot;
+    private final ExecutorService executor;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    SnapshotCompactor(String name, ReentrantLock repositoryLock, JsonJournal journal, SnapshotWriter snapshot) {
+        this.name = name;
+        this.repositoryLock = repositoryLock;
+        this.journal = journal;
+        this.snapshot = snapshot;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "nfs-compact-" + name);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Lance une compaction si le journal est assez long et qu'aucune n'est en
+     * cours. Appelé sous le verrou du repository, ne bloque pas.
+     */
+    void maybeCompact(int catalogSize) {
+        if (journal.inBatch() || journal.size() < Math.max(COMPACTION_MIN_ENTRIES, catalogSize)) {
+            return;
+        }
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::compact);
+        } catch (RejectedExecutionException e) {
+            running.set(false); // fermé
+        }
+    }
+
+    /** Attend la compaction en cours. À appeler hors du verrou du repository. */
+    void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(CLOSE_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("Compaction of " + name + " still running at close");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void compact() {
+        try {
+            // le gros de l'attente disque hors verrou : sous le verrou, rotate
+            // n'écrit plus que les derniers records
+            journal.sync();
+            repositoryLock.lock();
+            try {
+                if (journal.inBatch()) {
+                    return; // un batch a commencé depuis : le commit relancera
+                }
+                journal.rotate();
+            } finally {
+                repositoryLock.unlock();
+            }
+            snapshot.write();
+            journal.dropRotated();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to compact " + name + ": " + e.getMessage());
+        } finally {
+            running.set(false);
+        }
+    }
+}
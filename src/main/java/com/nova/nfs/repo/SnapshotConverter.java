@@ -0,0 +1,80 @@
+package com.nova.nfs.repo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Conversion des snapshots entre {@link SnapshotFormat}s, en streaming.
+ * <p>
+ * Usage en ligne de commande :
+ * {@code SnapshotConverter <dataDir> [BINARY|JSON]} convertit
+ * {@code files} et {@code links} vers le format demandé (BINARY par défaut).
+ * Les repositories font la même chose tout seuls au chargement quand le
+ * snapshot n'existe que dans l'autre format.
+ */
+public final class SnapshotConverter {
+
+    private SnapshotConverter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: SnapshotConverter <dataDir> [BINARY|JSON]");
+            System.exit(1);
+        }
+        Path dataDir = Path.of(args[0]);
+        SnapshotFormat target = args.length > 1
+                ? SnapshotFormat.valueOf(args[1].trim().toUpperCase())
+                : SnapshotFormat.BINARY;
+
+        ObjectMapper mapper = new ObjectMapper();
+        Path files = dataDir.resolve("files.json");
+        Path links = dataDir.resolve("links.json");
+        boolean converted = migrate(files, target,
+                target.other().fileCodec(mapper), target.fileCodec(mapper));
+        converted |= migrate(links, target,
+                target.other().linkCodec(mapper), target.linkCodec(mapper));
+        System.out.println(converted ? "Converted to " + target : "Nothing to convert");
+    }
+
+    /**
+     * Si le snapshot de {@code basePath} n'existe pas au format {@code target}
+     * mais existe dans l'autre format, le convertit. L'ancien fichier est
+     * renommé en {@code .migrated} pour ne pas être relu par erreur si on
+     * repasse un jour à l'autre format.
+     */
+    static <T> boolean migrate(Path basePath, SnapshotFormat target,
+                               SnapshotCodec<T> fromCodec, SnapshotCodec<T> toCodec) throws IOException {
+        Path to = target.resolve(basePath);
+        Path from = target.other().resolve(basePath);
+        if (Files.exists(to) || !Files.exists(from)) {
+            return false;
+        }
+        convert(from, fromCodec, to, toCodec);
+        Files.move(from, from.resolveSibling(from.getFileName() + ".migrated"),
+                StandardCopyOption.REPLACE_EXISTING);
+        return true;
+    }
+
+    static <T> void convert(Path from, SnapshotCodec<T> fromCodec,
+                            Path to, SnapshotCodec<T> toCodec) throws IOException {
+        toCodec.writeFile(to, writer -> {
+            try {
+                fromCodec.readFile(from, value -> {
+                    try {
+                        writer.write(value);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }, true);
+    }
+}
@@ -0,0 +1,45 @@
+package com.nova.nfs.repo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nova.nfs.core.FileEntry;
+import com.nova.nfs.core.Link;
+
+import java.nio.file.Path;
+
+/**
+ * Format du snapshot d'un repository. Le journal reste en JSON lignes quel que
+ * soit le format : seul le fichier compacté change.
+ */
+public enum SnapshotFormat {
+    /** JSON indenté, lisible à la main ({@code files.json}). */
+    JSON,
+    /** Binaire versionné et compact ({@code files.bin}), voir {@link BinarySnapshotCodec}. */
+    BINARY;
+
+    /**
+     * Fichier de snapshot pour ce format, dérivé du chemin de base du
+     * repository : {@code links.json} donne {@code links.json} ou {@code links.bin}.
+     */
+    public Path resolve(Path basePath) {
+        if (this == JSON) {
+            return basePath;
+        }
+        String name = basePath.getFileName().toString();
+        if (name.endsWith(".json")) {
+            name = name.substring(0, name.length() - ".json".length());
+        }
+        return basePath.resolveSibling(name + ".bin");
+    }
+
+    SnapshotFormat other() {
+        return this == JSON ? BINARY : JSON;
+    }
+
+    SnapshotCodec<FileEntry> fileCodec(ObjectMapper mapper) {
+        return this == JSON ? new JsonSnapshotCodec<>(mapper, FileEntry.class) : BinarySnapshotCodec.files();
+    }
+
+    SnapshotCodec<Link> linkCodec(ObjectMapper mapper) {
+        return this == JSON ? new JsonSnapshotCodec<>(mapper, Link.class) : BinarySnapshotCodec.links();
+    }
+}
@@ -0,0 +1,11 @@
+package com.nova.nfs.repo;
+
+/**
+ * Implémentation de stockage des repositories.
+ */
+public enum StoreBackend {
+    /** Tout en mémoire, persistance par journal + snapshot ({@code JsonXxxRepository}). */
+    JOURNAL,
+    /** Records à taille fixe mappés hors tas ({@code MappedXxxRepository}). */
+    MAPPED
+}
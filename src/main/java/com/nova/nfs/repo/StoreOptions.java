@@ -0,0 +1,95 @@
+package com.nova.nfs.repo;
+
+import com.nova.nfs.util.SystemProperties;
+
+/**
+ * Réglages de persistance des repositories JSON. Immuable : les {@code withXxx}
+ * renvoient une copie.
+ */
+public final class StoreOptions {
+
+    private final Durability durability;
+    private final long groupCommitDelayMillis;
+    private final int groupCommitMaxBytes;
+    private final SnapshotFormat snapshotFormat;
+    private final StoreBackend backend;
+
+    private StoreOptions(Durability durability, long groupCommitDelayMillis, int groupCommitMaxBytes,
+                         SnapshotFormat snapshotFormat, StoreBackend backend) {
+        this.durability = durability;
+        this.groupCommitDelayMillis = groupCommitDelayMillis;
+        this.groupCommitMaxBytes = groupCommitMaxBytes;
+        this.snapshotFormat = snapshotFormat;
+        this.backend = backend;
+    }
+
+    public static StoreOptions defaults() {
+        return new StoreOptions(Durability.GROUP_COMMIT, 20, 1024 * 1024, SnapshotFormat.JSON,
+                StoreBackend.JOURNAL);
+    }
+
+    /**
+     * Defaults surchargés par {@code -Dnfs.durability=SYNC|GROUP_COMMIT|BEST_EFFORT},
+     * {@code -Dnfs.groupCommitDelayMillis=...}, {@code -Dnfs.snapshotFormat=JSON|BINARY}
+     * et {@code -Dnfs.backend=JOURNAL|MAPPED}.
+     */
+    public static StoreOptions fromSystemProperties() {
+        StoreOptions options = defaults();
+        options = SystemProperties.withEnum(options, "nfs.durability", Durability.class, StoreOptions::withDurability);
+        options = SystemProperties.withLong(options, "nfs.groupCommitDelayMillis", StoreOptions::withGroupCommitDelayMillis);
+        options = SystemProperties.withEnum(options, "nfs.snapshotFormat", SnapshotFormat.class, StoreOptions::withSnapshotFormat);
+        options = SystemProperties.withEnum(options, "nfs.backend", StoreBackend.class, StoreOptions::withBackend);
+        return options;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public long getGroupCommitDelayMillis() {
+        return groupCommitDelayMillis;
+    }
+
+    public int getGroupCommitMaxBytes() {
+        return groupCommitMaxBytes;
+    }
+
+    public SnapshotFormat getSnapshotFormat() {
+        return snapshotFormat;
+    }
+
+    public StoreBackend getBackend() {
+        return backend;
+    }
+
+    public StoreOptions withDurability(Durability durability) {
+        return new StoreOptions(durability, groupCommitDelayMillis, groupCommitMaxBytes, snapshotFormat, backend);
+    }
+
+    /**
+     * Délai max pendant lequel le writer de fond attend d'autres écritures
+     * avant de flusher un groupe.
+     */
+    public StoreOptions withGroupCommitDelayMillis(long groupCommitDelayMillis) {
+        return new StoreOptions(durability, groupCommitDelayMillis, groupCommitMaxBytes, snapshotFormat, backend);
+    }
+
+    /**
+     * Taille à partir de laquelle un groupe est flushé sans attendre le délai.
+     */
+    public StoreOptions withGroupCommitMaxBytes(int groupCommitMaxBytes) {
+        return new StoreOptions(durability, groupCommitDelayMillis, groupCommitMaxBytes, snapshotFormat, backend);
+    }
+
+    /**
+     * Format du snapshot. Un snapshot existant dans l'autre format est converti
+     * au premier chargement.
+     */
+    public StoreOptions withSnapshotFormat(SnapshotFormat snapshotFormat) {
+        return new StoreOptions(durability, groupCommitDelayMillis, groupCommitMaxBytes, snapshotFormat, backend);
+    }
+
+    public StoreOptions withBackend(StoreBackend backend) {
+        return new StoreOptions(durability, groupCommitDelayMillis, groupCommitMaxBytes, snapshotFormat, backend);
+    }
+}
@@ -0,0 +1,51 @@
+package com.nova.nfs.repo;
+
+/**
+ * Regroupe des modifications sur les deux repositories et ne flushe qu'une
+ * fois, au commit.
+ * <pre>
+ * try (UnitOfWork uow = UnitOfWork.begin(fileRepo, linkRepo)) {
+ *     ...
+ *     uow.commit();
+ * }
+ * </pre>
+ * {@link #close()} commite aussi ce qui a été appliqué avant une exception.
+ * Pas de rollback : les modifications sont appliquées en mémoire au fil de
+ * l'eau, comme sans batch. Les fichiers sont commités avant les links pour
+ * qu'un crash entre les deux laisse au pire des fichiers orphelins, que
+ * {@code attachOrphanFilesToRoot} sait rattacher.
+ */
+public final class UnitOfWork implements AutoCloseable {
+
+    private final FileRepository fileRepo;
+    private final LinkRepository linkRepo;
+    private boolean committed;
+
+    private UnitOfWork(FileRepository fileRepo, LinkRepository linkRepo) {
+        this.fileRepo = fileRepo;
+        this.linkRepo = linkRepo;
+    }
+
+    public static UnitOfWork begin(FileRepository fileRepo, LinkRepository linkRepo) {
+        fileRepo.beginBatch();
+        linkRepo.beginBatch();
+        return new UnitOfWork(fileRepo, linkRepo);
+    }
+
+    public void commit() {
+        if (committed) {
+            return;
+        }
+        committed = true;
+        try {
+            fileRepo.commitBatch();
+        } finally {
+            linkRepo.commitBatch();
+        }
+    }
+
+    @Override
+    public void close() {
+        commit();
+    }
+}
@@ -0,0 +1,203 @@
+package com.nova.nfs.service;
+
+import com.nova.nfs.storage.BlobStore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Suppression physique des blobs d'une suppression de dossier : plusieurs
+ * threads, débit plafonné (voir {@link DeleteOptions}).
+ * <p>
+ * Avant de toucher aux métadonnées, le service note les blobs candidats
+ * dans {@code <filesRoot>/.pending-deletes/<uuid>.list} ; la liste n'est
+ * effacée qu'une fois tous ses blobs traités. Au démarrage, {@link #resume()}
+ * rejoue les listes restantes. Un blob n'est supprimé que s'il n'a plus de
+ * référence : rejouer la liste d'une suppression dont les métadonnées n'ont
+ * pas été écrites ne supprime rien.
+ */
+final class BlobDeleter {
+
+    private static final String PENDING_DIR = ".pending-deletes";
+    private static final String LIST_SUFFIX = ".list";
+
+    private final BlobStore blobs;
+    private final DeleteOptions options;
+    private final Path pendingDir;
+    private long nextSlotNanos;
+
+    BlobDeleter(BlobStore blobs, DeleteOptions options) {
+        this.blobs = blobs;
+        this.options = options;
+        this.pendingDir = blobs.getRoot().resolve(PENDING_DIR);
+    }
+
+    /**
+     * Écrit (fsync) la liste des blobs à supprimer.
+     *
+     * @return le fichier de la liste, à passer à {@link #run}
+     */
+    Path record(List<Path> candidates) throws IOException {
+        Files.createDirectories(pendingDir);
+        StringBuilder sb = new StringBuilder();
+        for (Path blob : candidates) {
+            sb.append(blob).append('\n');
+        }
+        Path list = pendingDir.resolve(UUID.randomUUID() + LIST_SUFFIX);
+        Path tmp = list.resolveSibling(list.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ch.write(ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8)));
+            ch.force(true);
+        }
+        Files.move(tmp, list, StandardCopyOption.ATOMIC_MOVE);
+        return list;
+    }
+
+    /**
+     * Supprime les blobs sans référence de {@code candidates}, puis la liste
+     * s'ils ont tous été traités (sinon elle reste pour le prochain
+     * démarrage). Pas d'annulation : les métadonnées sont déjà supprimées.
+     *
+     * @return le nombre de fichiers physiques supprimés
+     */
+    int run(Path list, List<Path> candidates, TaskMonitor monitor) {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger deleted = new AtomicInteger();
+        AtomicBoolean failed = new AtomicBoolean();
+        Runnable worker = () -> {
+            int i;
+            while ((i = next.getAndIncrement()) < candidates.size()) {
+                if (!throttle()) {
+                    failed.set(true);
+                    return;
+                }
+                Path blob = candidates.get(i);
+                try {
+                    boolean exists = Files.exists(blob);
+                    long size = exists ? Files.size(blob) : 0;
+                    if (blobs.deleteIfUnreferenced(blob) && exists) {
+                        deleted.incrementAndGet();
+                        monitor.worked(1, size);
+                    }
+                } catch (IOException e) {
+                    failed.set(true);
+                    System.err.println("Failed to delete file: " + blob + " - " + e.getMessage());
+                }
+            }
+        };
+
+        int threads = Math.min(options.getThreads(), candidates.size());
+        if (threads <= 1) {
+            worker.run();
+        } else {
+            ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "nfs-delete");
+                t.setDaemon(true);
+                return t;
+            });
+            for (int t = 0; t < threads; t++) {
+                pool.execute(worker);
+            }
+            pool.shutdown();
+            try {
+                while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                    // on attend la fin : la liste ne doit pas partir avant
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pool.shutdownNow();
+                failed.set(true);
+            }
+        }
+
+        if (!failed.get()) {
+            try {
+                Files.deleteIfExists(list);
+            } catch (IOException e) {
+                System.err.println("Failed to delete pending list: " + list + " - " + e.getMessage());
+            }
+        }
+        return deleted.get();
+    }
+
+    /**
+     * Rejoue les listes laissées par un arrêt pendant une suppression.
+     *
+     * @return le nombre de fichiers physiques supprimés
+     */
+    int resume() {
+        if (!Files.isDirectory(pendingDir)) {
+            return 0;
+        }
+        List<Path> lists = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(pendingDir)) {
+            for (Path file : stream) {
+                if (file.getFileName().toString().endsWith(LIST_SUFFIX)) {
+                    lists.add(file);
+                } else {
+                    Files.deleteIfExists(file); // liste jamais terminée : rien n'a été supprimé
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to read pending deletes: " + e.getMessage());
+            return 0;
+        }
+        int deleted = 0;
+        for (Path list : lists) {
+            List<Path> candidates = new ArrayList<>();
+            try {
+                for (String line : Files.readAllLines(list, StandardCharsets.UTF_8)) {
+                    if (!line.isEmpty()) {
+                        candidates.add(Paths.get(line));
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to read pending list: " + list + " - " + e.getMessage());
+                continue;
+            }
+            deleted += run(list, candidates, TaskMonitor.NONE);
+        }
+        return deleted;
+    }
+
+    /** @return false si le thread a été interrompu */
+    private boolean throttle() {
+        int rate = options.getMaxFilesPerSecond();
+        if (rate <= 0) {
+            return true;
+        }
+        long slot;
+        synchronized (this) {
+            long now = System.nanoTime();
+            slot = Math.max(nextSlotNanos, now - TimeUnit.SECONDS.toNanos(1));
+            nextSlotNanos = slot + TimeUnit.SECONDS.toNanos(1) / rate;
+        }
+        long wait = slot - System.nanoTime();
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+}
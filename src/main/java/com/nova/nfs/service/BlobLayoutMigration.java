@@ -0,0 +1,179 @@
+package com.nova.nfs.service;
+
+import com.nova.nfs.core.FileEntry;
+import com.nova.nfs.repo.FileRepository;
+import com.nova.nfs.repo.StoreOptions;
+import com.nova.nfs.storage.BlobLayout;
+import com.nova.nfs.storage.BlobStore;
+import com.nova.nfs.util.Bootstrap;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Range les blobs existants selon le {@link BlobLayout} courant et réécrit
+ * {@code FileEntry.physicalPath}.
+ * <p>
+ * En ligne : pour chaque blob, le nouvel emplacement est créé (lien physique
+ * ou copie) avant que les FileEntry ne soient réécrits, et l'ancien n'est
+ * supprimé qu'après. Un lecteur qui a encore l'ancien chemin continue donc à
+ * fonctionner pendant la migration. Les FileEntry sont relus sous le verrou
+ * d'écriture du service au moment de les réécrire : un FileEntry modifié ou
+ * supprimé entre-temps n'est pas écrasé, il est simplement sauté.
+ * <p>
+ * Reprenable : relancer la migration ne refait que ce qui manque. Un
+ * FileEntry déjà au bon endroit est sauté, une cible déjà créée est
+ * réutilisée, et un ancien emplacement resté sur disque (interruption entre
+ * l'écriture du FileEntry et la suppression) est nettoyé s'il n'est plus
+ * référencé.
+ * <p>
+ * Usage en ligne de commande, appli arrêtée :
+ * {@code BlobLayoutMigration <baseDir> [depth]} (base = dossier contenant
+ * {@code data} et {@code files}).
+ */
+public final class BlobLayoutMigration {
+
+    private static final int BATCH_SIZE = 512;
+
+    /** Un FileEntry à faire passer de {@code from} à {@code to}. */
+    private record Move(UUID fileId, Path from, Path to) {
+    }
+
+    private final FileRepository fileRepo;
+    private final BlobStore blobs;
+    private final Lock writeLock;
+
+    /**
+     * @param writeLock tenu pendant la réécriture de chaque batch
+     */
+    BlobLayoutMigration(FileRepository fileRepo, BlobStore blobs, Lock writeLock) {
+        this.fileRepo = fileRepo;
+        this.blobs = blobs;
+        this.writeLock = writeLock;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: BlobLayoutMigration <baseDir> [depth]");
+            System.exit(1);
+        }
+        Path baseDir = Path.of(args[0]);
+        BlobLayout layout = BlobLayout.fromSystemProperties();
+        if (args.length > 1) {
+            layout = layout.withDepth(Integer.parseInt(args[1].trim()));
+        }
+
+        FileRepository fileRepo = Bootstrap.openFileRepository(baseDir.resolve("data"),
+                StoreOptions.fromSystemProperties());
+        try {
+            BlobStore blobs = new BlobStore(baseDir.resolve("files"), layout, fileRepo::countByPhysicalPath);
+            int moved = new BlobLayoutMigration(fileRepo, blobs, new ReentrantLock()).run();
+            System.out.println("Moved " + moved + " file entries to shard depth " + layout.getDepth());
+        } finally {
+            fileRepo.close();
+        }
+    }
+
+    /**
+     * @return le nombre de FileEntry déplacés
+     */
+    int run() {
+        // un blob dédupliqué est partagé : on migre tous ses FileEntry ensemble
+        Map<Path, List<FileEntry>> byPath = new LinkedHashMap<>();
+        for (FileEntry entry : fileRepo.findAll()) {
+            if (entry.getPhysicalPath() != null) {
+                byPath.computeIfAbsent(normalized(entry), k -> new ArrayList<>()).add(entry);
+            }
+        }
+
+        int moved = 0;
+        List<Move> batch = new ArrayList<>();
+        List<Path> retired = new ArrayList<>();
+        for (Map.Entry<Path, List<FileEntry>> group : byPath.entrySet()) {
+            Path current = group.getKey();
+            Path target = blobs.layoutPath(current);
+            if (target.toAbsolutePath().normalize().equals(current)) {
+                removeLeftovers(current, byPath);
+                continue;
+            }
+            try {
+                target = blobs.placeInLayout(current);
+            } catch (IOException e) {
+                System.err.println("Failed to move file: " + current + " - " + e.getMessage());
+                continue;
+            }
+            for (FileEntry entry : group.getValue()) {
+                batch.add(new Move(entry.getId(), current, target));
+            }
+            retired.add(current);
+            if (batch.size() >= BATCH_SIZE) {
+                moved += flush(batch, retired);
+            }
+        }
+        moved += flush(batch, retired);
+        return moved;
+    }
+
+    /**
+     * Les FileEntry sont écrits avant la suppression des anciens fichiers.
+     *
+     * @return le nombre de FileEntry réécrits
+     */
+    private int flush(List<Move> batch, List<Path> retired) {
+        List<FileEntry> updated = new ArrayList<>(batch.size());
+        writeLock.lock();
+        try {
+            for (Move move : batch) {
+                Optional<FileEntry> entry = fileRepo.findById(move.fileId());
+                if (entry.isEmpty() || entry.get().getPhysicalPath() == null
+                        || !normalized(entry.get()).equals(move.from())) {
+                    continue; // supprimé ou détaché entre-temps : on n'y touche pas
+                }
+                entry.get().setPhysicalPath(move.to().toString());
+                updated.add(entry.get());
+            }
+            if (!updated.isEmpty()) {
+                fileRepo.saveAll(updated);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        for (Path old : retired) {
+            delete(old);
+        }
+        batch.clear();
+        retired.clear();
+        return updated.size();
+    }
+
+    private static Path normalized(FileEntry entry) {
+        return Paths.get(entry.getPhysicalPath()).toAbsolutePath().normalize();
+    }
+
+    private void removeLeftovers(Path blob, Map<Path, List<FileEntry>> referenced) {
+        for (Path copy : blobs.otherLayoutCopies(blob)) {
+            if (!referenced.containsKey(copy.toAbsolutePath().normalize())) {
+                delete(copy);
+            }
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            BlobStore.deleteFile(file);
+        } catch (IOException e) {
+            // encore ouvert (Windows) : sera nettoyé au prochain passage
+            System.err.println("Failed to delete file: " + file + " - " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.nova.nfs.service;
+
+import com.nova.nfs.core.Link;
+
+/**
+ * Un résultat de recherche plein texte : un link vers le fichier, son chemin
+ * logique, le score de pertinence et un extrait du contenu.
+ */
+public final class ContentHit {
+
+    private final Link link;
+    private final String path;
+    private final double score;
+    private final String snippet;
+
+    ContentHit(Link link, String path, double score, String snippet) {
+        this.link = link;
+        this.path = path;
+        this.score = score;
+        this.snippet = snippet;
+    }
+
+    public Link getLink() {
+        return link;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public String getSnippet() {
+        return snippet;
+    }
+}
@@ -0,0 +1,56 @@
+package com.nova.nfs.service;
+
+import com.nova.nfs.util.SystemProperties;
+
+/**
+ * Réglages des suppressions de dossiers (effacement des fichiers
+ * physiques). Immuable : les {@code withXxx} renvoient une copie.
+ */
+public final class DeleteOptions {
+
+    private final int threads;
+    private final int maxFilesPerSecond;
+
+    private DeleteOptions(int threads, int maxFilesPerSecond) {
+        this.threads = threads;
+        this.maxFilesPerSecond = maxFilesPerSecond;
+    }
+
+    public static DeleteOptions defaults() {
+        return new DeleteOptions(4, 2000);
+    }
+
+    /**
+     * Defaults surchargés par {@code -Dnfs.deleteThreads=...} et
+     * {@code -Dnfs.deletesPerSecond=...} (0 : pas de limite).
+     */
+    public static DeleteOptions fromSystemProperties() {
+        DeleteOptions options = defaults();
+        options = SystemProperties.withInt(options, "nfs.deleteThreads", DeleteOptions::withThreads);
+        options = SystemProperties.withInt(options, "nfs.deletesPerSecond", DeleteOptions::withMaxFilesPerSecond);
+        return options;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getMaxFilesPerSecond() {
+        return maxFilesPerSecond;
+    }
+
+    /**
+     * Nombre de suppressions physiques simultanées.
+     */
+    public DeleteOptions withThreads(int threads) {
+        return new DeleteOptions(Math.max(1, threads), maxFilesPerSecond);
+    }
+
+    /**
+     * Plafond de fichiers physiques supprimés par seconde, pour ne pas
+     * saturer le disque pendant que l'appli s'en sert (0 : pas de limite).
+     */
+    public DeleteOptions withMaxFilesPerSecond(int maxFilesPerSecond) {
+        return new DeleteOptions(threads, Math.max(0, maxFilesPerSecond));
+    }
+}
@@ -0,0 +1,369 @@
+package com.nova.nfs.service;
+
+import com.nova.nfs.core.FileEntry;
+import com.nova.nfs.core.Link;
+import com.nova.nfs.core.LinkType;
+import com.nova.nfs.metrics.Counter;
+import com.nova.nfs.metrics.Metrics;
+import com.nova.nfs.metrics.Timer;
+import com.nova.nfs.repo.FileRepository;
+import com.nova.nfs.repo.LinkRepository;
+import com.nova.nfs.repo.UnitOfWork;
+import com.nova.nfs.storage.BlobStore;
+
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Import récursif d'un dossier en pipeline :
+ * <ol>
+ *     <li>un thread parcourt l'arborescence et crée les links de dossiers ;</li>
+ *     <li>un pool copie les fichiers dans le {@link BlobStore} ;</li>
+ *     <li>le thread appelant enregistre les FileEntry/links par batchs.</li>
+ * </ol>
+ * Chaque élément parcouru reçoit un numéro d'ordre et l'enregistrement se
+ * fait dans cet ordre : l'arbre obtenu (y compris l'ordre des enfants) est
+ * le même qu'avec l'import séquentiel. Un sémaphore borne le nombre
+ * d'éléments en vol, donc la file de copies et le tampon de réordonnancement.
+ * <p>
+ * Les fichiers sont rangés selon l'{@link ImportMode} ; en {@code MOVE} les
+ * sources ne sont supprimées qu'une fois enregistrées.
+ * <p>
+ * Seul le thread appelant touche aux repositories, batch par batch sous le
+ * verrou d'écriture du service. En cas d'erreur on s'arrête au premier
+ * élément en échec (dans l'ordre de parcours) : ce qui le précède reste
+ * importé, comme en séquentiel, et les blobs copiés pour la suite sont
+ * relâchés. Une annulation ({@link TaskMonitor}) s'arrête de la
+ * même façon, après le dernier batch enregistré.
+ */
+final class DirectoryImporter {
+
+    private static final AtomicInteger RUNS = new AtomicInteger();
+    private static final long CANCEL_POLL_MS = 100;
+
+    private static final Timer FLUSH = Metrics.timer("import.flush");
+    private static final Counter IMPORTED_FILES = Metrics.counter("import.files");
+    private static final Counter IMPORTED_BYTES = Metrics.counter("import.bytes");
+
+    private final FileRepository fileRepo;
+    private final LinkRepository linkRepo;
+    private final BlobStore blobs;
+    private final ImportOptions options;
+    private final Lock writeLock;
+    private final Consumer<List<UUID>> touched;
+    private final Consumer<List<Link>> saved;
+
+    /**
+     * @param writeLock tenu pendant l'écriture de chaque batch
+     * @param touched   prévenu des FileEntry d'un batch avant leur écriture
+     *                  (voir {@link IntegrityCheckpoint})
+     * @param saved     prévenu des links d'un batch une fois écrits
+     */
+    DirectoryImporter(FileRepository fileRepo, LinkRepository linkRepo, BlobStore blobs, ImportOptions options,
+                      Lock writeLock, Consumer<List<UUID>> touched, Consumer<List<Link>> saved) {
+        this.fileRepo = fileRepo;
+        this.linkRepo = linkRepo;
+        this.blobs = blobs;
+        this.options = options;
+        this.writeLock = writeLock;
+        this.touched = touched;
+        this.saved = saved;
+    }
+
+    /**
+     * @return le link du dossier créé sous {@code parentFolderId}
+     */
+    Link importTree(UUID parentFolderId, Path dir, TaskMonitor monitor) throws IOException {
+        return new Run(monitor).execute(parentFolderId, dir);
+    }
+
+    /**
+     * Un élément à enregistrer : un dossier (link seul), un fichier (FileEntry
+     * + link), une erreur ou la fin du parcours.
+     */
+    private static final class Item {
+        final long seq;
+        final FileEntry file;
+        final Link link;
+        final Path source;
+        final IOException error;
+        final long bytes;
+
+        Item(long seq, FileEntry file, Link link, Path source, IOException error) {
+            this(seq, file, link, source, error, 0);
+        }
+
+        Item(long seq, FileEntry file, Link link, Path source, IOException error, long bytes) {
+            this.seq = seq;
+            this.file = file;
+            this.link = link;
+            this.source = source;
+            this.error = error;
+            this.bytes = bytes;
+        }
+
+        boolean isEnd() {
+            return link == null && error == null;
+        }
+    }
+
+    private final class Run {
+        private final int id = RUNS.incrementAndGet();
+        private final Semaphore inFlight = new Semaphore(options.getMaxInFlight());
+        private final BlockingQueue<Item> ready = new LinkedBlockingQueue<>();
+        private final ExecutorService copiers;
+        private final TaskMonitor monitor;
+        private volatile boolean cancelled;
+        private long nextSeq; // uniquement lu/écrit par le walker
+        private long bytes; // octets du batch en cours, thread appelant
+
+        Run(TaskMonitor monitor) {
+            this.monitor = monitor;
+            AtomicInteger threads = new AtomicInteger();
+            this.copiers = Executors.newFixedThreadPool(options.getCopyThreads(), r -> {
+                Thread t = new Thread(r, "nfs-import-" + id + "-copy-" + threads.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        Link execute(UUID parentFolderId, Path dir) throws IOException {
+            Link top = folder(parentFolderId, dir);
+            Thread walker = new Thread(() -> walkAll(top, dir), "nfs-import-" + id + "-walk");
+            walker.setDaemon(true);
+            walker.start();
+            try {
+                register();
+                if (options.getMode().removesSource()) {
+                    removeEmptyDirectories(dir);
+                }
+                return top;
+            } finally {
+                cancelled = true;
+                walker.interrupt();
+                copiers.shutdown();
+                releaseUnregistered(walker);
+            }
+        }
+
+        // ---------- étage 1 : parcours ----------
+
+        private void walkAll(Link top, Path dir) {
+            try {
+                walk(top, dir);
+                ready.add(new Item(nextSeq++, null, null, null, null));
+            } catch (IOException e) {
+                ready.add(new Item(nextSeq++, null, null, null, e));
+            } catch (InterruptedException e) {
+                // annulé par le thread appelant
+            } catch (RuntimeException e) {
+                ready.add(new Item(nextSeq++, null, null, null, new IOException(e)));
+            }
+        }
+
+        private void walk(Link folder, Path dir) throws IOException, InterruptedException {
+            inFlight.acquire();
+            ready.add(new Item(nextSeq++, null, folder, dir, null));
+
+            try (var stream = Files.list(dir)) {
+                for (Path child : stream.toList()) {
+                    if (cancelled || monitor.isCancelled()) {
+                        return;
+                    }
+                    if (Files.isDirectory(child)) {
+                        walk(folder(folder.getId(), child), child);
+                    } else {
+                        inFlight.acquire();
+                        long seq = nextSeq++;
+                        copiers.execute(() -> copy(seq, folder.getId(), child));
+                    }
+                }
+            }
+        }
+
+        // ---------- étage 2 : copies ----------
+
+        private void copy(long seq, UUID parentId, Path source) {
+            if (cancelled || monitor.isCancelled()) {
+                return;
+            }
+            try {
+                String origName = source.getFileName().toString();
+                String extension = NovaFsService.extensionOf(origName);
+                Path blob = options.getMode().store(blobs, source, extension);
+
+                FileEntry entry = new FileEntry(origName, extension, blob.toString());
+                Link fileLink = new Link(LinkType.FILE, origName);
+                fileLink.setParentId(parentId);
+                fileLink.setTargetFileId(entry.getId());
+                ready.add(new Item(seq, entry, fileLink, source, null, Files.size(blob)));
+            } catch (IOException e) {
+                ready.add(new Item(seq, null, null, source, e));
+            } catch (RuntimeException e) {
+                ready.add(new Item(seq, null, null, source, new IOException("Failed to import " + source, e)));
+            }
+        }
+
+        // ---------- étage 3 : enregistrement ----------
+
+        private void register() throws IOException {
+            Map<Long, Item> pending = new HashMap<>();
+            List<FileEntry> files = new ArrayList<>();
+            List<Link> links = new ArrayList<>();
+            List<Path> sources = new ArrayList<>();
+            long expected = 0;
+            try {
+                while (true) {
+                    if (monitor.isCancelled()) {
+                        throw new CancellationException("Import cancelled");
+                    }
+                    // attente bornée : une annulation doit être vue même si
+                    // plus rien n'arrive (copies abandonnées)
+                    Item item = ready.poll(CANCEL_POLL_MS, TimeUnit.MILLISECONDS);
+                    if (item == null) {
+                        continue;
+                    }
+                    pending.put(item.seq, item);
+                    while ((item = pending.remove(expected)) != null) {
+                        if (item.error != null) {
+                            pending.put(item.seq, item); // relâché avec le reste
+                            throw item.error;
+                        }
+                        if (item.isEnd()) {
+                            return;
+                        }
+                        if (item.file != null) {
+                            files.add(item.file);
+                            sources.add(item.source);
+                            bytes += item.bytes;
+                        }
+                        links.add(item.link);
+                        expected++;
+                        inFlight.release();
+                        if (links.size() >= options.getBatchSize()) {
+                            flush(files, links, sources);
+                        }
+                    }
+                    // rien d'autre de prêt : on n'attend pas pour enregistrer
+                    if (ready.isEmpty()) {
+                        flush(files, links, sources);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Import interrupted", e);
+            } finally {
+                flush(files, links, sources);
+                ready.addAll(pending.values());
+            }
+        }
+
+        private void flush(List<FileEntry> files, List<Link> links, List<Path> sources) {
+            if (links.isEmpty()) {
+                return;
+            }
+            int fileCount = files.size();
+            long flushedBytes = bytes;
+            long start = Metrics.start();
+            writeLock.lock();
+            try {
+                touched.accept(files.stream().map(FileEntry::getId).toList());
+                try (UnitOfWork uow = UnitOfWork.begin(fileRepo, linkRepo)) {
+                    fileRepo.saveAll(files);
+                    linkRepo.saveAll(links);
+                    uow.commit();
+                }
+                for (FileEntry file : files) {
+                    blobs.recorded(Path.of(file.getPhysicalPath()));
+                }
+                saved.accept(List.copyOf(links));
+            } finally {
+                writeLock.unlock();
+            }
+            FLUSH.stop(start);
+            // en MOVE, une source n'est supprimée qu'une fois enregistrée
+            if (options.getMode().removesSource()) {
+                for (Path source : sources) {
+                    try {
+                        Files.deleteIfExists(source);
+                    } catch (IOException e) {
+                        System.err.println("Failed to remove imported source: " + source + " - " + e.getMessage());
+                    }
+                }
+            }
+            files.clear();
+            links.clear();
+            sources.clear();
+            bytes = 0;
+            monitor.worked(fileCount, flushedBytes);
+            IMPORTED_FILES.add(fileCount);
+            IMPORTED_BYTES.add(flushedBytes);
+        }
+
+        /**
+         * Après un arrêt anticipé : les blobs copiés pour des éléments qui ne
+         * seront jamais enregistrés ne doivent pas garder de référence.
+         */
+        private void releaseUnregistered(Thread walker) {
+            try {
+                walker.join();
+                copiers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (Item item : ready) {
+                if (item.file == null) {
+                    continue;
+                }
+                try {
+                    blobs.release(Path.of(item.file.getPhysicalPath()));
+                } catch (IOException e) {
+                    System.err.println("Failed to release blob: " + item.file.getPhysicalPath() + " - " + e.getMessage());
+                }
+            }
+            ready.clear();
+        }
+
+        /**
+         * Fin d'un import en MOVE : les dossiers source vidés sont supprimés
+         * (ceux qui contiennent encore quelque chose sont laissés).
+         */
+        private void removeEmptyDirectories(Path dir) {
+            try (var stream = Files.walk(dir)) {
+                List<Path> dirs = stream.filter(Files::isDirectory).toList();
+                for (int i = dirs.size() - 1; i >= 0; i--) {
+                    try {
+                        Files.deleteIfExists(dirs.get(i));
+                    } catch (DirectoryNotEmptyException e) {
+                        // pas vide : laissé en place
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to remove imported directory: " + dir + " - " + e.getMessage());
+            }
+        }
+
+        private Link folder(UUID parentId, Path dir) {
+            Link folder = new Link(LinkType.FOLDER, dir.getFileName().toString());
+            folder.setParentId(parentId);
+            return folder;
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package com.nova.nfs.service;
+
+import com.nova.nfs.core.Link;
+import com.nova.nfs.core.LinkType;
+import com.nova.nfs.metrics.Counter;
+import com.nova.nfs.metrics.Metrics;
+import com.nova.nfs.metrics.Timer;
+import com.nova.nfs.storage.BlobStore;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ramasse-miettes de fond (voir {@link GcOptions}). Un passage enchaîne :
+ * <ol>
+ *     <li>la corbeille : suppression définitive des entrées plus vieilles
+ *     que la rétention, puis des plus anciennes tant que la corbeille
+ *     dépasse sa taille max ;</li>
+ *     <li>les FileEntry qu'aucun link ne référence ;</li>
+ *     <li>les fichiers physiques qu'aucun FileEntry ne référence.</li>
+ * </ol>
+ * Le travail est découpé en tranches de quelques millisecondes séparées
+ * par une pause, sur un thread de basse priorité : l'UI et les imports ne
+ * voient que des écritures courtes. Le parcours de la corbeille (dates,
+ * tailles) et celui des FileEntry avancent aussi par tranches, et une grosse
+ * entrée de corbeille est supprimée par lots de {@value #PURGE_BATCH_LINKS}
+ * links, le contenu avant les dossiers.
+ * <p>
+ * Rien n'est fait par défaut : le ramasse-miettes et la purge de la
+ * corbeille sont à activer (voir {@link GcOptions#defaults()}).
+ * <p>
+ * Un FileEntry ou un blob orphelin n'est supprimé qu'au passage suivant
+ * celui qui l'a vu orphelin, et s'il l'est toujours : un import en cours
+ * écrit le fichier, puis le FileEntry, puis le link, et passe donc par ces
+ * états transitoires.
+ */
+public final class GarbageCollector implements AutoCloseable {
+
+    private static final Timer CYCLE = Metrics.timer("gc.cycle");
+    private static final Counter TRASH_PURGED = Metrics.counter("gc.trashPurged");
+    private static final Counter ORPHAN_FILES = Metrics.counter("gc.orphanFiles");
+    private static final Counter ORPHAN_BLOBS = Metrics.counter("gc.orphanBlobs");
+
+    private static final long NO_DEADLINE = Long.MIN_VALUE;
+    private static final int RECLAIM_BATCH = 256;
+    private static final int PURGE_BATCH_LINKS = 10_000;
+    private static final long SHUTDOWN_WAIT_SECONDS = 30;
+
+    private enum Phase { IDLE, TRASH_SCAN, TRASH, FILES, BLOBS }
+
+    /** Entrée de la corbeille vue par le parcours, avec sa taille. */
+    private static final class TrashEntry {
+        final Link link;
+        long bytes;
+
+        TrashEntry(Link link) {
+            this.link = link;
+        }
+    }
+
+    private final NovaFsService nfs;
+    private final GcOptions options;
+    private ScheduledExecutorService executor;
+
+    private Phase phase = Phase.IDLE;
+    private long nextCycleNanos;
+    private long cycleStart;
+
+    private final Deque<Link> trashToScan = new ArrayDeque<>();
+    private final List<TrashEntry> scannedTrash = new ArrayList<>();
+    /** Links restant à mesurer sous la dernière entrée de {@link #scannedTrash}. */
+    private final Deque<Link> sizing = new ArrayDeque<>();
+    private final Deque<Link> purgeQueue = new ArrayDeque<>();
+
+    private Iterator<UUID> fileIds = Collections.emptyIterator();
+    private Set<UUID> suspectFiles = new HashSet<>();
+    private Set<UUID> nextSuspectFiles = new HashSet<>();
+    private final List<UUID> reclaimBatch = new ArrayList<>();
+
+    private final Deque<Path> blobDirs = new ArrayDeque<>();
+    private Set<Path> suspectBlobs = new HashSet<>();
+    private Set<Path> nextSuspectBlobs = new HashSet<>();
+
+    public GarbageCollector(NovaFsService nfs, GcOptions options) {
+        this.nfs = nfs;
+        this.options = options;
+    }
+
+    /**
+     * Démarre le thread de fond ; le premier passage a lieu après un
+     * intervalle. Sans effet si l'intervalle est 0.
+     */
+    public synchronized void start() {
+        if (options.getIntervalSeconds() <= 0 || executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "nfs-gc");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        nextCycleNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.getIntervalSeconds());
+        executor.scheduleWithFixedDelay(this::tick, options.getPauseMillis(), options.getPauseMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Termine le passage en cours (ou en fait un) sans découpage, dans le
+     * thread appelant.
+     */
+    public synchronized void collectNow() {
+        if (phase == Phase.IDLE) {
+            beginCycle();
+        }
+        step(NO_DEADLINE);
+    }
+
+    /** Arrête le thread de fond (à appeler avant {@link NovaFsService#close()}). */
+    @Override
+    public void close() {
+        ScheduledExecutorService running;
+        synchronized (this) {
+            running = executor;
+            executor = null;
+        }
+        if (running == null) {
+            return;
+        }
+        running.shutdown();
+        try {
+            if (!running.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("Garbage collector still running at shutdown");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void tick() {
+        // une exception sortie d'ici arrêterait les passages suivants
+        try {
+            synchronized (this) {
+                if (phase == Phase.IDLE) {
+                    if (System.nanoTime() - nextCycleNanos < 0) {
+                        return;
+                    }
+                    beginCycle();
+                }
+                step(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.getSliceMillis()));
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Failed to collect garbage: " + e.getMessage());
+            synchronized (this) {
+                endCycle();
+            }
+        }
+    }
+
+    /** Avance jusqu'à la fin du passage ou de la tranche. */
+    private void step(long deadline) {
+        while (phase != Phase.IDLE) {
+            boolean sliceOver = switch (phase) {
+                case TRASH_SCAN -> scanTrash(deadline);
+                case TRASH -> purgeTrash(deadline);
+                case FILES -> reclaimFiles(deadline);
+                case BLOBS -> reclaimBlobs(deadline);
+                case IDLE -> false;
+            };
+            if (sliceOver) {
+                return;
+            }
+            switch (phase) {
+                case TRASH_SCAN -> beginPurge();
+                case TRASH -> beginFiles();
+                case FILES -> beginBlobs();
+                default -> endCycle();
+            }
+        }
+    }
+
+    private static boolean expired(long deadline) {
+        return deadline != NO_DEADLINE && System.nanoTime() - deadline >= 0;
+    }
+
+    private void beginCycle() {
+        cycleStart = Metrics.start();
+        if (options.getTrashRetentionDays() > 0 || options.getMaxTrashBytes() > 0) {
+            beginTrashScan();
+        } else {
+            beginFiles();
+        }
+    }
+
+    private void endCycle() {
+        phase = Phase.IDLE;
+        trashToScan.clear();
+        scannedTrash.clear();
+        sizing.clear();
+        purgeQueue.clear();
+        fileIds = Collections.emptyIterator();
+        reclaimBatch.clear();
+        blobDirs.clear();
+        suspectFiles = nextSuspectFiles;
+        nextSuspectFiles = new HashSet<>();
+        suspectBlobs = nextSuspectBlobs;
+        nextSuspectBlobs = new HashSet<>();
+        nextCycleNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(Math.max(1, options.getIntervalSeconds()));
+        CYCLE.stop(cycleStart);
+    }
+
+    // ---------- corbeille ----------
+
+    private void beginTrashScan() {
+        phase = Phase.TRASH_SCAN;
+        trashToScan.addAll(nfs.getChildren(nfs.getTrashLinkId()));
+    }
+
+    /**
+     * Date les entrées qui n'en ont pas et, si la taille de la corbeille est
+     * plafonnée, mesure chacune : un link par itération.
+     *
+     * @return true si la tranche est finie avant le parcours
+     */
+    private boolean scanTrash(long deadline) {
+        boolean measure = options.getMaxTrashBytes() > 0;
+        while (!trashToScan.isEmpty() || !sizing.isEmpty()) {
+            if (expired(deadline)) {
+                return true;
+            }
+            if (sizing.isEmpty()) {
+                Link entry = trashToScan.poll();
+                if (entry.getTrashedAt() == 0) {
+                    Optional<Link> stamped = nfs.stampTrashedNow(entry.getId());
+                    if (stamped.isEmpty()) {
+                        continue; // sortie de la corbeille entre-temps
+                    }
+                    entry = stamped.get();
+                }
+                scannedTrash.add(new TrashEntry(entry));
+                if (measure) {
+                    sizing.add(entry);
+                }
+                continue;
+            }
+            Link link = sizing.poll();
+            if (link.getType() == LinkType.FILE) {
+                Optional<Path> blob = nfs.getFileForFileLink(link).map(f -> Paths.get(f.getPhysicalPath()));
+                if (blob.isPresent()) {
+                    try {
+                        scannedTrash.get(scannedTrash.size() - 1).bytes += Files.size(blob.get());
+                    } catch (IOException e) {
+                        // fichier manquant : ne compte pas
+                    }
+                }
+            } else {
+                sizing.addAll(nfs.getChildren(link.getId()));
+            }
+        }
+        return false;
+    }
+
+    /** File de suppression, du plus ancien au plus récent. */
+    private void beginPurge() {
+        phase = Phase.TRASH;
+        scannedTrash.sort(Comparator.comparingLong(entry -> entry.link.getTrashedAt()));
+        long cutoff = options.getTrashRetentionDays() > 0
+                ? System.currentTimeMillis() - TimeUnit.DAYS.toMillis(options.getTrashRetentionDays())
+                : Long.MIN_VALUE;
+        long maxBytes = options.getMaxTrashBytes();
+        long total = 0;
+        for (TrashEntry entry : scannedTrash) {
+            total += entry.bytes;
+        }
+        for (TrashEntry entry : scannedTrash) {
+            boolean tooOld = entry.link.getTrashedAt() < cutoff;
+            boolean overBudget = maxBytes > 0 && total > maxBytes;
+            if (!tooOld && !overBudget) {
+                break;
+            }
+            purgeQueue.add(entry.link);
+            total -= entry.bytes;
+        }
+        scannedTrash.clear();
+    }
+
+    /**
+     * Un lot de {@value #PURGE_BATCH_LINKS} links au plus par itération ;
+     * l'entrée quitte la file une fois supprimée.
+     *
+     * @return true si la tranche est finie avant la file
+     */
+    private boolean purgeTrash(long deadline) {
+        while (!purgeQueue.isEmpty()) {
+            if (expired(deadline)) {
+                return true;
+            }
+            Link planned = purgeQueue.peek();
+            // restaurée ou supprimée depuis le calcul de la file
+            Optional<Link> current = nfs.findLink(planned.getId());
+            if (current.isEmpty() || !nfs.getTrashLinkId().equals(current.get().getParentId())
+                    || current.get().getTrashedAt() != planned.getTrashedAt()) {
+                purgeQueue.poll();
+                continue;
+            }
+            try {
+                nfs.deletePermanently(planned.getId(), PURGE_BATCH_LINKS, TaskMonitor.NONE);
+                if (nfs.findLink(planned.getId()).isEmpty()) {
+                    purgeQueue.poll();
+                    TRASH_PURGED.increment();
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                purgeQueue.poll();
+                System.err.println("Failed to purge trash entry " + planned.getDisplayName() + ": "
+                        + e.getMessage());
+            }
+        }
+        return false;
+    }
+
+    // ---------- FileEntry orphelins ----------
+
+    private void beginFiles() {
+        phase = Phase.FILES;
+        fileIds = nfs.fileIds();
+    }
+
+    private boolean reclaimFiles(long deadline) {
+        while (fileIds.hasNext()) {
+            if (expired(deadline)) {
+                flushReclaimBatch();
+                return true;
+            }
+            UUID fileId = fileIds.next();
+            if (!nfs.isOrphanFile(fileId)) {
+                continue;
+            }
+            if (suspectFiles.contains(fileId)) {
+                reclaimBatch.add(fileId);
+                if (reclaimBatch.size() >= RECLAIM_BATCH) {
+                    flushReclaimBatch();
+                }
+            } else {
+                nextSuspectFiles.add(fileId);
+            }
+        }
+        flushReclaimBatch();
+        return false;
+    }
+
+    private void flushReclaimBatch() {
+        if (!reclaimBatch.isEmpty()) {
+            ORPHAN_FILES.add(nfs.reclaimOrphanFiles(reclaimBatch));
+            reclaimBatch.clear();
+        }
+    }
+
+    // ---------- fichiers physiques orphelins ----------
+
+    private void beginBlobs() {
+        phase = Phase.BLOBS;
+        blobDirs.add(nfs.blobStore().getRoot());
+    }
+
+    /** Un répertoire du store par itération. */
+    private boolean reclaimBlobs(long deadline) {
+        BlobStore blobs = nfs.blobStore();
+        while (!blobDirs.isEmpty()) {
+            if (expired(deadline)) {
+                return true;
+            }
+            Path dir = blobDirs.poll();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path file : stream) {
+                    String name = file.getFileName().toString();
+                    if (name.startsWith(".") || name.endsWith(".tmp")) {
+                        continue; // suppressions en attente, copies en cours
+                    }
+                    if (Files.isDirectory(file)) {
+                        blobDirs.add(file);
+                    } else if (blobs.refCount(file) == 0) {
+                        if (!suspectBlobs.contains(file)) {
+                            nextSuspectBlobs.add(file);
+                        } else if (blobs.deleteIfUnreferenced(file)) {
+                            ORPHAN_BLOBS.increment();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to scan blob directory " + dir + ": " + e.getMessage());
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,113 @@
+package com.nova.nfs.service;
+
+import com.nova.nfs.util.SystemProperties;
+
+/**
+ * Réglages du {@link GarbageCollector}. Immuable : les {@code withXxx}
+ * renvoient une copie.
+ */
+public final class GcOptions {
+
+    private final long intervalSeconds;
+    private final int trashRetentionDays;
+    private final long maxTrashBytes;
+    private final long sliceMillis;
+    private final long pauseMillis;
+
+    private GcOptions(long intervalSeconds, int trashRetentionDays, long maxTrashBytes,
+                      long sliceMillis, long pauseMillis) {
+        this.intervalSeconds = intervalSeconds;
+        this.trashRetentionDays = trashRetentionDays;
+        this.maxTrashBytes = maxTrashBytes;
+        this.sliceMillis = sliceMillis;
+        this.pauseMillis = pauseMillis;
+    }
+
+    /**
+     * Tout désactivé : ni passage de fond ni purge de la corbeille, qui
+     * supprimerait des données de l'utilisateur sans qu'il l'ait demandé.
+     * Une fois l'intervalle activé, les orphelins sont ramassés ; la
+     * corbeille n'est purgée que si une rétention ou une taille max est
+     * fixée.
+     */
+    public static GcOptions defaults() {
+        return new GcOptions(0, 0, 0, 20, 200);
+    }
+
+    /**
+     * Defaults surchargés par {@code -Dnfs.gcIntervalSeconds=...} (0 :
+     * désactivé), {@code -Dnfs.trashRetentionDays=...},
+     * {@code -Dnfs.trashMaxBytes=...}, {@code -Dnfs.gcSliceMillis=...} et
+     * {@code -Dnfs.gcPauseMillis=...}.
+     */
+    public static GcOptions fromSystemProperties() {
+        GcOptions options = defaults();
+        options = SystemProperties.withLong(options, "nfs.gcIntervalSeconds", GcOptions::withIntervalSeconds);
+        options = SystemProperties.withInt(options, "nfs.trashRetentionDays", GcOptions::withTrashRetentionDays);
+        options = SystemProperties.withLong(options, "nfs.trashMaxBytes", GcOptions::withMaxTrashBytes);
+        options = SystemProperties.withLong(options, "nfs.gcSliceMillis", GcOptions::withSliceMillis);
+        options = SystemProperties.withLong(options, "nfs.gcPauseMillis", GcOptions::withPauseMillis);
+        return options;
+    }
+
+    public long getIntervalSeconds() {
+        return intervalSeconds;
+    }
+
+    public int getTrashRetentionDays() {
+        return trashRetentionDays;
+    }
+
+    public long getMaxTrashBytes() {
+        return maxTrashBytes;
+    }
+
+    public long getSliceMillis() {
+        return sliceMillis;
+    }
+
+    public long getPauseMillis() {
+        return pauseMillis;
+    }
+
+    /**
+     * Délai entre la fin d'un passage et le début du suivant (0 : pas de
+     * ramasse-miettes).
+     */
+    public GcOptions withIntervalSeconds(long intervalSeconds) {
+        return new GcOptions(Math.max(0, intervalSeconds), trashRetentionDays, maxTrashBytes,
+                sliceMillis, pauseMillis);
+    }
+
+    /**
+     * Âge au-delà duquel une entrée de la corbeille est supprimée
+     * définitivement (0 : pas de limite d'âge).
+     */
+    public GcOptions withTrashRetentionDays(int trashRetentionDays) {
+        return new GcOptions(intervalSeconds, Math.max(0, trashRetentionDays), maxTrashBytes,
+                sliceMillis, pauseMillis);
+    }
+
+    /**
+     * Taille max de la corbeille : au-delà, les entrées les plus anciennes
+     * sont supprimées (0 : pas de limite de taille).
+     */
+    public GcOptions withMaxTrashBytes(long maxTrashBytes) {
+        return new GcOptions(intervalSeconds, trashRetentionDays, Math.max(0, maxTrashBytes),
+                sliceMillis, pauseMillis);
+    }
+
+    /**
+     * Durée de travail d'une tranche, suivie d'une pause de
+     * {@link #getPauseMillis()}.
+     */
+    public GcOptions withSliceMillis(long sliceMillis) {
+        return new GcOptions(intervalSeconds, trashRetentionDays, maxTrashBytes,
+                Math.max(1, sliceMillis), pauseMillis);
+    }
+
+    public GcOptions withPauseMillis(long pauseMillis) {
+        return new GcOptions(intervalSeconds, trashRetentionDays, maxTrashBytes,
+                sliceMillis, Math.max(1, pauseMillis));
+    }
+}
@@ -0,0 +1,46 @@
+package com.nova.nfs.service;
+
+import com.nova.nfs.storage.BlobStore;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Façon de ranger les fichiers importés dans le stockage NFS.
+ */
+public enum ImportMode {
+
+    /**
+     * Copie adressée par contenu (dédupliquée) : un contenu déjà présent n'est
+     * que lu. Les gros fichiers nouveaux sont copiés par {@code transferTo},
+     * sans passer par le tas Java.
+     */
+    COPY,
+
+    /**
+     * Lien physique vers la source : ni copie ni lecture. La source et le
+     * fichier NFS partagent leurs octets, modifier l'un modifie l'autre.
+     * Retombe sur {@link #COPY} si le lien est impossible (autre volume...).
+     */
+    HARD_LINK,
+
+    /**
+     * Ingestion : comme {@link #HARD_LINK}, puis la source est supprimée une
+     * fois le fichier enregistré dans NFS. Entre deux volumes cela revient à
+     * une copie suivie de la suppression de la source.
+     */
+    MOVE;
+
+    /**
+     * Range {@code source} et renvoie le blob obtenu. En {@link #MOVE} la
+     * source n'est pas encore supprimée : c'est à faire après
+     * l'enregistrement, pour ne rien perdre si l'import échoue entre-temps.
+     */
+    Path store(BlobStore blobs, Path source, String extension) throws IOException {
+        return this == COPY ? blobs.put(source, extension) : blobs.link(source, extension);
+    }
+
+    boolean removesSource() {
+        return this == MOVE;
+    }
+}
@@ -0,0 +1,84 @@
+package com.nova.nfs.service;
+
+import com.nova.nfs.util.SystemProperties;
+
+/**
+ * Réglages des imports. Immuable : les {@code withXxx} renvoient
+ * une copie.
+ */
+public final class ImportOptions {
+
+    private final int copyThreads;
+    private final int maxInFlight;
+    private final int batchSize;
+    private final ImportMode mode;
+
+    private ImportOptions(int copyThreads, int maxInFlight, int batchSize, ImportMode mode) {
+        this.copyThreads = copyThreads;
+        this.maxInFlight = maxInFlight;
+        this.batchSize = batchSize;
+        this.mode = mode;
+    }
+
+    public static ImportOptions defaults() {
+        return new ImportOptions(Math.max(2, Runtime.getRuntime().availableProcessors()), 256, 512,
+                ImportMode.COPY);
+    }
+
+    /**
+     * Defaults surchargés par {@code -Dnfs.importThreads=...},
+     * {@code -Dnfs.importMaxInFlight=...}, {@code -Dnfs.importBatchSize=...} et
+     * {@code -Dnfs.importMode=COPY|HARD_LINK|MOVE}.
+     */
+    public static ImportOptions fromSystemProperties() {
+        ImportOptions options = defaults();
+        options = SystemProperties.withInt(options, "nfs.importThreads", ImportOptions::withCopyThreads);
+        options = SystemProperties.withInt(options, "nfs.importMaxInFlight", ImportOptions::withMaxInFlight);
+        options = SystemProperties.withInt(options, "nfs.importBatchSize", ImportOptions::withBatchSize);
+        options = SystemProperties.withEnum(options, "nfs.importMode", ImportMode.class, ImportOptions::withMode);
+        return options;
+    }
+
+    public int getCopyThreads() {
+        return copyThreads;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public ImportMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Nombre de copies simultanées. 1 revient à un import séquentiel (le
+     * parcours reste dans son propre thread).
+     */
+    public ImportOptions withCopyThreads(int copyThreads) {
+        return new ImportOptions(Math.max(1, copyThreads), maxInFlight, batchSize, mode);
+    }
+
+    /**
+     * Nombre max d'éléments parcourus mais pas encore enregistrés : borne la
+     * file des copies et le tampon de réordonnancement.
+     */
+    public ImportOptions withMaxInFlight(int maxInFlight) {
+        return new ImportOptions(copyThreads, Math.max(1, maxInFlight), batchSize, mode);
+    }
+
+    /**
+     * Nombre max d'enregistrements par batch de repository.
+     */
+    public ImportOptions withBatchSize(int batchSize) {
+        return new ImportOptions(copyThreads, maxInFlight, Math.max(1, batchSize), mode);
+    }
+
+    public ImportOptions withMode(ImportMode mode) {
+        return new ImportOptions(copyThreads, maxInFlight, batchSize, mode);
+    }
+}
@@ -0,0 +1,230 @@
+package com.nova.nfs.service;
+
+import com.nova.nfs.repo.Durability;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Évite le scan de cohérence complet au démarrage.
+ * <p>
+ * Liens et FileEntry vivent dans deux repositories écrits l'un après l'autre :
+ * seul un arrêt brutal entre les deux peut laisser un link sans FileEntry ou
+ * un FileEntry sans link. Avant chaque écriture qui touche à ce lien, le
+ * service note l'id du FileEntry concerné dans {@code checkpoint.touched}.
+ * <p>
+ * {@code checkpoint} contient {@code clean <génération>} après un arrêt
+ * propre, {@code dirty <génération>} pendant que l'appli tourne :
+ * <ul>
+ *     <li>clean : rien à vérifier ;</li>
+ *     <li>dirty : on ne vérifie que les ids notés depuis le dernier
+ *     checkpoint ;</li>
+ *     <li>absent : on ne sait rien, scan complet.</li>
+ * </ul>
+ * Un checkpoint intermédiaire (repositories synchronisés puis journal des ids
+ * vidé) est pris quand le journal grossit trop.
+ * <p>
+ * Un id noté doit être sur disque avant l'écriture qu'il couvre : les
+ * repositories appellent {@link #forceTouched()} juste avant chacun de leurs
+ * fsyncs (un par opération en {@code SYNC}, un par groupe en
+ * {@code GROUP_COMMIT}). Le journal des ids n'est donc forcé que lorsqu'une
+ * écriture va devenir durable, jamais à chaque id.
+ */
+final class IntegrityCheckpoint {
+
+    /** Au-delà, on prend un checkpoint pour borner le journal des ids. */
+    static final int MAX_TOUCHED = 64 * 1024;
+
+    private static final String CLEAN = "clean";
+    private static final String DIRTY = "dirty";
+    private static final int RECORD_SIZE = 16;
+
+    /** État lu au démarrage. */
+    enum State { CLEAN, DIRTY, UNKNOWN }
+
+    private final Path markerFile;
+    private final Path touchedFile;
+    private final boolean forceWrites;
+    private long generation;
+    private FileChannel touched;
+    private long touchedCount;
+    /** Ids écrits depuis le dernier {@link #forceTouched()}. */
+    private boolean unforced;
+
+    IntegrityCheckpoint(Path dir, Durability durability) {
+        this.markerFile = dir.resolve("checkpoint");
+        this.touchedFile = dir.resolve("checkpoint.touched");
+        // en BEST_EFFORT rien n'est forcé, pas même les repositories
+        this.forceWrites = durability != Durability.BEST_EFFORT;
+    }
+
+    State readState() {
+        try {
+            if (!Files.exists(markerFile)) {
+                return State.UNKNOWN;
+            }
+            String[] parts = Files.readString(markerFile, StandardCharsets.US_ASCII).trim().split(" ");
+            generation = parts.length > 1 ? Long.parseLong(parts[1]) : 0;
+            if (CLEAN.equals(parts[0])) {
+                return State.CLEAN;
+            }
+            return DIRTY.equals(parts[0]) && Files.exists(touchedFile) ? State.DIRTY : State.UNKNOWN;
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Failed to read checkpoint: " + e.getMessage());
+            return State.UNKNOWN;
+        }
+    }
+
+    /**
+     * Ids notés depuis le dernier checkpoint (un enregistrement tronqué par
+     * un crash en fin de fichier est ignoré).
+     */
+    Set<UUID> readTouched() throws IOException {
+        Set<UUID> ids = new LinkedHashSet<>();
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(touchedFile));
+        while (buf.remaining() >= RECORD_SIZE) {
+            ids.add(new UUID(buf.getLong(), buf.getLong()));
+        }
+        return ids;
+    }
+
+    /**
+     * Début de session : journal des ids vide, marqueur à dirty. À appeler
+     * une fois la récupération terminée.
+     */
+    void open() throws IOException {
+        // tant que le nouveau marqueur n'est pas écrit, l'ancien « clean » ne
+        // doit pas survivre à un échec
+        Files.deleteIfExists(markerFile);
+        Files.createDirectories(touchedFile.getParent());
+        touched = FileChannel.open(touchedFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        touched.force(true);
+        touchedCount = 0;
+        writeMarker(DIRTY);
+    }
+
+    boolean isOpen() {
+        return touched != null;
+    }
+
+    synchronized void touch(UUID fileId) {
+        if (fileId != null) {
+            touchAll(Set.of(fileId));
+        }
+    }
+
+    synchronized void touchAll(Collection<UUID> fileIds) {
+        if (touched == null || fileIds.isEmpty()) {
+            return;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(fileIds.size() * RECORD_SIZE);
+        for (UUID id : fileIds) {
+            if (id != null) {
+                buf.putLong(id.getMostSignificantBits());
+                buf.putLong(id.getLeastSignificantBits());
+            }
+        }
+        buf.flip();
+        try {
+            while (buf.hasRemaining()) {
+                touched.write(buf);
+            }
+            unforced = true;
+            touchedCount += fileIds.size();
+        } catch (IOException e) {
+            // sans trace fiable on retombera sur le scan complet
+            System.err.println("Failed to write checkpoint: " + e.getMessage());
+            deleteMarker();
+        }
+    }
+
+    /**
+     * Rend durables les ids notés jusqu'ici. Appelé par les repositories
+     * juste avant chaque fsync (voir {@code FileRepository.setBeforeForce}) :
+     * une écriture sur disque n'y arrive jamais avant l'id qui la couvre.
+     */
+    synchronized void forceTouched() {
+        if (touched == null || !unforced || !forceWrites) {
+            return;
+        }
+        try {
+            touched.force(false);
+            unforced = false;
+        } catch (IOException e) {
+            System.err.println("Failed to write checkpoint: " + e.getMessage());
+            deleteMarker();
+        }
+    }
+
+    synchronized boolean needsCheckpoint() {
+        return touched != null && touchedCount >= MAX_TOUCHED;
+    }
+
+    /**
+     * Checkpoint intermédiaire : l'appelant a rendu durables toutes les
+     * écritures des repositories, les ids notés jusqu'ici sont inutiles.
+     */
+    synchronized void checkpoint() {
+        if (touched == null) {
+            return;
+        }
+        try {
+            touched.truncate(0);
+            touched.position(0);
+            touched.force(true);
+            touchedCount = 0;
+            unforced = false;
+            generation++;
+            writeMarker(DIRTY);
+        } catch (IOException e) {
+            System.err.println("Failed to write checkpoint: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Arrêt propre : à appeler une fois les repositories fermés.
+     */
+    synchronized void close() {
+        if (touched == null) {
+            return;
+        }
+        try {
+            touched.truncate(0);
+            touched.close();
+            touched = null;
+            generation++;
+            writeMarker(CLEAN);
+        } catch (IOException e) {
+            System.err.println("Failed to write checkpoint: " + e.getMessage());
+        }
+    }
+
+    private void writeMarker(String state) throws IOException {
+        Path tmp = markerFile.resolveSibling(markerFile.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ch.write(ByteBuffer.wrap((state + " " + generation + "\n").getBytes(StandardCharsets.US_ASCII)));
+            ch.force(true);
+        }
+        Files.move(tmp, markerFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void deleteMarker() {
+        try {
+            Files.deleteIfExists(markerFile);
+        } catch (IOException e) {
+            System.err.println("Failed to delete checkpoint: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.nova.nfs.service;
+
+import com.nova.nfs.core.Link;
+
+import java.util.UUID;
+
+/**
+ * Modification d'un link publiée par {@link NovaFsService} (voir
+ * {@link LinkChangeListener}). Le link porté est une copie : il décrit l'état
+ * juste après l'écriture (juste avant pour {@link Kind#DELETED}).
+ */
+public final class LinkChange {
+
+    public enum Kind {
+        CREATED,
+        MOVED,
+        RENAMED,
+        /** écriture brute via {@link NovaFsService#saveLink} : ancien parent inconnu */
+        UPDATED,
+        DELETED
+    }
+
+    private final Kind kind;
+    private final Link link;
+    private final UUID oldParentId;
+    private final UUID newParentId;
+
+    private LinkChange(Kind kind, Link link, UUID oldParentId, UUID newParentId) {
+        this.kind = kind;
+        this.link = link;
+        this.oldParentId = oldParentId;
+        this.newParentId = newParentId;
+    }
+
+    static LinkChange created(Link link) {
+        return new LinkChange(Kind.CREATED, link.copy(), null, link.getParentId());
+    }
+
+    static LinkChange moved(Link link, UUID oldParentId) {
+        return new LinkChange(Kind.MOVED, link.copy(), oldParentId, link.getParentId());
+    }
+
+    static LinkChange renamed(Link link) {
+        return new LinkChange(Kind.RENAMED, link.copy(), link.getParentId(), link.getParentId());
+    }
+
+    static LinkChange updated(Link link) {
+        return new LinkChange(Kind.UPDATED, link.copy(), null, link.getParentId());
+    }
+
+    static LinkChange deleted(Link link) {
+        return new LinkChange(Kind.DELETED, link.copy(), link.getParentId(), null);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Link getLink() {
+        return link;
+    }
+
+    public UUID getLinkId() {
+        return link.getId();
+    }
+
+    /** Parent avant la modification (null pour CREATED et UPDATED). */
+    public UUID getOldParentId() {
+        return oldParentId;
+    }
+
+    /** Parent après la modification (null pour DELETED). */
+    public UUID getNewParentId() {
+        return newParentId;
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + link.getId() + " " + oldParentId + " -> " + newParentId;
+    }
+}
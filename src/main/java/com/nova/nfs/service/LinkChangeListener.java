@@ -0,0 +1,16 @@
+package com.nova.nfs.service;
+
+import java.util.List;
+
+/**
+ * Abonné aux modifications de links de {@link NovaFsService}.
+ * <p>
+ * Appelé sur le thread qui a fait l'écriture, une fois l'écriture faite ;
+ * un import ou une réparation livre tous ses changements d'un batch en un
+ * seul appel.
+ */
+@FunctionalInterface
+public interface LinkChangeListener {
+
+    void onChanges(List<LinkChange> changes);
+}
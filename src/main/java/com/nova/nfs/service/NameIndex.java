@@ -0,0 +1,302 @@
+package com.nova.nfs.service;
+
+import com.nova.nfs.core.FileEntry;
+import com.nova.nfs.core.Link;
+import com.nova.nfs.core.LinkType;
+import com.nova.nfs.repo.FileRepository;
+import com.nova.nfs.repo.LinkRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Index de recherche sur {@code Link.displayName} et l'extension du
+ * FileEntry ciblé :
+ * <ul>
+ *     <li>préfixe : noms triés ({@link TreeMap}) ;</li>
+ *     <li>sous-chaîne : trigrammes -> links, on part de la liste la plus
+ *     courte puis on vérifie le nom (moins de 3 caractères : parcours des
+ *     noms) ;</li>
+ *     <li>extension : extension -> links.</li>
+ * </ul>
+ * Chaque link indexé reçoit un numéro ; un link modifié reçoit un nouveau
+ * numéro et l'ancien devient une entrée morte, ignorée à la lecture et
+ * purgée quand elles deviennent majoritaires. Construit au premier appel,
+ * tenu à jour ensuite par les {@link LinkChange} du service.
+ */
+final class NameIndex {
+
+    private static final int MIN_COMPACT = 1024;
+
+    /** Liste d'entiers croissants (numéros de links). */
+    private static final class Postings {
+        int[] data = new int[2];
+        int size;
+
+        void add(int ordinal) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = ordinal;
+        }
+    }
+
+    private final LinkRepository linkRepo;
+    private final FileRepository fileRepo;
+    private boolean built;
+
+    private UUID[] ids = new UUID[0];
+    private String[] names = new String[0];
+    private String[] extensions = new String[0];
+    private int size;
+    private int dead;
+    private final Map<UUID, Integer> ordinals = new HashMap<>();
+    private final TreeMap<String, Postings> byName = new TreeMap<>();
+    private final Map<Long, Postings> trigrams = new HashMap<>();
+    private final Map<String, Postings> byExtension = new HashMap<>();
+
+    NameIndex(LinkRepository linkRepo, FileRepository fileRepo) {
+        this.linkRepo = linkRepo;
+        this.fileRepo = fileRepo;
+    }
+
+    /**
+     * Ids des links qui répondent à {@code query}, du rang {@code offset} au
+     * rang {@code offset + limit} inclus (un de plus pour savoir s'il y a une
+     * suite).
+     */
+    synchronized List<UUID> search(SearchQuery query, int offset, int limit) {
+        ensureBuilt();
+        List<UUID> result = new ArrayList<>();
+        if (query.isEmpty()) {
+            return result;
+        }
+        Matcher matcher = new Matcher(query, offset, limit + 1, result);
+        String text = query.getText();
+        switch (query.getMode()) {
+            case PREFIX -> {
+                String to = text + Character.MAX_VALUE;
+                for (Postings postings : byName.subMap(text, true, to, false).values()) {
+                    if (!matcher.scan(postings)) {
+                        break;
+                    }
+                }
+            }
+            case SUBSTRING -> {
+                Postings shortest = text.length() >= 3 ? shortestTrigramList(text) : null;
+                if (shortest != null) {
+                    matcher.scan(shortest);
+                } else if (text.length() < 3) {
+                    for (int ord = 0; ord < size && matcher.offer(ord); ord++) {
+                        // offer fait le travail
+                    }
+                }
+            }
+            case ANY -> {
+                Postings postings = byExtension.get(query.getExtension());
+                if (postings != null) {
+                    matcher.scan(postings);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Tient l'index à jour (ignoré tant qu'il n'est pas construit). */
+    synchronized void onChanges(List<LinkChange> changes) {
+        if (!built) {
+            return;
+        }
+        for (LinkChange change : changes) {
+            if (change.getKind() == LinkChange.Kind.DELETED) {
+                remove(change.getLinkId());
+            } else {
+                put(change.getLink(), null);
+            }
+        }
+        if (dead > MIN_COMPACT && dead > size / 2) {
+            compact();
+        }
+    }
+
+    // ---------- requêtes ----------
+
+    private final class Matcher {
+        final SearchQuery query;
+        final List<UUID> result;
+        final int max;
+        int skip;
+
+        Matcher(SearchQuery query, int offset, int max, List<UUID> result) {
+            this.query = query;
+            this.skip = offset;
+            this.max = max;
+            this.result = result;
+        }
+
+        /** @return false quand la page est pleine */
+        boolean scan(Postings postings) {
+            for (int i = 0; i < postings.size; i++) {
+                if (!offer(postings.data[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean offer(int ord) {
+            String name = names[ord];
+            if (name == null || !matches(ord, name)) {
+                return true;
+            }
+            if (skip > 0) {
+                skip--;
+                return true;
+            }
+            result.add(ids[ord]);
+            return result.size() < max;
+        }
+
+        private boolean matches(int ord, String name) {
+            String text = query.getText();
+            boolean nameOk = switch (query.getMode()) {
+                case PREFIX -> name.startsWith(text);
+                case SUBSTRING -> name.contains(text);
+                case ANY -> true;
+            };
+            return nameOk && (query.getExtension() == null || query.getExtension().equals(extensions[ord]));
+        }
+    }
+
+    private Postings shortestTrigramList(String text) {
+        Postings shortest = null;
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            Postings postings = trigrams.get(trigram(text, i));
+            if (postings == null) {
+                return new Postings(); // un trigramme absent : aucun résultat
+            }
+            if (shortest == null || postings.size < shortest.size) {
+                shortest = postings;
+            }
+        }
+        return shortest;
+    }
+
+    // ---------- construction / mises à jour ----------
+
+    private void ensureBuilt() {
+        if (built) {
+            return;
+        }
+        Map<UUID, String> fileExtensions = new HashMap<>();
+        for (FileEntry file : fileRepo.findAll()) {
+            fileExtensions.put(file.getId(), file.getExtension());
+        }
+        for (Link link : linkRepo.findAll()) {
+            put(link, link.getTargetFileId() != null ? fileExtensions.get(link.getTargetFileId()) : null);
+        }
+        built = true;
+    }
+
+    /**
+     * @param extension extension du FileEntry si l'appelant la connaît déjà,
+     *                  sinon elle est reprise de l'entrée précédente ou lue
+     */
+    private void put(Link link, String extension) {
+        if (link.getType() == LinkType.ROOT) {
+            return;
+        }
+        String name = normalize(link.getDisplayName());
+        Integer previous = ordinals.get(link.getId());
+        if (previous != null) {
+            if (name.equals(names[previous])) {
+                return; // déplacement : le chemin est calculé à la lecture
+            }
+            if (extension == null) {
+                extension = extensions[previous];
+            }
+            kill(previous);
+        } else if (extension == null && link.getTargetFileId() != null) {
+            extension = fileRepo.findById(link.getTargetFileId()).map(FileEntry::getExtension).orElse(null);
+        }
+        add(link.getId(), name, extension == null ? null : extension.toLowerCase(Locale.ROOT));
+    }
+
+    private void remove(UUID linkId) {
+        Integer previous = ordinals.remove(linkId);
+        if (previous != null) {
+            kill(previous);
+        }
+    }
+
+    private void kill(int ord) {
+        names[ord] = null;
+        ids[ord] = null;
+        extensions[ord] = null;
+        dead++;
+    }
+
+    private void add(UUID id, String name, String extension) {
+        if (size == ids.length) {
+            int capacity = Math.max(16, size * 2);
+            ids = Arrays.copyOf(ids, capacity);
+            names = Arrays.copyOf(names, capacity);
+            extensions = Arrays.copyOf(extensions, capacity);
+        }
+        int ord = size++;
+        ids[ord] = id;
+        names[ord] = name;
+        extensions[ord] = extension;
+        ordinals.put(id, ord);
+
+        byName.computeIfAbsent(name, k -> new Postings()).add(ord);
+        if (extension != null && !extension.isEmpty()) {
+            byExtension.computeIfAbsent(extension, k -> new Postings()).add(ord);
+        }
+        Set<Long> seen = new HashSet<>();
+        for (int i = 0; i + 3 <= name.length(); i++) {
+            long key = trigram(name, i);
+            if (seen.add(key)) {
+                trigrams.computeIfAbsent(key, k -> new Postings()).add(ord);
+            }
+        }
+    }
+
+    /** Renumérote les entrées vivantes et reconstruit les listes. */
+    private void compact() {
+        UUID[] oldIds = Arrays.copyOf(ids, size);
+        String[] oldNames = Arrays.copyOf(names, size);
+        String[] oldExtensions = Arrays.copyOf(extensions, size);
+        int oldSize = size;
+        ids = new UUID[0];
+        names = new String[0];
+        extensions = new String[0];
+        size = 0;
+        dead = 0;
+        ordinals.clear();
+        byName.clear();
+        trigrams.clear();
+        byExtension.clear();
+        for (int ord = 0; ord < oldSize; ord++) {
+            if (oldIds[ord] != null) {
+                add(oldIds[ord], oldNames[ord], oldExtensions[ord]);
+            }
+        }
+    }
+
+    private static String normalize(String displayName) {
+        return displayName == null ? "" : displayName.toLowerCase(Locale.ROOT);
+    }
+
+    private static long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+}
@@ -3,32 +3,124 @@ package com.nova.nfs.service;
 import com.nova.nfs.core.FileEntry;
 import com.nova.nfs.core.Link;
 import com.nova.nfs.core.LinkType;
+import com.nova.nfs.fulltext.ContentIndex;
+import com.nova.nfs.fulltext.ContentIndexOptions;
+import com.nova.nfs.metrics.Counter;
+import com.nova.nfs.metrics.Metrics;
+import com.nova.nfs.metrics.Timer;
+import com.nova.nfs.repo.Durability;
 import com.nova.nfs.repo.FileRepository;
 import com.nova.nfs.repo.LinkRepository;
+import com.nova.nfs.repo.UnitOfWork;
+import com.nova.nfs.storage.BlobLayout;
+import com.nova.nfs.storage.BlobStore;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.*;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class NovaFsService {
 
+    private static final Set<LinkType> FOLDER_TYPES = EnumSet.of(LinkType.FOLDER, LinkType.TRASH);
+
+    private static final Timer IMPORT_FILE = Metrics.timer("service.importFile");
+    private static final Timer IMPORT_DIRECTORY = Metrics.timer("service.importDirectory");
+    private static final Counter IMPORTED_FILES = Metrics.counter("import.files");
+    private static final Counter IMPORTED_BYTES = Metrics.counter("import.bytes");
+    private static final Timer RESOLVE_PATH = Metrics.timer("service.resolvePath");
+    private static final Timer SEARCH = Metrics.timer("service.search");
+    private static final Timer SEARCH_CONTENT = Metrics.timer("service.searchContent");
+    private static final Timer MOVE = Metrics.timer("service.move");
+    private static final Timer RENAME = Metrics.timer("service.rename");
+    private static final Timer DELETE = Metrics.timer("service.delete");
+    private static final Timer DELETE_TREE = Metrics.timer("service.deleteTree");
+    private static final Timer CLEANUP = Metrics.timer("service.cleanupDanglingFileLinks");
+    private static final Timer EXPORT_FILE = Metrics.timer("export.file");
+    private static final Counter EXPORTED_FILES = Metrics.counter("export.files");
+    private static final Counter EXPORTED_BYTES = Metrics.counter("export.bytes");
+
+    /** Tranche d'un transfert : avancement et annulation entre deux tranches. */
+    private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+
     private final FileRepository fileRepo;
     private final LinkRepository linkRepo;
     private final Path filesRootDir;
+    private final BlobStore blobs;
+    private final BlobDeleter blobDeleter;
+    private final ImportOptions importOptions;
+    private final PathCache paths;
+    private final NameIndex names;
+    private final List<LinkChangeListener> listeners = new CopyOnWriteArrayList<>();
     private final UUID rootLinkId;
     private final UUID trashLinkId;
+    /**
+     * Sérialise les écritures du service (UI, imports, ramasse-miettes,
+     * daemon) : une opération relit sous ce verrou ce qu'elle modifie, et un
+     * checkpoint ne passe jamais entre l'écriture d'un FileEntry et celle de
+     * son link. Copies et suppressions de fichiers physiques se font hors
+     * verrou.
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+    /** null tant que {@link #recoverIntegrity} n'a pas été appelé */
+    private IntegrityCheckpoint checkpoint;
+    /** null tant que {@link #openContentIndex} n'a pas été appelé */
+    private volatile ContentIndex contentIndex;
+    /** Fermées par {@link #close()} après les repositories. */
+    private final List<AutoCloseable> closeAfter = new CopyOnWriteArrayList<>();
 
     public NovaFsService(FileRepository fileRepo,
                          LinkRepository linkRepo,
                          Path filesRootDir,
                          UUID rootLinkId,
                          UUID trashLinkId) {
+        this(fileRepo, linkRepo, filesRootDir, rootLinkId, trashLinkId, ImportOptions.defaults());
+    }
+
+    public NovaFsService(FileRepository fileRepo,
+                         LinkRepository linkRepo,
+                         Path filesRootDir,
+                         UUID rootLinkId,
+                         UUID trashLinkId,
+                         ImportOptions importOptions) {
+        this(fileRepo, linkRepo, filesRootDir, rootLinkId, trashLinkId, importOptions, BlobLayout.defaults());
+    }
+
+    public NovaFsService(FileRepository fileRepo,
+                         LinkRepository linkRepo,
+                         Path filesRootDir,
+                         UUID rootLinkId,
+                         UUID trashLinkId,
+                         ImportOptions importOptions,
+                         BlobLayout blobLayout) {
+        this(fileRepo, linkRepo, filesRootDir, rootLinkId, trashLinkId, importOptions, blobLayout,
+                DeleteOptions.defaults());
+    }
+
+    public NovaFsService(FileRepository fileRepo,
+                         LinkRepository linkRepo,
+                         Path filesRootDir,
+                         UUID rootLinkId,
+                         UUID trashLinkId,
+                         ImportOptions importOptions,
+                         BlobLayout blobLayout,
+                         DeleteOptions deleteOptions) {
         this.fileRepo = fileRepo;
         this.linkRepo = linkRepo;
         this.filesRootDir = filesRootDir;
         this.rootLinkId = rootLinkId;
         this.trashLinkId = trashLinkId;
+        this.importOptions = importOptions;
+        this.paths = new PathCache(linkRepo);
+        this.names = new NameIndex(linkRepo, fileRepo);
+        addChangeListener(names::onChanges);
+        this.blobs = new BlobStore(filesRootDir, blobLayout, fileRepo::countByPhysicalPath);
+        this.blobDeleter = new BlobDeleter(blobs, deleteOptions);
 
         try {
             Files.createDirectories(filesRootDir);
@@ -37,6 +129,86 @@ public class NovaFsService {
         }
     }
 
+    /**
+     * Flushe et ferme les repositories (à appeler à l'arrêt de l'appli).
+     * L'arrêt est marqué propre : le prochain démarrage sautera la
+     * vérification de cohérence.
+     */
+    public void close() {
+        if (contentIndex != null) {
+            try {
+                contentIndex.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close content index: " + e.getMessage());
+            }
+        }
+        writeLock.lock();
+        try {
+            if (checkpoint != null) {
+                verifyTouchedFiles();
+            }
+            try {
+                fileRepo.close();
+            } finally {
+                linkRepo.close();
+            }
+            if (checkpoint != null) {
+                checkpoint.close();
+            }
+        } finally {
+            writeLock.unlock();
+            for (AutoCloseable resource : closeAfter) {
+                try {
+                    resource.close();
+                } catch (Exception e) {
+                    System.err.println("Failed to close " + resource + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * {@code resource} sera fermée par {@link #close()}, une fois les
+     * repositories fermés (par ex. le verrou du catalogue).
+     */
+    public void closeAfterRepositories(AutoCloseable resource) {
+        closeAfter.add(resource);
+    }
+
+    /**
+     * Abonne {@code listener} aux créations, déplacements, renommages et
+     * suppressions de links faits par ce service.
+     */
+    public void addChangeListener(LinkChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(LinkChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Ouvre l'index plein texte de {@code indexDir} : le contenu des fichiers
+     * créés ensuite est indexé en tâche de fond, et les fichiers déjà
+     * présents mais absents de l'index (premier lancement, arrêt brutal) sont
+     * rattrapés de la même façon.
+     */
+    public void openContentIndex(Path indexDir, ContentIndexOptions options) throws IOException {
+        ContentIndex index = ContentIndex.open(indexDir, options, fileId -> fileRepo.findById(fileId)
+                .map(entry -> Paths.get(entry.getPhysicalPath())));
+        contentIndex = index;
+        addChangeListener(changes -> {
+            for (LinkChange change : changes) {
+                Link link = change.getLink();
+                if (change.getKind() == LinkChange.Kind.CREATED
+                        && link.getType() == LinkType.FILE && link.getTargetFileId() != null) {
+                    index.enqueue(link.getTargetFileId());
+                }
+            }
+        });
+        index.reconcile(fileRepo::findAllIds);
+    }
+
     public UUID getRootLinkId() {
         return rootLinkId;
     }
@@ -50,49 +222,243 @@ public class NovaFsService {
     public Link createFolder(UUID parentId, String name) {
         Link folder = new Link(LinkType.FOLDER, name);
         folder.setParentId(parentId);
-        return linkRepo.save(folder);
+        writeLock.lock();
+        try {
+            return createLink(folder);
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     public Link createManagedFileWithLink(UUID parentFolderLinkId,
                                           String displayName,
                                           String extension) throws IOException {
-        String fileName = UUID.randomUUID().toString() + "." + extension;
-        Path dest = filesRootDir.resolve(fileName);
-        Files.createFile(dest);
+        Path dest = blobs.createEmpty(extension);
 
         FileEntry entry = new FileEntry(displayName, extension, dest.toString());
-        fileRepo.save(entry);
-
         Link fileLink = new Link(LinkType.FILE, displayName);
         fileLink.setParentId(parentFolderLinkId);
         fileLink.setTargetFileId(entry.getId());
-        return linkRepo.save(fileLink);
+        writeLock.lock();
+        try {
+            touchFile(entry.getId());
+            fileRepo.save(entry);
+            blobs.recorded(dest);
+            Link saved = createLink(fileLink);
+            checkpointIfNeeded();
+            return saved;
+        } finally {
+            writeLock.unlock();
+        }
     }
 
+    /**
+     * Importe {@code sourcePath} selon le {@link ImportMode} configuré. En
+     * copie, le stockage est adressé par contenu : des octets déjà importés
+     * ne sont pas recopiés.
+     */
     public Link importExistingFile(UUID parentFolderLinkId, Path sourcePath) throws IOException {
-        String origName = sourcePath.getFileName().toString();
-        String extension = "";
-        int idx = origName.lastIndexOf('.');
-        if (idx != -1 && idx < origName.length() - 1) {
-            extension = origName.substring(idx + 1);
-        }
+        return importExistingFile(parentFolderLinkId, sourcePath, TaskMonitor.NONE);
+    }
 
-        String newFileName = UUID.randomUUID().toString();
-        if (!extension.isEmpty()) {
-            newFileName += "." + extension;
+    /**
+     * Comme {@link #importExistingFile(UUID, Path)}, avec suivi : une
+     * annulation n'est prise en compte qu'avant la copie.
+     */
+    public Link importExistingFile(UUID parentFolderLinkId, Path sourcePath, TaskMonitor monitor) throws IOException {
+        if (monitor.isCancelled()) {
+            throw new CancellationException("Import cancelled");
         }
+        long start = Metrics.start();
+        String origName = sourcePath.getFileName().toString();
+        String extension = extensionOf(origName);
 
-        Path dest = filesRootDir.resolve(newFileName);
-        Files.createDirectories(filesRootDir);
-        Files.copy(sourcePath, dest, StandardCopyOption.REPLACE_EXISTING);
+        Path dest = importOptions.getMode().store(blobs, sourcePath, extension);
 
         FileEntry entry = new FileEntry(origName, extension, dest.toString());
-        fileRepo.save(entry);
-
         Link fileLink = new Link(LinkType.FILE, origName);
         fileLink.setParentId(parentFolderLinkId);
         fileLink.setTargetFileId(entry.getId());
-        return linkRepo.save(fileLink);
+        writeLock.lock();
+        try {
+            touchFile(entry.getId());
+            fileRepo.save(entry);
+            blobs.recorded(dest);
+            createLink(fileLink);
+            checkpointIfNeeded();
+        } finally {
+            writeLock.unlock();
+        }
+
+        if (importOptions.getMode().removesSource()) {
+            Files.deleteIfExists(sourcePath);
+        }
+        long size = Files.size(dest);
+        monitor.worked(1, size);
+        IMPORT_FILE.stop(start);
+        IMPORTED_FILES.increment();
+        IMPORTED_BYTES.add(size);
+        return fileLink;
+    }
+
+    static String extensionOf(String fileName) {
+        int idx = fileName.lastIndexOf('.');
+        if (idx != -1 && idx < fileName.length() - 1) {
+            return fileName.substring(idx + 1);
+        }
+        return "";
+    }
+
+    /**
+     * Renvoie le FileEntry d'un link FILE, prêt à être ouvert en lecture par
+     * une appli externe : un blob adressé par contenu reste partagé, protégé
+     * en écriture sur disque.
+     */
+    public Optional<FileEntry> prepareFileForView(Link link) {
+        Optional<FileEntry> opt = getFileForFileLink(link);
+        if (opt.isPresent() && opt.get().getPhysicalPath() != null) {
+            blobs.protect(Paths.get(opt.get().getPhysicalPath()));
+        }
+        return opt;
+    }
+
+    /**
+     * Renvoie le FileEntry d'un link FILE, prêt à être ouvert en écriture :
+     * un blob partagé ou adressé par contenu est d'abord détaché vers un
+     * fichier propre à ce FileEntry. La copie éventuelle se fait hors verrou
+     * (à appeler hors du thread JavaFX) ; le verrou n'est pris que pour
+     * enregistrer le nouveau chemin.
+     */
+    public Optional<FileEntry> prepareFileForEdit(Link link) throws IOException {
+        Optional<FileEntry> opt = getFileForFileLink(link);
+        if (opt.isEmpty() || opt.get().getPhysicalPath() == null) {
+            return opt;
+        }
+        FileEntry entry = opt.get();
+        Path current = Paths.get(entry.getPhysicalPath());
+        Path detached = blobs.detach(current, entry.getExtension());
+        if (detached.equals(current)) {
+            return opt;
+        }
+        writeLock.lock();
+        try {
+            Optional<FileEntry> latest = fileRepo.findById(entry.getId());
+            if (latest.isPresent() && entry.getPhysicalPath().equals(latest.get().getPhysicalPath())) {
+                latest.get().setPhysicalPath(detached.toString());
+                fileRepo.save(latest.get());
+                blobs.recorded(detached);
+                return latest;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        // supprimé ou déplacé entre-temps : la copie ne sert à personne
+        blobs.release(detached);
+        return getFileForFileLink(link);
+    }
+
+    // ---------- Lecture ----------
+
+    /**
+     * Ouvre le contenu d'un link FILE en lecture seule. Le canal est
+     * positionnable ; {@link FileChannel#transferTo} vers un fichier ou une
+     * socket ne passe pas par le tas Java. À fermer par l'appelant.
+     */
+    public FileChannel openRead(UUID fileLinkId) throws IOException {
+        return FileChannel.open(contentPath(fileLinkId), StandardOpenOption.READ);
+    }
+
+    /** Taille en octets du contenu d'un link FILE. */
+    public long contentSize(UUID fileLinkId) throws IOException {
+        return Files.size(contentPath(fileLinkId));
+    }
+
+    /**
+     * Lecture d'une plage : au plus {@code dst.remaining()} octets à partir
+     * de {@code position}.
+     *
+     * @return le nombre d'octets lus, -1 si {@code position} est au-delà de la fin
+     */
+    public int read(UUID fileLinkId, long position, ByteBuffer dst) throws IOException {
+        try (FileChannel in = openRead(fileLinkId)) {
+            int total = 0;
+            while (dst.hasRemaining()) {
+                int n = in.read(dst, position + total);
+                if (n < 0) {
+                    return total == 0 ? -1 : total;
+                }
+                total += n;
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Copie {@code count} octets du contenu à partir de {@code position}
+     * vers {@code target} ({@code count < 0} : jusqu'à la fin), par tranches
+     * de {@code transferTo}. {@code target} doit être bloquant. L'annulation
+     * est prise en compte entre deux tranches.
+     *
+     * @return le nombre d'octets copiés
+     */
+    public long transferTo(UUID fileLinkId, long position, long count, WritableByteChannel target,
+                           TaskMonitor monitor) throws IOException {
+        try (FileChannel in = openRead(fileLinkId)) {
+            long size = in.size();
+            long end = count < 0 ? size : Math.min(size, position + count);
+            monitor.expectBytes(Math.max(0, end - position));
+            long pos = position;
+            while (pos < end) {
+                if (monitor.isCancelled()) {
+                    throw new CancellationException("Transfer cancelled");
+                }
+                long copied = in.transferTo(pos, Math.min(TRANSFER_CHUNK, end - pos), target);
+                if (copied <= 0) {
+                    break; // fichier raccourci entre-temps
+                }
+                pos += copied;
+                monitor.worked(0, copied);
+            }
+            return pos - position;
+        }
+    }
+
+    /**
+     * Exporte le contenu d'un link FILE vers {@code dest}. On écrit dans un
+     * fichier temporaire : un export annulé ou en erreur ne laisse rien et
+     * n'écrase pas un fichier existant.
+     *
+     * @return le nombre d'octets exportés
+     */
+    public long exportFile(UUID fileLinkId, Path dest, TaskMonitor monitor) throws IOException {
+        long start = Metrics.start();
+        Path part = dest.resolveSibling(dest.getFileName() + ".part");
+        long copied;
+        try (FileChannel out = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            copied = transferTo(fileLinkId, 0, -1, out, monitor);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(part);
+            throw e;
+        }
+        Files.move(part, dest, StandardCopyOption.REPLACE_EXISTING);
+        monitor.worked(1, 0);
+        EXPORT_FILE.stop(start);
+        EXPORTED_FILES.increment();
+        EXPORTED_BYTES.add(copied);
+        return copied;
+    }
+
+    private Path contentPath(UUID fileLinkId) {
+        Link link = linkRepo.findById(fileLinkId)
+                .orElseThrow(() -> new IllegalArgumentException("fileLink not found"));
+        if (link.getType() != LinkType.FILE) {
+            throw new IllegalArgumentException("Link is not FILE type");
+        }
+        FileEntry entry = getFileForFileLink(link)
+                .filter(f -> f.getPhysicalPath() != null)
+                .orElseThrow(() -> new IllegalArgumentException("FileEntry not found for link"));
+        return Paths.get(entry.getPhysicalPath());
     }
 
     // ---------- Navigation ----------
@@ -101,6 +467,22 @@ public class NovaFsService {
         return linkRepo.findChildren(parentId);
     }
 
+    /**
+     * Dossiers (FOLDER ou TRASH) de {@code parentId}, sans charger ses
+     * fichiers.
+     */
+    public List<Link> getChildFolders(UUID parentId) {
+        return linkRepo.findChildren(parentId, FOLDER_TYPES);
+    }
+
+    /**
+     * Vrai si {@code parentId} contient au moins un dossier (FOLDER ou
+     * TRASH), sans charger ses enfants.
+     */
+    public boolean hasChildFolders(UUID parentId) {
+        return linkRepo.hasChildren(parentId, FOLDER_TYPES);
+    }
+
     public Optional<Link> findLink(UUID id) {
         return linkRepo.findById(id);
     }
@@ -112,40 +494,105 @@ public class NovaFsService {
         return fileRepo.findById(fileId);
     }
 
+    /**
+     * Chemin logique d'un link ({@code /dossier/fichier}), mis en cache.
+     */
     public String resolveLogicalPath(UUID linkId) {
-        Link current = linkRepo.findById(linkId)
-                .orElseThrow(() -> new IllegalArgumentException("link not found"));
+        long start = Metrics.start();
+        String path = paths.resolve(linkId);
+        RESOLVE_PATH.stop(start);
+        return path;
+    }
 
-        Deque<String> parts = new ArrayDeque<>();
-        parts.addFirst(current.getDisplayName());
+    /**
+     * Recherche inverse : link désigné par un chemin logique depuis ROOT
+     * ({@code /a/b/c}), en O(segments) une fois les dossiers indexés.
+     */
+    public Optional<Link> findLinkByPath(String logicalPath) {
+        return paths.lookup(rootLinkId, logicalPath).flatMap(linkRepo::findById);
+    }
 
-        UUID parentId = current.getParentId();
-        while (parentId != null) {
-            Link parent = linkRepo.findById(parentId)
-                    .orElseThrow(() -> new IllegalStateException("broken parent chain"));
+    // ---------- Recherche ----------
 
-            if (parent.getType() != LinkType.ROOT) {
-                parts.addFirst(parent.getDisplayName());
+    /**
+     * Recherche par nom (préfixe, sous-chaîne) et/ou extension dans tout le
+     * catalogue, avec le chemin logique de chaque résultat. L'index est
+     * construit au premier appel puis tenu à jour à chaque écriture.
+     *
+     * @param offset rang du premier résultat
+     * @param limit  taille maximale de la page
+     */
+    public SearchPage search(SearchQuery query, int offset, int limit) {
+        long start = Metrics.start();
+        List<UUID> ids = names.search(query, offset, limit);
+        boolean hasMore = ids.size() > limit;
+        List<SearchHit> hits = new ArrayList<>(Math.min(ids.size(), limit));
+        for (UUID id : ids.subList(0, Math.min(ids.size(), limit))) {
+            Optional<Link> link = linkRepo.findById(id);
+            if (link.isEmpty()) {
+                continue; // supprimé entre-temps
+            }
+            try {
+                hits.add(new SearchHit(link.get(), paths.resolve(id)));
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                // chaîne de parents cassée : pas de chemin à montrer
+                System.err.println("Failed to resolve search hit: " + id + " - " + e.getMessage());
             }
-
-            parentId = parent.getParentId();
         }
+        SEARCH.stop(start);
+        return new SearchPage(hits, offset, hasMore);
+    }
 
-        return "/" + String.join("/", parts);
+    /**
+     * Recherche plein texte dans le contenu des fichiers (voir
+     * {@link #openContentIndex}), du plus pertinent au moins pertinent. Un
+     * fichier encore en attente d'indexation n'apparaît pas.
+     */
+    public List<ContentHit> searchContent(String text, int limit) throws IOException {
+        ContentIndex index = contentIndex;
+        if (index == null) {
+            return Collections.emptyList();
+        }
+        long start = Metrics.start();
+        List<ContentHit> hits = new ArrayList<>();
+        for (ContentIndex.Hit hit : index.search(text, limit)) {
+            List<Link> links = linkRepo.findByTargetFileId(hit.getFileId());
+            if (links.isEmpty()) {
+                continue; // supprimé entre-temps
+            }
+            Link link = links.get(0);
+            try {
+                hits.add(new ContentHit(link, paths.resolve(link.getId()), hit.getScore(), hit.getSnippet()));
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                System.err.println("Failed to resolve search hit: " + link.getId() + " - " + e.getMessage());
+            }
+        }
+        SEARCH_CONTENT.stop(start);
+        return hits;
     }
 
     // ---------- Move / Corbeille / Delete ----------
 
     public void moveFile(UUID fileLinkId, UUID newParentFolderId) {
-        Link link = linkRepo.findById(fileLinkId)
-                .orElseThrow(() -> new IllegalArgumentException("fileLink not found"));
+        long start = Metrics.start();
+        writeLock.lock();
+        try {
+            Link link = linkRepo.findById(fileLinkId)
+                    .orElseThrow(() -> new IllegalArgumentException("fileLink not found"));
 
-        if (link.getType() != LinkType.FILE) {
-            throw new IllegalArgumentException("Link is not FILE type");
-        }
+            if (link.getType() != LinkType.FILE) {
+                throw new IllegalArgumentException("Link is not FILE type");
+            }
+            requireOutsideSubtree(link, newParentFolderId);
 
-        link.setParentId(newParentFolderId);
-        linkRepo.save(link);
+            UUID oldParentId = link.getParentId();
+            link.setParentId(newParentFolderId);
+            stampTrashed(link, oldParentId);
+            updateLink(link, oldParentId, link.getDisplayName());
+        } finally {
+            writeLock.unlock();
+        }
+        MOVE.stop(start);
     }
 
     /**
@@ -153,22 +600,55 @@ public class NovaFsService {
      * On ne bouge jamais ROOT lui-même.
      */
     public void moveLink(UUID linkId, UUID newParentFolderId) {
-        Link link = linkRepo.findById(linkId)
-                .orElseThrow(() -> new IllegalArgumentException("link not found"));
+        writeLock.lock();
+        try {
+            Link link = linkRepo.findById(linkId)
+                    .orElseThrow(() -> new IllegalArgumentException("link not found"));
 
-        if (link.getType() == LinkType.ROOT) {
-            throw new IllegalArgumentException("Cannot move ROOT");
-        }
+            if (link.getType() == LinkType.ROOT) {
+                throw new IllegalArgumentException("Cannot move ROOT");
+            }
 
-        // FILE -> on garde la logique existante
-        if (link.getType() == LinkType.FILE) {
-            moveFile(linkId, newParentFolderId);
-            return;
+            // FILE -> on garde la logique existante
+            if (link.getType() == LinkType.FILE) {
+                moveFile(linkId, newParentFolderId);
+                return;
+            }
+
+            // FOLDER / TRASH (techniquement tu peux aussi déplacer TRASH si tu veux)
+            requireOutsideSubtree(link, newParentFolderId);
+            long start = Metrics.start();
+            UUID oldParentId = link.getParentId();
+            link.setParentId(newParentFolderId);
+            stampTrashed(link, oldParentId);
+            updateLink(link, oldParentId, link.getDisplayName());
+            MOVE.stop(start);
+        } finally {
+            writeLock.unlock();
         }
+    }
+
+    /**
+     * Renomme un link ; pour un FILE, le FileEntry prend le même nom.
+     */
+    public void renameLink(UUID linkId, String newName) {
+        long start = Metrics.start();
+        writeLock.lock();
+        try {
+            Link link = linkRepo.findById(linkId)
+                    .orElseThrow(() -> new IllegalArgumentException("link not found"));
 
-        // FOLDER / TRASH (techniquement tu peux aussi déplacer TRASH si tu veux)
-        link.setParentId(newParentFolderId);
-        linkRepo.save(link);
+            String oldName = link.getDisplayName();
+            getFileForFileLink(link).ifPresent(file -> {
+                file.setDisplayName(newName);
+                fileRepo.save(file);
+            });
+            link.setDisplayName(newName);
+            updateLink(link, link.getParentId(), oldName);
+        } finally {
+            writeLock.unlock();
+        }
+        RENAME.stop(start);
     }
 
     public void moveFileToTrash(UUID fileLinkId) {
@@ -178,108 +658,675 @@ public class NovaFsService {
         if (link.getType() != LinkType.FILE) {
             throw new IllegalArgumentException("Link is not FILE type");
         }
+        moveToTrash(fileLinkId);
+    }
+
+    /**
+     * Met un FILE ou un FOLDER à la corbeille ; un dossier part avec tout
+     * son contenu (seul le link du dossier est réécrit).
+     */
+    public void moveToTrash(UUID linkId) {
+        writeLock.lock();
+        try {
+            Link link = linkRepo.findById(linkId)
+                    .orElseThrow(() -> new IllegalArgumentException("link not found"));
 
-        link.setParentId(trashLinkId);
-        linkRepo.save(link);
+            if (link.getType() == LinkType.ROOT || link.getType() == LinkType.TRASH) {
+                throw new IllegalArgumentException("Cannot move " + link.getType() + " to trash");
+            }
+
+            UUID oldParentId = link.getParentId();
+            link.setParentId(trashLinkId);
+            stampTrashed(link, oldParentId);
+            updateLink(link, oldParentId, link.getDisplayName());
+        } finally {
+            writeLock.unlock();
+        }
     }
 
-    public void deleteFilePermanently(UUID fileLinkId) throws IOException {
-        Link link = linkRepo.findById(fileLinkId)
-                .orElseThrow(() -> new IllegalArgumentException("fileLink not found"));
+    /**
+     * Refuse un déplacement de {@code link} sous lui-même ou sous un de ses
+     * descendants : le cycle ferait boucler les chemins et la suppression
+     * récursive. Remonte les parents depuis la cible, sous le verrou
+     * d'écriture.
+     */
+    private void requireOutsideSubtree(Link link, UUID newParentId) {
+        Set<UUID> seen = new HashSet<>();
+        for (UUID id = newParentId; id != null && seen.add(id); ) {
+            if (id.equals(link.getId())) {
+                throw new IllegalArgumentException("Cannot move a link into itself or its subfolders");
+            }
+            id = linkRepo.findById(id).map(Link::getParentId).orElse(null);
+        }
+    }
 
-        if (link.getType() != LinkType.FILE) {
-            throw new IllegalArgumentException("Link is not FILE type");
+    /**
+     * Date de corbeille d'un link qui vient de changer de parent : posée à
+     * l'entrée dans TRASH, retirée à la sortie.
+     */
+    private void stampTrashed(Link link, UUID oldParentId) {
+        boolean inTrash = trashLinkId.equals(link.getParentId());
+        if (!inTrash) {
+            link.setTrashedAt(0);
+        } else if (!trashLinkId.equals(oldParentId) || link.getTrashedAt() == 0) {
+            link.setTrashedAt(System.currentTimeMillis());
         }
+    }
 
-        UUID fileId = link.getTargetFileId();
-        if (fileId != null) {
-            fileRepo.findById(fileId).ifPresent(entry -> {
-                Path p = Paths.get(entry.getPhysicalPath());
-                if (Files.exists(p)) {
-                    try {
-                        Files.delete(p);
-                    } catch (IOException e) {
-                        System.err.println("Failed to delete file: " + p + " - " + e.getMessage());
+    /**
+     * Supprime un link FILE, et son FileEntry s'il n'en a plus d'autre. Le
+     * fichier physique n'est effacé qu'après l'écriture durable des
+     * métadonnées : un crash entre les deux laisse au pire un blob orphelin,
+     * jamais un FileEntry sans fichier.
+     */
+    public void deleteFilePermanently(UUID fileLinkId) throws IOException {
+        long start = Metrics.start();
+        Path blob = null;
+        writeLock.lock();
+        try {
+            Link link = linkRepo.findById(fileLinkId)
+                    .orElseThrow(() -> new IllegalArgumentException("fileLink not found"));
+
+            if (link.getType() != LinkType.FILE) {
+                throw new IllegalArgumentException("Link is not FILE type");
+            }
+
+            UUID fileId = link.getTargetFileId();
+            touchFile(fileId);
+            // le FileEntry ne part qu'avec le dernier link qui le référence
+            if (fileId != null && linkRepo.countByTargetFileId(fileId) <= 1) {
+                Optional<FileEntry> entry = fileRepo.findById(fileId);
+                if (entry.isPresent()) {
+                    // le blob peut être partagé : supprimé seulement à la dernière
+                    // référence
+                    blob = Paths.get(entry.get().getPhysicalPath());
+                    fileRepo.delete(fileId);
+                    if (contentIndex != null) {
+                        contentIndex.remove(fileId);
                     }
                 }
-                fileRepo.delete(fileId);
-            });
+            }
+
+            removeLink(fileLinkId);
+        } finally {
+            writeLock.unlock();
+        }
+        if (blob != null) {
+            fileRepo.sync();
+            linkRepo.sync();
+            try {
+                blobs.deleteIfUnreferenced(blob);
+            } catch (IOException e) {
+                System.err.println("Failed to delete file: " + blob + " - " + e.getMessage());
+            }
         }
+        checkpointIfNeeded();
+        DELETE.stop(start);
+    }
+
+    /**
+     * Supprime définitivement un link et, pour un dossier, toute sa
+     * descendance ; sur TRASH, vide la corbeille. Un FileEntry n'est supprimé
+     * que si tous ses links font partie de la suppression.
+     * <p>
+     * Les métadonnées partent en un seul batch, écrit durablement quel que
+     * soit le mode de durabilité ; les fichiers physiques sont ensuite effacés
+     * par {@link BlobDeleter} (en parallèle, débit plafonné,
+     * repris au démarrage après un crash). L'annulation n'est possible
+     * qu'avant l'écriture des métadonnées.
+     *
+     * @return le nombre de links supprimés
+     */
+    public int deletePermanently(UUID linkId, TaskMonitor monitor) throws IOException {
+        return deletePermanently(linkId, Integer.MAX_VALUE, monitor);
+    }
+
+    /**
+     * Comme {@link #deletePermanently(UUID, TaskMonitor)}, en au plus
+     * {@code maxLinks} links par appel : les plus profonds d'abord, jamais un
+     * dossier avant son contenu. Le link lui-même part avec le dernier lot ;
+     * il reste à rappeler tant qu'il existe.
+     */
+    int deletePermanently(UUID linkId, int maxLinks, TaskMonitor monitor) throws IOException {
+        long start = Metrics.start();
+        List<UUID> linkIds;
+        List<Path> blobPaths = new ArrayList<>();
+        Path pending;
+        writeLock.lock();
+        try {
+            Link link = linkRepo.findById(linkId)
+                    .orElseThrow(() -> new IllegalArgumentException("link not found"));
+
+            if (link.getType() == LinkType.ROOT) {
+                throw new IllegalArgumentException("Cannot delete ROOT");
+            }
+
+            List<Link> subtree = subtreeDeepestFirst(link, maxLinks);
+
+            linkIds = new ArrayList<>(subtree.size());
+            Map<UUID, Integer> linksPerFile = new HashMap<>();
+            for (Link l : subtree) {
+                linkIds.add(l.getId());
+                if (l.getTargetFileId() != null) {
+                    linksPerFile.merge(l.getTargetFileId(), 1, Integer::sum);
+                }
+            }
+            List<UUID> fileIds = new ArrayList<>();
+            for (Map.Entry<UUID, Integer> e : linksPerFile.entrySet()) {
+                if (linkRepo.countByTargetFileId(e.getKey()) > e.getValue()) {
+                    continue; // encore référencé hors du dossier
+                }
+                fileRepo.findById(e.getKey()).ifPresent(f -> {
+                    fileIds.add(f.getId());
+                    blobPaths.add(Paths.get(f.getPhysicalPath()));
+                });
+            }
+
+            if (monitor.isCancelled()) {
+                throw new CancellationException();
+            }
+
+            pending = blobDeleter.record(blobPaths);
+            try (UnitOfWork uow = UnitOfWork.begin(fileRepo, linkRepo)) {
+                touchFiles(fileIds);
+                fileRepo.deleteAll(fileIds);
+                removeLinks(linkIds);
+                uow.commit();
+            }
+            if (contentIndex != null) {
+                for (UUID fileId : fileIds) {
+                    contentIndex.remove(fileId);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        // en GROUP_COMMIT/BEST_EFFORT le batch peut être encore en attente :
+        // après un crash, un FileEntry restauré désignerait un blob effacé
+        fileRepo.sync();
+        linkRepo.sync();
+        blobDeleter.run(pending, blobPaths, monitor);
+        checkpointIfNeeded();
+        DELETE_TREE.stop(start);
+        return linkIds.size();
+    }
+
+    /**
+     * {@code link} et sa descendance, chaque link après tout son contenu (la
+     * corbeille elle-même n'en fait pas partie). Arrêté à {@code max} links :
+     * le résultat ne contient alors que des sous-arbres complets.
+     */
+    private List<Link> subtreeDeepestFirst(Link link, int max) {
+        List<Link> subtree = new ArrayList<>();
+        Deque<Link> path = new ArrayDeque<>();
+        Deque<Iterator<Link>> remaining = new ArrayDeque<>();
+        path.push(link);
+        remaining.push(childrenOf(link).iterator());
+        while (!path.isEmpty() && subtree.size() < max) {
+            Iterator<Link> children = remaining.peek();
+            if (children.hasNext()) {
+                Link child = children.next();
+                path.push(child);
+                remaining.push(childrenOf(child).iterator());
+            } else {
+                remaining.pop();
+                Link done = path.pop();
+                if (done.getType() != LinkType.TRASH) {
+                    subtree.add(done);
+                }
+            }
+        }
+        return subtree;
+    }
 
-        linkRepo.delete(fileLinkId);
+    private List<Link> childrenOf(Link link) {
+        return FOLDER_TYPES.contains(link.getType()) ? linkRepo.findChildren(link.getId()) : List.of();
     }
 
     // ---------- Nettoyage / cohérence ----------
 
-    public void cleanupDanglingFileLinks() {
-        List<Link> allLinks = linkRepo.findAll();
-        Set<UUID> existingFiles = fileRepo.findAll().stream()
-                .map(FileEntry::getId)
-                .collect(Collectors.toSet());
+    /**
+     * Range les fichiers physiques existants selon le layout courant (voir
+     * {@link BlobLayoutMigration}). Peut être relancé après une interruption.
+     *
+     * @return le nombre de FileEntry déplacés
+     */
+    public int migrateBlobLayout() {
+        return new BlobLayoutMigration(fileRepo, blobs, writeLock).run();
+    }
 
-        for (Link l : allLinks) {
-            if (l.getType() != LinkType.FILE) continue;
+    /**
+     * Vérification de cohérence du démarrage, à appeler avant toute
+     * écriture :
+     * <ul>
+     *     <li>après un arrêt propre, rien à faire ;</li>
+     *     <li>après un crash, seuls les FileEntry touchés depuis le dernier
+     *     checkpoint sont vérifiés ;</li>
+     *     <li>sans checkpoint exploitable (premier démarrage, fichier
+     *     illisible), scan complet via {@link #repairIntegrity()}.</li>
+     * </ul>
+     * Les suppressions de dossiers interrompues sont ensuite terminées, puis
+     * les écritures suivantes sont tracées dans {@code dataDir}.
+     */
+    public void recoverIntegrity(Path dataDir, Durability durability) {
+        checkpoint = new IntegrityCheckpoint(dataDir, durability);
+        switch (checkpoint.readState()) {
+            case CLEAN -> {
+            }
+            case DIRTY -> {
+                try {
+                    verifyFiles(checkpoint.readTouched());
+                } catch (IOException e) {
+                    System.err.println("Failed to read checkpoint: " + e.getMessage());
+                    repairIntegrity();
+                }
+            }
+            case UNKNOWN -> repairIntegrity();
+        }
+        // métadonnées réparées ci-dessus : reste les fichiers physiques
+        blobDeleter.resume();
+        try {
+            checkpoint.open();
+        } catch (IOException e) {
+            // pas de trace : le prochain démarrage refera un scan complet
+            System.err.println("Failed to open checkpoint: " + e.getMessage());
+        }
+        fileRepo.setBeforeForce(checkpoint::forceTouched);
+        linkRepo.setBeforeForce(checkpoint::forceTouched);
+    }
 
-            UUID fid = l.getTargetFileId();
-            boolean invalid = (fid == null) || !existingFiles.contains(fid);
-            if (invalid) {
-                linkRepo.delete(l.getId());
+    /**
+     * Réparations du démarrage, appliquées dans un seul batch : les deux
+     * vérifications ci-dessous se font par lookups directs dans les index,
+     * sans copier les repositories.
+     */
+    public void repairIntegrity() {
+        writeLock.lock();
+        try (UnitOfWork uow = UnitOfWork.begin(fileRepo, linkRepo)) {
+            cleanupDanglingFileLinks();
+            attachOrphanFilesToRoot();
+            uow.commit();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Supprime les links FILE dont le FileEntry n'existe pas (ou plus).
+     */
+    public void cleanupDanglingFileLinks() {
+        long start = Metrics.start();
+        writeLock.lock();
+        try {
+            List<UUID> dangling = new ArrayList<>();
+            for (Link l : linkRepo.findByType(LinkType.FILE)) {
+                UUID fid = l.getTargetFileId();
+                if (fid == null || !fileRepo.exists(fid)) {
+                    dangling.add(l.getId());
+                }
+            }
+            if (!dangling.isEmpty()) {
+                removeLinks(dangling);
             }
+        } finally {
+            writeLock.unlock();
         }
+        CLEANUP.stop(start);
     }
 
+    /**
+     * Rattache à ROOT les FileEntry qu'aucun link ne référence.
+     */
     public void attachOrphanFilesToRoot() {
-        List<FileEntry> allFiles = fileRepo.findAll();
-        List<Link> allLinks = linkRepo.findAll();
+        writeLock.lock();
+        try {
+            List<Link> orphanLinks = new ArrayList<>();
+            for (UUID fileId : fileRepo.findAllIds()) {
+                if (linkRepo.countByTargetFileId(fileId) > 0) {
+                    continue;
+                }
+                fileRepo.findById(fileId).ifPresent(f -> {
+                    Link fileLink = new Link(LinkType.FILE, f.getDisplayName());
+                    fileLink.setParentId(rootLinkId);
+                    fileLink.setTargetFileId(f.getId());
+                    orphanLinks.add(fileLink);
+                });
+            }
+            if (!orphanLinks.isEmpty()) {
+                createLinks(orphanLinks);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // ---------- Ramasse-miettes (voir GarbageCollector) ----------
 
-        Set<UUID> filesWithLink = allLinks.stream()
-                .filter(l -> l.getType() == LinkType.FILE && l.getTargetFileId() != null)
-                .map(Link::getTargetFileId)
-                .collect(Collectors.toSet());
+    BlobStore blobStore() {
+        return blobs;
+    }
 
-        for (FileEntry f : allFiles) {
-            if (!filesWithLink.contains(f.getId())) {
-                Link fileLink = new Link(LinkType.FILE, f.getDisplayName());
-                fileLink.setParentId(rootLinkId);
-                fileLink.setTargetFileId(f.getId());
-                linkRepo.save(fileLink);
+    /** Parcours des ids de FileEntry, par pages (voir {@link FileRepository#iterateIds()}). */
+    Iterator<UUID> fileIds() {
+        return fileRepo.iterateIds();
+    }
+
+    boolean isOrphanFile(UUID fileId) {
+        return linkRepo.countByTargetFileId(fileId) == 0 && fileRepo.exists(fileId);
+    }
+
+    /**
+     * Date de corbeille pour un link mis dans TRASH avant qu'elle existe :
+     * il vieillit à partir de maintenant. Le link est relu sous verrou et
+     * seule sa date change : une restauration ou un renommage fait depuis la
+     * lecture de l'appelant est conservé.
+     *
+     * @return le link à jour, vide s'il n'est plus dans la corbeille
+     */
+    Optional<Link> stampTrashedNow(UUID linkId) {
+        writeLock.lock();
+        try {
+            Optional<Link> current = linkRepo.findById(linkId);
+            if (current.isEmpty() || !trashLinkId.equals(current.get().getParentId())) {
+                return Optional.empty();
+            }
+            Link link = current.get();
+            if (link.getTrashedAt() == 0) {
+                link.setTrashedAt(System.currentTimeMillis());
+                updateLink(link, link.getParentId(), link.getDisplayName());
             }
+            return Optional.of(link);
+        } finally {
+            writeLock.unlock();
         }
     }
 
+    /**
+     * Supprime ceux de {@code fileIds} qu'aucun link ne référence (revérifié
+     * ici), avec leur blob s'il n'a pas d'autre référence. Un crash avant
+     * l'effacement du blob le laisse sans référence : le passage suivant du
+     * ramasse-miettes le reprend.
+     *
+     * @return le nombre de FileEntry supprimés
+     */
+    int reclaimOrphanFiles(Collection<UUID> fileIds) {
+        List<UUID> orphans = new ArrayList<>();
+        List<Path> blobPaths = new ArrayList<>();
+        writeLock.lock();
+        try {
+            for (UUID fileId : fileIds) {
+                if (linkRepo.countByTargetFileId(fileId) > 0) {
+                    continue;
+                }
+                fileRepo.findById(fileId).ifPresent(f -> {
+                    orphans.add(f.getId());
+                    blobPaths.add(Paths.get(f.getPhysicalPath()));
+                });
+            }
+            if (orphans.isEmpty()) {
+                return 0;
+            }
+            fileRepo.deleteAll(orphans);
+            if (contentIndex != null) {
+                for (UUID fileId : orphans) {
+                    contentIndex.remove(fileId);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        for (Path blob : blobPaths) {
+            try {
+                blobs.deleteIfUnreferenced(blob);
+            } catch (IOException e) {
+                System.err.println("Failed to delete file: " + blob + " - " + e.getMessage());
+            }
+        }
+        checkpointIfNeeded();
+        return orphans.size();
+    }
+
+    // ---------- Checkpoint ----------
+    // Un FileEntry est noté avant toute écriture qui peut le séparer de ses
+    // links (voir IntegrityCheckpoint). Le checkpoint intermédiaire n'est pris
+    // que sous writeLock, donc jamais entre les deux écritures d'une
+    // opération, même lancée depuis un autre thread.
+
+    private void touchFile(UUID fileId) {
+        if (checkpoint != null) {
+            checkpoint.touch(fileId);
+        }
+    }
+
+    private void touchFiles(List<UUID> fileIds) {
+        if (checkpoint != null) {
+            checkpoint.touchAll(fileIds);
+        }
+    }
+
+    private void checkpointIfNeeded() {
+        if (checkpoint == null || !checkpoint.needsCheckpoint()) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            if (!checkpoint.needsCheckpoint()) {
+                return; // pris entre-temps par un autre thread
+            }
+            verifyTouchedFiles();
+            fileRepo.sync();
+            linkRepo.sync();
+            checkpoint.checkpoint();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void verifyTouchedFiles() {
+        if (!checkpoint.isOpen()) {
+            return;
+        }
+        try {
+            verifyFiles(checkpoint.readTouched());
+        } catch (IOException e) {
+            System.err.println("Failed to read checkpoint: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Version ciblée de {@link #repairIntegrity()} : mêmes réparations,
+     * limitées aux FileEntry donnés.
+     */
+    private void verifyFiles(Collection<UUID> fileIds) {
+        if (fileIds.isEmpty()) {
+            return;
+        }
+        List<Link> orphanLinks = new ArrayList<>();
+        List<UUID> dangling = new ArrayList<>();
+        try (UnitOfWork uow = UnitOfWork.begin(fileRepo, linkRepo)) {
+            for (UUID fileId : fileIds) {
+                Optional<FileEntry> file = fileRepo.findById(fileId);
+                if (file.isEmpty()) {
+                    for (Link l : linkRepo.findByTargetFileId(fileId)) {
+                        dangling.add(l.getId());
+                    }
+                } else if (linkRepo.countByTargetFileId(fileId) == 0) {
+                    Link fileLink = new Link(LinkType.FILE, file.get().getDisplayName());
+                    fileLink.setParentId(rootLinkId);
+                    fileLink.setTargetFileId(fileId);
+                    orphanLinks.add(fileLink);
+                }
+            }
+            if (!dangling.isEmpty()) {
+                removeLinks(dangling);
+            }
+            if (!orphanLinks.isEmpty()) {
+                createLinks(orphanLinks);
+            }
+            uow.commit();
+        }
+    }
+
+    // ---------- Écritures de links ----------
+    // Toutes les écritures de links du service passent par ici pour tenir
+    // le cache des chemins à jour et publier les changements.
+
+    private Link createLink(Link link) {
+        touchFile(link.getTargetFileId());
+        Link saved = linkRepo.save(link);
+        paths.linkSaved(saved);
+        publish(List.of(LinkChange.created(saved)));
+        return saved;
+    }
+
+    private void createLinks(List<Link> links) {
+        touchFiles(targetsOf(links));
+        linkRepo.saveAll(links);
+        linksCreated(links);
+    }
+
+    /** Après l'écriture de nouveaux links (aussi appelé par l'import de dossier). */
+    private void linksCreated(List<Link> links) {
+        paths.linksSaved(links);
+        List<LinkChange> changes = new ArrayList<>(links.size());
+        for (Link link : links) {
+            changes.add(LinkChange.created(link));
+        }
+        publish(changes);
+    }
+
+    /**
+     * Réécrit un link existant déjà modifié par l'appelant ;
+     * {@code oldParentId}/{@code oldName} sont ses valeurs d'avant.
+     */
+    private void updateLink(Link link, UUID oldParentId, String oldName) {
+        touchFile(link.getTargetFileId());
+        Link saved = linkRepo.save(link);
+        paths.linkSaved(saved);
+        if (!Objects.equals(oldParentId, saved.getParentId())) {
+            publish(List.of(LinkChange.moved(saved, oldParentId)));
+        } else if (!Objects.equals(oldName, saved.getDisplayName())) {
+            publish(List.of(LinkChange.renamed(saved)));
+        }
+    }
+
+    private void removeLink(UUID linkId) {
+        Optional<Link> removed = linkRepo.findById(linkId);
+        removed.ifPresent(l -> touchFile(l.getTargetFileId()));
+        linkRepo.delete(linkId);
+        paths.linkDeleted(linkId);
+        removed.ifPresent(l -> publish(List.of(LinkChange.deleted(l))));
+    }
+
+    private void removeLinks(List<UUID> linkIds) {
+        List<Link> removed = new ArrayList<>(linkIds.size());
+        for (UUID id : linkIds) {
+            linkRepo.findById(id).ifPresent(removed::add);
+        }
+        touchFiles(targetsOf(removed));
+        // copies prises avant la suppression
+        List<LinkChange> changes = new ArrayList<>(removed.size());
+        for (Link link : removed) {
+            changes.add(LinkChange.deleted(link));
+        }
+        linkRepo.deleteAll(linkIds);
+        for (UUID id : linkIds) {
+            paths.linkDeleted(id);
+        }
+        publish(changes);
+    }
+
+    private void publish(List<LinkChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        for (LinkChangeListener listener : listeners) {
+            try {
+                listener.onChanges(changes);
+            } catch (RuntimeException e) {
+                System.err.println("Failed to notify link change: " + e.getMessage());
+            }
+        }
+    }
+
+    private static List<UUID> targetsOf(List<Link> links) {
+        List<UUID> targets = new ArrayList<>();
+        for (Link link : links) {
+            if (link.getTargetFileId() != null) {
+                targets.add(link.getTargetFileId());
+            }
+        }
+        return targets;
+    }
+
     // ---------- helpers exposés pour l'UI ----------
 
+    /**
+     * Écriture brute d'un link. Pour un déplacement ou un renommage, préférer
+     * {@link #moveLink}/{@link #renameLink} : l'ancien parent n'est pas connu
+     * ici et le changement est publié en {@link LinkChange.Kind#UPDATED}.
+     */
     public Link saveLink(Link link) {
-        return linkRepo.save(link);
+        writeLock.lock();
+        try {
+            Link saved;
+            if (linkRepo.findById(link.getId()).isEmpty()) {
+                saved = createLink(link);
+            } else {
+                touchFile(link.getTargetFileId());
+                saved = linkRepo.save(link);
+                paths.linkSaved(saved);
+                publish(List.of(LinkChange.updated(saved)));
+            }
+            checkpointIfNeeded();
+            return saved;
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     public FileEntry saveFileEntry(FileEntry fileEntry) {
-        return fileRepo.save(fileEntry);
+        writeLock.lock();
+        try {
+            touchFile(fileEntry.getId());
+            FileEntry saved = fileRepo.save(fileEntry);
+            checkpointIfNeeded();
+            return saved;
+        } finally {
+            writeLock.unlock();
+        }
     }
-        /**
+
+    /**
      * Importe un dossier Windows complet (récursif) :
      * - crée un dossier logique dans NFS sous parentFolderId
      * - importe tous les fichiers et sous-dossiers.
+     * Parcours, copies et enregistrement tournent en parallèle (voir
+     * {@link DirectoryImporter}) ; l'arbre obtenu est le même qu'avec un
+     * import fichier par fichier.
      */
     public Link importDirectoryRecursive(UUID parentFolderId, Path dir) throws IOException {
+        return importDirectoryRecursive(parentFolderId, dir, TaskMonitor.NONE);
+    }
+
+    /**
+     * Comme {@link #importDirectoryRecursive(UUID, Path)}, avec suivi. Une
+     * annulation arrête l'import après le dernier batch enregistré : ce qui
+     * est déjà importé reste dans l'arbre, le reste n'y apparaît pas.
+     */
+    public Link importDirectoryRecursive(UUID parentFolderId, Path dir, TaskMonitor monitor) throws IOException {
         if (!Files.isDirectory(dir)) {
             throw new IllegalArgumentException("Not a directory: " + dir);
         }
 
-        String folderName = dir.getFileName().toString();
-        Link folderLink = createFolder(parentFolderId, folderName);
-
-        try (var stream = Files.list(dir)) {
-            for (Path child : stream.toList()) {
-                if (Files.isDirectory(child)) {
-                    importDirectoryRecursive(folderLink.getId(), child);
-                } else {
-                    importExistingFile(folderLink.getId(), child);
-                }
-            }
+        long start = Metrics.start();
+        try {
+            return new DirectoryImporter(fileRepo, linkRepo, blobs, importOptions, writeLock,
+                    this::touchFiles, this::linksCreated)
+                    .importTree(parentFolderId, dir, monitor);
+        } finally {
+            checkpointIfNeeded();
+            IMPORT_DIRECTORY.stop(start);
         }
-
-        return folderLink;
     }
-
 }
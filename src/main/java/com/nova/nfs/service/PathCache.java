@@ -0,0 +1,276 @@
+package com.nova.nfs.service;
+
+import com.nova.nfs.core.Link;
+import com.nova.nfs.core.LinkType;
+import com.nova.nfs.repo.LinkRepository;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Caches des chemins logiques, dans les deux sens :
+ * <ul>
+ *     <li>id -> chemin : chaque link résolu garde le chemin de ses enfants
+ *     (son « préfixe »). Résoudre un link met aussi en cache tous ses
+ *     ancêtres, donc un link en cache a toujours son parent en cache ;</li>
+ *     <li>chemin -> id : un index nom -> enfants par dossier, construit au
+ *     premier parcours du dossier.</li>
+ * </ul>
+ * Le service prévient le cache de chaque link écrit ou supprimé. Un
+ * déplacement ou un renommage n'invalide que le sous-arbre concerné (les
+ * descendants en cache sont connus sans relire le repository) et l'index de
+ * nom de l'ancien et du nouveau dossier.
+ * <p>
+ * Les deux caches sont bornés (LRU). Un chemin servi depuis le cache
+ * rafraîchit aussi ses ancêtres, et évincer un link évince ses descendants :
+ * l'invariant ci-dessus tient toujours. Toutes les méthodes sont
+ * synchronisées (UI, imports, daemon).
+ */
+final class PathCache {
+
+    /** Links dont le préfixe est gardé. */
+    static final int MAX_PREFIXES = 100_000;
+    /** Dossiers dont l'index de nom est gardé. */
+    static final int MAX_NAME_INDEXES = 1_000;
+
+    /** Chemin des enfants d'un link, avec le parent et le nom qui ont servi à le calculer. */
+    private static final class Cached {
+        final String prefix;
+        final UUID parentId;
+        final String name;
+
+        Cached(String prefix, UUID parentId, String name) {
+            this.prefix = prefix;
+            this.parentId = parentId;
+            this.name = name;
+        }
+    }
+
+    private final LinkRepository linkRepo;
+    private final int maxPrefixes;
+    private final int maxNameIndexes;
+    /** Ordre d'accès : le premier est le moins récemment servi. */
+    private final Map<UUID, Cached> prefixes = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<UUID, Set<UUID>> cachedChildren = new HashMap<>();
+    private final Map<UUID, Map<String, List<UUID>>> nameIndexes = new LinkedHashMap<>(16, 0.75f, true);
+    /** enfant -> dossier dont l'index de nom le contient */
+    private final Map<UUID, UUID> indexedIn = new HashMap<>();
+
+    PathCache(LinkRepository linkRepo) {
+        this(linkRepo, MAX_PREFIXES, MAX_NAME_INDEXES);
+    }
+
+    PathCache(LinkRepository linkRepo, int maxPrefixes, int maxNameIndexes) {
+        this.linkRepo = linkRepo;
+        this.maxPrefixes = maxPrefixes;
+        this.maxNameIndexes = maxNameIndexes;
+    }
+
+    /**
+     * Chemin logique de {@code linkId} : {@code /a/b/c}, ROOT non compris
+     * (sauf pour ROOT lui-même).
+     */
+    synchronized String resolve(UUID linkId) {
+        Link link = linkRepo.findById(linkId)
+                .orElseThrow(() -> new IllegalArgumentException("link not found"));
+        if (link.getType() == LinkType.ROOT) {
+            return "/" + link.getDisplayName();
+        }
+        return prefix(link);
+    }
+
+    /**
+     * Link désigné par {@code path} (segments séparés par {@code /}) à partir
+     * de {@code rootId}. Les noms ne sont pas uniques dans un dossier : si
+     * plusieurs enfants correspondent on essaie chacun, dans l'ordre de
+     * création, et on renvoie le premier chemin complet trouvé.
+     */
+    synchronized Optional<UUID> lookup(UUID rootId, String path) {
+        String[] segments = Arrays.stream(path.split("/"))
+                .filter(segment -> !segment.isEmpty())
+                .toArray(String[]::new);
+        return Optional.ofNullable(lookup(rootId, segments, 0));
+    }
+
+    private UUID lookup(UUID folderId, String[] segments, int depth) {
+        if (depth == segments.length) {
+            return folderId;
+        }
+        for (UUID child : nameIndex(folderId).getOrDefault(segments[depth], List.of())) {
+            UUID found = lookup(child, segments, depth + 1);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    // ---------- invalidation ----------
+
+    /**
+     * À appeler après l'écriture de {@code link} (création, déplacement,
+     * renommage...).
+     */
+    synchronized void linkSaved(Link link) {
+        Cached cached = prefixes.get(link.getId());
+        if (cached != null && Objects.equals(cached.parentId, link.getParentId())
+                && Objects.equals(cached.name, link.getDisplayName())) {
+            // ni déplacé ni renommé : rien à invalider
+            return;
+        }
+        invalidateSubtree(link.getId());
+        dropNameIndexOf(link.getId());
+        if (link.getParentId() != null) {
+            dropNameIndex(link.getParentId());
+        }
+    }
+
+    synchronized void linksSaved(List<Link> links) {
+        for (Link link : links) {
+            linkSaved(link);
+        }
+    }
+
+    synchronized void linkDeleted(UUID linkId) {
+        invalidateSubtree(linkId);
+        dropNameIndexOf(linkId);
+        dropNameIndex(linkId);
+    }
+
+    synchronized void clear() {
+        prefixes.clear();
+        cachedChildren.clear();
+        nameIndexes.clear();
+        indexedIn.clear();
+    }
+
+    // ---------- interne ----------
+
+    /**
+     * Remonte les parents jusqu'au premier en cache (ou jusqu'à ROOT), puis
+     * calcule et met en cache les préfixes en redescendant. Itératif : la
+     * profondeur de l'arbre ne compte pas, et une boucle dans la chaîne des
+     * parents est détectée.
+     */
+    private String prefix(Link link) {
+        Deque<Link> chain = new ArrayDeque<>();
+        Set<UUID> seen = new HashSet<>();
+        String prefix = null;
+        for (Link current = link; ; ) {
+            Cached cached = prefixes.get(current.getId());
+            if (cached != null) {
+                touchAncestors(cached);
+                prefix = cached.prefix;
+                break;
+            }
+            if (!seen.add(current.getId())) {
+                throw new IllegalStateException("cycle in parent chain at " + current.getId());
+            }
+            chain.push(current);
+            if (current.getType() == LinkType.ROOT || current.getParentId() == null) {
+                break;
+            }
+            current = linkRepo.findById(current.getParentId())
+                    .orElseThrow(() -> new IllegalStateException("broken parent chain"));
+        }
+        while (!chain.isEmpty()) {
+            Link current = chain.pop();
+            if (current.getType() == LinkType.ROOT) {
+                prefix = "";
+            } else if (current.getParentId() == null) {
+                prefix = "/" + current.getDisplayName();
+            } else {
+                prefix = prefix + "/" + current.getDisplayName();
+                cachedChildren.computeIfAbsent(current.getParentId(), k -> new HashSet<>()).add(current.getId());
+            }
+            prefixes.put(current.getId(), new Cached(prefix, current.getParentId(), current.getDisplayName()));
+        }
+        // éviction une fois la chaîne complète : jamais un parent sous un enfant
+        while (prefixes.size() > maxPrefixes) {
+            invalidateSubtree(prefixes.keySet().iterator().next());
+        }
+        return prefix;
+    }
+
+    /** Rafraîchit les ancêtres d'un préfixe servi : ils sont évincés après lui. */
+    private void touchAncestors(Cached cached) {
+        int steps = prefixes.size();
+        for (UUID parentId = cached.parentId; parentId != null && steps-- > 0; ) {
+            Cached parent = prefixes.get(parentId);
+            if (parent == null) {
+                return;
+            }
+            parentId = parent.parentId;
+        }
+    }
+
+    private void invalidateSubtree(UUID linkId) {
+        Cached removed = prefixes.remove(linkId);
+        if (removed == null) {
+            return;
+        }
+        if (removed.parentId != null) {
+            Set<UUID> siblings = cachedChildren.get(removed.parentId);
+            if (siblings != null) {
+                siblings.remove(linkId);
+            }
+        }
+        Deque<UUID> pending = new ArrayDeque<>();
+        pending.add(linkId);
+        while (!pending.isEmpty()) {
+            Set<UUID> children = cachedChildren.remove(pending.poll());
+            if (children != null) {
+                for (UUID child : children) {
+                    prefixes.remove(child);
+                    pending.add(child);
+                }
+            }
+        }
+    }
+
+    private Map<String, List<UUID>> nameIndex(UUID folderId) {
+        Map<String, List<UUID>> index = nameIndexes.get(folderId);
+        if (index == null) {
+            index = new HashMap<>();
+            for (Link child : linkRepo.findChildren(folderId)) {
+                index.computeIfAbsent(child.getDisplayName(), k -> new ArrayList<>(1)).add(child.getId());
+                indexedIn.put(child.getId(), folderId);
+            }
+            nameIndexes.put(folderId, index);
+            while (nameIndexes.size() > maxNameIndexes) {
+                dropNameIndex(nameIndexes.keySet().iterator().next());
+            }
+        }
+        return index;
+    }
+
+    /** L'index du dossier qui contenait ce link (ancien parent). */
+    private void dropNameIndexOf(UUID linkId) {
+        UUID folder = indexedIn.get(linkId);
+        if (folder != null) {
+            dropNameIndex(folder);
+        }
+    }
+
+    private void dropNameIndex(UUID folderId) {
+        Map<String, List<UUID>> index = nameIndexes.remove(folderId);
+        if (index != null) {
+            for (List<UUID> children : index.values()) {
+                for (UUID child : children) {
+                    indexedIn.remove(child, folderId);
+                }
+            }
+        }
+    }
+}
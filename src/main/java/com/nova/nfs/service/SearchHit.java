@@ -0,0 +1,25 @@
+package com.nova.nfs.service;
+
+import com.nova.nfs.core.Link;
+
+/**
+ * Un résultat de recherche : le link et son chemin logique.
+ */
+public final class SearchHit {
+
+    private final Link link;
+    private final String path;
+
+    SearchHit(Link link, String path) {
+        this.link = link;
+        this.path = path;
+    }
+
+    public Link getLink() {
+        return link;
+    }
+
+    public String getPath() {
+        return path;
+    }
+}
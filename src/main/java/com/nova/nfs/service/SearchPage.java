@@ -0,0 +1,37 @@
+package com.nova.nfs.service;
+
+import java.util.List;
+
+/**
+ * Une page de résultats : {@code hits} à partir du rang {@code offset}.
+ */
+public final class SearchPage {
+
+    private final List<SearchHit> hits;
+    private final int offset;
+    private final boolean hasMore;
+
+    SearchPage(List<SearchHit> hits, int offset, boolean hasMore) {
+        this.hits = hits;
+        this.offset = offset;
+        this.hasMore = hasMore;
+    }
+
+    public List<SearchHit> getHits() {
+        return hits;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    /** Vrai s'il reste des résultats après cette page. */
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    /** Offset de la page suivante. */
+    public int nextOffset() {
+        return offset + hits.size();
+    }
+}
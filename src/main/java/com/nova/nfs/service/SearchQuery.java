@@ -0,0 +1,101 @@
+package com.nova.nfs.service;
+
+import java.util.Locale;
+
+/**
+ * Recherche par nom dans tout le catalogue (voir
+ * {@link NovaFsService#search}). Sans distinction de casse.
+ */
+public final class SearchQuery {
+
+    public enum Mode {
+        /** le nom commence par le texte */
+        PREFIX,
+        /** le nom contient le texte */
+        SUBSTRING,
+        /** pas de critère sur le nom (extension seule) */
+        ANY
+    }
+
+    private final Mode mode;
+    private final String text;
+    private final String extension;
+
+    private SearchQuery(Mode mode, String text, String extension) {
+        this.mode = mode;
+        this.text = text == null ? "" : text.toLowerCase(Locale.ROOT);
+        this.extension = extension == null || extension.isEmpty() ? null : extension.toLowerCase(Locale.ROOT);
+    }
+
+    public static SearchQuery prefix(String text) {
+        return new SearchQuery(Mode.PREFIX, text, null);
+    }
+
+    public static SearchQuery substring(String text) {
+        return new SearchQuery(Mode.SUBSTRING, text, null);
+    }
+
+    public static SearchQuery extension(String extension) {
+        return new SearchQuery(Mode.ANY, "", stripDot(extension));
+    }
+
+    /**
+     * Syntaxe de la barre de recherche : {@code rapport} (contient),
+     * {@code rap*} (commence par), {@code ext:pdf} (extension), combinables :
+     * {@code ext:pdf rap*}.
+     */
+    public static SearchQuery parse(String input) {
+        String extension = null;
+        StringBuilder text = new StringBuilder();
+        for (String token : input.trim().split("\\s+")) {
+            if (token.startsWith("ext:")) {
+                extension = stripDot(token.substring(4));
+            } else if (!token.isEmpty()) {
+                if (text.length() > 0) {
+                    text.append(' ');
+                }
+                text.append(token);
+            }
+        }
+        String t = text.toString();
+        if (t.isEmpty()) {
+            return new SearchQuery(Mode.ANY, "", extension);
+        }
+        if (t.endsWith("*")) {
+            return new SearchQuery(Mode.PREFIX, t.substring(0, t.length() - 1), extension);
+        }
+        return new SearchQuery(Mode.SUBSTRING, t, extension);
+    }
+
+    /** Même recherche, limitée aux FileEntry d'extension {@code extension}. */
+    public SearchQuery withExtension(String extension) {
+        return new SearchQuery(mode, text, stripDot(extension));
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /** Texte en minuscules. */
+    public String getText() {
+        return text;
+    }
+
+    /** Extension en minuscules, sans point ; null si pas de filtre. */
+    public String getExtension() {
+        return extension;
+    }
+
+    boolean isEmpty() {
+        return text.isEmpty() && extension == null;
+    }
+
+    private static String stripDot(String extension) {
+        return extension != null && extension.startsWith(".") ? extension.substring(1) : extension;
+    }
+
+    @Override
+    public String toString() {
+        return mode + " '" + text + "'" + (extension != null ? " ext:" + extension : "");
+    }
+}
@@ -0,0 +1,29 @@
+package com.nova.nfs.service;
+
+/**
+ * Suivi d'une opération longue du service (import...) : avancement et
+ * demande d'arrêt. L'opération interroge {@link #isCancelled()} entre deux
+ * étapes cohérentes et s'arrête par une
+ * {@link java.util.concurrent.CancellationException}.
+ */
+public interface TaskMonitor {
+
+    /** Pas de suivi. */
+    TaskMonitor NONE = new TaskMonitor() {
+    };
+
+    default boolean isCancelled() {
+        return false;
+    }
+
+    /** Total d'octets attendu, quand l'opération le connaît d'avance. */
+    default void expectBytes(long total) {
+    }
+
+    /**
+     * {@code files} fichiers de plus ont été traités, pour {@code bytes}
+     * octets. Peut être appelé depuis n'importe quel thread.
+     */
+    default void worked(int files, long bytes) {
+    }
+}
@@ -0,0 +1,72 @@
+package com.nova.nfs.storage;
+
+import com.nova.nfs.util.SystemProperties;
+
+import java.nio.file.Path;
+
+/**
+ * Répartition des blobs en sous-dossiers pour ne pas avoir des millions de
+ * fichiers dans un seul répertoire : avec une profondeur de 2,
+ * {@code abcd1234-....txt} est rangé dans {@code ab/cd/}. Les noms de blobs
+ * (hash ou UUID) sont aléatoires, donc les dossiers se remplissent
+ * uniformément. Profondeur 0 = dossier plat (ancien comportement).
+ * <p>
+ * Immuable : les {@code withXxx} renvoient une copie.
+ */
+public final class BlobLayout {
+
+    public static final int MAX_DEPTH = 4;
+
+    /** Caractères du nom utilisés par niveau. */
+    private static final int CHARS_PER_LEVEL = 2;
+
+    private final int depth;
+
+    private BlobLayout(int depth) {
+        this.depth = depth;
+    }
+
+    public static BlobLayout defaults() {
+        return new BlobLayout(2);
+    }
+
+    public static BlobLayout flat() {
+        return new BlobLayout(0);
+    }
+
+    /**
+     * Defaults surchargés par {@code -Dnfs.blobShardDepth=0..4}.
+     */
+    public static BlobLayout fromSystemProperties() {
+        return SystemProperties.withInt(defaults(), "nfs.blobShardDepth", BlobLayout::withDepth);
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public BlobLayout withDepth(int depth) {
+        if (depth < 0 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("shard depth must be between 0 and " + MAX_DEPTH + ": " + depth);
+        }
+        return new BlobLayout(depth);
+    }
+
+    /**
+     * Emplacement du blob {@code fileName} sous {@code root}. Un nom trop
+     * court pour être réparti reste à la racine.
+     */
+    public Path resolve(Path root, String fileName) {
+        int dot = fileName.indexOf('.');
+        String stem = (dot < 0 ? fileName : fileName.substring(0, dot)).replace("-", "");
+        if (depth == 0 || stem.length() < depth * CHARS_PER_LEVEL) {
+            return root.resolve(fileName);
+        }
+        Path dir = root;
+        for (int level = 0; level < depth; level++) {
+            int start = level * CHARS_PER_LEVEL;
+            dir = dir.resolve(stem.substring(start, start + CHARS_PER_LEVEL).toLowerCase());
+        }
+        return dir.resolve(fileName);
+    }
+}
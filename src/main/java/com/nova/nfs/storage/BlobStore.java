@@ -0,0 +1,413 @@
+package com.nova.nfs.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.ToIntFunction;
+
+/**
+ * Stockage physique des fichiers gérés (C:/NFS/files).
+ * <p>
+ * Les fichiers importés sont adressés par contenu : {@code <sha256>.<ext>}.
+ * Importer des octets déjà présents ne coûte qu'une lecture de la source, sans
+ * écriture : le nouveau FileEntry pointe sur le blob existant. Un blob n'est
+ * supprimé qu'avec sa dernière référence.
+ * <p>
+ * Un blob adressé par contenu est immuable, et en lecture seule sur disque :
+ * on peut l'ouvrir dans une appli externe pour le consulter. Avant de l'ouvrir
+ * en écriture on le {@link #detach détache} vers un fichier privé
+ * {@code <uuid>.<ext>}.
+ * <p>
+ * Les blobs sont répartis en sous-dossiers selon un {@link BlobLayout}.
+ * <p>
+ * Références d'un blob : les FileEntry qui le désignent, comptés par le
+ * repository, plus celles prises par {@link #put}, {@link #link},
+ * {@link #createEmpty} ou {@link #detach} et pas encore enregistrées
+ * ({@link #recorded}). Seules ces dernières sont gardées ici, en mémoire.
+ */
+public class BlobStore {
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int HASH_HEX_LENGTH = 64;
+    /** Tampon de lecture des imports, un par thread (les imports sont parallèles). */
+    private static final int COPY_BUFFER_SIZE = 1024 * 1024;
+    private static final ThreadLocal<ByteBuffer> COPY_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(COPY_BUFFER_SIZE));
+    /**
+     * Au-delà, la copie se fait par {@link FileChannel#transferTo} (sans passer
+     * par le tas ni par un tampon Java) et le fichier copié est relu pour le
+     * hacher.
+     */
+    private static final long TRANSFER_THRESHOLD = 4L * 1024 * 1024;
+    private static final String DELETING_SUFFIX = ".deleting";
+
+    private final Path root;
+    private final BlobLayout layout;
+    private final ToIntFunction<String> referencedBy;
+    /** Références prises mais pas encore enregistrées dans le repository. */
+    private final Map<Path, Integer> pending = new HashMap<>();
+
+    /**
+     * @param referencedBy nombre de FileEntry qui désignent un chemin physique
+     *                     (voir {@code FileRepository.countByPhysicalPath})
+     */
+    public BlobStore(Path root, BlobLayout layout, ToIntFunction<String> referencedBy) {
+        this.root = root;
+        this.layout = layout;
+        this.referencedBy = referencedBy;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public BlobLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Range le contenu de {@code source} et prend une référence dessus.
+     * La source est d'abord lue pour la hacher : si le blob existe déjà on le
+     * reprend sans rien écrire. Sinon elle est copiée sous un nom temporaire
+     * (hachée au passage, ou relue après un {@code transferTo} pour les gros
+     * fichiers) et le blob est nommé d'après ce qui a été copié (une source modifiée entre-temps ne peut pas donner un blob dont le
+     * contenu ne correspond pas à son nom).
+     */
+    public Path put(Path source, String extension) throws IOException {
+        Path existing = locate(hash(source), extension);
+        synchronized (this) {
+            if (Files.exists(existing)) {
+                retain(existing);
+                return existing;
+            }
+        }
+        // la copie se fait hors verrou (imports parallèles) sous un nom
+        // temporaire : un blob visible sous son hash est toujours complet
+        Files.createDirectories(root);
+        Path tmp = Files.createTempFile(root, "put", ".tmp");
+        try {
+            String hash;
+            if (Files.size(source) >= TRANSFER_THRESHOLD) {
+                transfer(source, tmp);
+                hash = hash(tmp);
+            } else {
+                hash = copyHashing(source, tmp);
+            }
+            Path blob = locate(hash, extension);
+            synchronized (this) {
+                if (!Files.exists(blob)) {
+                    Files.createDirectories(blob.getParent());
+                    tmp.toFile().setReadOnly();
+                    Files.move(tmp, blob, StandardCopyOption.ATOMIC_MOVE);
+                }
+                retain(blob);
+            }
+            return blob;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Range {@code source} par un lien physique, sans copie ni hash : le blob
+     * est privé ({@code <uuid>.<ext>}) et partage ses octets avec la source.
+     * Si le lien est impossible (autre volume, système de fichiers sans liens
+     * physiques), on retombe sur {@link #put}.
+     */
+    public Path link(Path source, String extension) throws IOException {
+        Path blob = locate(UUID.randomUUID().toString(), extension);
+        try {
+            Files.createDirectories(blob.getParent());
+            Files.createLink(blob, source);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            return put(source, extension);
+        }
+        synchronized (this) {
+            retain(blob);
+        }
+        return blob;
+    }
+
+    /** Hash de {@code source}, lu avec le tampon du thread. */
+    public static String hash(Path source) throws IOException {
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = COPY_BUFFER.get();
+        buffer.clear();
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            while (in.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void transfer(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                long n = in.transferTo(position, size - position, out);
+                if (n <= 0) {
+                    break;
+                }
+                position += n;
+            }
+        }
+    }
+
+    /** Copie {@code source} dans {@code target} et renvoie le hash des octets copiés. */
+    private static String copyHashing(Path source, Path target) throws IOException {
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = COPY_BUFFER.get();
+        buffer.clear();
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (in.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Crée un fichier vide privé (non adressé par contenu, donc modifiable)
+     * et prend une référence dessus.
+     */
+    public synchronized Path createEmpty(String extension) throws IOException {
+        Path blob = locate(UUID.randomUUID().toString(), extension);
+        Files.createDirectories(blob.getParent());
+        Files.createFile(blob);
+        retain(blob);
+        return blob;
+    }
+
+    /**
+     * Garantit qu'un fichier peut être modifié sans toucher aux autres
+     * références : un blob adressé par contenu est renommé (dernière
+     * référence) ou copié vers un fichier privé. La copie se fait hors verrou,
+     * sous un nom temporaire ; l'appelant enregistre ensuite le nouveau chemin
+     * dans le FileEntry ({@link #recorded}) ou rend la référence
+     * ({@link #release}) si le FileEntry a changé entre-temps.
+     *
+     * @return le chemin à utiliser désormais pour cette référence
+     */
+    public Path detach(Path blob, String extension) throws IOException {
+        if (!isContentAddressed(blob)) {
+            return blob;
+        }
+        Path copy = locate(UUID.randomUUID().toString(), extension);
+        Files.createDirectories(copy.getParent());
+        synchronized (this) {
+            if (!Files.exists(blob)) {
+                return blob;
+            }
+            if (refCount(blob) <= 1) {
+                // un put du même contenu ne trouvera plus le blob : il le recrée
+                Files.move(blob, copy);
+                copy.toFile().setWritable(true);
+                retain(copy);
+                return copy;
+            }
+        }
+        Path tmp = Files.createTempFile(copy.getParent(), "detach", ".tmp");
+        try {
+            Files.copy(blob, tmp, StandardCopyOption.REPLACE_EXISTING);
+            tmp.toFile().setWritable(true);
+            synchronized (this) {
+                Files.move(tmp, copy, StandardCopyOption.ATOMIC_MOVE);
+                retain(copy);
+            }
+            return copy;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Met un blob adressé par contenu en lecture seule sur disque, avant de le
+     * confier à une appli externe (les blobs rangés avant que {@link #put} ne
+     * le fasse sont encore modifiables).
+     */
+    public void protect(Path blob) {
+        if (isContentAddressed(blob)) {
+            blob.toFile().setReadOnly();
+        }
+    }
+
+    /**
+     * La référence prise sur {@code blob} est maintenant enregistrée : le
+     * FileEntry qui le désigne a été sauvé, le repository la compte.
+     */
+    public synchronized void recorded(Path blob) {
+        pending.computeIfPresent(key(blob), (k, n) -> n > 1 ? n - 1 : null);
+    }
+
+    /**
+     * Rend une référence qui ne sera pas enregistrée (import échoué). Le
+     * fichier n'est supprimé que si c'était la dernière.
+     *
+     * @return true si le fichier physique a été supprimé
+     */
+    public synchronized boolean release(Path blob) throws IOException {
+        recorded(blob);
+        if (refCount(blob) > 0) {
+            return false;
+        }
+        return deleteFile(blob);
+    }
+
+    /**
+     * Supprime {@code blob} s'il n'a plus aucune référence. Le fichier est
+     * renommé en {@code .deleting} sous verrou puis effacé hors verrou : un
+     * {@link #put} du même contenu pendant ce temps recrée le blob au lieu de
+     * reprendre un fichier en cours de suppression. Un {@code .deleting}
+     * laissé par une suppression interrompue est effacé aussi.
+     *
+     * @return false si le blob est référencé (il est conservé)
+     */
+    public boolean deleteIfUnreferenced(Path blob) throws IOException {
+        Path doomed;
+        synchronized (this) {
+            if (refCount(blob) > 0) {
+                return false;
+            }
+            doomed = blob.resolveSibling(blob.getFileName() + DELETING_SUFFIX);
+            if (Files.exists(blob)) {
+                Files.move(blob, doomed, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        deleteFile(doomed);
+        return true;
+    }
+
+    public synchronized int refCount(Path blob) {
+        return referencedBy.applyAsInt(blob.toString()) + pending.getOrDefault(key(blob), 0);
+    }
+
+    // ---------- changement de layout ----------
+
+    /**
+     * Emplacement de {@code blob} dans le layout courant. Renvoie
+     * {@code blob} lui-même pour un fichier hors de {@link #getRoot()}.
+     */
+    public Path layoutPath(Path blob) {
+        if (!key(blob).startsWith(key(root))) {
+            return blob;
+        }
+        return layout.resolve(root, blob.getFileName().toString());
+    }
+
+    /**
+     * Rend {@code blob} disponible à son emplacement du layout courant, sans
+     * supprimer l'ancien : lien physique si possible, sinon copie sous un nom
+     * temporaire puis renommage. Idempotent : si la cible existe déjà (reprise
+     * après interruption) elle est réutilisée.
+     *
+     * @return le nouvel emplacement
+     */
+    public Path placeInLayout(Path blob) throws IOException {
+        Path target = layoutPath(blob);
+        if (key(target).equals(key(blob)) || Files.exists(target)) {
+            return target;
+        }
+        Files.createDirectories(target.getParent());
+        try {
+            Files.createLink(target, blob);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            if (!Files.exists(blob)) {
+                throw e;
+            }
+            Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            try {
+                Files.copy(blob, tmp, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Copies du blob {@code blob} (même nom) aux emplacements des autres
+     * profondeurs de layout : restes d'une migration interrompue.
+     */
+    public List<Path> otherLayoutCopies(Path blob) {
+        List<Path> copies = new ArrayList<>();
+        String name = blob.getFileName().toString();
+        for (int depth = 0; depth <= BlobLayout.MAX_DEPTH; depth++) {
+            Path candidate = layout.withDepth(depth).resolve(root, name);
+            if (!key(candidate).equals(key(blob)) && Files.exists(candidate)) {
+                copies.add(candidate);
+            }
+        }
+        return copies;
+    }
+
+    /**
+     * Supprime un fichier du store, même en lecture seule (sous Windows
+     * l'attribut empêche la suppression).
+     */
+    public static boolean deleteFile(Path file) throws IOException {
+        file.toFile().setWritable(true);
+        return Files.deleteIfExists(file);
+    }
+
+    public boolean isContentAddressed(Path blob) {
+        String name = blob.getFileName().toString();
+        int dot = name.indexOf('.');
+        String stem = dot < 0 ? name : name.substring(0, dot);
+        if (stem.length() != HASH_HEX_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < stem.length(); i++) {
+            if (Character.digit(stem.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(HASH_ALGORITHM + " not available", e);
+        }
+    }
+
+    private void retain(Path blob) {
+        pending.merge(key(blob), 1, Integer::sum);
+    }
+
+    private static Path key(Path blob) {
+        return blob.toAbsolutePath().normalize();
+    }
+
+    private Path locate(String stem, String extension) {
+        return layout.resolve(root, fileName(stem, extension));
+    }
+
+    private static String fileName(String stem, String extension) {
+        return extension == null || extension.isEmpty() ? stem : stem + "." + extension;
+    }
+}
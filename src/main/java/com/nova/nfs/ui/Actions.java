@@ -11,10 +11,12 @@ import java.awt.*;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.*;
+import java.util.Optional;
 
 public class Actions {
 
-    public static void importFromWindows(Stage stage, NovaFsService nfs, Link currentFolder) {
+    public static void importFromWindows(Stage stage, NovaFsService nfs, Link currentFolder,
+                                         BackgroundTasks tasks) {
         if (currentFolder == null || (currentFolder.getType() != LinkType.FOLDER
                 && currentFolder.getType() != LinkType.ROOT
                 && currentFolder.getType() != LinkType.TRASH)) {
@@ -29,14 +31,12 @@ public class Actions {
             return;
         }
 
-        try {
-            nfs.importDirectoryRecursive(currentFolder.getId(), selectedDir.toPath());
-        } catch (IOException e) {
-            System.err.println("Failed to import directory: " + selectedDir + " - " + e.getMessage());
-        }
+        tasks.submit("Import " + selectedDir.getName(), progress ->
+                nfs.importDirectoryRecursive(currentFolder.getId(), selectedDir.toPath(), progress));
     }
 
-    public static void exportSelectedToWindows(Stage stage, NovaFsService nfs, Link selectedLink) {
+    public static void exportSelectedToWindows(Stage stage, NovaFsService nfs, Link selectedLink,
+                                               BackgroundTasks tasks) {
         if (selectedLink == null || selectedLink.getType() != LinkType.FILE) {
             System.out.println("No file selected for export.");
             return;
@@ -70,27 +70,43 @@ public class Actions {
         }
 
         Path dest = dir.toPath().resolve(name);
-        try {
-            Files.copy(src, dest, StandardCopyOption.REPLACE_EXISTING);
-        } catch (IOException e) {
-            System.err.println("Failed to export file: " + e.getMessage());
-        }
+        tasks.submit("Export " + name, progress -> nfs.exportFile(selectedLink.getId(), dest, progress));
     }
 
     public static void moveToTrash(NovaFsService nfs, Link selectedLink) {
-        if (selectedLink == null || selectedLink.getType() != LinkType.FILE) {
-            System.out.println("No file selected for trash.");
+        if (selectedLink == null
+                || (selectedLink.getType() != LinkType.FILE && selectedLink.getType() != LinkType.FOLDER)) {
+            System.out.println("No file or folder selected for trash.");
             return;
         }
-        nfs.moveFileToTrash(selectedLink.getId());
+        nfs.moveToTrash(selectedLink.getId());
     }
 
+    /**
+     * Ouvre un fichier pour le consulter : un blob dédupliqué est ouvert sur
+     * place, en lecture seule, sans être copié.
+     */
     public static void openFile(NovaFsService nfs, Link link) {
         if (link == null || link.getType() != LinkType.FILE) {
             return;
         }
+        open(nfs.prepareFileForView(link));
+    }
+
+    /**
+     * Ouvre un fichier pour le modifier. Un blob dédupliqué est d'abord
+     * détaché (copié s'il est partagé) : fait en tâche de fond.
+     */
+    public static void editFile(NovaFsService nfs, Link link, BackgroundTasks tasks) {
+        if (link == null || link.getType() != LinkType.FILE) {
+            return;
+        }
+        // ouvert dans une appli externe qui peut le modifier : on ne doit
+        // pas toucher aux autres références d'un blob dédupliqué
+        tasks.submit("Edit " + link.getDisplayName(), progress -> open(nfs.prepareFileForEdit(link)));
+    }
 
-        var optFile = nfs.getFileForFileLink(link);
+    private static void open(Optional<FileEntry> optFile) {
         if (optFile.isEmpty()) {
             System.out.println("FileEntry not found for link.");
             return;
@@ -0,0 +1,199 @@
+package com.nova.nfs.ui;
+
+import com.nova.nfs.service.TaskMonitor;
+import com.nova.nfs.util.SystemProperties;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opérations longues de l'UI (import, export, suppression) exécutées sur un
+ * pool de threads plutôt que sur le thread JavaFX.
+ * <p>
+ * Chaque tâche publie son avancement (fichiers et octets) et peut être
+ * annulée. L'annulation est coopérative : elle n'interrompt pas le thread (une
+ * interruption en pleine écriture fermerait les canaux des repositories).
+ * L'opération voit la demande via {@link TaskMonitor#isCancelled()} et
+ * s'arrête à une étape cohérente ; d'ici là la tâche reste affichée
+ * (« Cancelling... ») et une erreur levée entre-temps est montrée comme les
+ * autres. Les tâches terminées sans erreur, ou arrêtées, quittent la liste.
+ * <p>
+ * Nombre de threads : {@code -Dnfs.uiWorkers} (2 par défaut).
+ */
+final class BackgroundTasks {
+
+    private static final long SHUTDOWN_WAIT_SECONDS = 30;
+
+    /** Le travail d'une tâche ; {@code progress} sert aussi de {@link TaskMonitor}. */
+    @FunctionalInterface
+    interface Work {
+        void run(Progress progress) throws Exception;
+    }
+
+    /** Avancement d'une tâche, alimenté depuis le thread de travail. */
+    static final class Progress implements TaskMonitor {
+        private final BackgroundTask task;
+        private final AtomicInteger files = new AtomicInteger();
+        private final AtomicLong bytes = new AtomicLong();
+        private volatile long expectedBytes = -1;
+
+        private Progress(BackgroundTask task) {
+            this.task = task;
+        }
+
+        /** Total attendu, s'il est connu : la barre devient déterminée. */
+        @Override
+        public void expectBytes(long total) {
+            expectedBytes = total;
+            publish();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return task.cancelRequested;
+        }
+
+        @Override
+        public void worked(int fileCount, long byteCount) {
+            files.addAndGet(fileCount);
+            bytes.addAndGet(byteCount);
+            publish();
+        }
+
+        /** Lève une CancellationException si l'arrêt a été demandé. */
+        void checkCancelled() {
+            if (isCancelled()) {
+                throw new CancellationException();
+            }
+        }
+
+        private void publish() {
+            long done = bytes.get();
+            // updateMessage/updateProgress regroupent déjà les mises à jour
+            // sur le thread JavaFX
+            task.report(files.get() + " files, " + formatBytes(done),
+                    expectedBytes > 0 ? done : -1, expectedBytes > 0 ? expectedBytes : 1);
+        }
+    }
+
+    /** Tâche affichée dans le panneau. */
+    static final class BackgroundTask extends Task<Void> {
+        private final Work work;
+        /** Lu par le thread de travail. */
+        private volatile boolean cancelRequested;
+        /** Même information, pour l'affichage (thread JavaFX). */
+        private final ReadOnlyBooleanWrapper cancelling = new ReadOnlyBooleanWrapper();
+
+        private BackgroundTask(String title, Work work) {
+            this.work = work;
+            updateTitle(title);
+        }
+
+        @Override
+        protected Void call() throws Exception {
+            Progress progress = new Progress(this);
+            progress.checkCancelled(); // annulée avant d'avoir démarré
+            work.run(progress);
+            return null;
+        }
+
+        /**
+         * Demande l'arrêt sans annuler le {@link Task} : il reste RUNNING
+         * jusqu'au retour de l'opération, qui décide de son état final.
+         * À appeler depuis le thread JavaFX.
+         */
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (isDone() || cancelRequested) {
+                return false;
+            }
+            cancelRequested = true;
+            cancelling.set(true);
+            return true;
+        }
+
+        ReadOnlyBooleanProperty cancellingProperty() {
+            return cancelling.getReadOnlyProperty();
+        }
+
+        private void report(String message, long done, long total) {
+            updateMessage(message);
+            updateProgress(done, total);
+        }
+    }
+
+    private final ExecutorService workers;
+    private final ObservableList<BackgroundTask> tasks = FXCollections.observableArrayList();
+
+    BackgroundTasks() {
+        // -Dnfs.uiWorkers=... ; une valeur invalide fait échouer le démarrage
+        int threads = Math.max(1, SystemProperties.withInt(2, "nfs.uiWorkers", (current, value) -> value));
+        AtomicInteger count = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "nfs-ui-worker-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Tâches en cours ou en échec (thread JavaFX uniquement). */
+    ObservableList<BackgroundTask> getTasks() {
+        return tasks;
+    }
+
+    /**
+     * Lance {@code work} en tâche de fond. À appeler depuis le thread JavaFX.
+     */
+    BackgroundTask submit(String title, Work work) {
+        BackgroundTask task = new BackgroundTask(title, work);
+        task.setOnSucceeded(e -> tasks.remove(task));
+        task.setOnFailed(e -> {
+            Throwable error = task.getException();
+            if (error instanceof CancellationException) {
+                tasks.remove(task);
+                return;
+            }
+            System.err.println(task.getTitle() + " failed: " + error.getMessage());
+        });
+        tasks.add(task);
+        workers.execute(task);
+        return task;
+    }
+
+    /**
+     * Annule les tâches et attend qu'elles aient atteint un point d'arrêt,
+     * avant la fermeture des repositories. À appeler depuis le thread JavaFX.
+     */
+    void shutdown() {
+        for (BackgroundTask task : tasks) {
+            task.cancel();
+        }
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("Failed to stop background tasks in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return (bytes / 1024) + " KB";
+        }
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
@@ -0,0 +1,218 @@
+package com.nova.nfs.ui;
+
+import com.nova.nfs.core.Link;
+import com.nova.nfs.service.LinkChange;
+import com.nova.nfs.service.NovaFsService;
+import javafx.concurrent.Task;
+import javafx.scene.control.TreeItem;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+/**
+ * Dossier de l'arbre chargé à la demande : ses sous-dossiers ne sont lus
+ * qu'à la première ouverture, sur {@code loader} et pas sur le thread JavaFX.
+ * La flèche d'ouverture vient d'un simple test « a des sous-dossiers »
+ * calculé en même temps que le dossier lui-même.
+ * <p>
+ * Les éléments d'un même arbre partagent un {@link Tree} qui les indexe par
+ * id : un changement publié par le service se reporte sur l'élément concerné
+ * sans parcourir l'arbre.
+ */
+final class FolderTreeItem extends TreeItem<Link> {
+
+    /** Un sous-dossier lu en tâche de fond. */
+    private record Child(Link link, boolean hasSubfolders) {
+    }
+
+    /** État partagé par les éléments d'un arbre. */
+    static final class Tree {
+        private final NovaFsService nfs;
+        private final Executor loader;
+        private final Map<UUID, FolderTreeItem> items = new HashMap<>();
+
+        Tree(NovaFsService nfs, Executor loader) {
+            this.nfs = nfs;
+            this.loader = loader;
+        }
+
+        /** Élément déjà créé pour ce dossier, null sinon. */
+        FolderTreeItem find(UUID id) {
+            return items.get(id);
+        }
+    }
+
+    private final Tree tree;
+    private boolean hasSubfolders;
+    private boolean loaded;
+    private boolean loading;
+    /** un changement est arrivé pendant la lecture : le résultat est périmé */
+    private boolean reloadNeeded;
+    private final List<Runnable> whenLoaded = new ArrayList<>();
+
+    FolderTreeItem(Link folder, boolean hasSubfolders, Tree tree) {
+        super(folder);
+        this.hasSubfolders = hasSubfolders;
+        this.tree = tree;
+        tree.items.put(folder.getId(), this);
+        expandedProperty().addListener((obs, was, expanded) -> {
+            if (expanded) {
+                load(null);
+            }
+        });
+    }
+
+    @Override
+    public boolean isLeaf() {
+        return loaded ? getChildren().isEmpty() : !hasSubfolders;
+    }
+
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Charge les sous-dossiers si ce n'est pas déjà fait, puis exécute
+     * {@code then} sur le thread JavaFX. À appeler depuis le thread JavaFX.
+     */
+    void load(Runnable then) {
+        if (loaded) {
+            if (then != null) {
+                then.run();
+            }
+            return;
+        }
+        if (then != null) {
+            whenLoaded.add(then);
+        }
+        if (loading) {
+            return;
+        }
+        loading = true;
+        reloadNeeded = false;
+
+        UUID folderId = getValue().getId();
+        NovaFsService nfs = tree.nfs;
+        Task<List<Child>> task = new Task<>() {
+            @Override
+            protected List<Child> call() {
+                List<Child> result = new ArrayList<>();
+                for (Link child : nfs.getChildFolders(folderId)) {
+                    result.add(new Child(child, nfs.hasChildFolders(child.getId())));
+                }
+                return result;
+            }
+        };
+        task.setOnSucceeded(e -> populate(task.getValue()));
+        task.setOnFailed(e -> {
+            System.err.println("Failed to load folder: " + task.getException().getMessage());
+            loading = false;
+            whenLoaded.clear();
+        });
+        tree.loader.execute(task);
+    }
+
+    private void populate(List<Child> children) {
+        if (reloadNeeded) {
+            loading = false;
+            load(null);
+            return;
+        }
+        List<FolderTreeItem> items = new ArrayList<>(children.size());
+        for (Child child : children) {
+            // un élément resté ailleurs dans l'arbre est forcément périmé
+            remove(tree, child.link().getId());
+            items.add(new FolderTreeItem(child.link(), child.hasSubfolders(), tree));
+        }
+        loaded = true;
+        loading = false;
+        hasSubfolders = !items.isEmpty();
+        getChildren().addAll(items);
+        List<Runnable> callbacks = new ArrayList<>(whenLoaded);
+        whenLoaded.clear();
+        callbacks.forEach(Runnable::run);
+    }
+
+    // ---------- changements publiés par le service ----------
+
+    /**
+     * Reporte un changement sur l'arbre (à appeler sur le thread JavaFX, pour
+     * les links FOLDER/TRASH).
+     */
+    static void apply(Tree tree, LinkChange change) {
+        invalidateLoading(tree, change.getOldParentId());
+        invalidateLoading(tree, change.getNewParentId());
+        if (change.getKind() == LinkChange.Kind.DELETED) {
+            remove(tree, change.getLinkId());
+        } else {
+            place(tree, change.getLink());
+        }
+    }
+
+    private static void invalidateLoading(Tree tree, UUID folderId) {
+        FolderTreeItem item = folderId != null ? tree.find(folderId) : null;
+        if (item != null && item.loading) {
+            item.reloadNeeded = true;
+        }
+    }
+
+    /**
+     * Place {@code folder} (nouvel état) sous son parent dans l'arbre. Rien
+     * n'est chargé : si le parent n'a pas encore été ouvert, seule sa flèche
+     * est mise à jour.
+     */
+    private static void place(Tree tree, Link folder) {
+        FolderTreeItem item = tree.find(folder.getId());
+        FolderTreeItem parent = folder.getParentId() != null ? tree.find(folder.getParentId()) : null;
+        if (item != null && item.getParent() == parent && parent != null) {
+            item.setValue(folder); // renommage
+            return;
+        }
+        if (item != null && item.getParent() != null) {
+            item.getParent().getChildren().remove(item);
+        }
+        if (parent == null) {
+            if (item != null) {
+                item.forget();
+            }
+            return;
+        }
+        if (!parent.loaded) {
+            // le sous-arbre sera relu à l'ouverture du parent
+            if (item != null) {
+                item.forget();
+            }
+            parent.hasSubfolders = true;
+            return;
+        }
+        if (item == null) {
+            item = new FolderTreeItem(folder, tree.nfs.hasChildFolders(folder.getId()), tree);
+        } else {
+            item.setValue(folder);
+        }
+        parent.getChildren().add(item);
+    }
+
+    private static void remove(Tree tree, UUID folderId) {
+        FolderTreeItem item = tree.find(folderId);
+        if (item == null) {
+            return;
+        }
+        if (item.getParent() != null) {
+            item.getParent().getChildren().remove(item);
+        }
+        item.forget();
+    }
+
+    /** Retire cet élément et ses descendants chargés de l'index. */
+    private void forget() {
+        tree.items.remove(getValue().getId(), this);
+        for (TreeItem<Link> child : getChildren()) {
+            ((FolderTreeItem) child).forget();
+        }
+    }
+}
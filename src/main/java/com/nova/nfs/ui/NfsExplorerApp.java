@@ -2,14 +2,23 @@ package com.nova.nfs.ui;
 
 import com.nova.nfs.core.Link;
 import com.nova.nfs.core.LinkType;
-import com.nova.nfs.repo.JsonFileRepository;
-import com.nova.nfs.repo.JsonLinkRepository;
-import com.nova.nfs.repo.LinkRepository;
+import com.nova.nfs.metrics.Metrics;
+import com.nova.nfs.metrics.Timer;
+import com.nova.nfs.repo.StoreOptions;
+import com.nova.nfs.service.ContentHit;
+import com.nova.nfs.service.GarbageCollector;
+import com.nova.nfs.service.GcOptions;
+import com.nova.nfs.service.LinkChange;
 import com.nova.nfs.service.NovaFsService;
+import com.nova.nfs.service.SearchHit;
+import com.nova.nfs.service.SearchPage;
+import com.nova.nfs.service.SearchQuery;
 import com.nova.nfs.util.Bootstrap;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.beans.binding.Bindings;
 import javafx.beans.property.SimpleStringProperty;
+import javafx.concurrent.Task;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.input.ClipboardContent;
@@ -20,33 +29,73 @@ import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
 import java.io.File;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class NfsExplorerApp extends Application {
 
     private NovaFsService nfs;
     private TreeView<Link> treeView;
     private TableView<Link> tableView;
+    /** Lectures de l'UI hors du thread JavaFX (dossiers de l'arbre, recherche). */
+    private ExecutorService treeLoader;
+    private FolderTreeItem.Tree tree;
+    private BackgroundTasks tasks;
+    private GarbageCollector gc;
+    /** Changements publiés hors du thread JavaFX, appliqués par paquets. */
+    private final ConcurrentLinkedQueue<LinkChange> pendingChanges = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    private static final Timer APPLY_CHANGES = Metrics.timer("ui.applyChanges");
+    private static final Timer SHOW_FOLDER = Metrics.timer("ui.showFolder");
+
+    private static final int SEARCH_PAGE_SIZE = 200;
+    private static final String CONTENT_SEARCH_PREFIX = "text:";
+    /** Recherche affichée dans la table, null en mode dossier. */
+    private SearchQuery activeSearch;
+    /** Recherche plein texte affichée dans la table, null sinon. */
+    private String activeContentSearch;
+    private int searchNextOffset;
+    /** Chemin logique des résultats affichés (colonne Location). */
+    private final Map<UUID, String> searchPaths = new HashMap<>();
+    /** Extrait du contenu des résultats plein texte (colonne Match). */
+    private final Map<UUID, String> searchSnippets = new HashMap<>();
+    private Button moreResultsBtn;
 
     @Override
     public void start(Stage primaryStage) {
-        Path baseDir = Path.of("C:/NFS");
-        Path dataDir = baseDir.resolve("data");
-        Path filesRoot = baseDir.resolve("files");
-
-        var fileRepo = new JsonFileRepository(dataDir.resolve("files.json"));
-        LinkRepository linkRepo = new JsonLinkRepository(dataDir.resolve("links.json"));
-
-        Link root = Bootstrap.ensureRoot(linkRepo);
-        Link trash = Bootstrap.ensureTrash(linkRepo, root.getId());
+        StoreOptions storeOptions = StoreOptions.fromSystemProperties();
+        Metrics.startLogging();
+        try {
+            nfs = Bootstrap.openService(Bootstrap.baseDir(), storeOptions);
+        } catch (IllegalStateException e) {
+            // catalogue déjà ouvert (autre fenêtre ou daemon)
+            new Alert(Alert.AlertType.ERROR, e.getMessage(), ButtonType.OK).showAndWait();
+            Platform.exit();
+            return;
+        }
+        Link root = nfs.findLink(nfs.getRootLinkId()).orElseThrow();
+        gc = new GarbageCollector(nfs, GcOptions.fromSystemProperties());
+        gc.start();
 
-        nfs = new NovaFsService(fileRepo, linkRepo, filesRoot, root.getId(), trash.getId());
+        treeLoader = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "nfs-tree-loader");
+            t.setDaemon(true);
+            return t;
+        });
 
-        nfs.cleanupDanglingFileLinks();
-        nfs.attachOrphanFilesToRoot();
+        tasks = new BackgroundTasks();
 
         treeView = new TreeView<>();
         tableView = new TableView<>();
@@ -54,6 +103,21 @@ public class NfsExplorerApp extends Application {
         setupTree(root);
         setupTable();
 
+        // l'arbre et la table suivent les changements au lieu d'être relus
+        nfs.addChangeListener(changes -> {
+            if (Platform.isFxApplicationThread()) {
+                drainPendingChanges(); // dans l'ordre des écritures
+                applyChanges(changes);
+                return;
+            }
+            // un import en tâche de fond publie batch après batch : un seul
+            // passage sur le thread JavaFX les applique tous
+            pendingChanges.addAll(changes);
+            if (drainScheduled.compareAndSet(false, true)) {
+                Platform.runLater(this::drainPendingChanges);
+            }
+        });
+
         SplitPane split = new SplitPane(treeView, tableView);
         split.setDividerPositions(0.3);
 
@@ -62,6 +126,7 @@ public class NfsExplorerApp extends Application {
         BorderPane rootPane = new BorderPane();
         rootPane.setTop(toolbar);
         rootPane.setCenter(split);
+        rootPane.setBottom(new TaskPanel(tasks));
 
         Scene scene = new Scene(rootPane, 1200, 800);
         primaryStage.setTitle("Nova File System Explorer");
@@ -69,13 +134,28 @@ public class NfsExplorerApp extends Application {
         primaryStage.show();
     }
 
+    @Override
+    public void stop() {
+        if (tasks != null) {
+            tasks.shutdown();
+        }
+        if (treeLoader != null) {
+            treeLoader.shutdownNow();
+        }
+        if (gc != null) {
+            gc.close();
+        }
+        if (nfs != null) {
+            nfs.close();
+        }
+        Metrics.stopLogging();
+    }
+
     private ToolBar buildToolbar(Stage stage) {
         Button importBtn = new Button("Import");
         importBtn.setOnAction(e -> {
             Link folder = getCurrentFolderLink();
-            Actions.importFromWindows(stage, nfs, folder);
-            refreshTreePreserveSelection(); // rafraîchir l'arbre pour voir les nouveaux dossiers
-            refreshCurrentFolder(); // rafraîchir la table pour voir les nouveaux fichiers
+            Actions.importFromWindows(stage, nfs, folder, tasks);
         });
 
         Button newFolderBtn = new Button("New Folder");
@@ -88,7 +168,6 @@ public class NfsExplorerApp extends Application {
                 dialog.setContentText("Name:");
                 dialog.showAndWait().ifPresent(name -> {
                     nfs.createFolder(parent.getId(), name);
-                    refreshTreePreserveSelection();
                 });
             }
         });
@@ -99,16 +178,20 @@ public class NfsExplorerApp extends Application {
         Button exportBtn = new Button("Export");
         exportBtn.setOnAction(e -> {
             Link selected = tableView.getSelectionModel().getSelectedItem();
-            Actions.exportSelectedToWindows(stage, nfs, selected);
+            Actions.exportSelectedToWindows(stage, nfs, selected, tasks);
         });
 
         Button trashBtn = new Button("Move to Trash");
         trashBtn.setOnAction(e -> {
             Link selected = tableView.getSelectionModel().getSelectedItem();
-            if (selected != null && selected.getType() == LinkType.FILE) {
-                Actions.moveToTrash(nfs, selected);
-                refreshCurrentFolder();
-                // pas besoin de toucher à l'arbre
+            Actions.moveToTrash(nfs, selected);
+        });
+
+        Button emptyTrashBtn = new Button("Empty Trash");
+        emptyTrashBtn.setOnAction(e -> {
+            if (confirm("Empty Trash", "Permanently delete everything in the trash?")) {
+                tasks.submit("Empty Trash",
+                        progress -> nfs.deletePermanently(nfs.getTrashLinkId(), progress));
             }
         });
 
@@ -118,15 +201,38 @@ public class NfsExplorerApp extends Application {
             Actions.openFile(nfs, selected);
         });
 
-        return new ToolBar(importBtn, newFolderBtn, renameBtn, exportBtn, trashBtn, openBtn);
+        TextField searchField = new TextField();
+        searchField.setPromptText("Search: name, name*, ext:pdf, text:words");
+        searchField.setPrefColumnCount(20);
+        searchField.setOnAction(e -> {
+            String text = searchField.getText();
+            if (text == null || text.isBlank()) {
+                onFolderSelected(getCurrentFolderLink());
+            } else if (text.strip().startsWith(CONTENT_SEARCH_PREFIX)) {
+                clearSearch();
+                activeContentSearch = text.strip().substring(CONTENT_SEARCH_PREFIX.length());
+                loadContentSearch(activeContentSearch);
+            } else {
+                clearSearch();
+                activeSearch = SearchQuery.parse(text);
+                loadSearchPage(activeSearch, 0);
+            }
+        });
+
+        moreResultsBtn = new Button("More results");
+        moreResultsBtn.setVisible(false);
+        moreResultsBtn.setOnAction(e -> {
+            if (activeSearch != null) {
+                loadSearchPage(activeSearch, searchNextOffset);
+            }
+        });
+
+        return new ToolBar(importBtn, newFolderBtn, renameBtn, exportBtn, trashBtn, emptyTrashBtn, openBtn,
+                new Separator(), searchField, moreResultsBtn);
     }
 
     private void setupTree(Link rootLink) {
-        TreeItem<Link> rootItem = new TreeItem<>(rootLink);
-        rootItem.setExpanded(true);
-        treeView.setRoot(rootItem);
-
-        loadFolderChildrenRecursive(rootItem);
+        treeView.setRoot(newRootItem(rootLink));
 
         treeView.getSelectionModel().selectedItemProperty().addListener((obs, oldV, newV) -> {
             if (newV != null) {
@@ -166,7 +272,6 @@ public class NfsExplorerApp extends Application {
                         Link target = cell.getItem();
                         nfs.moveLink(draggedId, target.getId());
                         success = true;
-                        refreshTreePreserveSelection();
                     } catch (Exception ex) {
                         System.err.println("Move failed: " + ex.getMessage());
                     }
@@ -179,18 +284,15 @@ public class NfsExplorerApp extends Application {
         });
     }
 
-    private void loadFolderChildrenRecursive(TreeItem<Link> parentItem) {
-        Link parentLink = parentItem.getValue();
-        List<Link> children = nfs.getChildren(parentLink.getId());
-
-        for (Link child : children) {
-            if (child.getType() == LinkType.FOLDER || child.getType() == LinkType.TRASH) {
-                TreeItem<Link> item = new TreeItem<>(child);
-                item.setExpanded(true);
-                parentItem.getChildren().add(item);
-                loadFolderChildrenRecursive(item);
-            }
-        }
+    /**
+     * Racine de l'arbre : seuls ses sous-dossiers directs sont chargés, le
+     * reste à l'ouverture de chaque dossier (voir {@link FolderTreeItem}).
+     */
+    private FolderTreeItem newRootItem(Link rootLink) {
+        tree = new FolderTreeItem.Tree(nfs, treeLoader);
+        FolderTreeItem rootItem = new FolderTreeItem(rootLink, nfs.hasChildFolders(rootLink.getId()), tree);
+        rootItem.setExpanded(true);
+        return rootItem;
     }
 
     private void setupTable() {
@@ -202,7 +304,17 @@ public class NfsExplorerApp extends Application {
         typeCol.setCellValueFactory(cell ->
                 new SimpleStringProperty(cell.getValue().getType().name()));
 
-        tableView.getColumns().addAll(nameCol, typeCol);
+        // renseignée seulement pour des résultats de recherche
+        TableColumn<Link, String> locationCol = new TableColumn<>("Location");
+        locationCol.setCellValueFactory(cell ->
+                new SimpleStringProperty(searchPaths.getOrDefault(cell.getValue().getId(), "")));
+
+        // extrait du contenu, pour une recherche "text:"
+        TableColumn<Link, String> matchCol = new TableColumn<>("Match");
+        matchCol.setCellValueFactory(cell ->
+                new SimpleStringProperty(searchSnippets.getOrDefault(cell.getValue().getId(), "")));
+
+        tableView.getColumns().addAll(List.of(nameCol, typeCol, locationCol, matchCol));
         tableView.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
 
         // DnD depuis Windows (fichiers + dossiers)
@@ -218,18 +330,17 @@ public class NfsExplorerApp extends Application {
             var db = event.getDragboard();
             if (db.hasFiles()) {
                 Link folder = getCurrentFolderLink();
-                for (File f : db.getFiles()) {
-                    try {
+                List<File> files = List.copyOf(db.getFiles());
+                tasks.submit("Import " + files.size() + " item(s)", progress -> {
+                    for (File f : files) {
+                        progress.checkCancelled();
                         if (f.isDirectory()) {
-                            nfs.importDirectoryRecursive(folder.getId(), f.toPath());
+                            nfs.importDirectoryRecursive(folder.getId(), f.toPath(), progress);
                         } else {
-                            nfs.importExistingFile(folder.getId(), f.toPath());
+                            nfs.importExistingFile(folder.getId(), f.toPath(), progress);
                         }
-                    } catch (Exception e) {
-                        System.err.println("Import failed: " + e);
                     }
-                }
-                refreshCurrentFolder();
+                });
             }
             event.setDropCompleted(true);
             event.consume();
@@ -277,6 +388,9 @@ public class NfsExplorerApp extends Application {
                 }
             });
 
+            MenuItem editItem = new MenuItem("Edit");
+            editItem.setOnAction(e -> Actions.editFile(nfs, row.getItem(), tasks));
+
             MenuItem renameItem = new MenuItem("Rename");
             renameItem.setOnAction(e -> {
                 Link link = row.getItem();
@@ -285,11 +399,7 @@ public class NfsExplorerApp extends Application {
 
             MenuItem moveTrashItem = new MenuItem("Move to Trash");
             moveTrashItem.setOnAction(e -> {
-                Link link = row.getItem();
-                if (link != null && link.getType() == LinkType.FILE) {
-                    Actions.moveToTrash(nfs, link);
-                    refreshCurrentFolder();
-                }
+                Actions.moveToTrash(nfs, row.getItem());
             });
 
             MenuItem exportItem = new MenuItem("Export");
@@ -297,24 +407,21 @@ public class NfsExplorerApp extends Application {
                 Link link = row.getItem();
                 if (link != null) {
                     Actions.exportSelectedToWindows(
-                            (Stage) tableView.getScene().getWindow(), nfs, link);
+                            (Stage) tableView.getScene().getWindow(), nfs, link, tasks);
                 }
             });
 
             MenuItem deleteItem = new MenuItem("Delete permanently");
             deleteItem.setOnAction(e -> {
                 Link link = row.getItem();
-                if (link != null && link.getType() == LinkType.FILE) {
-                    try {
-                        nfs.deleteFilePermanently(link.getId());
-                        refreshCurrentFolder();
-                    } catch (Exception ex) {
-                        System.err.println("Delete failed: " + ex.getMessage());
-                    }
+                if (link != null && (link.getType() == LinkType.FILE || link.getType() == LinkType.FOLDER)
+                        && confirm("Delete permanently", "Permanently delete \"" + link.getDisplayName() + "\"?")) {
+                    tasks.submit("Delete " + link.getDisplayName(),
+                            progress -> nfs.deletePermanently(link.getId(), progress));
                 }
             });
 
-            menu.getItems().addAll(openItem, renameItem, moveTrashItem, exportItem, deleteItem);
+            menu.getItems().addAll(openItem, editItem, renameItem, moveTrashItem, exportItem, deleteItem);
 
             // attacher/détacher le menu selon la ligne vide ou pas
             row.contextMenuProperty().bind(
@@ -334,27 +441,29 @@ public class NfsExplorerApp extends Application {
         renameLink(selected);
     }
 
+    /** Demande confirmation avant une suppression définitive. */
+    private boolean confirm(String title, String question) {
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION, "This cannot be undone.",
+                ButtonType.OK, ButtonType.CANCEL);
+        alert.setTitle(title);
+        alert.setHeaderText(question);
+        return alert.showAndWait().filter(ButtonType.OK::equals).isPresent();
+    }
+
     private void renameLink(Link link) {
         TextInputDialog dialog = new TextInputDialog(link.getDisplayName());
         dialog.setTitle("Rename");
         dialog.setHeaderText("Rename item");
         dialog.setContentText("New name:");
-        dialog.showAndWait().ifPresent(newName -> {
-            link.setDisplayName(newName);
-            nfs.getFileForFileLink(link).ifPresent(file -> {
-                file.setDisplayName(newName);
-                nfs.saveFileEntry(file);
-            });
-            nfs.saveLink(link);
-            refreshCurrentFolder();
-            // l'arbre ne change que si c'est un dossier → pas grave s'il reste un peu en retard
-        });
+        dialog.showAndWait().ifPresent(newName -> nfs.renameLink(link.getId(), newName));
     }
 
     private void onFolderSelected(Link folderLink) {
-        tableView.getItems().clear();
+        long start = Metrics.start();
+        clearSearch();
         var children = nfs.getChildren(folderLink.getId());
         tableView.getItems().addAll(children);
+        SHOW_FOLDER.stop(start);
     }
 
     private Link getCurrentFolderLink() {
@@ -363,49 +472,202 @@ public class NfsExplorerApp extends Application {
         return sel.getValue();
     }
 
-    private void refreshCurrentFolder() {
-        Link folder = getCurrentFolderLink();
-        onFolderSelected(folder);
-    }
-
+    /**
+     * Sélectionne un dossier dans l'arbre : seuls ses ancêtres sont chargés
+     * (en tâche de fond) et ouverts, pas le reste de l'arbre.
+     */
     private void selectFolderInTree(UUID linkId) {
-        TreeItem<Link> rootItem = treeView.getRoot();
-        TreeItem<Link> found = findItemById(rootItem, linkId);
+        FolderTreeItem rootItem = (FolderTreeItem) treeView.getRoot();
+        FolderTreeItem found = tree.find(linkId);
         if (found != null) {
+            for (TreeItem<Link> p = found.getParent(); p != null; p = p.getParent()) {
+                p.setExpanded(true);
+            }
             treeView.getSelectionModel().select(found);
+            return;
         }
-    }
 
-    private TreeItem<Link> findItemById(TreeItem<Link> item, UUID id) {
-        if (item.getValue().getId().equals(id)) {
-            return item;
+        // chemin ROOT -> linkId en remontant les parents
+        List<UUID> chain = new ArrayList<>();
+        UUID id = linkId;
+        while (id != null && !chain.contains(id)) {
+            chain.add(0, id);
+            if (id.equals(rootItem.getValue().getId())) {
+                break;
+            }
+            id = nfs.findLink(id).map(Link::getParentId).orElse(null);
         }
-        for (TreeItem<Link> child : item.getChildren()) {
-            TreeItem<Link> found = findItemById(child, id);
-            if (found != null) return found;
+        if (chain.isEmpty() || !chain.get(0).equals(rootItem.getValue().getId())) {
+            return; // pas sous ROOT
         }
-        return null;
+        selectAlongPath(rootItem, chain, 1);
+    }
+
+    private void selectAlongPath(FolderTreeItem item, List<UUID> chain, int depth) {
+        if (depth == chain.size()) {
+            treeView.getSelectionModel().select(item);
+            return;
+        }
+        item.load(() -> {
+            for (TreeItem<Link> child : item.getChildren()) {
+                if (child.getValue().getId().equals(chain.get(depth))) {
+                    item.setExpanded(true);
+                    selectAlongPath((FolderTreeItem) child, chain, depth + 1);
+                    return;
+                }
+            }
+        });
+    }
+
+    // ---------- recherche ----------
+
+    /** Quitte le mode recherche et vide la table. */
+    private void clearSearch() {
+        activeSearch = null;
+        activeContentSearch = null;
+        searchPaths.clear();
+        searchSnippets.clear();
+        moreResultsBtn.setVisible(false);
+        tableView.getItems().clear();
     }
 
     /**
-     * Refresh de l'arbre en gardant le dossier courant sélectionné
-     * pour éviter les sauts et l'effet chiant de reset complet.
+     * Lit une page de résultats hors du thread JavaFX puis l'ajoute à la
+     * table (ignorée si une autre recherche a été lancée entre-temps).
      */
-    private void refreshTreePreserveSelection() {
-        UUID currentId = getCurrentFolderLink().getId();
+    private void loadSearchPage(SearchQuery query, int offset) {
+        Task<SearchPage> task = new Task<>() {
+            @Override
+            protected SearchPage call() {
+                return nfs.search(query, offset, SEARCH_PAGE_SIZE);
+            }
+        };
+        task.setOnSucceeded(e -> {
+            if (activeSearch != query) {
+                return;
+            }
+            SearchPage page = task.getValue();
+            List<Link> rows = new ArrayList<>(page.getHits().size());
+            for (SearchHit hit : page.getHits()) {
+                searchPaths.put(hit.getLink().getId(), hit.getPath());
+                rows.add(hit.getLink());
+            }
+            tableView.getItems().addAll(rows);
+            searchNextOffset = page.nextOffset();
+            moreResultsBtn.setVisible(page.hasMore());
+        });
+        task.setOnFailed(e -> System.err.println("Search failed: " + task.getException().getMessage()));
+        treeLoader.execute(task);
+    }
 
-        Link root = nfs.findLink(nfs.getRootLinkId()).orElseThrow();
-        TreeItem<Link> rootItem = new TreeItem<>(root);
-        rootItem.setExpanded(true);
-        treeView.setRoot(rootItem);
-        loadFolderChildrenRecursive(rootItem);
+    /** Recherche plein texte : une seule page, classée par pertinence. */
+    private void loadContentSearch(String text) {
+        Task<List<ContentHit>> task = new Task<>() {
+            @Override
+            protected List<ContentHit> call() throws IOException {
+                return nfs.searchContent(text, SEARCH_PAGE_SIZE);
+            }
+        };
+        task.setOnSucceeded(e -> {
+            if (activeContentSearch != text) {
+                return;
+            }
+            List<Link> rows = new ArrayList<>(task.getValue().size());
+            for (ContentHit hit : task.getValue()) {
+                searchPaths.put(hit.getLink().getId(), hit.getPath());
+                searchSnippets.put(hit.getLink().getId(), hit.getSnippet());
+                rows.add(hit.getLink());
+            }
+            tableView.getItems().addAll(rows);
+        });
+        task.setOnFailed(e -> System.err.println("Search failed: " + task.getException().getMessage()));
+        treeLoader.execute(task);
+    }
+
+    // ---------- changements publiés par le service ----------
+
+    /**
+     * Reporte des changements de links sur l'arbre et la table : seuls les
+     * éléments concernés sont touchés.
+     */
+    private void drainPendingChanges() {
+        drainScheduled.set(false);
+        List<LinkChange> changes = new ArrayList<>();
+        LinkChange change;
+        while ((change = pendingChanges.poll()) != null) {
+            changes.add(change);
+        }
+        if (!changes.isEmpty()) {
+            applyChanges(changes);
+        }
+    }
+
+    private void applyChanges(List<LinkChange> changes) {
+        long start = Metrics.start();
+        TreeItem<Link> selected = treeView.getSelectionModel().getSelectedItem();
+        for (LinkChange change : changes) {
+            LinkType type = change.getLink().getType();
+            if (type == LinkType.FOLDER || type == LinkType.TRASH) {
+                FolderTreeItem.apply(tree, change);
+            }
+        }
+        applyToTable(changes);
 
-        TreeItem<Link> sel = findItemById(rootItem, currentId);
-        if (sel != null) {
-            treeView.getSelectionModel().select(sel);
+        // un dossier déplacé est retiré puis remis : la sélection peut avoir sauté
+        if (selected != null && treeView.getSelectionModel().getSelectedItem() != selected
+                && tree.find(selected.getValue().getId()) == selected) {
+            treeView.getSelectionModel().select(selected);
         }
+        APPLY_CHANGES.stop(start);
+    }
 
-        refreshCurrentFolder();
+    /**
+     * Coût en O(lignes + changements) par batch : un index id -> ligne est
+     * construit une fois, une ligne touchée est remplacée en place, les
+     * lignes qui sortent sont retirées en un seul passage et un link arrivé
+     * dans le dossier courant est ajouté à la fin.
+     */
+    private void applyToTable(List<LinkChange> changes) {
+        // dernier état de chaque link du batch
+        Map<UUID, LinkChange> latest = new LinkedHashMap<>();
+        for (LinkChange change : changes) {
+            latest.put(change.getLinkId(), change);
+        }
+        var rows = tableView.getItems();
+        if (activeSearch != null || activeContentSearch != null) {
+            // résultats de recherche : on ne retire que ce qui disparaît
+            latest.values().removeIf(change -> change.getKind() != LinkChange.Kind.DELETED);
+            if (!latest.isEmpty()) {
+                rows.removeIf(l -> latest.containsKey(l.getId()));
+                searchPaths.keySet().removeAll(latest.keySet());
+                searchSnippets.keySet().removeAll(latest.keySet());
+            }
+            return;
+        }
+        UUID current = getCurrentFolderLink().getId();
+        Map<UUID, Integer> rowOf = new HashMap<>(rows.size() * 2);
+        for (int i = 0; i < rows.size(); i++) {
+            rowOf.put(rows.get(i).getId(), i);
+        }
+        Set<UUID> removed = new HashSet<>();
+        List<Link> added = new ArrayList<>();
+        for (LinkChange change : latest.values()) {
+            Integer row = rowOf.get(change.getLinkId());
+            boolean inCurrent = current.equals(change.getNewParentId());
+            if (row == null) {
+                if (inCurrent) {
+                    added.add(change.getLink());
+                }
+            } else if (inCurrent) {
+                rows.set(row, change.getLink());
+            } else {
+                removed.add(change.getLinkId());
+            }
+        }
+        if (!removed.isEmpty()) {
+            rows.removeIf(l -> removed.contains(l.getId()));
+        }
+        rows.addAll(added);
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,81 @@
+package com.nova.nfs.ui;
+
+import javafx.beans.binding.Bindings;
+import javafx.concurrent.Worker;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+
+/**
+ * Liste des tâches de fond : titre, avancement, bouton d'annulation (ou de
+ * fermeture pour une tâche en échec). Une tâche annulée reste affichée
+ * jusqu'à ce que l'opération se soit effectivement arrêtée.
+ */
+final class TaskPanel extends ListView<BackgroundTasks.BackgroundTask> {
+
+    TaskPanel(BackgroundTasks tasks) {
+        super(tasks.getTasks());
+        setPrefHeight(110);
+        setPlaceholder(new Label("No background task"));
+        setCellFactory(lv -> new TaskCell(tasks));
+    }
+
+    private static final class TaskCell extends ListCell<BackgroundTasks.BackgroundTask> {
+        private final BackgroundTasks tasks;
+        private final Label title = new Label();
+        private final Label message = new Label();
+        private final ProgressBar bar = new ProgressBar();
+        private final Button action = new Button();
+        private final HBox box = new HBox(10, title, bar, message, action);
+
+        TaskCell(BackgroundTasks tasks) {
+            this.tasks = tasks;
+            box.setAlignment(Pos.CENTER_LEFT);
+            box.setPadding(new Insets(2, 4, 2, 4));
+            bar.setPrefWidth(200);
+            HBox.setHgrow(message, Priority.ALWAYS);
+            message.setMaxWidth(Double.MAX_VALUE);
+        }
+
+        @Override
+        protected void updateItem(BackgroundTasks.BackgroundTask task, boolean empty) {
+            super.updateItem(task, empty);
+            title.textProperty().unbind();
+            message.textProperty().unbind();
+            bar.progressProperty().unbind();
+            action.textProperty().unbind();
+            action.disableProperty().unbind();
+            if (empty || task == null) {
+                setGraphic(null);
+                return;
+            }
+            title.textProperty().bind(task.titleProperty());
+            bar.progressProperty().bind(task.progressProperty());
+            message.textProperty().bind(Bindings.createStringBinding(() ->
+                            task.getState() == Worker.State.FAILED
+                                    ? "Failed: " + task.getException().getMessage()
+                                    : task.cancellingProperty().get()
+                                    ? "Cancelling... " + task.getMessage()
+                                    : task.getMessage(),
+                    task.stateProperty(), task.messageProperty(), task.cancellingProperty()));
+            action.textProperty().bind(task.stateProperty().map(state ->
+                    state == Worker.State.FAILED ? "Dismiss" : "Cancel"));
+            action.disableProperty().bind(task.cancellingProperty()
+                    .and(task.stateProperty().isNotEqualTo(Worker.State.FAILED)));
+            action.setOnAction(e -> {
+                if (task.getState() == Worker.State.FAILED) {
+                    tasks.getTasks().remove(task);
+                } else {
+                    task.cancel();
+                }
+            });
+            setGraphic(box);
+        }
+    }
+}
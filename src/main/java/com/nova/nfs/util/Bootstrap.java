@@ -2,19 +2,154 @@ package com.nova.nfs.util;
 
 import com.nova.nfs.core.Link;
 import com.nova.nfs.core.LinkType;
-import com.nova.nfs.repo.LinkRepository;
+import com.nova.nfs.fulltext.ContentIndexOptions;
+import com.nova.nfs.repo.*;
+import com.nova.nfs.service.DeleteOptions;
+import com.nova.nfs.service.ImportOptions;
+import com.nova.nfs.service.NovaFsService;
+import com.nova.nfs.storage.BlobLayout;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 public class Bootstrap {
 
+    private static final String DEFAULT_BASE_DIR = "C:/NFS";
+
+    /**
+     * Répertoire de l'appli ({@code data/} et {@code files/}) :
+     * {@code -Dnfs.baseDir=...}, {@code C:/NFS} par défaut.
+     */
+    public static Path baseDir() {
+        String dir = SystemProperties.get("nfs.baseDir");
+        return Path.of(dir != null ? dir : DEFAULT_BASE_DIR);
+    }
+
+    /**
+     * Ouvre le catalogue de {@code baseDir} comme au démarrage de l'appli :
+     * verrou du répertoire de données, repositories, ROOT et corbeille,
+     * vérification d'intégrité, index plein texte. Les réglages viennent des
+     * propriétés système ({@code -Dnfs.*}).
+     *
+     * @throws IllegalStateException si un autre process a déjà ouvert ce
+     *                               catalogue (rien n'a alors été ouvert)
+     */
+    public static NovaFsService openService(Path baseDir, StoreOptions storeOptions) {
+        Path dataDir = baseDir.resolve("data");
+        CatalogLock lock;
+        try {
+            lock = CatalogLock.acquire(dataDir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to lock catalog: " + dataDir, e);
+        }
+        NovaFsService nfs;
+        try {
+            FileRepository fileRepo = openFileRepository(dataDir, storeOptions);
+            LinkRepository linkRepo = openLinkRepository(dataDir, storeOptions);
+
+            Link root = ensureRoot(linkRepo);
+            Link trash = ensureTrash(linkRepo, root.getId());
+
+            nfs = new NovaFsService(fileRepo, linkRepo, baseDir.resolve("files"), root.getId(),
+                    trash.getId(), ImportOptions.fromSystemProperties(), BlobLayout.fromSystemProperties(),
+                    DeleteOptions.fromSystemProperties());
+        } catch (RuntimeException e) {
+            closeQuietly(lock);
+            throw e;
+        }
+        // libéré par nfs.close(), après les repositories
+        nfs.closeAfterRepositories(lock);
+
+        nfs.recoverIntegrity(dataDir, storeOptions.getDurability());
+        try {
+            nfs.openContentIndex(dataDir.resolve("fulltext"), ContentIndexOptions.fromSystemProperties());
+        } catch (IOException e) {
+            // le catalogue reste utilisable, sans recherche dans le contenu
+            System.err.println("Failed to open content index: " + e.getMessage());
+        }
+        return nfs;
+    }
+
+    private static void closeQuietly(CatalogLock lock) {
+        try {
+            lock.close();
+        } catch (IOException e) {
+            System.err.println("Failed to release catalog lock: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Ouvre le repository de fichiers de {@code dataDir} selon le backend
+     * choisi. En {@link StoreBackend#MAPPED}, un catalogue mappé vide est
+     * d'abord rempli à partir du stockage journalisé s'il en existe un.
+     */
+    public static FileRepository openFileRepository(Path dataDir, StoreOptions options) {
+        Path legacy = dataDir.resolve("files.json");
+        if (options.getBackend() != StoreBackend.MAPPED) {
+            return new JsonFileRepository(legacy, options);
+        }
+        MappedFileRepository repo = new MappedFileRepository(dataDir.resolve("files"), options);
+        if (repo.isEmpty() && hasJournalStore(legacy)) {
+            JsonFileRepository source = new JsonFileRepository(legacy, options.withBackend(StoreBackend.JOURNAL));
+            repo.saveAll(source.findAll());
+            source.close();
+            retireJournalStore(legacy);
+        }
+        return repo;
+    }
+
+    public static LinkRepository openLinkRepository(Path dataDir, StoreOptions options) {
+        Path legacy = dataDir.resolve("links.json");
+        if (options.getBackend() != StoreBackend.MAPPED) {
+            return new JsonLinkRepository(legacy, options);
+        }
+        MappedLinkRepository repo = new MappedLinkRepository(dataDir.resolve("links"), options);
+        if (repo.isEmpty() && hasJournalStore(legacy)) {
+            JsonLinkRepository source = new JsonLinkRepository(legacy, options.withBackend(StoreBackend.JOURNAL));
+            repo.saveAll(source.findAll());
+            source.close();
+            retireJournalStore(legacy);
+        }
+        return repo;
+    }
+
+    private static boolean hasJournalStore(Path basePath) {
+        for (SnapshotFormat format : SnapshotFormat.values()) {
+            if (Files.exists(format.resolve(basePath))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Les fichiers du stockage journalisé sont renommés en {@code .migrated}
+     * une fois recopiés, pour ne pas être réimportés.
+     */
+    private static void retireJournalStore(Path basePath) {
+        List<Path> files = List.of(
+                SnapshotFormat.JSON.resolve(basePath),
+                SnapshotFormat.BINARY.resolve(basePath),
+                basePath.resolveSibling(basePath.getFileName() + ".journal"));
+        for (Path f : files) {
+            try {
+                if (Files.exists(f)) {
+                    Files.move(f, f.resolveSibling(f.getFileName() + ".migrated"),
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to retire " + f + ": " + e.getMessage());
+            }
+        }
+    }
+
     public static Link ensureRoot(LinkRepository repo) {
-        List<Link> all = repo.findAll();
-        List<Link> roots = all.stream()
-                .filter(l -> l.getType() == LinkType.ROOT)
-                .collect(Collectors.toList());
+        List<Link> roots = repo.findByType(LinkType.ROOT);
 
         if (!roots.isEmpty()) {
             return roots.get(0);
@@ -26,10 +161,7 @@ public class Bootstrap {
     }
 
     public static Link ensureTrash(LinkRepository repo, UUID rootId) {
-        List<Link> all = repo.findAll();
-        List<Link> trashList = all.stream()
-                .filter(l -> l.getType() == LinkType.TRASH)
-                .collect(Collectors.toList());
+        List<Link> trashList = repo.findByType(LinkType.TRASH);
 
         if (!trashList.isEmpty()) {
             return trashList.get(0);
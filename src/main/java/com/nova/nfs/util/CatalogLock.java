@@ -0,0 +1,62 @@
+package com.nova.nfs.util;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Verrou exclusif sur le répertoire de données ({@code <dataDir>/lock}) :
+ * un seul process ouvre le catalogue à la fois. Le verrou est système, il
+ * disparaît avec le process même après un arrêt brutal.
+ */
+public final class CatalogLock implements AutoCloseable {
+
+    private static final String LOCK_FILE = "lock";
+
+    private final FileChannel channel;
+    private final FileLock lock;
+
+    private CatalogLock(FileChannel channel, FileLock lock) {
+        this.channel = channel;
+        this.lock = lock;
+    }
+
+    /**
+     * Prend le verrou sans attendre.
+     *
+     * @throws IllegalStateException si un autre process (ou ce process) tient
+     *                               déjà le catalogue
+     */
+    public static CatalogLock acquire(Path dataDir) throws IOException {
+        Files.createDirectories(dataDir);
+        FileChannel channel = FileChannel.open(dataDir.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IllegalStateException("Catalog already in use by another process: " + dataDir);
+        }
+        return new CatalogLock(channel, lock);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            lock.release();
+        } finally {
+            channel.close();
+        }
+    }
+}
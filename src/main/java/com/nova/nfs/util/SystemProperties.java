@@ -0,0 +1,69 @@
+package com.nova.nfs.util;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Lecture des réglages {@code -Dnfs.*} par les {@code fromSystemProperties()}
+ * des classes d'options. Une propriété absente ou vide garde la valeur
+ * courante ; une valeur invalide lève une {@link IllegalArgumentException}
+ * qui nomme la propriété.
+ * <pre>
+ * options = SystemProperties.withInt(options, "nfs.deleteThreads", DeleteOptions::withThreads);
+ * </pre>
+ */
+public final class SystemProperties {
+
+    private SystemProperties() {
+    }
+
+    /** Valeur sans les blancs autour, ou null si absente ou vide. */
+    public static String get(String name) {
+        String value = System.getProperty(name);
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    public static <T> T withInt(T options, String name, BiFunction<T, Integer, T> with) {
+        return with(options, name, Integer::parseInt, with);
+    }
+
+    public static <T> T withLong(T options, String name, BiFunction<T, Long, T> with) {
+        return with(options, name, Long::parseLong, with);
+    }
+
+    public static <T> T withPath(T options, String name, BiFunction<T, Path, T> with) {
+        return with(options, name, Path::of, with);
+    }
+
+    /** Nom de constante, sans tenir compte de la casse. */
+    public static <T, E extends Enum<E>> T withEnum(T options, String name, Class<E> type,
+                                                    BiFunction<T, E, T> with) {
+        String value = get(name);
+        if (value == null) {
+            return options;
+        }
+        try {
+            return with.apply(options, Enum.valueOf(type, value.toUpperCase(Locale.ROOT)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid -D" + name + "=" + value + ", expected one of "
+                    + Arrays.toString(type.getEnumConstants()), e);
+        }
+    }
+
+    private static <T, V> T with(T options, String name, Function<String, V> parser, BiFunction<T, V, T> with) {
+        String value = get(name);
+        if (value == null) {
+            return options;
+        }
+        V parsed;
+        try {
+            parsed = parser.apply(value);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid -D" + name + "=" + value, e);
+        }
+        return with.apply(options, parsed);
+    }
+}
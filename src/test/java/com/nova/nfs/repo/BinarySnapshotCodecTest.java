@@ -0,0 +1,200 @@
+package com.nova.nfs.repo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nova.nfs.core.FileEntry;
+import com.nova.nfs.core.Link;
+import com.nova.nfs.core.LinkType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Format binaire des snapshots : aller-retour, lecture des snapshots v1,
+ * détection d'un fichier tronqué et migration JSON <-> binaire au
+ * chargement d'un repository.
+ */
+class BinarySnapshotCodecTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void linksAndFilesRoundTrip() throws IOException {
+        List<Link> links = sampleLinks();
+        assertEquals(describeLinks(links), describeLinks(roundTrip(BinarySnapshotCodec.links(), links)));
+
+        List<FileEntry> files = List.of(
+                new FileEntry("photo", "jpg", "ab/cd/0123.jpg"),
+                new FileEntry("photo", "jpg", "ab/cd/4567.jpg"),
+                new FileEntry("notes", null, "C:\\NFS\\files\\notes"),
+                new FileEntry("sans chemin", "txt", null));
+        assertEquals(describeFiles(files), describeFiles(roundTrip(BinarySnapshotCodec.files(), files)));
+    }
+
+    @Test
+    void version1LinksAreReadWithoutTrashDate() throws IOException {
+        UUID id = UUID.randomUUID();
+        UUID parent = UUID.randomUUID();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(new byte[]{'N', 'F', 'S', 'B'});
+        out.writeByte(1);           // version
+        out.writeByte(2);           // kind : links
+        out.writeByte(1);           // TAG_STRING
+        byte[] name = "dossier".getBytes(StandardCharsets.UTF_8);
+        out.writeByte(name.length + 1);
+        out.write(name);
+        out.writeByte(2);           // TAG_RECORD
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+        out.writeByte(LinkTypeCodes.code(LinkType.FOLDER));
+        out.writeByte(1);           // ref "dossier"
+        out.writeByte(1);           // parent présent
+        out.writeLong(parent.getMostSignificantBits());
+        out.writeLong(parent.getLeastSignificantBits());
+        out.writeByte(0);           // pas de cible ; v1 : pas de trashedAt
+        out.writeByte(0);           // TAG_END
+        out.writeByte(1);           // 1 record
+
+        List<Link> read = new ArrayList<>();
+        BinarySnapshotCodec.links().read(new ByteArrayInputStream(bytes.toByteArray()), read::add);
+
+        assertEquals(1, read.size());
+        Link link = read.get(0);
+        assertEquals(id, link.getId());
+        assertEquals(LinkType.FOLDER, link.getType());
+        assertEquals("dossier", link.getDisplayName());
+        assertEquals(parent, link.getParentId());
+        assertEquals(null, link.getTargetFileId());
+        assertEquals(0, link.getTrashedAt());
+    }
+
+    @Test
+    void truncatedSnapshotIsRejected() throws IOException {
+        byte[] full = write(BinarySnapshotCodec.links(), sampleLinks());
+        for (int length = 0; length < full.length; length++) {
+            byte[] truncated = Arrays.copyOf(full, length);
+            assertThrows(IOException.class,
+                    () -> BinarySnapshotCodec.links().read(new ByteArrayInputStream(truncated), l -> { }),
+                    "snapshot cut at " + length + "/" + full.length + " bytes was accepted");
+        }
+    }
+
+    @Test
+    void recordCountMismatchIsRejected() throws IOException {
+        byte[] full = write(BinarySnapshotCodec.links(), sampleLinks());
+        full[full.length - 1]++; // varint du nombre de records, < 128 ici
+        IOException e = assertThrows(IOException.class,
+                () -> BinarySnapshotCodec.links().read(new ByteArrayInputStream(full), l -> { }));
+        assertTrue(e.getMessage().contains("truncated"), e.getMessage());
+    }
+
+    @Test
+    void repositoryMigratesBetweenJsonAndBinary() {
+        Path base = dir.resolve("links.json");
+        StoreOptions json = StoreOptions.defaults().withSnapshotFormat(SnapshotFormat.JSON);
+        StoreOptions binary = StoreOptions.defaults().withSnapshotFormat(SnapshotFormat.BINARY);
+
+        JsonLinkRepository repo = new JsonLinkRepository(base, json);
+        for (Link link : sampleLinks()) {
+            repo.save(link);
+        }
+        List<String> expected = describeLinks(repo.findAll());
+        repo.close();
+
+        repo = new JsonLinkRepository(base, binary);
+        assertEquals(expected, describeLinks(repo.findAll()));
+        repo.close();
+        assertTrue(Files.exists(dir.resolve("links.bin")));
+        assertTrue(Files.exists(dir.resolve("links.json.migrated")));
+        assertFalse(Files.exists(base));
+
+        repo = new JsonLinkRepository(base, json);
+        assertEquals(expected, describeLinks(repo.findAll()));
+        repo.close();
+        assertTrue(Files.exists(base));
+        assertTrue(Files.exists(dir.resolve("links.bin.migrated")));
+    }
+
+    @Test
+    void converterWritesTheSameRecords() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        Path from = dir.resolve("links.json");
+        Path to = dir.resolve("links.bin");
+        List<Link> links = sampleLinks();
+        SnapshotFormat.JSON.linkCodec(mapper).writeFile(from, links, false);
+
+        SnapshotConverter.convert(from, SnapshotFormat.JSON.linkCodec(mapper), to, BinarySnapshotCodec.links());
+
+        List<Link> read = new ArrayList<>();
+        BinarySnapshotCodec.links().readFile(to, read::add);
+        assertEquals(describeLinks(links), describeLinks(read));
+    }
+
+    private static List<Link> sampleLinks() {
+        Link root = new Link(LinkType.ROOT, "ROOT");
+        Link trash = new Link(LinkType.TRASH, "Trash");
+        trash.setParentId(root.getId());
+        Link folder = new Link(LinkType.FOLDER, "Vacances \u00e9t\u00e9");
+        folder.setParentId(root.getId());
+        Link file = new Link(LinkType.FILE, "photo.jpg");
+        file.setParentId(folder.getId());
+        file.setTargetFileId(UUID.randomUUID());
+        Link trashed = new Link(LinkType.FILE, "photo.jpg");
+        trashed.setParentId(trash.getId());
+        trashed.setTargetFileId(file.getTargetFileId());
+        trashed.setTrashedAt(1_700_000_000_000L);
+        return List.of(root, trash, folder, file, trashed);
+    }
+
+    private static <T> byte[] write(SnapshotCodec<T> codec, List<T> values) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SnapshotCodec.RecordWriter<T> writer = codec.writer(bytes);
+        for (T value : values) {
+            writer.write(value);
+        }
+        writer.finish();
+        return bytes.toByteArray();
+    }
+
+    private static <T> List<T> roundTrip(SnapshotCodec<T> codec, List<T> values) throws IOException {
+        List<T> read = new ArrayList<>();
+        codec.read(new ByteArrayInputStream(write(codec, values)), read::add);
+        return read;
+    }
+
+    private static List<String> describeLinks(List<Link> links) {
+        List<String> described = new ArrayList<>();
+        for (Link l : links) {
+            described.add(l.getId() + "|" + l.getType() + "|" + l.getDisplayName() + "|" + l.getParentId()
+                    + "|" + l.getTargetFileId() + "|" + l.getTrashedAt());
+        }
+        described.sort(null);
+        return described;
+    }
+
+    private static List<String> describeFiles(List<FileEntry> files) {
+        List<String> described = new ArrayList<>();
+        for (FileEntry f : files) {
+            described.add(f.getId() + "|" + f.getDisplayName() + "|" + f.getExtension() + "|" + f.getPhysicalPath());
+        }
+        described.sort(null);
+        return described;
+    }
+}
@@ -0,0 +1,228 @@
+package com.nova.nfs.repo;
+
+import com.nova.nfs.core.Link;
+import com.nova.nfs.core.LinkType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Catalogue de links mappé : reconstruction des données dérivées après un
+ * arrêt brutal, mise à niveau en place des versions 1 et 2, et cohérence des
+ * listes chaînées (enfants, éventuellement filtrés par type, type, cible)
+ * avec les records.
+ */
+class MappedLinkRepositoryTest {
+
+    // disposition sur disque (voir MappedCatalog et MappedLinkRepository)
+    private static final int HEADER_SIZE = 128;
+    private static final int RECORD_SIZE = 128;
+    private static final int H_VERSION = 4;
+    private static final int R_PREV_OF_TARGET = 84;
+    private static final int R_TRASHED_AT = 92;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void cleanCloseKeepsEverything() {
+        Path base = dir.resolve("links");
+        MappedLinkRepository repo = open(base);
+        Catalog catalog = Catalog.fill(repo);
+        repo.close();
+
+        MappedLinkRepository reopened = open(base);
+        catalog.assertListedBy(reopened);
+        reopened.close();
+    }
+
+    @Test
+    void crashRebuildsTheIndexFromRecords() throws IOException {
+        Path base = dir.resolve("links");
+        MappedLinkRepository crashed = open(base);
+        Catalog catalog = Catalog.fill(crashed);
+        crashed.sync();
+        // jamais fermé : le drapeau clean reste baissé. On perd aussi
+        // l'index ; seuls les records font foi.
+        deleteIndexFiles(base);
+
+        MappedLinkRepository reopened = open(base);
+        catalog.assertListedBy(reopened);
+
+        // les listes reconstruites acceptent de nouvelles écritures
+        Link moved = catalog.files.get(0);
+        moved.setParentId(catalog.folders.get(1).getId());
+        reopened.save(moved);
+        reopened.delete(catalog.files.get(1).getId());
+        catalog.files.remove(1);
+        catalog.assertListedBy(reopened);
+        reopened.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2})
+    void olderCatalogsAreUpgradedInPlace(int version) throws IOException {
+        Path base = dir.resolve("links");
+        MappedLinkRepository repo = open(base);
+        Catalog catalog = Catalog.fill(repo);
+        repo.close();
+
+        // v1 : ni chaînage par cible ni date de corbeille (octets réservés à
+        // zéro) ; v2 : pas de date de corbeille
+        Path records = base.resolveSibling("links.records");
+        try (FileChannel ch = FileChannel.open(records, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.allocate(4).putInt(0, version), H_VERSION);
+            long slots = (ch.size() - HEADER_SIZE) / RECORD_SIZE;
+            for (long slot = 0; slot < slots; slot++) {
+                long at = HEADER_SIZE + slot * RECORD_SIZE;
+                ch.write(ByteBuffer.allocate(8), at + R_TRASHED_AT);
+                if (version == 1) {
+                    ch.write(ByteBuffer.allocate(8), at + R_PREV_OF_TARGET);
+                }
+            }
+        }
+        deleteIndexFiles(base);
+        for (Link link : catalog.all()) {
+            link.setTrashedAt(0);
+        }
+
+        MappedLinkRepository upgraded = open(base);
+        catalog.assertListedBy(upgraded);
+        upgraded.close();
+        try (FileChannel ch = FileChannel.open(records, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(8);
+            ch.read(header, 0);
+            assertEquals(3, header.getInt(H_VERSION));
+        }
+    }
+
+    @Test
+    void hasChildrenFiltersOnType() {
+        MappedLinkRepository repo = open(dir.resolve("links"));
+        Catalog catalog = Catalog.fill(repo);
+        UUID folder = catalog.folders.get(0).getId();
+        assertTrue(repo.hasChildren(folder, Set.of(LinkType.FILE)));
+        assertFalse(repo.hasChildren(folder, Set.of(LinkType.FOLDER)));
+        assertTrue(repo.hasChildren(catalog.root.getId(), Set.of(LinkType.FOLDER)));
+        assertFalse(repo.hasChildren(UUID.randomUUID(), Set.of(LinkType.FILE)));
+        repo.close();
+    }
+
+    private static MappedLinkRepository open(Path base) {
+        return new MappedLinkRepository(base, StoreOptions.defaults().withBackend(StoreBackend.MAPPED));
+    }
+
+    private void deleteIndexFiles(Path base) throws IOException {
+        String prefix = base.getFileName() + ".idx.";
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : files.filter(p -> p.getFileName().toString().startsWith(prefix)).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    /** Un petit arbre : ROOT, TRASH, des dossiers, des fichiers dont certains partagent une cible. */
+    private static final class Catalog {
+        Link root;
+        Link trash;
+        final List<Link> folders = new ArrayList<>();
+        final List<Link> files = new ArrayList<>();
+
+        static Catalog fill(LinkRepository repo) {
+            Catalog c = new Catalog();
+            c.root = repo.save(new Link(LinkType.ROOT, "ROOT"));
+            c.trash = child(repo, LinkType.TRASH, "Trash", c.root);
+            for (int i = 0; i < 20; i++) {
+                c.folders.add(child(repo, LinkType.FOLDER, "folder-" + i, c.root));
+            }
+            UUID shared = UUID.randomUUID();
+            for (int i = 0; i < 500; i++) {
+                Link parent = i % 50 == 0 ? c.trash : c.folders.get(i % c.folders.size());
+                Link file = new Link(LinkType.FILE, "file-" + i);
+                file.setParentId(parent.getId());
+                file.setTargetFileId(i % 10 == 0 ? shared : UUID.randomUUID());
+                if (parent == c.trash) {
+                    file.setTrashedAt(1_700_000_000_000L + i);
+                }
+                c.files.add(repo.save(file));
+            }
+            return c;
+        }
+
+        private static Link child(LinkRepository repo, LinkType type, String name, Link parent) {
+            Link link = new Link(type, name);
+            link.setParentId(parent.getId());
+            return repo.save(link);
+        }
+
+        List<Link> all() {
+            List<Link> all = new ArrayList<>();
+            all.add(root);
+            all.add(trash);
+            all.addAll(folders);
+            all.addAll(files);
+            return all;
+        }
+
+        void assertListedBy(LinkRepository repo) {
+            List<Link> all = all();
+            assertEquals(describe(all), describe(repo.findAll()));
+            for (Link link : all) {
+                assertEquals(describe(List.of(link)), describe(List.of(repo.findById(link.getId()).orElseThrow())));
+                List<Link> children = new ArrayList<>();
+                List<Link> sameTarget = new ArrayList<>();
+                for (Link other : all) {
+                    if (link.getId().equals(other.getParentId())) {
+                        children.add(other);
+                    }
+                    if (link.getTargetFileId() != null && link.getTargetFileId().equals(other.getTargetFileId())) {
+                        sameTarget.add(other);
+                    }
+                }
+                assertEquals(describe(children), describe(repo.findChildren(link.getId())),
+                        "children of " + link.getDisplayName());
+                for (LinkType type : LinkType.values()) {
+                    assertEquals(describe(children.stream().filter(c -> c.getType() == type).toList()),
+                            describe(repo.findChildren(link.getId(), Set.of(type))),
+                            type + " children of " + link.getDisplayName());
+                }
+                if (link.getTargetFileId() != null) {
+                    assertEquals(describe(sameTarget), describe(repo.findByTargetFileId(link.getTargetFileId())));
+                    assertEquals(sameTarget.size(), repo.countByTargetFileId(link.getTargetFileId()));
+                }
+            }
+            for (LinkType type : LinkType.values()) {
+                List<Link> ofType = all.stream().filter(l -> l.getType() == type).toList();
+                assertEquals(describe(ofType), describe(repo.findByType(type)), "links of type " + type);
+            }
+            assertEquals(describe(List.of(root)), describe(repo.findChildren(null)));
+        }
+    }
+
+    private static List<String> describe(List<Link> links) {
+        List<String> described = new ArrayList<>();
+        for (Link l : links) {
+            described.add(l.getId() + "|" + l.getType() + "|" + l.getDisplayName() + "|" + l.getParentId()
+                    + "|" + l.getTargetFileId() + "|" + l.getTrashedAt());
+        }
+        described.sort(null);
+        return described;
+    }
+}
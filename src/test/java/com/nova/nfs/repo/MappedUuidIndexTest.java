@@ -0,0 +1,118 @@
+package com.nova.nfs.repo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Table de hachage mappée : suppressions par décalage arrière au milieu des
+ * clusters, croissance par nouvelle génération de fichier, relecture après
+ * fermeture. Comparée à une {@link HashMap} de référence.
+ */
+class MappedUuidIndexTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void randomInsertsAndDeletesMatchAReferenceMap() throws IOException {
+        Path base = dir.resolve("links");
+        MappedUuidIndex index = new MappedUuidIndex(base);
+        Map<UUID, Integer> expected = new HashMap<>();
+        List<UUID> keys = new ArrayList<>();
+        Random random = new Random(42);
+
+        // assez pour grossir plusieurs fois ; les suppressions tombent au
+        // milieu de clusters d'une table chargée à 70 %
+        for (int i = 0; i < 20_000; i++) {
+            if (!keys.isEmpty() && random.nextInt(3) == 0) {
+                UUID key = keys.remove(random.nextInt(keys.size()));
+                index.setSlot(key, MappedUuidIndex.NONE);
+                expected.remove(key);
+            } else {
+                UUID key = new UUID(random.nextLong(), random.nextLong());
+                index.setSlot(key, i);
+                keys.add(key);
+                expected.put(key, i);
+            }
+            if (i % 1000 == 0) {
+                assertMatches(expected, index);
+            }
+        }
+        assertMatches(expected, index);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(MappedUuidIndex.NONE, index.slot(new UUID(random.nextLong(), random.nextLong())));
+        }
+        index.close();
+
+        assertEquals(1, generationFiles(base), "old generations left behind");
+        MappedUuidIndex reopened = new MappedUuidIndex(base);
+        assertMatches(expected, reopened);
+        reopened.close();
+    }
+
+    @Test
+    void entryStaysWhileSlotOrAuxIsSet() throws IOException {
+        MappedUuidIndex index = new MappedUuidIndex(dir.resolve("links"));
+        UUID parent = UUID.randomUUID();
+
+        // parent absent du catalogue mais qui a des enfants : aux seul
+        index.setAux(parent, 7);
+        assertEquals(MappedUuidIndex.NONE, index.slot(parent));
+        assertEquals(7, index.aux(parent));
+        index.setSlot(parent, 3);
+        index.setAux(parent, MappedUuidIndex.NONE);
+        assertEquals(3, index.slot(parent));
+        assertEquals(1, index.size());
+        index.setSlot(parent, MappedUuidIndex.NONE);
+        assertEquals(0, index.size());
+        assertEquals(MappedUuidIndex.NONE, index.aux(parent));
+        index.close();
+    }
+
+    @Test
+    void resetStartsANewEmptyGeneration() throws IOException {
+        Path base = dir.resolve("files");
+        MappedUuidIndex index = new MappedUuidIndex(base);
+        for (int i = 0; i < 100; i++) {
+            index.setSlot(UUID.randomUUID(), i);
+        }
+        index.reset(50_000);
+        assertEquals(0, index.size());
+        UUID key = UUID.randomUUID();
+        index.setSlot(key, 12);
+        index.close();
+
+        assertEquals(1, generationFiles(base));
+        MappedUuidIndex reopened = new MappedUuidIndex(base);
+        assertEquals(12, reopened.slot(key));
+        assertEquals(1, reopened.size());
+        reopened.close();
+    }
+
+    private static void assertMatches(Map<UUID, Integer> expected, MappedUuidIndex index) {
+        assertEquals(expected.size(), index.size());
+        for (Map.Entry<UUID, Integer> e : expected.entrySet()) {
+            assertEquals(e.getValue(), index.slot(e.getKey()), "slot of " + e.getKey());
+        }
+    }
+
+    private long generationFiles(Path base) throws IOException {
+        String prefix = base.getFileName() + ".idx.";
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith(prefix)).count();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.nova.nfs.repo;
+
+import com.nova.nfs.core.FileEntry;
+import com.nova.nfs.util.Bootstrap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compteurs de FileEntry par chemin physique (références des blobs) : suivis
+ * à l'écriture, relus après fermeture, recalculés après un arrêt brutal ou à
+ * la mise à niveau d'un catalogue mappé v1.
+ */
+class PhysicalPathCountTest {
+
+    private static final int H_VERSION = 4;
+
+    @TempDir
+    Path dir;
+
+    @ParameterizedTest
+    @EnumSource(StoreBackend.class)
+    void countsFollowSavesAndDeletes(StoreBackend backend) {
+        StoreOptions options = StoreOptions.defaults().withBackend(backend);
+        FileRepository repo = Bootstrap.openFileRepository(dir, options);
+        List<FileEntry> files = fill(repo);
+        String shared = files.get(0).getPhysicalPath();
+        assertEquals(3, repo.countByPhysicalPath(shared));
+        // même fichier désigné autrement
+        assertEquals(3, repo.countByPhysicalPath(dir.resolve("files/ab/../ab/shared.txt").toString()));
+
+        FileEntry detached = files.get(1);
+        detached.setPhysicalPath(dir.resolve("files/cd/private.txt").toString());
+        repo.save(detached);
+        repo.save(files.get(0)); // réécrit sans changer de chemin
+        repo.delete(files.get(2).getId());
+        assertEquals(1, repo.countByPhysicalPath(shared));
+        assertEquals(1, repo.countByPhysicalPath(detached.getPhysicalPath()));
+        assertEquals(0, repo.countByPhysicalPath(files.get(3).getPhysicalPath() + ".other"));
+        repo.close();
+
+        FileRepository reopened = Bootstrap.openFileRepository(dir, options);
+        assertEquals(1, reopened.countByPhysicalPath(shared));
+        assertEquals(1, reopened.countByPhysicalPath(detached.getPhysicalPath()));
+        assertEquals(1, reopened.countByPhysicalPath(files.get(3).getPhysicalPath()));
+        reopened.delete(files.get(0).getId());
+        assertEquals(0, reopened.countByPhysicalPath(shared));
+        reopened.close();
+    }
+
+    @Test
+    void mappedCountsAreRebuiltAfterACrash() throws IOException {
+        Path base = dir.resolve("files");
+        StoreOptions options = StoreOptions.defaults().withBackend(StoreBackend.MAPPED);
+        MappedFileRepository crashed = new MappedFileRepository(base, options);
+        List<FileEntry> files = fill(crashed);
+        crashed.sync();
+        // jamais fermé, et l'index est perdu : seuls les records font foi
+        deleteIndexFiles(base);
+
+        MappedFileRepository reopened = new MappedFileRepository(base, options);
+        assertEquals(3, reopened.countByPhysicalPath(files.get(0).getPhysicalPath()));
+        assertEquals(1, reopened.countByPhysicalPath(files.get(3).getPhysicalPath()));
+        reopened.close();
+    }
+
+    @Test
+    void version1CatalogIsRecounted() throws IOException {
+        Path base = dir.resolve("files");
+        StoreOptions options = StoreOptions.defaults().withBackend(StoreBackend.MAPPED);
+        MappedFileRepository repo = new MappedFileRepository(base, options);
+        List<FileEntry> files = fill(repo);
+        repo.close();
+
+        // v1 : pas de compteurs dans l'index
+        deleteIndexFiles(base);
+        try (FileChannel ch = FileChannel.open(base.resolveSibling("files.records"),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.allocate(4).putInt(0, 1), H_VERSION);
+        }
+
+        MappedFileRepository upgraded = new MappedFileRepository(base, options);
+        assertEquals(3, upgraded.countByPhysicalPath(files.get(0).getPhysicalPath()));
+        assertEquals(5, upgraded.findAll().size());
+        upgraded.close();
+    }
+
+    /** Trois FileEntry sur un même blob, un seul sur un autre. */
+    private List<FileEntry> fill(FileRepository repo) {
+        String shared = dir.resolve("files/ab/shared.txt").toString();
+        List<FileEntry> files = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            files.add(repo.save(new FileEntry("copie-" + i, "txt", shared)));
+        }
+        files.add(repo.save(new FileEntry("seul", "txt", dir.resolve("files/ef/alone.txt").toString())));
+        repo.save(new FileEntry("sans chemin", "txt", null));
+        return files;
+    }
+
+    private void deleteIndexFiles(Path base) throws IOException {
+        String prefix = base.getFileName() + ".idx.";
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : files.filter(p -> p.getFileName().toString().startsWith(prefix)).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.nova.nfs.service;
+
+import com.nova.nfs.core.Link;
+import com.nova.nfs.core.LinkType;
+import com.nova.nfs.repo.FileRepository;
+import com.nova.nfs.repo.LinkRepository;
+import com.nova.nfs.repo.StoreBackend;
+import com.nova.nfs.repo.StoreOptions;
+import com.nova.nfs.util.Bootstrap;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Déplacements, renommages, mises à la corbeille, imports et listings en
+ * parallèle sur chaque backend (version courte de
+ * {@code bench.ConcurrencyStress}). Échoue sur une mise à jour perdue, un
+ * link listé hors de son parent ou deux fois, un chemin en cache faux, ou un
+ * état relu du disque différent de la mémoire.
+ */
+class ConcurrentMutationsTest {
+
+    private static final long RUN_MILLIS = 1_500;
+    private static final int FOLDERS = 20;
+    private static final int FILES = 200;
+    private static final int THREADS = 3;
+
+    @TempDir
+    Path dir;
+
+    private FileRepository fileRepo;
+    private LinkRepository linkRepo;
+    private NovaFsService nfs;
+
+    @ParameterizedTest
+    @EnumSource(StoreBackend.class)
+    void concurrentMutationsKeepTheCatalogConsistent(StoreBackend backend) throws Exception {
+        StoreOptions options = StoreOptions.defaults().withBackend(backend);
+        open(options);
+
+        List<UUID> folders = new ArrayList<>();
+        for (int i = 0; i < FOLDERS; i++) {
+            folders.add(nfs.createFolder(nfs.getRootLinkId(), "folder-" + i).getId());
+        }
+        Path sources = Files.createDirectories(dir.resolve("sources"));
+        List<Path> sourceFiles = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            sourceFiles.add(Files.writeString(sources.resolve("src-" + i + ".txt"), "source " + i));
+        }
+        List<UUID> files = new ArrayList<>();
+        for (int i = 0; i < FILES; i++) {
+            files.add(nfs.importExistingFile(folders.get(i % FOLDERS), sourceFiles.get(i % sourceFiles.size())).getId());
+        }
+        // un link disputé : renommé par un thread, déplacé par un autre
+        UUID contested = nfs.importExistingFile(folders.get(0), sourceFiles.get(0)).getId();
+        int linksBefore = linkRepo.findAll().size();
+
+        AtomicBoolean stop = new AtomicBoolean();
+        String[] lastName = new String[1];
+        UUID[] lastParent = {folders.get(0)};
+        int[] imported = new int[THREADS];
+        List<Callable<List<String>>> roles = new ArrayList<>();
+        roles.add(() -> {
+            for (int i = 0; !stop.get(); i++) {
+                lastName[0] = "contested-" + i;
+                nfs.renameLink(contested, lastName[0]);
+            }
+            return List.of();
+        });
+        roles.add(() -> {
+            Random random = new Random(-1);
+            for (int i = 0; !stop.get(); i++) {
+                if (i % 5 == 4) {
+                    nfs.moveToTrash(contested);
+                    lastParent[0] = nfs.getTrashLinkId();
+                } else {
+                    lastParent[0] = folders.get(random.nextInt(FOLDERS));
+                    nfs.moveFile(contested, lastParent[0]);
+                }
+            }
+            return List.of();
+        });
+        for (int t = 0; t < THREADS; t++) {
+            int role = t;
+            roles.add(() -> {
+                Random random = new Random(role);
+                while (!stop.get()) {
+                    nfs.moveFile(files.get(random.nextInt(FILES)), folders.get(random.nextInt(FOLDERS)));
+                }
+                return List.of();
+            });
+            roles.add(() -> {
+                Random random = new Random(THREADS + role);
+                while (!stop.get()) {
+                    nfs.importExistingFile(folders.get(random.nextInt(FOLDERS)),
+                            sourceFiles.get(random.nextInt(sourceFiles.size())));
+                    imported[role]++;
+                }
+                return List.of();
+            });
+            roles.add(() -> list(folders, new Random(2 * THREADS + role), stop));
+        }
+
+        List<String> errors = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(roles.size());
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (Callable<List<String>> role : roles) {
+                results.add(pool.submit(role));
+            }
+            TimeUnit.MILLISECONDS.sleep(RUN_MILLIS);
+            stop.set(true);
+            for (Future<List<String>> result : results) {
+                errors.addAll(result.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Link finalState = nfs.findLink(contested).orElseThrow();
+        assertEquals(lastName[0], finalState.getDisplayName(), "rename lost by a concurrent move");
+        assertEquals(lastParent[0], finalState.getParentId(), "move lost by a concurrent rename");
+        assertEquals(nfs.getTrashLinkId().equals(lastParent[0]), finalState.getTrashedAt() != 0,
+                "trash date out of sync with the parent");
+        int importCount = 0;
+        for (int count : imported) {
+            importCount += count;
+        }
+        assertEquals(linksBefore + importCount, linkRepo.findAll().size(), "imported links lost");
+
+        errors.addAll(checkParentIndex());
+        errors.addAll(checkPaths());
+        Map<UUID, String> expected = describe(linkRepo.findAll());
+        nfs.close();
+
+        open(options);
+        try {
+            assertEquals(expected, describe(linkRepo.findAll()), "reopened store differs from memory");
+            errors.addAll(checkParentIndex());
+        } finally {
+            nfs.close();
+        }
+        assertTrue(errors.isEmpty(), () -> errors.size() + " errors, first: " + errors.get(0));
+    }
+
+    private void open(StoreOptions options) {
+        Path dataDir = dir.resolve("data");
+        fileRepo = Bootstrap.openFileRepository(dataDir, options);
+        linkRepo = Bootstrap.openLinkRepository(dataDir, options);
+        Link root = Bootstrap.ensureRoot(linkRepo);
+        Link trash = Bootstrap.ensureTrash(linkRepo, root.getId());
+        nfs = new NovaFsService(fileRepo, linkRepo, dir.resolve("files"), root.getId(), trash.getId());
+        nfs.recoverIntegrity(dataDir, options.getDurability());
+    }
+
+    /** Un enfant listé a le parent demandé, une seule fois ; son chemin se résout. */
+    private List<String> list(List<UUID> folders, Random random, AtomicBoolean stop) {
+        List<String> errors = new ArrayList<>();
+        while (!stop.get()) {
+            UUID folder = folders.get(random.nextInt(folders.size()));
+            Set<UUID> seen = new HashSet<>();
+            for (Link child : nfs.getChildren(folder)) {
+                if (!folder.equals(child.getParentId())) {
+                    errors.add("listed under " + folder + " with parent " + child.getParentId());
+                }
+                if (!seen.add(child.getId())) {
+                    errors.add("listed twice under " + folder + ": " + child.getId());
+                }
+                nfs.resolveLogicalPath(child.getId());
+            }
+        }
+        return errors;
+    }
+
+    /** Chaque link est listé exactement une fois, sous son parent. */
+    private List<String> checkParentIndex() {
+        List<String> errors = new ArrayList<>();
+        List<Link> all = linkRepo.findAll();
+        Set<UUID> parents = new HashSet<>();
+        for (Link link : all) {
+            parents.add(link.getParentId());
+        }
+        int listed = 0;
+        for (UUID parent : parents) {
+            Set<UUID> seen = new HashSet<>();
+            for (Link child : linkRepo.findChildren(parent)) {
+                listed++;
+                if (!Objects.equals(parent, child.getParentId())) {
+                    errors.add("child " + child.getId() + " of " + parent + " has parent " + child.getParentId());
+                }
+                if (!seen.add(child.getId())) {
+                    errors.add("child " + child.getId() + " listed twice under " + parent);
+                }
+            }
+        }
+        if (listed != all.size()) {
+            errors.add(all.size() + " links but " + listed + " listed under their parents");
+        }
+        for (Link link : all) {
+            if (link.getType() == LinkType.FILE && !fileRepo.exists(link.getTargetFileId())) {
+                errors.add("file link " + link.getId() + " targets a missing FileEntry");
+            }
+        }
+        return errors;
+    }
+
+    /** Chemins en cache = chemins recalculés depuis le repository. */
+    private List<String> checkPaths() {
+        List<String> errors = new ArrayList<>();
+        Map<UUID, Link> byId = new HashMap<>();
+        for (Link link : linkRepo.findAll()) {
+            byId.put(link.getId(), link);
+        }
+        for (Link link : byId.values()) {
+            if (link.getType() != LinkType.FILE) {
+                continue;
+            }
+            StringBuilder path = new StringBuilder();
+            for (Link l = link; l != null && l.getType() != LinkType.ROOT; l = byId.get(l.getParentId())) {
+                path.insert(0, "/" + l.getDisplayName());
+            }
+            String cached = nfs.resolveLogicalPath(link.getId());
+            if (!path.toString().equals(cached)) {
+                errors.add("path of " + link.getId() + " is " + cached + ", expected " + path);
+            }
+        }
+        return errors;
+    }
+
+    private static Map<UUID, String> describe(List<Link> links) {
+        Map<UUID, String> described = new HashMap<>();
+        for (Link link : links) {
+            described.put(link.getId(), link.getType() + "|" + link.getParentId() + "|"
+                    + link.getTargetFileId() + "|" + link.getDisplayName() + "|" + link.getTrashedAt());
+        }
+        return described;
+    }
+}